@@ -0,0 +1,122 @@
+package org.vaadin.addons.excelexporter.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+import org.vaadin.addons.excelexporter.configuration.ExportExcelComponentConfiguration;
+import org.vaadin.addons.excelexporter.configuration.ExportExcelConfiguration;
+import org.vaadin.addons.excelexporter.configuration.ExportExcelSheetConfiguration;
+import org.vaadin.addons.excelexporter.configuration.builder.ComponentHeaderConfigurationBuilder;
+import org.vaadin.addons.excelexporter.configuration.builder.ExportExcelComponentConfigurationBuilder;
+import org.vaadin.addons.excelexporter.configuration.builder.ExportExcelConfigurationBuilder;
+import org.vaadin.addons.excelexporter.configuration.builder.ExportExcelSheetConfigurationBuilder;
+import org.vaadin.addons.excelexporter.demo.data.SyntheticDataset;
+import org.vaadin.addons.excelexporter.demo.data.SyntheticDataset.ColumnType;
+import org.vaadin.addons.excelexporter.function.DataCellStyleGeneratorFunction;
+import org.vaadin.addons.excelexporter.model.ExportEngine;
+import org.vaadin.addons.excelexporter.model.StyleCacheMode;
+
+import com.vaadin.ui.Grid;
+
+/**
+ * The Class BenchmarkData holds a grid of the given size and creates the
+ * export configurations of the benchmarks. The rows are generated by the
+ * {@link SyntheticDataset} of the demo from a fixed seed, so every run exports
+ * the same data. The columns cycle through its default mix of column types.
+ * The rows are generated up front, so the benchmarks do not measure the
+ * generator.
+ */
+public class BenchmarkData {
+
+	/** The seed of the dataset. */
+	private static final long SEED = 42;
+
+	/** The grid holding the rows. */
+	private final Grid<Object[]> grid = new Grid<>();
+
+	/** The dataset generating the rows. */
+	private final SyntheticDataset dataset;
+
+	/** The rows. */
+	private final List<Object[]> rows;
+
+	/**
+	 * Instantiates new benchmark data.
+	 *
+	 * @param rowCount
+	 *            the number of rows
+	 * @param columnCount
+	 *            the number of columns
+	 */
+	public BenchmarkData(final int rowCount, final int columnCount) {
+		this.dataset = SyntheticDataset.of(SEED, rowCount, columnCount);
+		this.rows = this.dataset.stream()
+			.collect(Collectors.toList());
+		this.dataset.addColumns(this.grid);
+		this.grid.setItems(this.rows);
+	}
+
+	/**
+	 * Creates the configuration exporting the grid into one sheet.
+	 *
+	 * @param engine
+	 *            the export engine
+	 * @return the export configuration
+	 */
+	public ExportExcelConfiguration<Object[]> createConfiguration(final ExportEngine engine) {
+		return createConfiguration(engine, StyleCacheMode.DESCRIPTOR, null);
+	}
+
+	/**
+	 * Creates the configuration exporting the grid into one sheet.
+	 *
+	 * @param engine
+	 *            the export engine
+	 * @param styleCacheMode
+	 *            the style cache mode
+	 * @param contentStyleFunction
+	 *            the content style function, null for the default one
+	 * @return the export configuration
+	 */
+	public ExportExcelConfiguration<Object[]> createConfiguration(final ExportEngine engine,
+			final StyleCacheMode styleCacheMode, final DataCellStyleGeneratorFunction contentStyleFunction) {
+		ExportExcelComponentConfiguration<Object[]> componentConfig = new ExportExcelComponentConfigurationBuilder<Object[]>()
+			.withGrid(this.grid)
+			.withVisibleProperties(this.dataset.getColumnIds())
+			.withHeaderConfigs(Arrays.asList(new ComponentHeaderConfigurationBuilder().withAutoFilter(true)
+				.withColumnKeys(this.dataset.getColumnIds())
+				.build()))
+			.withIntegerFormattingProperties(this.dataset.getColumnIds(ColumnType.INTEGER))
+			.withFloatFormattingProperties(this.dataset.getColumnIds(ColumnType.DOUBLE, ColumnType.BIG_DECIMAL))
+			.withDateFormattingProperties(this.dataset.getColumnIds(ColumnType.DATE))
+			.withBooleanFormattingProperties(this.dataset.getColumnIds(ColumnType.BOOLEAN))
+			.build();
+		if (contentStyleFunction != null) {
+			componentConfig.setContentStyleFunction(contentStyleFunction);
+		}
+
+		ExportExcelSheetConfiguration<Object[]> sheetConfig = new ExportExcelSheetConfigurationBuilder<Object[]>()
+			.withReportTitle("Benchmark")
+			.withSheetName("Benchmark")
+			.withComponentConfigs(Arrays.asList(componentConfig))
+			.build();
+
+		return new ExportExcelConfigurationBuilder<Object[]>().withGeneratedBy("Benchmark")
+			.withSheetConfigs(Arrays.asList(sheetConfig))
+			.withExportEngine(engine)
+			.withStyleCacheMode(styleCacheMode)
+			.withLocale(Locale.GERMANY)
+			.build();
+	}
+
+	/**
+	 * Gets the rows.
+	 *
+	 * @return the rows
+	 */
+	public List<Object[]> getRows() {
+		return this.rows;
+	}
+}
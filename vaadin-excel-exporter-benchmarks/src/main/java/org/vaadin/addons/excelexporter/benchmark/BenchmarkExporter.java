@@ -0,0 +1,116 @@
+package org.vaadin.addons.excelexporter.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.vaadin.addons.excelexporter.ExportToExcel;
+import org.vaadin.addons.excelexporter.configuration.ExportExcelComponentConfiguration;
+import org.vaadin.addons.excelexporter.configuration.ExportExcelConfiguration;
+import org.vaadin.addons.excelexporter.configuration.ExportExcelSheetConfiguration;
+import org.vaadin.addons.excelexporter.model.ExportType;
+
+/**
+ * The Class BenchmarkExporter opens up the steps of an export to the
+ * benchmarks. The workbook is written into a stream which only counts the
+ * bytes, so the benchmarks do not measure the disk.
+ *
+ * @param <BEANTYPE>
+ *            the generic type
+ */
+public class BenchmarkExporter<BEANTYPE> extends ExportToExcel<BEANTYPE> {
+
+	/**
+	 * Instantiates a new benchmark exporter.
+	 *
+	 * @param exportType
+	 *            the export type
+	 * @param exportExcelConfiguration
+	 *            the export excel configuration
+	 * @param processSheets
+	 *            whether the sheets are processed right away
+	 */
+	public BenchmarkExporter(final ExportType exportType,
+			final ExportExcelConfiguration<BEANTYPE> exportExcelConfiguration, final boolean processSheets) {
+		super(exportType, exportExcelConfiguration, processSheets);
+	}
+
+	/**
+	 * Writes the workbook, processing the sheets first if needed. A streaming
+	 * workbook can only be written once, its temporary files are deleted
+	 * afterwards.
+	 *
+	 * @return the number of bytes written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public long write() throws IOException {
+		CountingOutputStream out = new CountingOutputStream();
+		try {
+			writeWorkbook(out);
+		} finally {
+			if (this.exportWorkbook instanceof SXSSFWorkbook) {
+				// removes the temporary files holding the flushed rows
+				((SXSSFWorkbook) this.exportWorkbook).dispose();
+			}
+		}
+		return out.count;
+	}
+
+	/**
+	 * Creates an empty sheet in the export workbook, replacing the sheet of
+	 * the same name.
+	 *
+	 * @param name
+	 *            the sheet name
+	 * @return the sheet
+	 */
+	public Sheet createSheet(final String name) {
+		int index = this.exportWorkbook.getSheetIndex(name);
+		if (index >= 0) {
+			this.exportWorkbook.removeSheetAt(index);
+		}
+		return this.exportWorkbook.createSheet(name);
+	}
+
+	/**
+	 * Adds a data row of the given component, see
+	 * {@link #addGridDataRow(Sheet, ExportExcelSheetConfiguration, org.vaadin.addons.excelexporter.plan.ColumnExportPlan, Object, int, int)}.
+	 *
+	 * @param sheet
+	 *            the sheet
+	 * @param sheetConfiguration
+	 *            the sheet configuration
+	 * @param componentConfiguration
+	 *            the component configuration
+	 * @param item
+	 *            the item
+	 * @param rowNum
+	 *            the row number
+	 */
+	public void addDataRow(final Sheet sheet, final ExportExcelSheetConfiguration<BEANTYPE> sheetConfiguration,
+			final ExportExcelComponentConfiguration<BEANTYPE> componentConfiguration, final BEANTYPE item,
+			final int rowNum) {
+		addGridDataRow(sheet, sheetConfiguration, getColumnExportPlan(componentConfiguration), item, rowNum, 0);
+	}
+
+	/**
+	 * An output stream which only counts the bytes written.
+	 */
+	private static class CountingOutputStream extends OutputStream {
+
+		/** The number of bytes written. */
+		private long count;
+
+		@Override
+		public void write(final int b) {
+			this.count++;
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) {
+			this.count += len;
+		}
+	}
+}
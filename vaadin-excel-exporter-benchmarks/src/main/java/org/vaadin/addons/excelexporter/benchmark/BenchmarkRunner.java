@@ -0,0 +1,36 @@
+package org.vaadin.addons.excelexporter.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, which adds the allocated bytes
+ * per operation (gc.alloc.rate.norm) to the time of each benchmark. Takes the
+ * usual JMH command line options, e.g. a benchmark name pattern or
+ * {@code -p format=XLSX_DIRECT} to restrict the parameters.
+ */
+public class BenchmarkRunner {
+
+	private BenchmarkRunner() {
+	}
+
+	/**
+	 * The main method.
+	 *
+	 * @param args
+	 *            the JMH command line options
+	 * @throws RunnerException
+	 *             if a benchmark fails
+	 * @throws CommandLineOptionException
+	 *             if the options cannot be parsed
+	 */
+	public static void main(final String[] args) throws RunnerException, CommandLineOptionException {
+		new Runner(new OptionsBuilder().parent(new CommandLineOptions(args))
+			.addProfiler(GCProfiler.class)
+			.build()).run();
+	}
+}
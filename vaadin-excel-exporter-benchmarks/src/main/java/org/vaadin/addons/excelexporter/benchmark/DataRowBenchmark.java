@@ -0,0 +1,105 @@
+package org.vaadin.addons.excelexporter.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vaadin.addons.excelexporter.configuration.ExportExcelComponentConfiguration;
+import org.vaadin.addons.excelexporter.configuration.ExportExcelConfiguration;
+import org.vaadin.addons.excelexporter.configuration.ExportExcelSheetConfiguration;
+import org.vaadin.addons.excelexporter.model.CellValueMode;
+import org.vaadin.addons.excelexporter.model.ExportEngine;
+import org.vaadin.addons.excelexporter.model.ExportType;
+
+/**
+ * The per-cell hot path: adding data rows to a sheet with addGridDataRow,
+ * which reads the values, formats them, looks up the styles and sets the
+ * cells. Every invocation adds {@value #ROWS} rows to a new sheet, the score
+ * is the time per row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataRowBenchmark {
+
+	/** The number of rows added per invocation. */
+	private static final int ROWS = 1000;
+
+	/** The number of columns. */
+	@Param({ "5", "20" })
+	public int columns;
+
+	/** The export type. */
+	@Param({ "XLSX", "XLS" })
+	public ExportType exportType;
+
+	/** The way the values are written to the cells. */
+	@Param({ "TEXT", "NATIVE" })
+	public CellValueMode cellValueMode;
+
+	/** The exporter. */
+	private BenchmarkExporter<Object[]> exporter;
+
+	/** The sheet configuration. */
+	private ExportExcelSheetConfiguration<Object[]> sheetConfig;
+
+	/** The component configuration. */
+	private ExportExcelComponentConfiguration<Object[]> componentConfig;
+
+	/** The sheet the rows are added to. */
+	private Sheet sheet;
+
+	/** The rows. */
+	private List<Object[]> items;
+
+	/**
+	 * Creates the exporter and the sheet.
+	 */
+	@Setup
+	public void setUp() {
+		BenchmarkData data = new BenchmarkData(ROWS, this.columns);
+		ExportExcelConfiguration<Object[]> config = data.createConfiguration(ExportEngine.XSSF);
+		config.setCellValueMode(this.cellValueMode);
+		this.sheetConfig = config.getSheetConfigs()
+			.get(0);
+		this.componentConfig = this.sheetConfig.getComponentConfigs()
+			.get(0);
+		this.exporter = new BenchmarkExporter<>(this.exportType, config, false);
+		this.items = data.getRows();
+	}
+
+	/**
+	 * Replaces the sheet, rows replacing existing rows would be slower.
+	 */
+	@Setup(Level.Invocation)
+	public void createSheet() {
+		this.sheet = this.exporter.createSheet("Rows");
+	}
+
+	/**
+	 * Adds the rows.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void addDataRows() {
+		for (int row = 0; row < ROWS; row++) {
+			this.exporter.addDataRow(this.sheet, this.sheetConfig, this.componentConfig, this.items.get(row), row);
+		}
+	}
+}
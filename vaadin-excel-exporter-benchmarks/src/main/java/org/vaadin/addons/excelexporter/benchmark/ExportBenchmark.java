@@ -0,0 +1,96 @@
+package org.vaadin.addons.excelexporter.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vaadin.addons.excelexporter.model.ExportEngine;
+import org.vaadin.addons.excelexporter.model.ExportType;
+
+/**
+ * End-to-end export of rows x columns: processing the sheets and writing the
+ * file, for each export type and engine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportBenchmark {
+
+	/**
+	 * The export types and engines, xls files are always written with HSSF.
+	 */
+	public enum Format {
+
+		/** Xlsx written with the XSSF engine. */
+		XLSX_XSSF(ExportType.XLSX, ExportEngine.XSSF),
+
+		/** Xlsx written with the SXSSF engine. */
+		XLSX_SXSSF(ExportType.XLSX, ExportEngine.SXSSF),
+
+		/** Xlsx written with the DIRECT engine. */
+		XLSX_DIRECT(ExportType.XLSX, ExportEngine.DIRECT),
+
+		/** Xls, which ignores the engine. */
+		XLS(ExportType.XLS, ExportEngine.XSSF);
+
+		/** The export type. */
+		private final ExportType exportType;
+
+		/** The export engine. */
+		private final ExportEngine engine;
+
+		Format(final ExportType exportType, final ExportEngine engine) {
+			this.exportType = exportType;
+			this.engine = engine;
+		}
+	}
+
+	/** The number of rows. */
+	@Param({ "1000", "10000" })
+	public int rows;
+
+	/** The number of columns. */
+	@Param({ "5", "20" })
+	public int columns;
+
+	/** The export type and engine. */
+	@Param({ "XLSX_XSSF", "XLSX_SXSSF", "XLSX_DIRECT", "XLS" })
+	public Format format;
+
+	/** The data. */
+	private BenchmarkData data;
+
+	/**
+	 * Creates the data.
+	 */
+	@Setup
+	public void setUp() {
+		this.data = new BenchmarkData(this.rows, this.columns);
+	}
+
+	/**
+	 * Exports the grid.
+	 *
+	 * @return the number of bytes written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public long export() throws IOException {
+		return new BenchmarkExporter<>(this.format.exportType, this.data.createConfiguration(this.format.engine), true)
+			.write();
+	}
+}
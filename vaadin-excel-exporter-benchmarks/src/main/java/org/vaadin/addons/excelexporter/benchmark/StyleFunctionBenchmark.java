@@ -0,0 +1,106 @@
+package org.vaadin.addons.excelexporter.benchmark;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFColor;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vaadin.addons.excelexporter.function.DataCellStyleGeneratorFunction;
+import org.vaadin.addons.excelexporter.model.ExportEngine;
+import org.vaadin.addons.excelexporter.model.ExportType;
+import org.vaadin.addons.excelexporter.model.StyleCacheMode;
+
+/**
+ * The cost of the content style function: an export of 10000 rows x 10
+ * columns with style functions of growing complexity, for each style cache
+ * mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StyleFunctionBenchmark {
+
+	/**
+	 * The content style functions.
+	 */
+	public enum StyleFunction {
+
+		/** The default function, zebra stripes. */
+		DEFAULT(null),
+
+		/** Zebra stripes, negative numbers in a bold red font. */
+		BY_VALUE((workbook, columnId, value, rowNum) -> {
+			XSSFCellStyle cellStyle = workbook.createCellStyle();
+			if (rowNum % 2 == 1) {
+				cellStyle.setFillForegroundColor(new XSSFColor(new Color(228, 234, 238)));
+				cellStyle.setFillPattern(XSSFCellStyle.SOLID_FOREGROUND);
+			}
+			if (value instanceof Number && ((Number) value).doubleValue() < 0) {
+				XSSFFont font = workbook.createFont();
+				font.setBold(true);
+				font.setColor(new XSSFColor(Color.RED));
+				cellStyle.setFont(font);
+			}
+			return cellStyle;
+		});
+
+		/** The function, null for the default one. */
+		private final DataCellStyleGeneratorFunction function;
+
+		StyleFunction(final DataCellStyleGeneratorFunction function) {
+			this.function = function;
+		}
+	}
+
+	/** The content style function. */
+	@Param({ "DEFAULT", "BY_VALUE" })
+	public StyleFunction styleFunction;
+
+	/** The style cache mode. */
+	@Param({ "NONE", "DESCRIPTOR", "VALUES", "INPUTS" })
+	public StyleCacheMode styleCacheMode;
+
+	/** The export engine. */
+	@Param({ "XSSF", "DIRECT" })
+	public ExportEngine engine;
+
+	/** The data. */
+	private BenchmarkData data;
+
+	/**
+	 * Creates the data.
+	 */
+	@Setup
+	public void setUp() {
+		this.data = new BenchmarkData(10_000, 10);
+	}
+
+	/**
+	 * Exports the grid.
+	 *
+	 * @return the number of bytes written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public long export() throws IOException {
+		return new BenchmarkExporter<>(ExportType.XLSX, this.data.createConfiguration(this.engine,
+				this.styleCacheMode, this.styleFunction.function), true).write();
+	}
+}
@@ -0,0 +1,74 @@
+package org.vaadin.addons.excelexporter.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vaadin.addons.excelexporter.configuration.ExportExcelConfiguration;
+import org.vaadin.addons.excelexporter.model.ExportEngine;
+import org.vaadin.addons.excelexporter.model.ExportType;
+
+/**
+ * Writing a processed in-memory workbook into the file. SXSSF workbooks can
+ * only be written once and DIRECT renders the rows while writing, both are
+ * covered by {@link ExportBenchmark}. The header has no auto filter, as POI
+ * cannot write the defined name of the filter more than once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorkbookWriteBenchmark {
+
+	/** The number of rows. */
+	@Param({ "1000", "10000" })
+	public int rows;
+
+	/** The export type. */
+	@Param({ "XLSX", "XLS" })
+	public ExportType exportType;
+
+	/** The exporter holding the processed workbook. */
+	private BenchmarkExporter<Object[]> exporter;
+
+	/**
+	 * Processes the sheets.
+	 */
+	@Setup
+	public void setUp() {
+		BenchmarkData data = new BenchmarkData(this.rows, 10);
+		ExportExcelConfiguration<Object[]> config = data.createConfiguration(ExportEngine.XSSF);
+		config.getSheetConfigs()
+			.get(0)
+			.getComponentConfigs()
+			.get(0)
+			.getHeaderConfigs()
+			.get(0)
+			.setAutoFilter(false);
+		this.exporter = new BenchmarkExporter<>(this.exportType, config, true);
+	}
+
+	/**
+	 * Writes the workbook.
+	 *
+	 * @return the number of bytes written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public long write() throws IOException {
+		return this.exporter.write();
+	}
+}
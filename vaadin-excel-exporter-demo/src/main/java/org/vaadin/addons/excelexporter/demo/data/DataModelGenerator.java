@@ -1,11 +1,20 @@
 package org.vaadin.addons.excelexporter.demo.data;
 
-import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 import org.vaadin.addons.excelexporter.demo.DataModel;
 
+/**
+ * Generates random data models. The models of a seed are always the same, each
+ * model only depends on the seed and its index, so any number of models can be
+ * generated lazily, in any order, e.g. page wise by a data provider.
+ */
 public class DataModelGenerator {
 
 	private DataModelGenerator() {
@@ -17,20 +26,64 @@ public class DataModelGenerator {
 	private static final String[] COMPANIES = { "Audi", "VW", "Fiat", "Lexus", "Suzuki" };
 	private static final String[] QUALITYTYPES = { "Luxury", "Premium", "Sports", "Racing", "Standard" };
 
+	/** The source of the seeds of {@link #generate(int)}. */
+	private static final Random SEEDS = new Random();
+
+	/**
+	 * Generates the given number of models from a random seed.
+	 *
+	 * @param cnt
+	 *            the number of models
+	 * @return the models
+	 */
 	public static Collection<DataModel> generate(int cnt) {
+		return stream(SEEDS.nextLong(), cnt).collect(Collectors.toList());
+	}
+
+	/**
+	 * Generates the models of a seed lazily.
+	 *
+	 * @param seed
+	 *            the seed
+	 * @param count
+	 *            the number of models
+	 * @return the models
+	 */
+	public static Stream<DataModel> stream(long seed, long count) {
+		return LongStream.range(0, count)
+			.mapToObj(index -> generate(seed, index));
+	}
+
+	/**
+	 * Generates the models of a seed lazily.
+	 *
+	 * @param seed
+	 *            the seed
+	 * @param count
+	 *            the number of models
+	 * @return the models
+	 */
+	public static Iterator<DataModel> iterator(long seed, long count) {
+		return stream(seed, count).iterator();
+	}
 
-		ArrayList<DataModel> result = new ArrayList<>();
-		for (int i = 1; i <= cnt; i++) {
-			result.add(getDataModel(CATALOGUES[new Random().nextInt(CATALOGUES.length)],
-									COUNTRIES[new Random().nextInt(COUNTRIES.length)],
-									PRODUCTTYPES[new Random().nextInt(PRODUCTTYPES.length)],
-									COMPANIES[new Random().nextInt(COMPANIES.length)], new Random().nextInt() + "$",
-									"contractor" + i, new Random().nextDouble(), new Random().nextDouble(),
-									new Random().nextBoolean(), new Random().nextInt(),
-									QUALITYTYPES[new Random().nextInt(QUALITYTYPES.length)]));
-		}
-
-		return result;
+	/**
+	 * Generates a single model of a seed.
+	 *
+	 * @param seed
+	 *            the seed
+	 * @param index
+	 *            the index of the model
+	 * @return the model
+	 */
+	public static DataModel generate(long seed, long index) {
+		SplittableRandom random = SyntheticDataset.createRandom(seed, index);
+		return getDataModel(CATALOGUES[random.nextInt(CATALOGUES.length)], COUNTRIES[random.nextInt(COUNTRIES.length)],
+							PRODUCTTYPES[random.nextInt(PRODUCTTYPES.length)],
+							COMPANIES[random.nextInt(COMPANIES.length)], random.nextInt() + "$",
+							"contractor" + (index + 1), random.nextDouble(), random.nextDouble(),
+							random.nextBoolean(), random.nextInt(),
+							QUALITYTYPES[random.nextInt(QUALITYTYPES.length)]);
 	}
 
 	private static DataModel getDataModel(String catalogue, String country, String productType, String plannedPrinter,
@@ -0,0 +1,315 @@
+package org.vaadin.addons.excelexporter.demo.data;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import com.vaadin.data.provider.DataProvider;
+import com.vaadin.ui.Grid;
+
+/**
+ * A synthetic dataset of any size for load and benchmark runs. The rows are
+ * arrays holding one value per column, the values of a column are of the type
+ * configured for the column.
+ * <p>
+ * The rows are generated when they are read and are not held: each row only
+ * depends on the seed and its index, so the same seed always gives the same
+ * rows, in any order and any number of times.
+ */
+public class SyntheticDataset {
+
+	/**
+	 * The types of the columns.
+	 */
+	public enum ColumnType {
+
+		/** A word and a number, e.g. "Germany 4711". */
+		STRING,
+
+		/** An integer between -1000000 and 1000000. */
+		INTEGER,
+
+		/** A double between -1000000 and 1000000. */
+		DOUBLE,
+
+		/** A BigDecimal with two decimal places between -1000000 and 1000000. */
+		BIG_DECIMAL,
+
+		/** A date in the ten years after 2010. */
+		DATE,
+
+		/** A boolean. */
+		BOOLEAN
+	}
+
+	/** The mix of columns of {@link #of(long, long, int)}. */
+	public static final List<ColumnType> DEFAULT_COLUMN_MIX = Arrays.asList(ColumnType.STRING, ColumnType.INTEGER,
+																			ColumnType.DOUBLE, ColumnType.DATE,
+																			ColumnType.BIG_DECIMAL, ColumnType.BOOLEAN);
+
+	private static final String[] WORDS = { "India", "Germany", "America", "Italy", "Spain", "Portugal", "Audi", "VW",
+			"Fiat", "Lexus", "Suzuki", "Luxury", "Premium", "Sports", "Racing", "Standard" };
+
+	/** 2010-01-01 00:00 UTC. */
+	private static final long FIRST_DATE = 1_262_304_000_000L;
+
+	/** Ten years in milliseconds. */
+	private static final long DATE_RANGE = 3_652L * 24 * 60 * 60 * 1000;
+
+	private final long seed;
+	private final long rowCount;
+	private final ColumnType[] columnTypes;
+
+	/**
+	 * Instantiates a new synthetic dataset.
+	 *
+	 * @param seed
+	 *            the seed
+	 * @param rowCount
+	 *            the number of rows
+	 * @param columnTypes
+	 *            the types of the columns
+	 */
+	public SyntheticDataset(long seed, long rowCount, ColumnType... columnTypes) {
+		this.seed = seed;
+		this.rowCount = rowCount;
+		this.columnTypes = columnTypes.clone();
+	}
+
+	/**
+	 * Creates a dataset cycling through the given mix of column types.
+	 *
+	 * @param seed
+	 *            the seed
+	 * @param rowCount
+	 *            the number of rows
+	 * @param columnCount
+	 *            the number of columns
+	 * @param columnMix
+	 *            the types the columns cycle through
+	 * @return the dataset
+	 */
+	public static SyntheticDataset of(long seed, long rowCount, int columnCount, List<ColumnType> columnMix) {
+		ColumnType[] columnTypes = new ColumnType[columnCount];
+		for (int column = 0; column < columnCount; column++) {
+			columnTypes[column] = columnMix.get(column % columnMix.size());
+		}
+		return new SyntheticDataset(seed, rowCount, columnTypes);
+	}
+
+	/**
+	 * Creates a dataset cycling through the {@link #DEFAULT_COLUMN_MIX}.
+	 *
+	 * @param seed
+	 *            the seed
+	 * @param rowCount
+	 *            the number of rows
+	 * @param columnCount
+	 *            the number of columns
+	 * @return the dataset
+	 */
+	public static SyntheticDataset of(long seed, long rowCount, int columnCount) {
+		return of(seed, rowCount, columnCount, DEFAULT_COLUMN_MIX);
+	}
+
+	/**
+	 * Generates a row.
+	 *
+	 * @param index
+	 *            the index of the row
+	 * @return the values of the row
+	 */
+	public Object[] getRow(long index) {
+		SplittableRandom random = createRandom(this.seed, index);
+		Object[] row = new Object[this.columnTypes.length];
+		for (int column = 0; column < row.length; column++) {
+			row[column] = generateValue(this.columnTypes[column], random);
+		}
+		return row;
+	}
+
+	/**
+	 * Generates the rows lazily.
+	 *
+	 * @return the rows
+	 */
+	public Stream<Object[]> stream() {
+		return stream(0, this.rowCount);
+	}
+
+	/**
+	 * Generates a range of the rows lazily.
+	 *
+	 * @param offset
+	 *            the index of the first row
+	 * @param limit
+	 *            the maximum number of rows
+	 * @return the rows
+	 */
+	public Stream<Object[]> stream(long offset, long limit) {
+		long end = Math.min(this.rowCount, offset + limit);
+		return LongStream.range(Math.min(offset, end), end)
+			.mapToObj(this::getRow);
+	}
+
+	/**
+	 * Generates the rows lazily.
+	 *
+	 * @return the rows
+	 */
+	public Iterator<Object[]> iterator() {
+		return stream().iterator();
+	}
+
+	/**
+	 * Creates a data provider generating the requested pages of the rows.
+	 * Sorting and filtering are not supported. A grid holds at most
+	 * {@link Integer#MAX_VALUE} rows.
+	 *
+	 * @return the data provider
+	 */
+	public DataProvider<Object[], Void> createDataProvider() {
+		return DataProvider.fromCallbacks(query -> stream(query.getOffset(), query.getLimit()),
+											query -> (int) Math.min(Integer.MAX_VALUE, this.rowCount));
+	}
+
+	/**
+	 * Adds a column per column of the dataset to the grid, the column ids are
+	 * those of {@link #getColumnId(int)}.
+	 *
+	 * @param grid
+	 *            the grid
+	 */
+	public void addColumns(Grid<Object[]> grid) {
+		for (int column = 0; column < this.columnTypes.length; column++) {
+			int index = column;
+			grid.addColumn(row -> row[index])
+				.setId(getColumnId(column))
+				.setCaption(getColumnId(column));
+		}
+	}
+
+	/**
+	 * Gets the id of a column, the type and the index, e.g. "double2".
+	 *
+	 * @param column
+	 *            the index of the column
+	 * @return the column id
+	 */
+	public String getColumnId(int column) {
+		return this.columnTypes[column].name()
+			.toLowerCase()
+			.replace("_", "") + column;
+	}
+
+	/**
+	 * Gets the ids of all columns.
+	 *
+	 * @return the column ids
+	 */
+	public String[] getColumnIds() {
+		String[] columnIds = new String[this.columnTypes.length];
+		for (int column = 0; column < columnIds.length; column++) {
+			columnIds[column] = getColumnId(column);
+		}
+		return columnIds;
+	}
+
+	/**
+	 * Gets the ids of the columns of the given types, e.g. to configure the
+	 * formatting properties of an export.
+	 *
+	 * @param types
+	 *            the column types
+	 * @return the column ids
+	 */
+	public List<String> getColumnIds(ColumnType... types) {
+		List<ColumnType> typeList = Arrays.asList(types);
+		List<String> columnIds = new ArrayList<>();
+		for (int column = 0; column < this.columnTypes.length; column++) {
+			if (typeList.contains(this.columnTypes[column])) {
+				columnIds.add(getColumnId(column));
+			}
+		}
+		return columnIds;
+	}
+
+	/**
+	 * Gets the type of a column.
+	 *
+	 * @param column
+	 *            the index of the column
+	 * @return the column type
+	 */
+	public ColumnType getColumnType(int column) {
+		return this.columnTypes[column];
+	}
+
+	/**
+	 * Gets the number of columns.
+	 *
+	 * @return the column count
+	 */
+	public int getColumnCount() {
+		return this.columnTypes.length;
+	}
+
+	/**
+	 * Gets the number of rows.
+	 *
+	 * @return the row count
+	 */
+	public long getRowCount() {
+		return this.rowCount;
+	}
+
+	/**
+	 * Gets the seed.
+	 *
+	 * @return the seed
+	 */
+	public long getSeed() {
+		return this.seed;
+	}
+
+	private static Object generateValue(ColumnType type, SplittableRandom random) {
+		switch (type) {
+		case STRING:
+			return WORDS[random.nextInt(WORDS.length)] + " " + random.nextInt(10_000);
+		case INTEGER:
+			return random.nextInt(-1_000_000, 1_000_001);
+		case DOUBLE:
+			return random.nextDouble(-1_000_000, 1_000_000);
+		case BIG_DECIMAL:
+			return BigDecimal.valueOf(random.nextLong(-100_000_000, 100_000_001), 2);
+		case DATE:
+			return new Date(FIRST_DATE + random.nextLong(DATE_RANGE));
+		default:
+			return random.nextBoolean();
+		}
+	}
+
+	/**
+	 * Creates the random generator of a row. The seed and the index are mixed,
+	 * so the values of neighbouring rows are unrelated.
+	 *
+	 * @param seed
+	 *            the seed of the dataset
+	 * @param index
+	 *            the index of the row
+	 * @return the random generator
+	 */
+	static SplittableRandom createRandom(long seed, long index) {
+		// the finalizer of MurmurHash3
+		long z = seed ^ (index * 0x9E3779B97F4A7C15L);
+		z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+		z = (z ^ (z >>> 33)) * 0xC4CEB93FE1A85A2BL;
+		return new SplittableRandom(z ^ (z >>> 33));
+	}
+}
@@ -0,0 +1,32 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Class DownloadEvent spans the sending of the export file, or of a range
+ * of it, to the browser.
+ */
+@Name("org.vaadin.addons.excelexporter.Download")
+@Label("Excel Export Download")
+@Category({ "Vaadin", "Excel Export" })
+@Description("The sending of an export file to the browser")
+@StackTrace(false)
+public class DownloadEvent extends jdk.jfr.Event {
+
+	/** The id of the export. */
+	@Label("Export Id")
+	long exportId;
+
+	/** The number of bytes sent. */
+	@Label("Bytes Sent")
+	@DataAmount
+	long bytes;
+}
@@ -0,0 +1,52 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Class ExportEvent spans an export from the start of the rendering until
+ * the export file has been written or the export failed.
+ */
+@Name("org.vaadin.addons.excelexporter.Export")
+@Label("Excel Export")
+@Category({ "Vaadin", "Excel Export" })
+@Description("An export from the start of the rendering until the export file has been written")
+@StackTrace(false)
+public class ExportEvent extends jdk.jfr.Event {
+
+	/** The id of the export. */
+	@Label("Export Id")
+	long exportId;
+
+	/** The export type. */
+	@Label("Export Type")
+	String exportType;
+
+	/** The export engine. */
+	@Label("Export Engine")
+	String exportEngine;
+
+	/** The number of sheets. */
+	@Label("Sheets")
+	int sheetCount;
+
+	/** The number of data rows written. */
+	@Label("Rows")
+	long rowCount;
+
+	/** The size of the export file. */
+	@Label("Output Size")
+	@DataAmount
+	long outputBytes;
+
+	/** The cause of the failure, null if the export completed. */
+	@Label("Failure")
+	String failure;
+}
@@ -0,0 +1,36 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The Class ExportStartedEvent is recorded when an export starts rendering
+ * its sheets, with the stack trace of the thread starting it.
+ */
+@Name("org.vaadin.addons.excelexporter.ExportStarted")
+@Label("Excel Export Started")
+@Category({ "Vaadin", "Excel Export" })
+@Description("An export started rendering its sheets")
+public class ExportStartedEvent extends jdk.jfr.Event {
+
+	/** The id of the export. */
+	@Label("Export Id")
+	long exportId;
+
+	/** The export type. */
+	@Label("Export Type")
+	String exportType;
+
+	/** The export engine. */
+	@Label("Export Engine")
+	String exportEngine;
+
+	/** The number of sheets. */
+	@Label("Sheets")
+	int sheetCount;
+}
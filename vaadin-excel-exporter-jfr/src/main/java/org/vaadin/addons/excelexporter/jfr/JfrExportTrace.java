@@ -0,0 +1,139 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.jfr;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.vaadin.addons.excelexporter.metrics.ExportTrace;
+import org.vaadin.addons.excelexporter.model.ExportEngine;
+import org.vaadin.addons.excelexporter.model.ExportType;
+
+/**
+ * The Class JfrExportTrace records the events of a single export.
+ */
+class JfrExportTrace implements ExportTrace {
+
+	/** The id of the export. */
+	private final long exportId;
+
+	/** The event spanning the export. */
+	private final ExportEvent exportEvent = new ExportEvent();
+
+	/** Whether the export has completed or failed. */
+	private final AtomicBoolean finished = new AtomicBoolean();
+
+	JfrExportTrace(final long exportId, final ExportType exportType, final ExportEngine exportEngine,
+			final int sheetCount) {
+		this.exportId = exportId;
+
+		ExportStartedEvent startedEvent = new ExportStartedEvent();
+		if (startedEvent.isEnabled()) {
+			startedEvent.exportId = exportId;
+			startedEvent.exportType = exportType.name();
+			startedEvent.exportEngine = exportEngine.name();
+			startedEvent.sheetCount = sheetCount;
+			startedEvent.commit();
+		}
+
+		this.exportEvent.exportId = exportId;
+		this.exportEvent.exportType = exportType.name();
+		this.exportEvent.exportEngine = exportEngine.name();
+		this.exportEvent.sheetCount = sheetCount;
+		this.exportEvent.begin();
+	}
+
+	@Override
+	public Span sheetStarted(final String sheetName) {
+		SheetRenderEvent event = new SheetRenderEvent();
+		if (!event.isEnabled()) {
+			return Span.NO_OP;
+		}
+		event.exportId = this.exportId;
+		event.sheetName = sheetName;
+		event.begin();
+		return (count, bytes) -> {
+			event.end();
+			if (event.shouldCommit()) {
+				event.rowCount = count;
+				event.commit();
+			}
+		};
+	}
+
+	@Override
+	public Span pageFetchStarted(final int offset, final int pageSize) {
+		PageFetchEvent event = new PageFetchEvent();
+		if (!event.isEnabled()) {
+			return Span.NO_OP;
+		}
+		event.exportId = this.exportId;
+		event.offset = offset;
+		event.pageSize = pageSize;
+		event.begin();
+		return (count, bytes) -> {
+			event.end();
+			if (event.shouldCommit()) {
+				event.itemCount = count;
+				event.commit();
+			}
+		};
+	}
+
+	@Override
+	public Span serializationStarted() {
+		SerializationEvent event = new SerializationEvent();
+		if (!event.isEnabled()) {
+			return Span.NO_OP;
+		}
+		event.exportId = this.exportId;
+		event.begin();
+		return (count, bytes) -> {
+			event.end();
+			if (event.shouldCommit()) {
+				event.bytes = bytes;
+				event.commit();
+			}
+		};
+	}
+
+	@Override
+	public Span downloadStarted() {
+		DownloadEvent event = new DownloadEvent();
+		if (!event.isEnabled()) {
+			return Span.NO_OP;
+		}
+		event.exportId = this.exportId;
+		event.begin();
+		return (count, bytes) -> {
+			event.end();
+			if (event.shouldCommit()) {
+				event.bytes = bytes;
+				event.commit();
+			}
+		};
+	}
+
+	@Override
+	public void exportCompleted(final long rowCount, final long outputBytes) {
+		finish(rowCount, outputBytes, null);
+	}
+
+	@Override
+	public void exportFailed(final Throwable cause) {
+		finish(0, 0, String.valueOf(cause));
+	}
+
+	private void finish(final long rowCount, final long outputBytes, final String failure) {
+		if (!this.finished.compareAndSet(false, true)) {
+			return;
+		}
+		this.exportEvent.end();
+		if (this.exportEvent.shouldCommit()) {
+			this.exportEvent.rowCount = rowCount;
+			this.exportEvent.outputBytes = outputBytes;
+			this.exportEvent.failure = failure;
+			this.exportEvent.commit();
+		}
+	}
+}
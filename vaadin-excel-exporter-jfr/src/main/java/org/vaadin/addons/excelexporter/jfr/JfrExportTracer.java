@@ -0,0 +1,41 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.jfr;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.vaadin.addons.excelexporter.metrics.ExportTrace;
+import org.vaadin.addons.excelexporter.metrics.ExportTracer;
+import org.vaadin.addons.excelexporter.model.ExportEngine;
+import org.vaadin.addons.excelexporter.model.ExportType;
+
+/**
+ * The Class JfrExportTracer records the lifecycle of the exports as Java
+ * Flight Recorder events, in the category "Vaadin / Excel Export":
+ * <ul>
+ * <li>{@link ExportStartedEvent} when an export starts</li>
+ * <li>{@link ExportEvent} from the start until the export file has been
+ * written, with the sheets, rows, bytes, engine and failure</li>
+ * <li>{@link SheetRenderEvent} for each sheet rendered</li>
+ * <li>{@link PageFetchEvent} for each page fetched from a data provider</li>
+ * <li>{@link SerializationEvent} for the writing of the workbook</li>
+ * <li>{@link DownloadEvent} for each download of the export file</li>
+ * </ul>
+ * All events of an export carry the same export id, so they can be
+ * correlated with each other and with the GC and allocation events of the
+ * recording. Events which are not enabled in the recording cost next to
+ * nothing. The tracer is stateless apart from the export ids and can be set
+ * on all configurations.
+ */
+public class JfrExportTracer implements ExportTracer {
+
+	/** The last export id handed out. */
+	private static final AtomicLong EXPORT_IDS = new AtomicLong();
+
+	@Override
+	public ExportTrace exportStarted(final ExportType exportType, final ExportEngine exportEngine,
+			final int sheetCount) {
+		return new JfrExportTrace(EXPORT_IDS.incrementAndGet(), exportType, exportEngine, sheetCount);
+	}
+}
@@ -0,0 +1,38 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Class PageFetchEvent spans the fetch of a page of items from the data
+ * provider of a grid.
+ */
+@Name("org.vaadin.addons.excelexporter.PageFetch")
+@Label("Excel Export Page Fetch")
+@Category({ "Vaadin", "Excel Export" })
+@Description("The fetch of a page of items from a data provider")
+@StackTrace(false)
+public class PageFetchEvent extends jdk.jfr.Event {
+
+	/** The id of the export. */
+	@Label("Export Id")
+	long exportId;
+
+	/** The offset of the page. */
+	@Label("Offset")
+	int offset;
+
+	/** The page size. */
+	@Label("Page Size")
+	int pageSize;
+
+	/** The number of items fetched. */
+	@Label("Items")
+	long itemCount;
+}
@@ -0,0 +1,33 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Class SerializationEvent spans the writing of the workbook to the
+ * export file. Without an export workbook it includes the rendering of the
+ * sheets.
+ */
+@Name("org.vaadin.addons.excelexporter.Serialization")
+@Label("Excel Workbook Serialization")
+@Category({ "Vaadin", "Excel Export" })
+@Description("The writing of the workbook to the export file")
+@StackTrace(false)
+public class SerializationEvent extends jdk.jfr.Event {
+
+	/** The id of the export. */
+	@Label("Export Id")
+	long exportId;
+
+	/** The number of bytes written. */
+	@Label("Bytes Written")
+	@DataAmount
+	long bytes;
+}
@@ -0,0 +1,33 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Class SheetRenderEvent spans the rendering of a sheet of an export.
+ */
+@Name("org.vaadin.addons.excelexporter.SheetRender")
+@Label("Excel Sheet Render")
+@Category({ "Vaadin", "Excel Export" })
+@Description("The rendering of a sheet of an export")
+@StackTrace(false)
+public class SheetRenderEvent extends jdk.jfr.Event {
+
+	/** The id of the export. */
+	@Label("Export Id")
+	long exportId;
+
+	/** The name of the sheet. */
+	@Label("Sheet Name")
+	String sheetName;
+
+	/** The number of rows of the sheet, including titles and headers. */
+	@Label("Rows")
+	long rowCount;
+}
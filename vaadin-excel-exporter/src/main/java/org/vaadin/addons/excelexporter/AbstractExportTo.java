@@ -7,8 +7,13 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.logging.Logger;
 
+import org.vaadin.addons.excelexporter.stream.ExportDownloadHandler;
+import org.vaadin.addons.excelexporter.stream.ExportOutput;
+import org.vaadin.addons.excelexporter.stream.StreamingDownloadResource;
+import org.vaadin.addons.excelexporter.stream.TempFileStore;
 import org.vaadin.addons.excelexporter.stream.TemporaryFileDownloadResource;
 
+import com.vaadin.server.StreamResource;
 import com.vaadin.ui.UI;
 
 /**
@@ -60,6 +65,15 @@ public abstract class AbstractExportTo {
 		}
 	}
 
+	/**
+	 * Gets the store of the generated files.
+	 *
+	 * @return the temp file store
+	 */
+	protected TempFileStore getTempFileStore() {
+		return TempFileStore.getShared();
+	}
+
 	/**
 	 * Send converted file to user.
 	 *
@@ -69,12 +83,33 @@ public abstract class AbstractExportTo {
 	 *            the export file name
 	 * @return true, if successful
 	 */
-	@SuppressWarnings("deprecation")
 	protected boolean sendConvertedFileToUser(final File fileToExport, final String exportFileName) {
+		return sendConvertedFileToUser(fileToExport, exportFileName, 0, false);
+	}
+
+	/**
+	 * Send converted file to user. The file is opened when the browser
+	 * requests the download.
+	 *
+	 * @param fileToExport
+	 *            the file to export
+	 * @param exportFileName
+	 *            the export file name
+	 * @param timeToLive
+	 *            the time in milliseconds the download is available, 0 to keep
+	 *            it for the time to live of the temp file store
+	 * @param repeatable
+	 *            whether the download can be requested more than once
+	 * @return true, if successful
+	 */
+	@SuppressWarnings("deprecation")
+	protected boolean sendConvertedFileToUser(final File fileToExport, final String exportFileName,
+			final long timeToLive, final boolean repeatable) {
 		UI ui = UI.getCurrent();
 		TemporaryFileDownloadResource resource;
 		try {
-			resource = new TemporaryFileDownloadResource(ui, exportFileName, this.mimeType, fileToExport);
+			resource = new TemporaryFileDownloadResource(ui, exportFileName, this.mimeType, fileToExport,
+					getTempFileStore(), timeToLive, repeatable);
 			ui.getPage()
 				.open(resource, null, false);
 		} catch (final FileNotFoundException e) {
@@ -86,4 +121,76 @@ public abstract class AbstractExportTo {
 		return true;
 	}
 
+	/**
+	 * Send the content of the output to user, either from memory or from its
+	 * file.
+	 *
+	 * @param output
+	 *            the closed output
+	 * @param exportFileName
+	 *            the export file name
+	 * @param timeToLive
+	 *            the time in milliseconds the download is available, 0 to keep
+	 *            it for the time to live of the temp file store
+	 * @param repeatable
+	 *            whether the download can be requested more than once
+	 * @return true, if successful
+	 */
+	@SuppressWarnings("deprecation")
+	protected boolean sendOutputToUser(final ExportOutput output, final String exportFileName,
+			final long timeToLive, final boolean repeatable) {
+		UI ui = UI.getCurrent();
+		TemporaryFileDownloadResource resource = new TemporaryFileDownloadResource(ui, exportFileName,
+				this.mimeType, output, timeToLive, repeatable);
+		ui.getPage()
+			.open(resource, null, false);
+		return true;
+	}
+
+	/**
+	 * Send the content of the output to user through the
+	 * {@link ExportDownloadHandler} of the session.
+	 *
+	 * @param output
+	 *            the closed output
+	 * @param exportFileName
+	 *            the export file name
+	 * @param timeToLive
+	 *            the time in milliseconds the download is available, 0 for an
+	 *            hour
+	 * @param repeatable
+	 *            whether the download can be requested more than once
+	 * @return true, if successful
+	 */
+	protected boolean sendOutputThroughHandler(final ExportOutput output, final String exportFileName,
+			final long timeToLive, final boolean repeatable) {
+		UI ui = UI.getCurrent();
+		String url = ExportDownloadHandler.get(ui.getSession())
+			.register(output, exportFileName, this.mimeType, timeToLive, repeatable);
+		ui.getPage()
+			.open(url, null, false);
+		return true;
+	}
+
+	/**
+	 * Send the content of the stream source to user. The content is read
+	 * when the browser requests the download.
+	 *
+	 * @param streamSource
+	 *            the stream source
+	 * @param exportFileName
+	 *            the export file name
+	 * @return true, if successful
+	 */
+	@SuppressWarnings("deprecation")
+	protected boolean sendStreamToUser(final StreamResource.StreamSource streamSource, final String exportFileName) {
+		UI ui = UI.getCurrent();
+		StreamingDownloadResource resource = new StreamingDownloadResource(streamSource, exportFileName,
+				this.mimeType);
+		ui.getPage()
+			.open(resource, null, false);
+
+		return true;
+	}
+
 }
@@ -0,0 +1,21 @@
+/**
+ *
+ */
+package org.vaadin.addons.excelexporter;
+
+/**
+ * The Class ExportCancelledException is thrown by a running export once it has
+ * been cancelled, see {@link ExportToExcel#cancel()}.
+ */
+public class ExportCancelledException extends RuntimeException {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 5836427095018519357L;
+
+	/**
+	 * Instantiates a new export cancelled exception.
+	 */
+	public ExportCancelledException() {
+		super("The export has been cancelled");
+	}
+}
@@ -0,0 +1,199 @@
+/**
+ *
+ */
+package org.vaadin.addons.excelexporter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
+
+/**
+ * The Class ExportJob is the handle of an export running in the background,
+ * see {@link ExportToExcel#exportAsync(java.util.concurrent.Executor, ExportProgressListener)}.
+ * <p>
+ * The progress listener, the delivery of the download and the completion of
+ * {@link #getCompletion()} all run through {@link UI#access(Runnable)}, so the
+ * session is only locked for the moment it takes to update the UI.
+ */
+public class ExportJob {
+
+	/** The UI the download is delivered to. */
+	private final UI ui;
+
+	/** The progress listener, may be null. */
+	private final ExportProgressListener progressListener;
+
+	/** Cancels the running export. */
+	private final Runnable canceller;
+
+	/** The completion of the job. */
+	private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+	/** Whether a progress update is waiting for the session lock. */
+	private final AtomicBoolean progressPending = new AtomicBoolean();
+
+	/** The number of data rows written so far. */
+	private volatile long rowsWritten;
+
+	/** The total number of data rows, -1 if unknown. */
+	private volatile long totalRows = -1;
+
+	/**
+	 * Instantiates a new export job.
+	 *
+	 * @param ui
+	 *            the UI the download is delivered to
+	 * @param progressListener
+	 *            the progress listener, may be null
+	 * @param canceller
+	 *            cancels the running export
+	 */
+	ExportJob(final UI ui, final ExportProgressListener progressListener, final Runnable canceller) {
+		this.ui = ui;
+		this.progressListener = progressListener;
+		this.canceller = canceller;
+	}
+
+	/**
+	 * Gets the number of data rows written so far.
+	 *
+	 * @return the rows written
+	 */
+	public long getRowsWritten() {
+		return this.rowsWritten;
+	}
+
+	/**
+	 * Gets the total number of data rows.
+	 *
+	 * @return the total rows, -1 if unknown
+	 */
+	public long getTotalRows() {
+		return this.totalRows;
+	}
+
+	/**
+	 * Checks if the job completed, normally or exceptionally.
+	 *
+	 * @return true, if done
+	 */
+	public boolean isDone() {
+		return this.completion.isDone();
+	}
+
+	/**
+	 * Checks if the job has been cancelled before it completed.
+	 *
+	 * @return true, if cancelled
+	 */
+	public boolean isCancelled() {
+		return this.completion.isCancelled();
+	}
+
+	/**
+	 * Cancels the export. The export stops before the next row or sheet and
+	 * releases its workbook and temporary files, the download is not
+	 * delivered. A streamed download which is already running is aborted as
+	 * well.
+	 *
+	 * @return true, if the job has been cancelled before it completed
+	 */
+	public boolean cancel() {
+		this.canceller.run();
+		return this.completion.cancel(false);
+	}
+
+	/**
+	 * Gets the completion of the job. It completes once the download has been
+	 * handed over to the UI, or exceptionally if the export failed. Dependent
+	 * actions run with the session locked.
+	 *
+	 * @return the completion stage
+	 */
+	public CompletionStage<Void> getCompletion() {
+		return this.completion.thenApply(v -> v);
+	}
+
+	/**
+	 * Records the progress and passes it on to the progress listener unless an
+	 * update is still pending.
+	 *
+	 * @param rowsWritten
+	 *            the rows written
+	 * @param totalRows
+	 *            the total rows, -1 if unknown
+	 */
+	void progress(final long rowsWritten, final long totalRows) {
+		this.rowsWritten = rowsWritten;
+		this.totalRows = totalRows;
+		if (this.progressListener != null && this.progressPending.compareAndSet(false, true)) {
+			access(() -> {
+				this.progressPending.set(false);
+				this.progressListener.exportProgress(this.rowsWritten, this.totalRows);
+			});
+		}
+	}
+
+	/**
+	 * Delivers the download to the UI and completes the job.
+	 *
+	 * @param delivery
+	 *            the delivery of the download, run with the session locked
+	 * @param discard
+	 *            discards the download if the job has been cancelled
+	 */
+	void complete(final Runnable delivery, final Runnable discard) {
+		boolean accepted = access(() -> {
+			if (this.completion.isDone()) {
+				discard.run();
+				return;
+			}
+			try {
+				delivery.run();
+				if (this.progressListener != null) {
+					this.progressListener.exportProgress(this.rowsWritten, this.totalRows);
+				}
+				this.completion.complete(null);
+			} catch (Throwable e) {
+				discard.run();
+				this.completion.completeExceptionally(e);
+				if (e instanceof Error) {
+					throw (Error) e;
+				}
+			}
+		});
+		if (!accepted) {
+			discard.run();
+		}
+	}
+
+	/**
+	 * Completes the job exceptionally.
+	 *
+	 * @param failure
+	 *            the failure
+	 */
+	void fail(final Throwable failure) {
+		access(() -> this.completion.completeExceptionally(failure));
+	}
+
+	/**
+	 * Runs the given task with the session of the UI locked.
+	 *
+	 * @param runnable
+	 *            the task
+	 * @return false if the UI has been detached and the task will not run
+	 */
+	private boolean access(final Runnable runnable) {
+		try {
+			this.ui.access(runnable);
+			return true;
+		} catch (UIDetachedException e) {
+			this.completion.completeExceptionally(e);
+			return false;
+		}
+	}
+}
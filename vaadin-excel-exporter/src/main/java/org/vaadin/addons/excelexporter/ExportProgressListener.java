@@ -0,0 +1,26 @@
+/**
+ *
+ */
+package org.vaadin.addons.excelexporter;
+
+import java.io.Serializable;
+
+/**
+ * The listener interface for receiving the progress of an asynchronous export,
+ * see {@link ExportToExcel#exportAsync(java.util.concurrent.Executor, ExportProgressListener)}. The
+ * listener is called with the session locked, so the UI can be updated
+ * directly. Progress updates may be skipped while the UI is busy.
+ */
+@FunctionalInterface
+public interface ExportProgressListener extends Serializable {
+
+	/**
+	 * Called when rows have been written.
+	 *
+	 * @param rowsWritten
+	 *            the number of data rows written so far
+	 * @param totalRows
+	 *            the total number of data rows, -1 if unknown
+	 */
+	void exportProgress(long rowsWritten, long totalRows);
+}
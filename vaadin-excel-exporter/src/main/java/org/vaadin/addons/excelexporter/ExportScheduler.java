@@ -0,0 +1,389 @@
+/**
+ *
+ */
+package org.vaadin.addons.excelexporter;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vaadin.addons.excelexporter.configuration.ExportExcelConfiguration;
+import org.vaadin.addons.excelexporter.model.ExportType;
+
+import com.vaadin.util.CurrentInstance;
+
+/**
+ * The Class ExportScheduler runs asynchronous exports of all sessions with a
+ * bounded number of threads, so concurrent exports cannot use up the heap.
+ * <p>
+ * Exports are put into one of two lanes based on their estimated number of
+ * data cells. Each lane has its own threads and its own bounded queue, so
+ * small exports are not stuck behind huge ones. Once the queue of a lane is
+ * full, further exports of that lane are rejected. A streamed download is
+ * written in the lane of its export as well.
+ */
+public class ExportScheduler {
+
+	/** The Constant LOGGER. */
+	private static final Logger LOGGER = LoggerFactory.getLogger(ExportScheduler.class);
+
+	/**
+	 * The lanes of the scheduler.
+	 */
+	public enum Lane {
+
+		/** Exports up to the cell limit of the light lane. */
+		LIGHT,
+
+		/** Exports above the cell limit of the light lane. */
+		HEAVY;
+	}
+
+	/** The default number of data cells up to which an export is light. */
+	public static final long DEFAULT_LIGHT_CELL_LIMIT = 100_000;
+
+	/** The default queue capacity of each lane. */
+	public static final int DEFAULT_QUEUE_CAPACITY = 100;
+
+	/** The shared scheduler, created on first use. */
+	private static ExportScheduler shared;
+
+	/** The number of data cells up to which an export is light. */
+	private final long lightCellLimit;
+
+	/** The executors by lane. */
+	private final Map<Lane, ThreadPoolExecutor> executors = new EnumMap<>(Lane.class);
+
+	/** The statistics by lane. */
+	private final Map<Lane, LaneStatistics> statistics = new EnumMap<>(Lane.class);
+
+	/**
+	 * Instantiates a new export scheduler.
+	 *
+	 * @param maxHeavyExports
+	 *            the maximum number of heavy exports running at the same time
+	 * @param maxLightExports
+	 *            the maximum number of light exports running at the same time
+	 * @param queueCapacity
+	 *            the maximum number of exports waiting in each lane
+	 * @param lightCellLimit
+	 *            the number of data cells up to which an export is light
+	 */
+	public ExportScheduler(final int maxHeavyExports, final int maxLightExports, final int queueCapacity,
+			final long lightCellLimit) {
+		this.lightCellLimit = lightCellLimit;
+		this.executors.put(Lane.LIGHT, createExecutor(Lane.LIGHT, maxLightExports, queueCapacity));
+		this.executors.put(Lane.HEAVY, createExecutor(Lane.HEAVY, maxHeavyExports, queueCapacity));
+		for (Lane lane : Lane.values()) {
+			this.statistics.put(lane, new LaneStatistics());
+		}
+	}
+
+	/**
+	 * Gets the scheduler shared by all sessions. Unless set with
+	 * {@link #setShared(ExportScheduler)} it runs as many light exports as
+	 * there are processors and half as many heavy exports.
+	 *
+	 * @return the shared scheduler
+	 */
+	public static synchronized ExportScheduler getShared() {
+		if (shared == null) {
+			int processors = Runtime.getRuntime()
+				.availableProcessors();
+			shared = new ExportScheduler(Math.max(1, processors / 2), processors, DEFAULT_QUEUE_CAPACITY,
+					DEFAULT_LIGHT_CELL_LIMIT);
+		}
+		return shared;
+	}
+
+	/**
+	 * Sets the scheduler shared by all sessions. The previous scheduler is not
+	 * shut down.
+	 *
+	 * @param scheduler
+	 *            the new shared scheduler
+	 */
+	public static synchronized void setShared(final ExportScheduler scheduler) {
+		shared = scheduler;
+	}
+
+	/**
+	 * Submits an export, see
+	 * {@link ExportToExcel#exportAsync(ExportType, ExportExcelConfiguration, Executor, ExportProgressListener)}.
+	 * The export is queued in the light lane, which estimates its size from
+	 * the configuration and hands it over to the heavy lane if needed. The
+	 * estimate queries the size of data providers other than
+	 * ListDataProviders. The exporter and its workbook are created once the
+	 * export starts.
+	 *
+	 * @param <BEANTYPE>
+	 *            the generic type
+	 * @param exportType
+	 *            the export type
+	 * @param exportExcelConfiguration
+	 *            the export excel configuration
+	 * @param progressListener
+	 *            the progress listener, may be null
+	 * @return the export job
+	 * @throws RejectedExecutionException
+	 *             if the queue of the light lane is full or the scheduler has
+	 *             been shut down, a rejection by the heavy lane fails the job
+	 */
+	public <BEANTYPE> ExportJob submit(final ExportType exportType,
+			final ExportExcelConfiguration<BEANTYPE> exportExcelConfiguration,
+			final ExportProgressListener progressListener) {
+		EstimatingExecutor executor = new EstimatingExecutor(exportExcelConfiguration);
+		ExportJob job = ExportToExcel.exportAsync(exportType, exportExcelConfiguration, executor, progressListener);
+		executor.job.complete(job);
+		return job;
+	}
+
+	/**
+	 * Submits an export of the given size, see
+	 * {@link ExportToExcel#exportAsync(ExportType, ExportExcelConfiguration, Executor, ExportProgressListener)}.
+	 * Nothing is queried to estimate the size, see
+	 * {@link ExportToExcel#estimateCellCount(ExportExcelConfiguration)}.
+	 *
+	 * @param <BEANTYPE>
+	 *            the generic type
+	 * @param exportType
+	 *            the export type
+	 * @param exportExcelConfiguration
+	 *            the export excel configuration
+	 * @param cellCount
+	 *            the estimated number of data cells
+	 * @param progressListener
+	 *            the progress listener, may be null
+	 * @return the export job
+	 * @throws RejectedExecutionException
+	 *             if the queue of the lane is full or the scheduler has been
+	 *             shut down
+	 */
+	public <BEANTYPE> ExportJob submit(final ExportType exportType,
+			final ExportExcelConfiguration<BEANTYPE> exportExcelConfiguration, final long cellCount,
+			final ExportProgressListener progressListener) {
+		return ExportToExcel.exportAsync(	exportType, exportExcelConfiguration, getExecutor(getLane(cellCount)),
+											progressListener);
+	}
+
+	/**
+	 * Gets the lane of an export of the given size.
+	 *
+	 * @param cellCount
+	 *            the estimated number of data cells
+	 * @return the lane
+	 */
+	public Lane getLane(final long cellCount) {
+		return cellCount <= this.lightCellLimit ? Lane.LIGHT : Lane.HEAVY;
+	}
+
+	/**
+	 * Gets the executor of the given lane, which records how long the tasks
+	 * are queued.
+	 *
+	 * @param lane
+	 *            the lane
+	 * @return the executor
+	 */
+	public Executor getExecutor(final Lane lane) {
+		ThreadPoolExecutor executor = this.executors.get(lane);
+		LaneStatistics laneStatistics = this.statistics.get(lane);
+		return task -> {
+			long queued = System.nanoTime();
+			executor.execute(() -> {
+				laneStatistics.started(System.nanoTime() - queued);
+				task.run();
+			});
+		};
+	}
+
+	/**
+	 * Gets the number of exports waiting in all lanes.
+	 *
+	 * @return the queue depth
+	 */
+	public int getQueueDepth() {
+		int depth = 0;
+		for (Lane lane : Lane.values()) {
+			depth += getQueueDepth(lane);
+		}
+		return depth;
+	}
+
+	/**
+	 * Gets the number of exports waiting in the given lane.
+	 *
+	 * @param lane
+	 *            the lane
+	 * @return the queue depth
+	 */
+	public int getQueueDepth(final Lane lane) {
+		return this.executors.get(lane)
+			.getQueue()
+			.size();
+	}
+
+	/**
+	 * Gets the number of exports running in the given lane.
+	 *
+	 * @param lane
+	 *            the lane
+	 * @return the number of running exports
+	 */
+	public int getRunningCount(final Lane lane) {
+		return this.executors.get(lane)
+			.getActiveCount();
+	}
+
+	/**
+	 * Gets the number of exports started in the given lane.
+	 *
+	 * @param lane
+	 *            the lane
+	 * @return the number of started exports
+	 */
+	public long getStartedCount(final Lane lane) {
+		return this.statistics.get(lane).startedCount.get();
+	}
+
+	/**
+	 * Gets the average time the exports started in the given lane have been
+	 * waiting in the queue.
+	 *
+	 * @param lane
+	 *            the lane
+	 * @return the average wait time in milliseconds
+	 */
+	public long getAverageWaitMillis(final Lane lane) {
+		LaneStatistics laneStatistics = this.statistics.get(lane);
+		long started = laneStatistics.startedCount.get();
+		return started > 0 ? TimeUnit.NANOSECONDS.toMillis(laneStatistics.totalWaitNanos.get() / started) : 0;
+	}
+
+	/**
+	 * Gets the longest time an export started in the given lane has been
+	 * waiting in the queue.
+	 *
+	 * @param lane
+	 *            the lane
+	 * @return the maximum wait time in milliseconds
+	 */
+	public long getMaxWaitMillis(final Lane lane) {
+		return TimeUnit.NANOSECONDS.toMillis(this.statistics.get(lane).maxWaitNanos.get());
+	}
+
+	/**
+	 * Shuts the scheduler down. Running and queued exports are finished, new
+	 * exports are rejected.
+	 */
+	public void shutdown() {
+		for (ThreadPoolExecutor executor : this.executors.values()) {
+			executor.shutdown();
+		}
+	}
+
+	private static ThreadPoolExecutor createExecutor(final Lane lane, final int threads, final int queueCapacity) {
+		String namePrefix = "excel-export-" + lane.name()
+			.toLowerCase() + "-";
+		AtomicInteger threadNumber = new AtomicInteger();
+		ThreadFactory threadFactory = runnable -> {
+			Thread thread = new Thread(runnable, namePrefix + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), threadFactory);
+	}
+
+	/**
+	 * The executor of a submitted export. The first task estimates the size
+	 * of the export in the light lane and either runs there or is handed over
+	 * to the heavy lane. Later tasks, such as writing a streamed download, run
+	 * in the same lane.
+	 */
+	private final class EstimatingExecutor implements Executor {
+
+		/** The configuration of the export. */
+		private final ExportExcelConfiguration<?> exportExcelConfiguration;
+
+		/** The current Vaadin instances of the thread submitting the export. */
+		private final Map<Class<?>, CurrentInstance> currentInstances = CurrentInstance.getInstances();
+
+		/** The job of the export, failed if the heavy lane rejects it. */
+		private final CompletableFuture<ExportJob> job = new CompletableFuture<>();
+
+		/** The executor of the lane, null until the size has been estimated. */
+		private volatile Executor laneExecutor;
+
+		private EstimatingExecutor(final ExportExcelConfiguration<?> exportExcelConfiguration) {
+			this.exportExcelConfiguration = exportExcelConfiguration;
+		}
+
+		@Override
+		public void execute(final Runnable task) {
+			Executor executor = this.laneExecutor;
+			if (executor != null) {
+				executor.execute(task);
+				return;
+			}
+			getExecutor(Lane.LIGHT).execute(() -> {
+				Lane lane = estimateLane();
+				this.laneExecutor = getExecutor(lane);
+				if (lane == Lane.LIGHT) {
+					task.run();
+					return;
+				}
+				try {
+					this.laneExecutor.execute(task);
+				} catch (RejectedExecutionException e) {
+					LOGGER.warn("The export has been rejected by the heavy lane", e);
+					this.job.thenAccept(rejected -> rejected.fail(e));
+				}
+			});
+		}
+
+		private Lane estimateLane() {
+			CurrentInstance.restoreInstances(this.currentInstances);
+			try {
+				return getLane(ExportToExcel.estimateCellCount(this.exportExcelConfiguration));
+			} catch (RuntimeException e) {
+				// the export reports the failure of the data provider
+				LOGGER.warn("Estimating the size of the export failed", e);
+				return Lane.LIGHT;
+			} finally {
+				CurrentInstance.clearAll();
+			}
+		}
+	}
+
+	/**
+	 * The statistics of a lane.
+	 */
+	private static class LaneStatistics {
+
+		/** The number of started exports. */
+		private final AtomicLong startedCount = new AtomicLong();
+
+		/** The total time the started exports have been waiting. */
+		private final AtomicLong totalWaitNanos = new AtomicLong();
+
+		/** The longest time a started export has been waiting. */
+		private final AtomicLong maxWaitNanos = new AtomicLong();
+
+		private void started(final long waitNanos) {
+			this.startedCount.incrementAndGet();
+			this.totalWaitNanos.addAndGet(waitNanos);
+			this.maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+		}
+	}
+}
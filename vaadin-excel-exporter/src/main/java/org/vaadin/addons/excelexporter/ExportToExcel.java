@@ -4,19 +4,43 @@
 package org.vaadin.addons.excelexporter;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.function.Function;
-
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,15 +51,42 @@ import org.vaadin.addons.excelexporter.configuration.ExportExcelComponentConfigu
 import org.vaadin.addons.excelexporter.configuration.ExportExcelConfiguration;
 import org.vaadin.addons.excelexporter.configuration.ExportExcelSheetConfiguration;
 import org.vaadin.addons.excelexporter.configuration.MergedCell;
+import org.vaadin.addons.excelexporter.data.DataProviderPageIterator;
+import org.vaadin.addons.excelexporter.data.PrefetchingDataProviderPageIterator;
+import org.vaadin.addons.excelexporter.formatter.ColumnFormatter;
+import org.vaadin.addons.excelexporter.metrics.ColumnProfile;
+import org.vaadin.addons.excelexporter.metrics.ColumnProfiler;
+import org.vaadin.addons.excelexporter.metrics.ExportMetricsRecorder;
+import org.vaadin.addons.excelexporter.metrics.ExportTrace;
+import org.vaadin.addons.excelexporter.metrics.ExportTracer;
+import org.vaadin.addons.excelexporter.model.CellValueMode;
+import org.vaadin.addons.excelexporter.model.ColumnOperation;
+import org.vaadin.addons.excelexporter.model.DownloadMode;
+import org.vaadin.addons.excelexporter.model.ExportEngine;
+import org.vaadin.addons.excelexporter.model.ExportPhase;
 import org.vaadin.addons.excelexporter.model.ExportType;
+import org.vaadin.addons.excelexporter.model.ValueKind;
+import org.vaadin.addons.excelexporter.plan.ColumnExportPlan;
+import org.vaadin.addons.excelexporter.stream.BufferPool;
+import org.vaadin.addons.excelexporter.stream.CountingOutputStream;
+import org.vaadin.addons.excelexporter.stream.ExportOutput;
+import org.vaadin.addons.excelexporter.stream.PipedStreamSource;
+import org.vaadin.addons.excelexporter.style.HSSFStyleConverter;
+import org.vaadin.addons.excelexporter.style.StyleCache;
 import org.vaadin.addons.excelexporter.utils.ExcelStyleUtil;
+import org.vaadin.addons.excelexporter.utils.FormatContext;
 import org.vaadin.addons.excelexporter.utils.NameGenerationUtil;
+import org.vaadin.addons.excelexporter.writer.SpreadsheetMLWriter;
 import org.vaadin.addons.excelexporter.utils.FormatUtil;
 
+import com.vaadin.data.provider.DataCommunicator;
 import com.vaadin.data.provider.ListDataProvider;
+import com.vaadin.data.provider.Query;
 import com.vaadin.ui.Grid;
+import com.vaadin.ui.UI;
 import com.vaadin.ui.components.grid.FooterRow;
 import com.vaadin.ui.components.grid.HeaderRow;
+import com.vaadin.util.CurrentInstance;
 
 /**
  * The Class ExportToExcelUtility is the core algorithm that generates Excel
@@ -53,15 +104,97 @@ public class ExportToExcel<BEANTYPE> extends AbstractExportTo {
 	/** The excel mime type. */
 	private static String EXCEL_MIME_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
 
+	/** The mime type of binary xls files. */
+	private static String XLS_MIME_TYPE = "application/vnd.ms-excel";
+
+	/** The maximum length of sheet names. */
+	private static final int MAX_SHEET_NAME_LENGTH = 31;
+
+	/** The data format of integer values written as numeric cells. */
+	private static final String INTEGER_DATA_FORMAT = "#,##0";
+
+	/** The data format of float values written as numeric cells. */
+	private static final String FLOAT_DATA_FORMAT = "#,##0.00";
+
+	/** The number of data rows between two progress reports. */
+	private static final int PROGRESS_REPORT_INTERVAL = 1000;
+
 	/** The workbook. */
 	protected XSSFWorkbook workbook;
 
+	/**
+	 * The workbook the sheets are written to, either the workbook itself or a
+	 * streaming workbook wrapping it
+	 */
+	protected Workbook exportWorkbook;
+
+	/** The style cache applying the style functions. */
+	protected StyleCache styleCache;
+
+	/**
+	 * The converter of the styles to the binary xls format, null unless the
+	 * export type is xls
+	 */
+	protected HSSFStyleConverter hssfStyleConverter;
+
+	/** The format context, resolved once per export. */
+	protected FormatContext formatContext;
+
+	/** The copies of the format context used by the threads rendering in parallel. */
+	private final ThreadLocal<FormatContext> workerFormatContexts = new ThreadLocal<>();
+
+	/** The compiled column plans by component configuration. */
+	private final Map<ExportExcelComponentConfiguration<BEANTYPE>, ColumnExportPlan<BEANTYPE>> columnExportPlans =
+			new IdentityHashMap<>();
+
 	/** The export excel configuration. */
 	protected final ExportExcelConfiguration<BEANTYPE> exportExcelConfiguration;
 
 	/** The resultant export type. */
 	protected final ExportType exportType;
 
+	/** The listener of the progress, null unless exported asynchronously. */
+	private ExportProgressListener progressListener;
+
+	/** The number of data rows written so far. */
+	private final AtomicLong rowsWritten = new AtomicLong();
+
+	/** The number of bytes held in the sheet parts of this export. */
+	private final AtomicLong tempFileBytes = new AtomicLong();
+
+	/** The highest number of bytes held in temporary files by this export. */
+	private final AtomicLong peakTempFileBytes = new AtomicLong();
+
+	/** The output being written, null unless written to an output. */
+	private volatile ExportOutput currentOutput;
+
+	/** The sheet names taken by the DIRECT engine, shared by the part writers. */
+	private final Set<String> directSheetNames = ConcurrentHashMap.newKeySet();
+
+	/** The total number of data rows, -1 if unknown. */
+	private long totalRows = -1;
+
+	/** Whether the workbook has been created, it may have been released since. */
+	private boolean workbookCreated;
+
+	/** Whether the sheets have been processed. */
+	private boolean sheetsProcessed;
+
+	/** Whether the export has been cancelled. */
+	private volatile boolean cancelled;
+
+	/** Whether a part rendered in parallel failed, which stops the other parts. */
+	private volatile boolean aborted;
+
+	/** The executor writing a streamed download, null for the shared one. */
+	private Executor streamExecutor;
+
+	/** The recorder of the metrics, null unless a metrics listener is configured. */
+	private final ExportMetricsRecorder metrics;
+
+	/** The trace of the export, started with the processing of the sheets. */
+	private volatile ExportTrace trace = ExportTrace.NO_OP;
+
 	/**
 	 * Gets the resultant export type.
 	 *
@@ -83,12 +216,252 @@ public class ExportToExcel<BEANTYPE> extends AbstractExportTo {
 	 */
 	public ExportToExcel(final ExportType exportType,
 			final ExportExcelConfiguration<BEANTYPE> exportExcelConfiguration) {
-		super(EXCEL_MIME_TYPE);
+		this(exportType, exportExcelConfiguration, true);
+	}
+
+	/**
+	 * Instantiates a new export to excel utility.
+	 *
+	 * @param exportType
+	 *            the export type
+	 * @param exportExcelConfiguration
+	 *            the export excel configuration
+	 * @param processSheets
+	 *            whether the sheets are processed right away, otherwise
+	 *            {@link #processSheets()} must be called before the workbook
+	 *            is written
+	 */
+	protected ExportToExcel(final ExportType exportType,
+			final ExportExcelConfiguration<BEANTYPE> exportExcelConfiguration, final boolean processSheets) {
+		super(exportType == ExportType.XLS ? XLS_MIME_TYPE : EXCEL_MIME_TYPE);
 		this.exportType = exportType;
 		this.exportExcelConfiguration = exportExcelConfiguration;
+		validateConfiguration();
+		this.metrics = ExportMetricsRecorder.create(exportExcelConfiguration.getMetricsListener(), exportType,
+													exportExcelConfiguration.getExportEngine());
+		this.formatContext = new FormatContext(exportExcelConfiguration.getLocale() != null
+				? exportExcelConfiguration.getLocale()
+				: FormatUtil.getCurrentLocale());
+
+		if (exportExcelConfiguration.isLazyGeneration()) {
+			return;
+		}
+		createWorkbook();
+		if (processSheets) {
+			processSheets();
+		}
+	}
+
+	/**
+	 * Checks that the configuration can be exported: every sheet has its
+	 * component configurations and the visible properties of every grid are
+	 * columns of the grid.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the configuration cannot be exported
+	 */
+	private void validateConfiguration() {
+		if (this.exportType == null) {
+			throw new IllegalArgumentException("The export type must not be null");
+		}
+		if (this.exportExcelConfiguration.getSheetConfigs() == null) {
+			throw new IllegalArgumentException("The sheet configurations must not be null");
+		}
+		for (ExportExcelSheetConfiguration<BEANTYPE> sheetConfig : this.exportExcelConfiguration.getSheetConfigs()) {
+			if (sheetConfig.getComponentConfigs() == null) {
+				throw new IllegalArgumentException(
+						"The component configurations of sheet " + sheetConfig.getSheetname() + " must not be null");
+			}
+			for (ExportExcelComponentConfiguration<BEANTYPE> componentConfig : sheetConfig.getComponentConfigs()) {
+				if (componentConfig.getGrid() == null) {
+					continue;
+				}
+				if (componentConfig.getVisibleProperties() == null) {
+					throw new IllegalArgumentException("The visible properties of the grids of sheet "
+							+ sheetConfig.getSheetname() + " must not be null");
+				}
+				// compiles the plans the rows are written with
+				getColumnExportPlan(componentConfig);
+			}
+		}
+	}
+
+	private void createWorkbook() {
 		this.workbook = new XSSFWorkbook();
+		this.exportWorkbook = createExportWorkbook(this.workbook);
+		this.styleCache = isParallel()
+				? StyleCache.synchronizedStyleCache(this.workbook, this.exportExcelConfiguration.getStyleCacheMode())
+				: new StyleCache(this.workbook, this.exportExcelConfiguration.getStyleCacheMode());
+		this.workbookCreated = true;
+	}
+
+	/**
+	 * Starts an export in the background and returns right away. The sheets
+	 * are processed and the export file is generated on the given executor,
+	 * without holding the session lock. Once done the download is sent to the
+	 * current UI through {@link UI#access(Runnable)}. With
+	 * {@link DownloadMode#STREAM} the download is written on the executor as
+	 * well once the browser requests it.
+	 * <p>
+	 * The grids and their data providers are read from the executor thread,
+	 * they should not be changed while the export is running. The exporter and
+	 * its workbook are created on the executor as well, an invalid
+	 * configuration fails the job.
+	 *
+	 * @param <BEANTYPE>
+	 *            the generic type
+	 * @param exportType
+	 *            the export type
+	 * @param exportExcelConfiguration
+	 *            the export excel configuration
+	 * @param executor
+	 *            the executor running the export
+	 * @param progressListener
+	 *            the progress listener, may be null
+	 * @return the export job
+	 * @throws IllegalStateException
+	 *             if there is no current UI
+	 */
+	public static <BEANTYPE> ExportJob exportAsync(final ExportType exportType,
+			final ExportExcelConfiguration<BEANTYPE> exportExcelConfiguration, final Executor executor,
+			final ExportProgressListener progressListener) {
+		UI ui = getAsyncUI();
+		AtomicBoolean cancelled = new AtomicBoolean();
+		AtomicReference<ExportToExcel<BEANTYPE>> exporter = new AtomicReference<>();
+		ExportJob job = new ExportJob(ui, progressListener, () -> {
+			cancelled.set(true);
+			ExportToExcel<BEANTYPE> running = exporter.get();
+			if (running != null) {
+				running.cancel();
+			}
+		});
+		Map<Class<?>, CurrentInstance> currentInstances = CurrentInstance.getInstances();
+		executor.execute(() -> {
+			CurrentInstance.restoreInstances(currentInstances);
+			try {
+				if (cancelled.get()) {
+					LOGGER.debug("Export cancelled");
+					job.fail(new ExportCancelledException());
+					return;
+				}
+				ExportToExcel<BEANTYPE> created;
+				try {
+					created = new ExportToExcel<>(exportType, exportExcelConfiguration, false);
+				} catch (Throwable e) {
+					// errors as well, otherwise the job would never be done
+					LOGGER.error("Creating the export failed", e);
+					job.fail(e);
+					if (e instanceof Error) {
+						throw (Error) e;
+					}
+					return;
+				}
+				exporter.set(created);
+				if (cancelled.get()) {
+					// cancelled while the exporter was created
+					created.cancel();
+				}
+				created.runAsync(job, executor);
+			} finally {
+				CurrentInstance.clearAll();
+			}
+		});
+		return job;
+	}
+
+	/**
+	 * Gets the current UI an asynchronous export delivers its download to.
+	 *
+	 * @return the UI
+	 * @throws IllegalStateException
+	 *             if there is no current UI
+	 */
+	private static UI getAsyncUI() {
+		UI ui = UI.getCurrent();
+		if (ui == null) {
+			throw new IllegalStateException("An export can only be started asynchronously from a UI");
+		}
+		return ui;
+	}
+
+	/**
+	 * Processes the sheets of the configuration into the export workbook.
+	 * Without an export workbook the sheets are rendered while the file is
+	 * written.
+	 */
+	protected void processSheets() {
+		if (this.metrics != null) {
+			this.metrics.start();
+		}
+		ExportTracer tracer = this.exportExcelConfiguration.getTracer();
+		if (tracer != null && tracer != ExportTracer.NO_OP) {
+			this.trace = tracer.exportStarted(	this.exportType, this.exportExcelConfiguration.getExportEngine(),
+												this.exportExcelConfiguration.getSheetConfigs()
+													.size());
+		}
+		if (!this.workbookCreated) {
+			createWorkbook();
+		}
+		this.sheetsProcessed = true;
+		if (this.exportWorkbook != null) {
+			try {
+				if (this.exportWorkbook instanceof XSSFWorkbook) {
+					// keeps calling subclasses overriding the former extension point
+					process((XSSFWorkbook) this.exportWorkbook, this.exportExcelConfiguration.getSheetConfigs());
+				} else {
+					process(this.exportWorkbook, this.exportExcelConfiguration.getSheetConfigs());
+				}
+			} catch (ExportCancelledException e) {
+				exportFailed(e);
+				// the partially built workbook is of no use
+				releaseWorkbook();
+				throw e;
+			} catch (RuntimeException e) {
+				exportFailed(e);
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Creates the workbook the sheets are written to based on the export type
+	 * and the configured export engine. Xls files are always written with a
+	 * HSSFWorkbook. Styles are always created on the given XSSFWorkbook and
+	 * converted if needed, see {@link #toExportStyle(XSSFCellStyle)}.
+	 *
+	 * @param workbook
+	 *            the workbook
+	 * @return the export workbook or null if the sheets are written directly,
+	 *         see {@link ExportEngine#DIRECT}
+	 */
+	protected Workbook createExportWorkbook(XSSFWorkbook workbook) {
+		if (this.exportType == ExportType.XLS) {
+			HSSFWorkbook hssfWorkbook = new HSSFWorkbook();
+			this.hssfStyleConverter = new HSSFStyleConverter(hssfWorkbook);
+			return hssfWorkbook;
+		}
+		if (this.exportExcelConfiguration.getExportEngine() == ExportEngine.SXSSF) {
+			return new SXSSFWorkbook(workbook, this.exportExcelConfiguration.getStreamingRowWindowSize());
+		}
+		if (this.exportExcelConfiguration.getExportEngine() == ExportEngine.DIRECT) {
+			return null;
+		}
+		return workbook;
+	}
 
-		process(this.workbook, exportExcelConfiguration.getSheetConfigs());
+	/**
+	 * Gets the style to set on the cells of the export workbook for the given
+	 * style of the style model.
+	 *
+	 * @param style
+	 *            the style, may be null
+	 * @return the cell style
+	 */
+	protected CellStyle toExportStyle(XSSFCellStyle style) {
+		if (this.hssfStyleConverter != null) {
+			return this.hssfStyleConverter.convert(style);
+		}
+		return style;
 	}
 
 	/************************************* Constructors *********************************************************/
@@ -101,28 +474,273 @@ public class ExportToExcel<BEANTYPE> extends AbstractExportTo {
 	 * This method processes the sheet configs
 	 * 
 	 * @param workbook
+	 *            the workbook
 	 * @param sheetConfigs
 	 * 
+	 * @deprecated override {@link #process(Workbook, List)}, which is called
+	 *             for every export workbook. This method is only called for
+	 *             XSSF workbooks and delegates to it.
 	 */
+	@Deprecated
 	protected void process(XSSFWorkbook workbook, List<ExportExcelSheetConfiguration<BEANTYPE>> sheetConfigs) {
+		process((Workbook) workbook, sheetConfigs);
+	}
+
+	/**
+	 * This method processes the sheet configs
+	 * 
+	 * @param workbook
+	 *            the workbook the sheets are created in
+	 * @param sheetConfigs
+	 * 
+	 */
+	protected void process(Workbook workbook, List<ExportExcelSheetConfiguration<BEANTYPE>> sheetConfigs) {
+		startProgress();
 		for (ExportExcelSheetConfiguration<BEANTYPE> sheetConfig : sheetConfigs) {
+			checkCancelled();
+			ExportTrace.Span span = this.trace.sheetStarted(sheetConfig.getSheetname());
 			Sheet sheet = workbook.createSheet(sheetConfig.getSheetname());
 			sheet.setAutobreaks(true);
 
 			int rowNum = 0;
-			rowNum = addSheetTitle(workbook, sheetConfig, sheet, rowNum);
-			rowNum = addSheetGeneratedBy(workbook, sheetConfig, sheet, rowNum);
-			addComponents(workbook, sheetConfig, sheet, rowNum);
+			rowNum = addSheetTitle(this.workbook, sheetConfig, sheet, rowNum);
+			rowNum = addSheetGeneratedBy(this.workbook, sheetConfig, sheet, rowNum);
+			addComponents(this.workbook, sheetConfig, sheet, rowNum);
+			span.end(sheet.getLastRowNum() + 1, 0);
+		}
+		reportProgress();
+	}
+
+	/**
+	 * Cancels the export. A running export stops before the next row or sheet
+	 * with an {@link ExportCancelledException} and releases the partially built
+	 * workbook and its temporary files, see {@link #releaseWorkbook()}.
+	 */
+	public void cancel() {
+		this.cancelled = true;
+	}
+
+	/**
+	 * Checks if the export has been cancelled.
+	 *
+	 * @return true, if cancelled
+	 */
+	public boolean isCancelled() {
+		return this.cancelled;
+	}
+
+	/**
+	 * Throws an {@link ExportCancelledException} if the export has been
+	 * cancelled.
+	 */
+	protected void checkCancelled() {
+		if (this.cancelled || this.aborted) {
+			throw new ExportCancelledException();
 		}
 	}
 
+	/**
+	 * Releases the workbook and the temporary files of a streaming workbook.
+	 * The export cannot be written afterwards.
+	 */
+	protected void releaseWorkbook() {
+		if (this.exportWorkbook instanceof SXSSFWorkbook) {
+			// removes the temporary files holding the flushed rows
+			((SXSSFWorkbook) this.exportWorkbook).dispose();
+		}
+		this.exportWorkbook = null;
+		this.workbook = null;
+		this.styleCache = null;
+		this.hssfStyleConverter = null;
+		this.columnExportPlans.clear();
+	}
+
+	/**
+	 * Resets the number of rows written and counts the rows to export if the
+	 * progress is reported.
+	 */
+	private void startProgress() {
+		this.rowsWritten.set(0);
+		this.tempFileBytes.set(0);
+		this.peakTempFileBytes.set(0);
+		this.totalRows = -1;
+		if (this.progressListener == null) {
+			return;
+		}
+
+		long rows = 0;
+		for (ExportExcelSheetConfiguration<BEANTYPE> sheetConfig : this.exportExcelConfiguration.getSheetConfigs()) {
+			for (ExportExcelComponentConfiguration<BEANTYPE> componentConfig : sheetConfig.getComponentConfigs()) {
+				if (componentConfig.getGrid() != null) {
+					rows += countRows(componentConfig.getGrid());
+				}
+			}
+		}
+		this.totalRows = rows;
+		reportProgress();
+	}
+
+	/**
+	 * Estimates the size of the export as the number of data cells, the
+	 * number of rows of each grid times its number of visible columns.
+	 *
+	 * @return the number of data cells
+	 */
+	protected long estimateCellCount() {
+		return estimateCellCount(this.exportExcelConfiguration);
+	}
+
+	/**
+	 * Estimates the size of an export of the given configuration as the number
+	 * of data cells, the number of rows of each grid times its number of
+	 * visible columns. The size of data providers other than
+	 * ListDataProviders is queried.
+	 *
+	 * @param <BEANTYPE>
+	 *            the generic type
+	 * @param exportExcelConfiguration
+	 *            the export excel configuration
+	 * @return the number of data cells
+	 */
+	public static <BEANTYPE> long estimateCellCount(
+			final ExportExcelConfiguration<BEANTYPE> exportExcelConfiguration) {
+		long cells = 0;
+		for (ExportExcelSheetConfiguration<BEANTYPE> sheetConfig : exportExcelConfiguration.getSheetConfigs()) {
+			for (ExportExcelComponentConfiguration<BEANTYPE> componentConfig : sheetConfig.getComponentConfigs()) {
+				if (componentConfig.getGrid() != null) {
+					cells += countRows(componentConfig.getGrid()) * componentConfig.getVisibleProperties().length;
+				}
+			}
+		}
+		return cells;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <BEANTYPE> long countRows(final Grid<BEANTYPE> grid) {
+		if (grid.getDataProvider() instanceof ListDataProvider) {
+			return ((ListDataProvider<BEANTYPE>) grid.getDataProvider()).getItems()
+				.size();
+		}
+		return grid.getDataProvider()
+			.size(new Query<>());
+	}
+
+	private void rowWritten(final int cells) {
+		if (this.metrics != null) {
+			this.metrics.rowWritten(cells);
+		}
+		if (this.rowsWritten.incrementAndGet() % PROGRESS_REPORT_INTERVAL == 0) {
+			reportProgress();
+		}
+	}
+
+	private void reportProgress() {
+		if (this.progressListener != null) {
+			this.progressListener.exportProgress(this.rowsWritten.get(), this.totalRows);
+		}
+	}
+
+	/**
+	 * Gets the start time of a measured phase.
+	 *
+	 * @return the {@link System#nanoTime()}, 0 if the metrics are not recorded
+	 */
+	private long phaseStart() {
+		return this.metrics != null ? System.nanoTime() : 0;
+	}
+
+	private void phaseEnded(final ExportPhase phase, final long start) {
+		if (this.metrics != null) {
+			this.metrics.phaseEnded(phase, start);
+		}
+	}
+
+	private Iterator<BEANTYPE> timeDataFetch(final Iterator<BEANTYPE> itemIds) {
+		return this.metrics != null ? this.metrics.timeDataFetch(itemIds) : itemIds;
+	}
+
+	/**
+	 * Reports the metrics of the written export file.
+	 */
+	private void exportWritten(final long outputBytes) {
+		List<ColumnProfile> columnProfiles = getColumnProfiles();
+		if (!columnProfiles.isEmpty() && LOGGER.isInfoEnabled()) {
+			for (ColumnProfile columnProfile : columnProfiles) {
+				LOGGER.info("Column profile {}", columnProfile);
+			}
+		}
+		if (this.metrics != null) {
+			tempFileBytesChanged(0);
+			this.metrics.completed(	outputBytes, this.styleCache != null ? this.styleCache.getStyleCount() : 0,
+									this.peakTempFileBytes.get(), columnProfiles);
+		}
+		this.trace.exportCompleted(this.rowsWritten.get(), outputBytes);
+	}
+
+	/**
+	 * Records a change of the bytes held in sheet parts and updates the peak of
+	 * the bytes held in temporary files, which includes the output once it has
+	 * been moved to a file. The temporary files of the SXSSF engine are managed
+	 * by POI and not included.
+	 *
+	 * @param delta
+	 *            the change of the bytes held in sheet parts
+	 */
+	private void tempFileBytesChanged(final long delta) {
+		long held = this.tempFileBytes.addAndGet(delta);
+		ExportOutput output = this.currentOutput;
+		if (output != null && !output.isInMemory()) {
+			held += output.getSize();
+		}
+		this.peakTempFileBytes.accumulateAndGet(held, Math::max);
+	}
+
+	/**
+	 * Gets the profiles of the columns of all sheets in the order of the sheet
+	 * and component configurations.
+	 *
+	 * @return the column profiles, empty unless the columns are profiled
+	 */
+	private List<ColumnProfile> getColumnProfiles() {
+		if (!this.exportExcelConfiguration.isColumnProfiling()) {
+			return Collections.emptyList();
+		}
+		List<ColumnProfile> columnProfiles = new ArrayList<>();
+		synchronized (this.columnExportPlans) {
+			for (ExportExcelSheetConfiguration<BEANTYPE> sheetConfig : this.exportExcelConfiguration
+				.getSheetConfigs()) {
+				for (ExportExcelComponentConfiguration<BEANTYPE> componentConfig : sheetConfig.getComponentConfigs()) {
+					ColumnExportPlan<BEANTYPE> plan = this.columnExportPlans.get(componentConfig);
+					if (plan != null && plan.getProfiler() != null) {
+						columnProfiles.addAll(plan.getProfiler()
+							.getProfiles(sheetConfig.getSheetname()));
+					}
+				}
+			}
+		}
+		return columnProfiles;
+	}
+
+	private void exportFailed(final Throwable cause) {
+		if (this.metrics != null) {
+			this.metrics.failed(cause);
+		}
+		this.trace.exportFailed(cause);
+	}
+
 	private void addComponents(XSSFWorkbook workbook, ExportExcelSheetConfiguration<BEANTYPE> sheetConfig, Sheet sheet,
 			int rowNum) {
 		int tmpRowNum = rowNum;
+		Sheet currentSheet = sheet;
 		for (ExportExcelComponentConfiguration<BEANTYPE> componentConfig : sheetConfig.getComponentConfigs()) {
 			if (componentConfig.getGrid() != null) {
-				tmpRowNum = addGridToExcelSheet(componentConfig.getGrid(), workbook, sheet, tmpRowNum, sheetConfig,
-												componentConfig);
+				int sheetCount = this.exportWorkbook.getNumberOfSheets();
+				tmpRowNum = addGridToExcelSheet(componentConfig.getGrid(), workbook, currentSheet, tmpRowNum,
+												sheetConfig, componentConfig);
+				// the grid continued on additional sheets if it exceeded the row limit
+				if (this.exportWorkbook.getNumberOfSheets() > sheetCount) {
+					currentSheet = this.exportWorkbook.getSheetAt(this.exportWorkbook.getNumberOfSheets() - 1);
+				}
 			}
 		}
 	}
@@ -135,8 +753,7 @@ public class ExportToExcel<BEANTYPE> extends AbstractExportTo {
 			Row myHeaderRow2 = sheet.createRow(tmpRowNum++);
 			Cell myHeaderCell2 = myHeaderRow2.createCell(0);
 			myHeaderCell2.setCellValue(sheetConfig.getLoggerInfoRowContent());
-			myHeaderCell2.setCellStyle(sheetConfig.getGeneratedByStyleFunction()
-				.apply(workbook));
+			myHeaderCell2.setCellStyle(toExportStyle(this.styleCache.getStyle(sheetConfig.getGeneratedByStyleFunction())));
 			sheet.addMergedRegion(new CellRangeAddress(tmpRowNum, tmpRowNum,
 					sheetConfig.getColumnForGeneratedByRegion()[0], sheetConfig.getColumnForGeneratedByRegion()[1]));
 		}
@@ -152,8 +769,7 @@ public class ExportToExcel<BEANTYPE> extends AbstractExportTo {
 			Cell myHeaderCell1 = myHeaderRow1.createCell(0);
 
 			myHeaderCell1.setCellValue(sheetConfig.getReportTitleRowContent());
-			myHeaderCell1.setCellStyle(sheetConfig.getReportTitleStyleFunction()
-				.apply(workbook));
+			myHeaderCell1.setCellStyle(toExportStyle(this.styleCache.getStyle(sheetConfig.getReportTitleStyleFunction())));
 			sheet.addMergedRegion(new CellRangeAddress(tmpRowNum, tmpRowNum, sheetConfig.getColumnForTitleRegion()[0],
 					sheetConfig.getColumnForTitleRegion()[1]));
 		}
@@ -165,7 +781,11 @@ public class ExportToExcel<BEANTYPE> extends AbstractExportTo {
 	 *******************************************/
 
 	/**
-	 * Creates the grid content.
+	 * Creates the grid content. Items of a ListDataProvider are exported
+	 * directly, any other data provider is fetched page wise using the
+	 * configured data provider page size and the current sorting of the grid.
+	 * If data provider prefetching is configured, the following pages are
+	 * fetched in the background while the current page is written.
 	 *
 	 * @param grid
 	 *            the grid
@@ -186,15 +806,39 @@ public class ExportToExcel<BEANTYPE> extends AbstractExportTo {
 			int rowNum, final ExportExcelSheetConfiguration<BEANTYPE> sheetConfiguration,
 			final ExportExcelComponentConfiguration<BEANTYPE> componentConfiguration) {
 
-		Collection<BEANTYPE> items;
 		if (grid.getDataProvider() instanceof ListDataProvider) {
-			items = ((ListDataProvider<BEANTYPE>) grid.getDataProvider()).getItems();
-		} else {
-			throw new UnsupportedOperationException("dataProvider " + grid.getDataProvider()
-				.getClass() + " of grid is not supported");
+			Collection<BEANTYPE> items = ((ListDataProvider<BEANTYPE>) grid.getDataProvider()).getItems();
+			return addGridToExcelSheet(items, myWorkBook, sheet, rowNum, sheetConfiguration, componentConfiguration);
 		}
 
-		return addGridToExcelSheet(items, myWorkBook, sheet, rowNum, sheetConfiguration, componentConfiguration);
+		try (DataProviderPageIterator<BEANTYPE> items = createPageIterator(grid)) {
+			return addGridToExcelSheet(items, myWorkBook, sheet, rowNum, sheetConfiguration, componentConfiguration);
+		}
+	}
+
+	/**
+	 * Creates the iterator fetching the items of the grid's data provider page
+	 * wise.
+	 *
+	 * @param grid
+	 *            the grid
+	 * @return the page iterator
+	 */
+	protected DataProviderPageIterator<BEANTYPE> createPageIterator(final Grid<BEANTYPE> grid) {
+		DataCommunicator<BEANTYPE> dataCommunicator = grid.getDataCommunicator();
+		int pageSize = this.exportExcelConfiguration.getDataProviderPageSize();
+		int prefetchPages = this.exportExcelConfiguration.getDataProviderPrefetchPages();
+
+		DataProviderPageIterator<BEANTYPE> items;
+		if (prefetchPages > 0) {
+			items = new PrefetchingDataProviderPageIterator<>(grid.getDataProvider(), pageSize,
+					dataCommunicator.getBackEndSorting(), dataCommunicator.getInMemorySorting(), prefetchPages);
+		} else {
+			items = new DataProviderPageIterator<>(grid.getDataProvider(), pageSize,
+					dataCommunicator.getBackEndSorting(), dataCommunicator.getInMemorySorting());
+		}
+		items.setTrace(this.trace);
+		return items;
 	}
 
 	/**
@@ -218,7 +862,34 @@ public class ExportToExcel<BEANTYPE> extends AbstractExportTo {
 	protected int addGridToExcelSheet(final Collection<BEANTYPE> itemIds, final XSSFWorkbook myWorkBook, Sheet sheet,
 			int rowNum, final ExportExcelSheetConfiguration<BEANTYPE> sheetConfiguration,
 			final ExportExcelComponentConfiguration<BEANTYPE> componentConfiguration) {
+		return addGridToExcelSheet(	itemIds.iterator(), myWorkBook, sheet, rowNum, sheetConfiguration,
+									componentConfiguration);
+	}
+
+	/**
+	 * Creates the generic content. Adds the component header, data, and footer
+	 * sections. The items are consumed one by one so they do not need to be
+	 * held in memory at once.
+	 *
+	 * @param itemIds
+	 *            the item ids
+	 * @param myWorkBook
+	 *            the my work book
+	 * @param sheet
+	 *            the sheet
+	 * @param rowNum
+	 *            current rownum
+	 * @param sheetConfiguration
+	 *            the sheet configuration
+	 * @param componentConfiguration
+	 *            the component configuration
+	 * @return the integer
+	 */
+	protected int addGridToExcelSheet(final Iterator<BEANTYPE> itemIds, final XSSFWorkbook myWorkBook, Sheet sheet,
+			int rowNum, final ExportExcelSheetConfiguration<BEANTYPE> sheetConfiguration,
+			final ExportExcelComponentConfiguration<BEANTYPE> componentConfiguration) {
 
+		Iterator<BEANTYPE> items = timeDataFetch(itemIds);
 		int tmpRowNum = rowNum;
 		// create space before each grid
 		tmpRowNum++;
@@ -227,42 +898,121 @@ public class ExportToExcel<BEANTYPE> extends AbstractExportTo {
 
 		sheet.createFreezePane(sheetConfiguration.getFrozenColumns(), sheetConfiguration.getFrozenRows());
 
-		tmpRowNum = addGridHeaderRows(sheet, tmpRowNum, componentConfiguration);
-		tmpRowNum = addGridContent(itemIds, myWorkBook, sheet, tmpRowNum, sheetConfiguration, componentConfiguration);
-		tmpRowNum = addGridFooterRows(sheet, tmpRowNum, componentConfiguration);
+		Sheet currentSheet = sheet;
+		int maxRows = getMaxRows();
+		int footerRowCount = componentConfiguration.getFooterConfigs() != null
+				? componentConfiguration.getFooterConfigs()
+					.size()
+				: 0;
+
+		tmpRowNum = addGridHeaderRows(currentSheet, tmpRowNum, componentConfiguration);
+		int dataRowCount = 0;
+		int contentStart = tmpRowNum;
+		tmpRowNum = addGridContent(	items, currentSheet, tmpRowNum, maxRows, contentStart, sheetConfiguration,
+									componentConfiguration);
+		// the rows exceeding the row limit of the format are continued on additional sheets
+		while (items.hasNext() || tmpRowNum + footerRowCount > maxRows) {
+			autoSizeColumns(currentSheet, componentConfiguration);
+			dataRowCount += tmpRowNum - contentStart;
+			currentSheet = createContinuationSheet(currentSheet, sheetConfiguration);
+
+			tmpRowNum = addGridHeaderRows(currentSheet, 0, componentConfiguration);
+			contentStart = tmpRowNum;
+			// keep the row parity passed to the content style function
+			tmpRowNum = addGridContent(	items, currentSheet, tmpRowNum, maxRows, contentStart - dataRowCount,
+										sheetConfiguration, componentConfiguration);
+		}
+		tmpRowNum = addGridFooterRows(currentSheet, tmpRowNum, componentConfiguration);
+
+		autoSizeColumns(currentSheet, componentConfiguration);
+
+		return tmpRowNum;
+	}
 
+	private void autoSizeColumns(Sheet sheet, final ExportExcelComponentConfiguration<BEANTYPE> componentConfiguration) {
+		long start = phaseStart();
 		// Disabling auto columns for each column
 		for (int columns = 0; columns < componentConfiguration.getVisibleProperties().length; columns++) {
 			sheet.autoSizeColumn(columns, false);
 		}
-
-		return tmpRowNum;
+		phaseEnded(ExportPhase.AUTOSIZE, start);
 	}
 
-	private int addGridContent(final Collection<BEANTYPE> itemIds, final XSSFWorkbook myWorkBook, Sheet sheet,
-			int rowNum, final ExportExcelSheetConfiguration<BEANTYPE> sheetConfiguration,
+	private int addGridContent(final Iterator<BEANTYPE> itemIds, Sheet sheet, int rowNum, int maxRows,
+			int dataRowContentStart, final ExportExcelSheetConfiguration<BEANTYPE> sheetConfiguration,
 			final ExportExcelComponentConfiguration<BEANTYPE> componentConfiguration) {
 		int tmpRowNum = rowNum;
-		int dataRowContentStart = rowNum;
-		for (final BEANTYPE itemId : itemIds) {
-			addGridDataRow(	myWorkBook, sheet, sheetConfiguration, componentConfiguration, itemId, tmpRowNum,
-							dataRowContentStart);
+		ColumnExportPlan<BEANTYPE> plan = getColumnExportPlan(componentConfiguration);
+		while (tmpRowNum < maxRows && itemIds.hasNext()) {
+			checkCancelled();
+			final BEANTYPE itemId = itemIds.next();
+			long start = phaseStart();
+			addGridDataRow(sheet, sheetConfiguration, plan, itemId, tmpRowNum, dataRowContentStart);
+			phaseEnded(ExportPhase.CELL_RENDERING, start);
+			rowWritten(plan.getColumnCount());
 			tmpRowNum++;
 		}
 		return tmpRowNum;
 	}
 
 	/**
-	 * Adds the generic header rows as configured in the component configuration
-	 * 
-	 * @param sheet
-	 *            the sheet
-	 * @param rowNum
-	 *            current rownum
+	 * Gets the maximum number of rows per sheet of the export workbook, 65,536
+	 * for xls and 1,048,576 for xlsx.
 	 *
-	 * @param componentConfiguration
-	 *            the component configuration
-	 * @return the integer
+	 * @return the max rows
+	 */
+	protected int getMaxRows() {
+		if (this.exportWorkbook instanceof HSSFWorkbook) {
+			return SpreadsheetVersion.EXCEL97.getMaxRows();
+		}
+		return SpreadsheetVersion.EXCEL2007.getMaxRows();
+	}
+
+	/**
+	 * Creates the sheet a grid is continued on once it exceeds the row limit of
+	 * the current sheet. The sheet is named like the sheet of the configuration
+	 * with a running number.
+	 *
+	 * @param sheet
+	 *            the full sheet
+	 * @param sheetConfiguration
+	 *            the sheet configuration
+	 * @return the new sheet
+	 */
+	protected Sheet createContinuationSheet(Sheet sheet,
+			final ExportExcelSheetConfiguration<BEANTYPE> sheetConfiguration) {
+		String name = getContinuationSheetName(sheetConfiguration.getSheetname(),
+												n -> this.exportWorkbook.getSheet(n) != null);
+
+		Sheet continuationSheet = this.exportWorkbook.createSheet(name);
+		continuationSheet.setAutobreaks(true);
+		continuationSheet.createFreezePane(sheetConfiguration.getFrozenColumns(), sheetConfiguration.getFrozenRows());
+		return continuationSheet;
+	}
+
+	private static String getContinuationSheetName(String baseName, Predicate<String> exists) {
+		int part = 2;
+		String name;
+		do {
+			String suffix = " (" + part++ + ")";
+			name = (baseName.length() + suffix.length() > MAX_SHEET_NAME_LENGTH
+					? baseName.substring(0, MAX_SHEET_NAME_LENGTH - suffix.length())
+					: baseName) + suffix;
+		} while (exists.test(name));
+		return name;
+	}
+
+	/**
+	 * Adds the generic header rows as configured in the component configuration
+	 * 
+	 * @param sheet
+	 *            the sheet
+	 * @param rowNum
+	 *            current rownum
+	 *
+	 * @param componentConfiguration
+	 *            the component configuration
+	 * @return the integer
 	 */
 	protected Integer addGridHeaderRows(Sheet sheet, int rowNum,
 			final ExportExcelComponentConfiguration<BEANTYPE> componentConfiguration) {
@@ -306,8 +1056,8 @@ public class ExportToExcel<BEANTYPE> extends AbstractExportTo {
 			} else if (headerFooterConfig.getColumnKeys() != null) {
 				myCell.setCellValue(headerFooterConfig.getColumnKeys()[columns]);
 			}
-			myCell.setCellStyle(componentConfiguration.getHeaderStyleFunction()
-				.apply(this.workbook, columnId));
+			myCell.setCellStyle(toExportStyle(this.styleCache.getStyle(componentConfiguration.getHeaderStyleFunction(),
+																		columnId)));
 		}
 
 		if (headerFooterConfig instanceof ComponentHeaderConfiguration
@@ -383,108 +1133,772 @@ public class ExportToExcel<BEANTYPE> extends AbstractExportTo {
 	 * @param rowNum
 	 *            the local row
 	 * @param dataRowContentStart
+	 * @deprecated no longer called by the export, the rows are added with
+	 *             {@link #addGridDataRow(Sheet, ExportExcelSheetConfiguration, ColumnExportPlan, Object, int, int)},
+	 *             override that method instead
 	 */
+	@Deprecated
 	protected void addGridDataRow(final XSSFWorkbook myWorkBook, Sheet sheet,
 			final ExportExcelSheetConfiguration<BEANTYPE> sheetConfiguration,
 			final ExportExcelComponentConfiguration<BEANTYPE> componentConfiguration, final BEANTYPE itemId,
 			final Integer rowNum, int dataRowContentStart) {
+		addGridDataRow(	sheet, sheetConfiguration, getColumnExportPlan(componentConfiguration), itemId, rowNum,
+						dataRowContentStart);
+	}
+
+	/**
+	 * Adds the generic data row using the compiled column plan of the
+	 * component. Applies formatting to the cells as configured.
+	 *
+	 * @param sheet
+	 *            the sheet
+	 * @param sheetConfiguration
+	 *            the sheet configuration
+	 * @param plan
+	 *            the column plan of the component
+	 * @param itemId
+	 *            the item id
+	 * @param rowNum
+	 *            current rownum
+	 * @param dataRowContentStart
+	 *            the rownum of the first data row
+	 */
+	protected void addGridDataRow(Sheet sheet, final ExportExcelSheetConfiguration<BEANTYPE> sheetConfiguration,
+			final ColumnExportPlan<BEANTYPE> plan, final BEANTYPE itemId, final int rowNum,
+			final int dataRowContentStart) {
 
 		Row myRow = sheet.createRow(rowNum);
 		try {
 
-			for (int columns = 0; columns < componentConfiguration.getVisibleProperties().length; columns++) {
-				String columnId = componentConfiguration.getVisibleProperties()[columns];
-				Function<BEANTYPE, ?> function = componentConfiguration.getGrid()
-					.getColumn(columnId)
-					.getValueProvider();
-
-				Object value = function.apply(itemId);
+			for (int columns = 0; columns < plan.getColumnCount(); columns++) {
+				Object value = plan.getValue(columns, itemId);
 				Cell myCell = myRow.createCell(columns, XSSFCell.CELL_TYPE_STRING);
 
-				myCell.setCellStyle(componentConfiguration.getContentStyleFunction()
-					.apply(myWorkBook, columnId, value, rowNum - dataRowContentStart));
-
-				if (value == null) {
-					myCell.setCellValue("");
-					continue;
+				XSSFCellStyle cellStyle = plan.getContentStyle(this.styleCache, columns, value,
+																rowNum - dataRowContentStart);
+				myCell.setCellStyle(toExportStyle(cellStyle));
+
+				Object cellValue = getCellValue(sheetConfiguration, plan, itemId, columns, value);
+				if (cellValue instanceof String) {
+					myCell.setCellValue((String) cellValue);
+				} else if (cellValue instanceof Date) {
+					myCell.setCellValue((Date) cellValue);
+					myCell.setCellStyle(
+							toExportStyle(getNativeCellStyle(sheetConfiguration, plan, columns, cellStyle)));
+				} else if (cellValue instanceof Double) {
+					myCell.setCellValue((Double) cellValue);
+					myCell.setCellStyle(
+							toExportStyle(getNativeCellStyle(sheetConfiguration, plan, columns, cellStyle)));
 				}
-
-				setCellValueBasedOnValueDataType(	sheetConfiguration, componentConfiguration, itemId, columns, value,
-													myCell);
-
 			}
 		} catch (Exception e) {
 			ExportToExcel.LOGGER.error("addGenericDataRow throws + " + e.getMessage(), e);
 		}
 	}
 
-	private void setCellValueBasedOnValueDataType(final ExportExcelSheetConfiguration<BEANTYPE> sheetConfiguration,
-			final ExportExcelComponentConfiguration<BEANTYPE> componentConfiguration, final BEANTYPE itemId,
-			int columns, Object value, Cell myCell) {
-		// Date
-		if (componentConfiguration.getDateFormattingProperties()
-			.contains(String.valueOf(componentConfiguration.getVisibleProperties()[columns]))) {
-			myCell.setCellValue(FormatUtil.formatDate((Date) value, sheetConfiguration.getDateFormat()));
-			return;
+	/**
+	 * Gets the compiled column plan of the component, it is compiled on first
+	 * use and then reused for all rows and sheets of this export.
+	 *
+	 * @param componentConfiguration
+	 *            the component configuration
+	 * @return the column export plan
+	 */
+	protected ColumnExportPlan<BEANTYPE> getColumnExportPlan(
+			final ExportExcelComponentConfiguration<BEANTYPE> componentConfiguration) {
+		synchronized (this.columnExportPlans) {
+			return this.columnExportPlans.computeIfAbsent(componentConfiguration, c -> ColumnExportPlan
+				.compile(c, this.exportExcelConfiguration.isColumnProfiling(), this.styleCache));
 		}
+	}
 
-		// Integer
-		if (componentConfiguration.getIntegerFormattingProperties()
-			.contains(String.valueOf(componentConfiguration.getVisibleProperties()[columns]))) {
+	/**
+	 * Gets the format context of the current thread, threads rendering in
+	 * parallel use their own copy.
+	 *
+	 * @return the format context
+	 */
+	protected FormatContext getFormatContext() {
+		FormatContext workerFormatContext = this.workerFormatContexts.get();
+		return workerFormatContext != null ? workerFormatContext : this.formatContext;
+	}
 
-			String formattedInteger = FormatUtil.localizedFormat(value != null && !String.valueOf(value)
-				.isEmpty() ? String.valueOf(value) : null, Boolean.TRUE);
-			String customFormattedString = FormatUtil
-				.applyColumnFormatter(	componentConfiguration.getVisibleProperties(), componentConfiguration, itemId,
-										columns, formattedInteger);
-			myCell.setCellValue(customFormattedString != null ? customFormattedString : formattedInteger);
-			return;
+	/**
+	 * Gets the value written to a content cell. Values are formatted to text,
+	 * unless dates and numbers are written as native values, see
+	 * {@link CellValueMode}. Columns with a column formatter are always
+	 * formatted to text.
+	 *
+	 * @return the text, a Date or Double for native values or null if the cell
+	 *         is left empty
+	 */
+	private Object getCellValue(final ExportExcelSheetConfiguration<BEANTYPE> sheetConfiguration,
+			final ColumnExportPlan<BEANTYPE> plan, final BEANTYPE itemId, int columns, Object value) {
+		if (value == null) {
+			return "";
 		}
 
-		// Float
-		if (componentConfiguration.getFloatFormattingProperties()
-			.contains(String.valueOf(componentConfiguration.getVisibleProperties()[columns]))) {
-			setCellValueBasedOnFloat(componentConfiguration, itemId, columns, value, myCell);
-			return;
+		if (this.exportExcelConfiguration.getCellValueMode() == CellValueMode.NATIVE
+				&& plan.getFormatter(columns) == null) {
+			ValueKind valueKind = plan.getValueKind(columns);
+			if (valueKind == ValueKind.DATE && value instanceof Date) {
+				return value;
+			}
+			if ((valueKind == ValueKind.INTEGER || valueKind == ValueKind.FLOAT) && value instanceof Number) {
+				return ((Number) value).doubleValue();
+			}
 		}
 
-		// Boolean
-		if (componentConfiguration.getBooleanFormattingProperties()
-			.contains(String.valueOf(componentConfiguration.getVisibleProperties()[columns]))) {
-			String customFormattedString = FormatUtil
-				.applyColumnFormatter(	componentConfiguration.getVisibleProperties(), componentConfiguration, itemId,
-										columns, Boolean.valueOf((boolean) value));
-			myCell.setCellValue(customFormattedString != null ? customFormattedString : value.toString());
-			return;
+		return getFormattedCellValue(sheetConfiguration, plan, itemId, columns, value);
+	}
+
+	/**
+	 * Gets the style of a cell holding a native date or number, the content
+	 * style with the data format of the column.
+	 */
+	private XSSFCellStyle getNativeCellStyle(final ExportExcelSheetConfiguration<BEANTYPE> sheetConfiguration,
+			final ColumnExportPlan<BEANTYPE> plan, int columns, XSSFCellStyle cellStyle) {
+		String dataFormat;
+		switch (plan.getValueKind(columns)) {
+		case DATE:
+			dataFormat = getFormatContext().getExcelDateFormat(sheetConfiguration.getDateFormat());
+			break;
+		case INTEGER:
+			dataFormat = INTEGER_DATA_FORMAT;
+			break;
+		default:
+			dataFormat = FLOAT_DATA_FORMAT;
 		}
+		return this.styleCache.getStyleWithDataFormat(cellStyle, dataFormat);
+	}
 
-		String customFormattedString = FormatUtil.applyColumnFormatter(	componentConfiguration.getVisibleProperties(),
-																		componentConfiguration, itemId, columns, value);
-		myCell.setCellValue(customFormattedString != null ? customFormattedString : value.toString());
+	private String getFormattedCellValue(final ExportExcelSheetConfiguration<BEANTYPE> sheetConfiguration,
+			final ColumnExportPlan<BEANTYPE> plan, final BEANTYPE itemId, int columns, Object value) {
+		String columnId = plan.getColumnId(columns);
+		ColumnFormatter formatter = plan.getFormatter(columns);
+
+		ColumnProfiler profiler = plan.getProfiler();
+		long start = profiler != null ? System.nanoTime() : 0;
+
+		switch (plan.getValueKind(columns)) {
+		case DATE:
+			String formattedDate = getFormatContext().formatDate((Date) value, sheetConfiguration.getDateFormat());
+			formattingEnded(profiler, columns, start);
+			return formattedDate;
+
+		case INTEGER:
+			String formattedInteger = getFormatContext().localizedFormat(!String.valueOf(value)
+				.isEmpty() ? String.valueOf(value) : null, Boolean.TRUE);
+			formattingEnded(profiler, columns, start);
+			String customFormattedInteger = FormatUtil.applyColumnFormatter(formatter, itemId, columnId,
+																			formattedInteger);
+			return customFormattedInteger != null ? customFormattedInteger : formattedInteger;
+
+		case FLOAT:
+			return getFormattedFloat(plan, columns, itemId, value);
+
+		case BOOLEAN:
+			String customFormattedBoolean = FormatUtil.applyColumnFormatter(formatter, itemId, columnId,
+																			Boolean.valueOf((boolean) value));
+			return customFormattedBoolean != null ? customFormattedBoolean : value.toString();
+
+		default:
+			String customFormattedString = FormatUtil.applyColumnFormatter(formatter, itemId, columnId, value);
+			return customFormattedString != null ? customFormattedString : value.toString();
+		}
 	}
 
-	private void setCellValueBasedOnFloat(final ExportExcelComponentConfiguration<BEANTYPE> componentConfiguration,
-			final BEANTYPE itemId, int columns, Object value, Cell myCell) {
+	private String getFormattedFloat(final ColumnExportPlan<BEANTYPE> plan, int columns, final BEANTYPE itemId,
+			Object value) {
+		String columnId = plan.getColumnId(columns);
+		ColumnFormatter formatter = plan.getFormatter(columns);
+		ColumnProfiler profiler = plan.getProfiler();
+		long start = profiler != null ? System.nanoTime() : 0;
 		if (value instanceof Double) {
 
-			String formattedDouble = FormatUtil.formatFloat((Double) value);
-			String customFormattedString = FormatUtil
-				.applyColumnFormatter(	componentConfiguration.getVisibleProperties(), componentConfiguration, itemId,
-										columns, formattedDouble);
-			myCell.setCellValue(customFormattedString != null ? customFormattedString : formattedDouble);
+			String formattedDouble = getFormatContext().formatFloat((Double) value);
+			formattingEnded(profiler, columns, start);
+			String customFormattedString = FormatUtil.applyColumnFormatter(	formatter, itemId, columnId,
+																			formattedDouble);
+			return customFormattedString != null ? customFormattedString : formattedDouble;
 		} else if (value instanceof BigDecimal) {
-			String formattedBigDecimal = FormatUtil.formatFloat(((BigDecimal) value).doubleValue());
-			String customFormattedString = FormatUtil
-				.applyColumnFormatter(	componentConfiguration.getVisibleProperties(), componentConfiguration, itemId,
-										columns, formattedBigDecimal);
-			myCell.setCellValue(customFormattedString != null ? customFormattedString : formattedBigDecimal);
+			String formattedBigDecimal = getFormatContext().formatFloat(((BigDecimal) value).doubleValue());
+			formattingEnded(profiler, columns, start);
+			String customFormattedString = FormatUtil.applyColumnFormatter(	formatter, itemId, columnId,
+																			formattedBigDecimal);
+			return customFormattedString != null ? customFormattedString : formattedBigDecimal;
+		}
+		return null;
+	}
+
+	private static void formattingEnded(final ColumnProfiler profiler, int columns, final long start) {
+		if (profiler != null) {
+			profiler.record(columns, ColumnOperation.FORMATTING, start);
+		}
+	}
+
+	/*************************************
+	 * Writing SpreadsheetML directly
+	 *******************************************/
+
+	/**
+	 * Writes the export file to the given stream. Without an export workbook
+	 * the sheets are rendered straight into the stream.
+	 *
+	 * @param out
+	 *            the stream
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	protected void writeWorkbook(OutputStream out) throws IOException {
+		ensureSheetsProcessed();
+		ExportTrace.Span span = this.trace.serializationStarted();
+		CountingOutputStream countingOut = span != ExportTrace.Span.NO_OP ? new CountingOutputStream(out) : null;
+		writeWorkbookTo(countingOut != null ? countingOut : out);
+		if (countingOut != null) {
+			countingOut.flush();
+			span.end(0, countingOut.getCount());
+		}
+	}
+
+	/**
+	 * Processes the sheets of a lazy export on first use.
+	 */
+	private synchronized void ensureSheetsProcessed() {
+		if (!this.sheetsProcessed) {
+			processSheets();
+		}
+	}
+
+	private void writeWorkbookTo(OutputStream out) throws IOException {
+		if (this.exportWorkbook != null) {
+			long start = phaseStart();
+			this.exportWorkbook.write(out);
+			phaseEnded(ExportPhase.WORKBOOK_WRITE, start);
+			return;
+		}
+
+		startProgress();
+		SpreadsheetMLWriter writer = new SpreadsheetMLWriter(out,
+				this.exportExcelConfiguration.getStreamingRowWindowSize(), getTempFileStore());
+		List<ExportExcelSheetConfiguration<BEANTYPE>> sheetConfigs = this.exportExcelConfiguration.getSheetConfigs();
+		// the continuation sheets of parts rendered in parallel must not take
+		// the name of a sheet of another part
+		this.directSheetNames.clear();
+		for (ExportExcelSheetConfiguration<BEANTYPE> sheetConfig : sheetConfigs) {
+			this.directSheetNames.add(sheetConfig.getSheetname());
+		}
+		if (this.exportExcelConfiguration.isParallelSheetGeneration() && sheetConfigs.size() > 1) {
+			writeSheetsInParallel(writer, sheetConfigs);
+		} else {
+			for (ExportExcelSheetConfiguration<BEANTYPE> sheetConfig : sheetConfigs) {
+				checkCancelled();
+				writeSheet(writer, sheetConfig);
+			}
+		}
+		long start = phaseStart();
+		writer.finish(this.workbook.getStylesSource());
+		phaseEnded(ExportPhase.WORKBOOK_WRITE, start);
+		reportProgress();
+	}
+
+	/**
+	 * Renders each sheet with its own part writer on the parallel executor.
+	 * The parts are added to the file in order as soon as they are done.
+	 */
+	private void writeSheetsInParallel(SpreadsheetMLWriter writer,
+			List<ExportExcelSheetConfiguration<BEANTYPE>> sheetConfigs) throws IOException {
+		Map<Class<?>, CurrentInstance> currentInstances = CurrentInstance.getInstances();
+		List<CompletableFuture<SpreadsheetMLWriter>> parts = new ArrayList<>();
+		for (int i = 0; i < sheetConfigs.size(); i++) {
+			ExportExcelSheetConfiguration<BEANTYPE> sheetConfig = sheetConfigs.get(i);
+			SpreadsheetMLWriter partWriter = writer.createPartWriter(i == 0);
+			parts.add(CompletableFuture.supplyAsync(() -> runAsWorker(currentInstances, () -> {
+				try {
+					checkCancelled();
+					writeSheet(partWriter, sheetConfig);
+					partWriter.endSheet();
+					tempFileBytesChanged(partWriter.getPartBytes());
+					return partWriter;
+				} catch (IOException e) {
+					partWriter.discard();
+					throw new UncheckedIOException(e);
+				} catch (RuntimeException e) {
+					partWriter.discard();
+					throw e;
+				}
+			}), getParallelExecutor()));
+		}
+
+		try {
+			for (CompletableFuture<SpreadsheetMLWriter> part : parts) {
+				SpreadsheetMLWriter partWriter = join(part);
+				long partBytes = partWriter.getPartBytes();
+				writer.appendSheets(partWriter);
+				tempFileBytesChanged(-partBytes);
+			}
+		} catch (IOException | RuntimeException e) {
+			this.aborted = true;
+			// the parts still running are discarded once done
+			for (CompletableFuture<SpreadsheetMLWriter> part : parts) {
+				part.thenAccept(SpreadsheetMLWriter::discard);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Gets the executor rendering in parallel, the common ForkJoinPool unless
+	 * configured.
+	 *
+	 * @return the parallel executor
+	 */
+	protected Executor getParallelExecutor() {
+		Executor executor = this.exportExcelConfiguration.getParallelExecutor();
+		return executor != null ? executor : ForkJoinPool.commonPool();
+	}
+
+	/**
+	 * Checks if parts of the export are rendered in parallel.
+	 *
+	 * @return true, if parallel
+	 */
+	private boolean isParallel() {
+		return this.exportExcelConfiguration.getExportEngine() == ExportEngine.DIRECT
+				&& (this.exportExcelConfiguration.isParallelSheetGeneration()
+						|| this.exportExcelConfiguration.getParallelRowChunkSize() > 0);
+	}
+
+	/**
+	 * Runs a task rendering in parallel with the given Vaadin instances and
+	 * its own format context, the previous state of the thread is restored
+	 * afterwards.
+	 */
+	private <T> T runAsWorker(Map<Class<?>, CurrentInstance> currentInstances, Supplier<T> task) {
+		Map<Class<?>, CurrentInstance> previousInstances = CurrentInstance.getInstances();
+		FormatContext previousFormatContext = this.workerFormatContexts.get();
+		CurrentInstance.restoreInstances(currentInstances);
+		this.workerFormatContexts.set(this.formatContext.copy());
+		try {
+			return task.get();
+		} finally {
+			if (previousFormatContext != null) {
+				this.workerFormatContexts.set(previousFormatContext);
+			} else {
+				this.workerFormatContexts.remove();
+			}
+			CurrentInstance.clearAll();
+			CurrentInstance.restoreInstances(previousInstances);
+		}
+	}
+
+	/**
+	 * Waits for a part rendered in parallel and rethrows its failure.
+	 */
+	private static <T> T join(CompletableFuture<T> part) throws IOException {
+		try {
+			return part.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof UncheckedIOException) {
+				throw ((UncheckedIOException) cause).getCause();
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw e;
 		}
 	}
 
+	private void writeSheet(SpreadsheetMLWriter writer, ExportExcelSheetConfiguration<BEANTYPE> sheetConfig)
+			throws IOException {
+		ExportTrace.Span span = this.trace.sheetStarted(sheetConfig.getSheetname());
+		writer.startSheet(sheetConfig.getSheetname());
+
+		int rowNum = 0;
+		if (sheetConfig.getIsDefaultSheetTitleRequired()) {
+			writer.startRow(rowNum++);
+			writer.writeString(	0, sheetConfig.getReportTitleRowContent(),
+								getStyleIndex(this.styleCache.getStyle(sheetConfig.getReportTitleStyleFunction())));
+			writer.addMergedRegion(new CellRangeAddress(rowNum, rowNum, sheetConfig.getColumnForTitleRegion()[0],
+					sheetConfig.getColumnForTitleRegion()[1]));
+		}
+		if (sheetConfig.getIsDefaultGeneratedByRequired()) {
+			writer.startRow(rowNum++);
+			writer.writeString(	0, sheetConfig.getLoggerInfoRowContent(),
+								getStyleIndex(this.styleCache.getStyle(sheetConfig.getGeneratedByStyleFunction())));
+			writer.addMergedRegion(new CellRangeAddress(rowNum, rowNum, sheetConfig.getColumnForGeneratedByRegion()[0],
+					sheetConfig.getColumnForGeneratedByRegion()[1]));
+		}
+
+		for (ExportExcelComponentConfiguration<BEANTYPE> componentConfig : sheetConfig.getComponentConfigs()) {
+			if (componentConfig.getGrid() != null) {
+				rowNum = writeGrid(writer, componentConfig.getGrid(), rowNum, sheetConfig, componentConfig);
+			}
+		}
+		span.end(rowNum, 0);
+	}
+
+	@SuppressWarnings("unchecked")
+	private int writeGrid(SpreadsheetMLWriter writer, final Grid<BEANTYPE> grid, int rowNum,
+			final ExportExcelSheetConfiguration<BEANTYPE> sheetConfiguration,
+			final ExportExcelComponentConfiguration<BEANTYPE> componentConfiguration) throws IOException {
+		if (grid.getDataProvider() instanceof ListDataProvider) {
+			Collection<BEANTYPE> items = ((ListDataProvider<BEANTYPE>) grid.getDataProvider()).getItems();
+			return writeGrid(writer, items.iterator(), rowNum, sheetConfiguration, componentConfiguration);
+		}
+
+		try (DataProviderPageIterator<BEANTYPE> items = createPageIterator(grid)) {
+			return writeGrid(writer, items, rowNum, sheetConfiguration, componentConfiguration);
+		}
+	}
+
+	private int writeGrid(SpreadsheetMLWriter writer, final Iterator<BEANTYPE> itemIds, int rowNum,
+			final ExportExcelSheetConfiguration<BEANTYPE> sheetConfiguration,
+			final ExportExcelComponentConfiguration<BEANTYPE> componentConfiguration) throws IOException {
+		Iterator<BEANTYPE> items = timeDataFetch(itemIds);
+		int tmpRowNum = rowNum;
+		// create space before each grid
+		tmpRowNum++;
+
+		writer.setRowBreak(tmpRowNum);
+		writer.setFreezePane(sheetConfiguration.getFrozenColumns(), sheetConfiguration.getFrozenRows());
+
+		int maxRows = SpreadsheetVersion.EXCEL2007.getMaxRows();
+		int footerRowCount = componentConfiguration.getFooterConfigs() != null
+				? componentConfiguration.getFooterConfigs()
+					.size()
+				: 0;
+
+		tmpRowNum = writeGridHeaderRows(writer, tmpRowNum, componentConfiguration);
+		int dataRowCount = 0;
+		int contentStart = tmpRowNum;
+		tmpRowNum = writeGridContent(	writer, items, tmpRowNum, maxRows, contentStart, sheetConfiguration,
+										componentConfiguration);
+		// the rows exceeding the row limit of the format are continued on additional sheets
+		while (items.hasNext() || tmpRowNum + footerRowCount > maxRows) {
+			dataRowCount += tmpRowNum - contentStart;
+			// reserves the name, so other parts cannot take it
+			String name = getContinuationSheetName(sheetConfiguration.getSheetname(), n -> !this.directSheetNames.add(n));
+			writer.startSheet(name);
+			writer.setFreezePane(sheetConfiguration.getFrozenColumns(), sheetConfiguration.getFrozenRows());
+
+			tmpRowNum = writeGridHeaderRows(writer, 0, componentConfiguration);
+			contentStart = tmpRowNum;
+			// keep the row parity passed to the content style function
+			tmpRowNum = writeGridContent(	writer, items, tmpRowNum, maxRows, contentStart - dataRowCount,
+											sheetConfiguration, componentConfiguration);
+		}
+
+		if (componentConfiguration.getFooterConfigs() != null) {
+			for (ComponentFooterConfiguration footerConfig : componentConfiguration.getFooterConfigs()) {
+				tmpRowNum = writeHeaderFooterRow(writer, tmpRowNum, componentConfiguration, footerConfig);
+			}
+		}
+		return tmpRowNum;
+	}
+
+	private int writeGridHeaderRows(SpreadsheetMLWriter writer, int rowNum,
+			final ExportExcelComponentConfiguration<BEANTYPE> componentConfiguration) throws IOException {
+		int tmpRowNum = rowNum;
+		if (componentConfiguration.getHeaderConfigs() != null) {
+			for (ComponentHeaderConfiguration headerConfig : componentConfiguration.getHeaderConfigs()) {
+				tmpRowNum = writeHeaderFooterRow(writer, tmpRowNum, componentConfiguration, headerConfig);
+			}
+		}
+		return tmpRowNum;
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private int writeHeaderFooterRow(SpreadsheetMLWriter writer, int rowNum,
+			final ExportExcelComponentConfiguration<BEANTYPE> componentConfiguration,
+			AbstractComponentHeaderFooterConfiguration headerFooterConfig) throws IOException {
+		writer.startRow(rowNum);
+
+		int startMerge = -999;
+		for (int columns = 0; columns < componentConfiguration.getVisibleProperties().length; columns++) {
+			String columnId = componentConfiguration.getVisibleProperties()[columns];
+			String text = null;
+			if (headerFooterConfig.getMergedCells() != null) {
+				for (MergedCell joinedHeader : (List<MergedCell>) headerFooterConfig.getMergedCells()) {
+					if (joinedHeader.getStartProperty()
+						.equalsIgnoreCase(columnId)) {
+						startMerge = columns;
+						text = joinedHeader.getHeaderKey();
+					} else if (joinedHeader.getEndProperty()
+						.equalsIgnoreCase(columnId)) {
+						writer.addMergedRegion(new CellRangeAddress(rowNum, rowNum, startMerge, columns));
+					}
+				}
+			} else if (headerFooterConfig.getRow() != null) {
+				if (headerFooterConfig.getRow() instanceof HeaderRow) {
+					text = ExcelStyleUtil
+						.getGridHeaderCellText(((HeaderRow) headerFooterConfig.getRow()).getCell(columnId));
+				} else if (headerFooterConfig.getRow() instanceof FooterRow) {
+					text = ExcelStyleUtil
+						.getGridFooterCellText(((FooterRow) headerFooterConfig.getRow()).getCell(columnId));
+				}
+			} else if (headerFooterConfig.getColumnKeys() != null) {
+				text = headerFooterConfig.getColumnKeys()[columns];
+			}
+			XSSFCellStyle style = this.styleCache.getStyle(componentConfiguration.getHeaderStyleFunction(), columnId);
+			writer.writeString(columns, text, getStyleIndex(style));
+		}
+
+		if (headerFooterConfig instanceof ComponentHeaderConfiguration
+				&& ((ComponentHeaderConfiguration) headerFooterConfig).isAutoFilter()) {
+			writer.setAutoFilter(new CellRangeAddress(rowNum, rowNum, 0,
+					componentConfiguration.getVisibleProperties().length - 1));
+		}
+
+		return rowNum + 1;
+	}
+
+	private int writeGridContent(SpreadsheetMLWriter writer, final Iterator<BEANTYPE> itemIds, int rowNum,
+			int maxRows, int dataRowContentStart, final ExportExcelSheetConfiguration<BEANTYPE> sheetConfiguration,
+			final ExportExcelComponentConfiguration<BEANTYPE> componentConfiguration) throws IOException {
+		int tmpRowNum = rowNum;
+		ColumnExportPlan<BEANTYPE> plan = getColumnExportPlan(componentConfiguration);
+		int chunkSize = this.exportExcelConfiguration.getParallelRowChunkSize();
+		// threads already rendering in parallel render their rows serially
+		if (chunkSize > 0 && this.workerFormatContexts.get() == null) {
+			return writeGridContentInParallel(	writer, itemIds, rowNum, maxRows, dataRowContentStart, sheetConfiguration,
+												plan, chunkSize);
+		}
+		while (tmpRowNum < maxRows && itemIds.hasNext()) {
+			checkCancelled();
+			final BEANTYPE itemId = itemIds.next();
+			long start = phaseStart();
+			writeGridDataRow(writer, sheetConfiguration, plan, itemId, tmpRowNum, dataRowContentStart);
+			phaseEnded(ExportPhase.CELL_RENDERING, start);
+			rowWritten(plan.getColumnCount());
+			tmpRowNum++;
+		}
+		return tmpRowNum;
+	}
+
+	/**
+	 * Reads the items in chunks and renders the rows of each chunk into a row
+	 * fragment on the parallel executor. The fragments are added to the sheet
+	 * in order, at most two chunks per processor are held at a time.
+	 */
+	private int writeGridContentInParallel(SpreadsheetMLWriter writer, final Iterator<BEANTYPE> itemIds, int rowNum,
+			int maxRows, int dataRowContentStart, final ExportExcelSheetConfiguration<BEANTYPE> sheetConfiguration,
+			final ColumnExportPlan<BEANTYPE> plan, int chunkSize) throws IOException {
+		Map<Class<?>, CurrentInstance> currentInstances = CurrentInstance.getInstances();
+		Executor executor = getParallelExecutor();
+		int maxChunks = Runtime.getRuntime()
+			.availableProcessors() * 2;
+		Deque<CompletableFuture<SpreadsheetMLWriter>> chunks = new ArrayDeque<>();
+
+		int tmpRowNum = rowNum;
+		try {
+			while (tmpRowNum < maxRows && itemIds.hasNext()) {
+				checkCancelled();
+				List<BEANTYPE> items = new ArrayList<>(Math.min(chunkSize, maxRows - tmpRowNum));
+				while (items.size() < chunkSize && tmpRowNum + items.size() < maxRows && itemIds.hasNext()) {
+					items.add(itemIds.next());
+				}
+				int chunkStart = tmpRowNum;
+				SpreadsheetMLWriter fragment = writer.createRowFragment();
+				chunks.add(CompletableFuture.supplyAsync(() -> runAsWorker(currentInstances, () -> {
+					try {
+						for (int i = 0; i < items.size(); i++) {
+							checkCancelled();
+							long start = phaseStart();
+							writeGridDataRow(	fragment, sheetConfiguration, plan, items.get(i), chunkStart + i,
+												dataRowContentStart);
+							phaseEnded(ExportPhase.CELL_RENDERING, start);
+							rowWritten(plan.getColumnCount());
+						}
+						return fragment;
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}), executor));
+				tmpRowNum += items.size();
+
+				if (chunks.size() >= maxChunks) {
+					writer.appendRows(join(chunks.poll()));
+				}
+			}
+			while (!chunks.isEmpty()) {
+				writer.appendRows(join(chunks.poll()));
+			}
+		} catch (IOException | RuntimeException e) {
+			// stops the chunks still running
+			this.aborted = true;
+			throw e;
+		}
+		return tmpRowNum;
+	}
+
+	private void writeGridDataRow(SpreadsheetMLWriter writer,
+			final ExportExcelSheetConfiguration<BEANTYPE> sheetConfiguration, final ColumnExportPlan<BEANTYPE> plan,
+			final BEANTYPE itemId, final int rowNum, final int dataRowContentStart) throws IOException {
+		writer.startRow(rowNum);
+		try {
+			for (int columns = 0; columns < plan.getColumnCount(); columns++) {
+				Object value = plan.getValue(columns, itemId);
+				XSSFCellStyle cellStyle = plan.getContentStyle(this.styleCache, columns, value,
+																rowNum - dataRowContentStart);
+
+				Object cellValue = getCellValue(sheetConfiguration, plan, itemId, columns, value);
+				if (cellValue instanceof String) {
+					writer.writeString(columns, (String) cellValue, getStyleIndex(cellStyle));
+				} else if (cellValue instanceof Date) {
+					XSSFCellStyle nativeStyle = getNativeCellStyle(sheetConfiguration, plan, columns, cellStyle);
+					writer.writeDate(columns, (Date) cellValue, getStyleIndex(nativeStyle));
+				} else if (cellValue instanceof Double) {
+					XSSFCellStyle nativeStyle = getNativeCellStyle(sheetConfiguration, plan, columns, cellStyle);
+					writer.writeNumber(columns, (Double) cellValue, getStyleIndex(nativeStyle));
+				} else {
+					writer.writeBlank(columns, getStyleIndex(cellStyle));
+				}
+			}
+		} catch (RuntimeException e) {
+			ExportToExcel.LOGGER.error("addGenericDataRow throws + " + e.getMessage(), e);
+		}
+	}
+
+	private static int getStyleIndex(XSSFCellStyle style) {
+		return style != null ? style.getIndex() & 0xFFFF : 0;
+	}
+
 	/************************************
 	 * Generic Code to add Content and Header Section
 	 *******************************************/
 
+	/**
+	 * Exports the workbook to the end-user. With {@link DownloadMode#STREAM}
+	 * the workbook is written into the download when the browser requests it,
+	 * otherwise it is generated into memory or a temporary file first, see
+	 * {@link ExportExcelConfiguration#setInMemoryOutputThreshold(int)}.
+	 */
+	@Override
+	public void export() {
+		if (this.exportExcelConfiguration.getDownloadMode() == DownloadMode.STREAM) {
+			sendStream();
+			return;
+		}
+
+		ExportOutput output = generateReportOutput();
+		if (output != null) {
+			sendOutput(output);
+		}
+	}
+
+	/**
+	 * Runs the export on the given executor, see
+	 * {@link #exportAsync(ExportType, ExportExcelConfiguration, Executor, ExportProgressListener)}.
+	 * A streamed download is written on the executor as well.
+	 * The sheets must not have been processed yet.
+	 *
+	 * @param executor
+	 *            the executor running the export
+	 * @param progressListener
+	 *            the progress listener, may be null
+	 * @return the export job
+	 * @throws IllegalStateException
+	 *             if there is no current UI
+	 */
+	protected ExportJob exportAsync(final Executor executor, final ExportProgressListener progressListener) {
+		ExportJob job = new ExportJob(getAsyncUI(), progressListener, this::cancel);
+		Map<Class<?>, CurrentInstance> currentInstances = CurrentInstance.getInstances();
+		executor.execute(() -> {
+			CurrentInstance.restoreInstances(currentInstances);
+			try {
+				runAsync(job, executor);
+			} finally {
+				CurrentInstance.clearAll();
+			}
+		});
+		return job;
+	}
+
+	/**
+	 * Runs the export of a job on the current thread and hands the download
+	 * over to the job.
+	 *
+	 * @param job
+	 *            the export job
+	 * @param executor
+	 *            the executor writing a streamed download
+	 */
+	private void runAsync(final ExportJob job, final Executor executor) {
+		this.progressListener = job::progress;
+		this.streamExecutor = executor;
+		try {
+			// a job cancelled while queued must not query the backend
+			checkCancelled();
+			processSheets();
+			if (this.exportExcelConfiguration.getDownloadMode() == DownloadMode.STREAM) {
+				job.complete(this::sendStream, this::releaseWorkbook);
+				return;
+			}
+
+			ExportOutput output = generateReportOutput();
+			if (output != null) {
+				job.complete(() -> sendOutput(output), output::release);
+			} else {
+				releaseWorkbook();
+				job.fail(new IOException("Generating the export file failed"));
+			}
+		} catch (ExportCancelledException e) {
+			LOGGER.debug("Export cancelled");
+			releaseWorkbook();
+			job.fail(e);
+		} catch (Throwable e) {
+			// errors as well, otherwise the job would never be done
+			LOGGER.error("Exporting failed", e);
+			releaseWorkbook();
+			job.fail(e);
+			if (e instanceof Error) {
+				throw (Error) e;
+			}
+		}
+	}
+
+	private void sendStream() {
+		sendStreamToUser(new PipedStreamSource(out -> {
+			long start = phaseStart();
+			try {
+				ensureSheetsProcessed();
+				ExportTrace.Span download = this.trace.downloadStarted();
+				if (this.metrics == null && download == ExportTrace.Span.NO_OP
+						&& !this.exportExcelConfiguration.isColumnProfiling()) {
+					// nothing to report
+					writeWorkbook(out);
+					return;
+				}
+				// the workbook is written into the download
+				CountingOutputStream countingOut = new CountingOutputStream(out);
+				writeWorkbook(countingOut);
+				countingOut.flush();
+				exportWritten(countingOut.getCount());
+				download.end(0, countingOut.getCount());
+				if (this.metrics != null) {
+					this.metrics.downloaded(System.nanoTime() - start, countingOut.getCount());
+				}
+			} catch (ExportCancelledException e) {
+				exportFailed(e);
+				releaseWorkbook();
+				throw e;
+			} catch (IOException | RuntimeException e) {
+				exportFailed(e);
+				throw e;
+			} finally {
+				if (this.exportWorkbook instanceof SXSSFWorkbook) {
+					// removes the temporary files holding the flushed rows
+					((SXSSFWorkbook) this.exportWorkbook).dispose();
+				}
+			}
+		}, PipedStreamSource.DEFAULT_PIPE_SIZE, this.streamExecutor), getExportFileName());
+	}
+
 	/**
 	 * Generate report file.
 	 *
@@ -492,31 +1906,55 @@ public class ExportToExcel<BEANTYPE> extends AbstractExportTo {
 	 */
 	@Override
 	protected File generateReportFile() {
+		ExportOutput output = writeReportOutput(0);
+		return output != null ? output.getFile() : null;
+	}
 
-		File tempFile = null;
+	/**
+	 * Generates the report into memory, or into a temporary file if it is
+	 * larger than the in-memory output threshold.
+	 *
+	 * @return the closed output, null if writing failed
+	 */
+	protected ExportOutput generateReportOutput() {
+		return writeReportOutput(this.exportExcelConfiguration.getInMemoryOutputThreshold());
+	}
 
-		FileOutputStream fileOut = null;
+	private ExportOutput writeReportOutput(final int threshold) {
+		ExportOutput output = null;
+		boolean written = false;
 		try {
-			tempFile = File.createTempFile("tmp", "." + this.exportType.getExtension());
-			fileOut = new FileOutputStream(tempFile);
-			this.workbook.write(fileOut);
+			output = new ExportOutput("." + this.exportType.getExtension(), threshold, getTempFileStore(),
+					BufferPool.getShared());
+			this.currentOutput = output;
+			writeWorkbook(output);
+			output.close();
+			written = true;
+			exportWritten(output.getSize());
+		} catch (final ExportCancelledException e) {
+			exportFailed(e);
+			releaseWorkbook();
+			throw e;
 		} catch (final IOException e) {
 			LOGGER.warn("Converting to XLS failed with IOException " + e);
+			exportFailed(e);
 			return null;
+		} catch (final RuntimeException e) {
+			exportFailed(e);
+			throw e;
 		} finally {
-			if (tempFile != null) {
-				tempFile.deleteOnExit();
+			this.currentOutput = null;
+			if (this.exportWorkbook instanceof SXSSFWorkbook) {
+				// removes the temporary files holding the flushed rows
+				((SXSSFWorkbook) this.exportWorkbook).dispose();
 			}
-			try {
-				if (fileOut != null) {
-					fileOut.close();
-				}
-			} catch (final IOException e) {
-				LOGGER.warn("Closing file to XLS failed with IOException " + e);
+			// a partially written output is of no use
+			if (!written && output != null) {
+				output.release();
 			}
 		}
 
-		return tempFile;
+		return output;
 	}
 
 	/**
@@ -529,9 +1967,48 @@ public class ExportToExcel<BEANTYPE> extends AbstractExportTo {
 	 */
 	@Override
 	protected boolean sendConverted(File file) {
-		return super.sendConvertedFileToUser(file, NameGenerationUtil
-			.getFilename(	this.exportExcelConfiguration.getExportFileName(),
-							this.exportExcelConfiguration.getMaxFilenameCalendarExtension(), this.exportType));
+		return super.sendConvertedFileToUser(file, getExportFileName(),
+				this.exportExcelConfiguration.getDownloadTimeToLive(),
+				this.exportExcelConfiguration.isRepeatableDownload());
+	}
+
+	private boolean sendOutput(final ExportOutput output) {
+		ExportTrace exportTrace = this.trace;
+		if (exportTrace != ExportTrace.NO_OP) {
+			output.setDownloadListener(new ExportOutput.DownloadListener() {
+
+				@Override
+				public ExportOutput.DownloadListener downloadStarted() {
+					ExportTrace.Span span = exportTrace.downloadStarted();
+					return (nanos, bytes) -> {
+						span.end(0, bytes);
+						downloaded(nanos, bytes);
+					};
+				}
+
+				@Override
+				public void downloaded(final long nanos, final long bytes) {
+					if (ExportToExcel.this.metrics != null) {
+						ExportToExcel.this.metrics.downloaded(nanos, bytes);
+					}
+				}
+			});
+		} else if (this.metrics != null) {
+			output.setDownloadListener(this.metrics::downloaded);
+		}
+		if (this.exportExcelConfiguration.getDownloadMode() == DownloadMode.DOWNLOAD_HANDLER) {
+			return sendOutputThroughHandler(output, getExportFileName(),
+					this.exportExcelConfiguration.getDownloadTimeToLive(),
+					this.exportExcelConfiguration.isRepeatableDownload());
+		}
+		return sendOutputToUser(output, getExportFileName(), this.exportExcelConfiguration.getDownloadTimeToLive(),
+				this.exportExcelConfiguration.isRepeatableDownload());
+	}
+
+	private String getExportFileName() {
+		return NameGenerationUtil.getFilename(	this.exportExcelConfiguration.getExportFileName(),
+												this.exportExcelConfiguration.getMaxFilenameCalendarExtension(),
+												this.exportType);
 	}
 
 }
@@ -20,6 +20,7 @@ import org.apache.poi.xssf.usermodel.XSSFFont;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.vaadin.addons.excelexporter.formatter.ColumnFormatter;
 import org.vaadin.addons.excelexporter.function.DataCellStyleGeneratorFunction;
+import org.vaadin.addons.excelexporter.function.RowParityCellStyleGeneratorFunction;
 import org.vaadin.addons.excelexporter.utils.ExcelStyleUtil;
 
 import com.vaadin.ui.Grid;
@@ -91,8 +92,9 @@ public class ExportExcelComponentConfiguration<BEANTYPE> {
 		return headerCellStyle;
 	};
 
-	/** The table content style function. */
-	private DataCellStyleGeneratorFunction contentStyleFunction = (workbook, columnId, value, rowNum) -> {
+	/** The table content style function, odd rows are shaded. */
+	private DataCellStyleGeneratorFunction contentStyleFunction = (RowParityCellStyleGeneratorFunction) (workbook,
+			columnId, value, rowNum) -> {
 		XSSFCellStyle cellStyle = workbook.createCellStyle();
 
 		if (rowNum % 2 == 1) {
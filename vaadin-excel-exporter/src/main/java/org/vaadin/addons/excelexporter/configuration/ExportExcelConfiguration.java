@@ -6,9 +6,18 @@ package org.vaadin.addons.excelexporter.configuration;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
 
 import net.karneim.pojobuilder.GeneratePojoBuilder;
 
+import org.vaadin.addons.excelexporter.metrics.ExportMetricsListener;
+import org.vaadin.addons.excelexporter.metrics.ExportTracer;
+import org.vaadin.addons.excelexporter.model.CellValueMode;
+import org.vaadin.addons.excelexporter.model.DownloadMode;
+import org.vaadin.addons.excelexporter.model.ExportEngine;
+import org.vaadin.addons.excelexporter.model.StyleCacheMode;
+
 /**
  * The Class ExportExcelConfiguration is used to configure the Excel Worksheet.
  * The filename, extension, generatedBy, and sheet configurations can also be
@@ -34,6 +43,78 @@ public class ExportExcelConfiguration<BEANTYPE> {
 	 */
 	private int maxFilenameCalendarExtension = Calendar.MINUTE;
 
+	/** The engine used to build the workbook. */
+	private ExportEngine exportEngine = ExportEngine.XSSF;
+
+	/**
+	 * The number of rows kept in memory by the SXSSF engine, older rows are
+	 * flushed to disk
+	 */
+	private int streamingRowWindowSize = 100;
+
+	/**
+	 * The number of items fetched per query from data providers which are not
+	 * a ListDataProvider
+	 */
+	private int dataProviderPageSize = 1000;
+
+	/**
+	 * The number of pages fetched ahead in a background thread while the
+	 * current page is written, 0 fetches every page in the exporting thread
+	 */
+	private int dataProviderPrefetchPages = 0;
+
+	/** The way styles returned by the style functions are shared. */
+	private StyleCacheMode styleCacheMode = StyleCacheMode.DESCRIPTOR;
+
+	/**
+	 * The locale used to format the values, null to use the locale of the
+	 * current UI
+	 */
+	private Locale locale;
+
+	/** The way date, integer and float values are written to the cells. */
+	private CellValueMode cellValueMode = CellValueMode.TEXT;
+
+	/** The way the export file is handed over to the browser. */
+	private DownloadMode downloadMode = DownloadMode.TEMPORARY_FILE;
+
+	/** Whether the sheets are rendered concurrently. */
+	private boolean parallelSheetGeneration = false;
+
+	/**
+	 * The executor rendering sheets concurrently, null to use the common
+	 * ForkJoinPool
+	 */
+	private Executor parallelExecutor;
+
+	/** The number of rows rendered per parallel task, 0 to render serially. */
+	private int parallelRowChunkSize = 0;
+
+	/**
+	 * The time in milliseconds a temporary file download is available, 0 to
+	 * keep it for the time to live of the temp file store
+	 */
+	private long downloadTimeToLive = 0;
+
+	/** Whether a temporary file download can be requested more than once. */
+	private boolean repeatableDownload = false;
+
+	/** The size in bytes up to which an export is kept in memory. */
+	private int inMemoryOutputThreshold = 1024 * 1024;
+
+	/** Whether the workbook is only generated once it is written. */
+	private boolean lazyGeneration = false;
+
+	/** The listener receiving the metrics of the export. */
+	private ExportMetricsListener metricsListener = ExportMetricsListener.NO_OP;
+
+	/** Whether the cell hot path is profiled per column. */
+	private boolean columnProfiling = false;
+
+	/** The tracer notified of the lifecycle of the export. */
+	private ExportTracer tracer = ExportTracer.NO_OP;
+
 	/**
 	 * Gets the export file name.
 	 *
@@ -101,4 +182,413 @@ public class ExportExcelConfiguration<BEANTYPE> {
 	public void setMaxFilenameCalendarExtension(int maxFilenameCalendarExtension) {
 		this.maxFilenameCalendarExtension = maxFilenameCalendarExtension;
 	}
+
+	/**
+	 * Gets the export engine.
+	 *
+	 * @return the export engine
+	 */
+	public ExportEngine getExportEngine() {
+		return this.exportEngine;
+	}
+
+	/**
+	 * Sets the export engine. Use {@link ExportEngine#SXSSF} for large exports,
+	 * note that autosizing of columns then only considers the rows which are
+	 * still in memory. The engine is ignored for xls exports, which are always
+	 * written in the binary format.
+	 *
+	 * @param exportEngine
+	 *            the new export engine
+	 */
+	public void setExportEngine(ExportEngine exportEngine) {
+		this.exportEngine = exportEngine;
+	}
+
+	/**
+	 * Gets the streaming row window size.
+	 *
+	 * @return the streaming row window size
+	 */
+	public int getStreamingRowWindowSize() {
+		return this.streamingRowWindowSize;
+	}
+
+	/**
+	 * Sets the number of rows kept in memory by the SXSSF engine. The DIRECT
+	 * engine estimates the column widths from this number of rows per sheet.
+	 *
+	 * @param streamingRowWindowSize
+	 *            the new streaming row window size
+	 */
+	public void setStreamingRowWindowSize(int streamingRowWindowSize) {
+		this.streamingRowWindowSize = streamingRowWindowSize;
+	}
+
+	/**
+	 * Gets the data provider page size.
+	 *
+	 * @return the data provider page size
+	 */
+	public int getDataProviderPageSize() {
+		return this.dataProviderPageSize;
+	}
+
+	/**
+	 * Sets the number of items fetched per query from data providers which are
+	 * not a ListDataProvider.
+	 *
+	 * @param dataProviderPageSize
+	 *            the new data provider page size
+	 */
+	public void setDataProviderPageSize(int dataProviderPageSize) {
+		this.dataProviderPageSize = dataProviderPageSize;
+	}
+
+	/**
+	 * Gets the number of data provider pages fetched ahead.
+	 *
+	 * @return the data provider prefetch pages
+	 */
+	public int getDataProviderPrefetchPages() {
+		return this.dataProviderPrefetchPages;
+	}
+
+	/**
+	 * Sets the number of pages fetched ahead in a background thread while the
+	 * current page is written. The data provider must then allow being called
+	 * from another thread, the current UI and VaadinSession are still
+	 * available there. 0 disables prefetching.
+	 *
+	 * @param dataProviderPrefetchPages
+	 *            the new data provider prefetch pages
+	 */
+	public void setDataProviderPrefetchPages(int dataProviderPrefetchPages) {
+		this.dataProviderPrefetchPages = dataProviderPrefetchPages;
+	}
+
+	/**
+	 * Gets the style cache mode.
+	 *
+	 * @return the style cache mode
+	 */
+	public StyleCacheMode getStyleCacheMode() {
+		return this.styleCacheMode;
+	}
+
+	/**
+	 * Sets the way styles returned by the style functions are shared between
+	 * cells. Defaults to {@link StyleCacheMode#DESCRIPTOR}.
+	 *
+	 * @param styleCacheMode
+	 *            the new style cache mode
+	 */
+	public void setStyleCacheMode(StyleCacheMode styleCacheMode) {
+		this.styleCacheMode = styleCacheMode;
+	}
+
+	/**
+	 * Gets the locale used to format the values.
+	 *
+	 * @return the locale
+	 */
+	public Locale getLocale() {
+		return this.locale;
+	}
+
+	/**
+	 * Sets the locale used to format dates and numbers. If not set the locale
+	 * of the current UI is used, or the default locale if there is none.
+	 *
+	 * @param locale
+	 *            the new locale
+	 */
+	public void setLocale(Locale locale) {
+		this.locale = locale;
+	}
+
+	/**
+	 * Gets the cell value mode.
+	 *
+	 * @return the cell value mode
+	 */
+	public CellValueMode getCellValueMode() {
+		return this.cellValueMode;
+	}
+
+	/**
+	 * Sets the way date, integer and float values are written to the cells.
+	 * With {@link CellValueMode#NATIVE} the columns can be calculated with in
+	 * Excel and are displayed in the locale of the reader.
+	 *
+	 * @param cellValueMode
+	 *            the new cell value mode
+	 */
+	public void setCellValueMode(CellValueMode cellValueMode) {
+		this.cellValueMode = cellValueMode;
+	}
+
+	/**
+	 * Gets the download mode.
+	 *
+	 * @return the download mode
+	 */
+	public DownloadMode getDownloadMode() {
+		return this.downloadMode;
+	}
+
+	/**
+	 * Sets the way the export file is handed over to the browser. With
+	 * {@link DownloadMode#STREAM} the file is written into the HTTP response
+	 * instead of a temporary file. Combined with {@link ExportEngine#DIRECT}
+	 * the rows are rendered while they are downloaded, without the session
+	 * lock. A streamed {@link ExportEngine#SXSSF} workbook can only be
+	 * downloaded once. With {@link DownloadMode#DOWNLOAD_HANDLER} the
+	 * generated file is served by a request handler of the session which
+	 * supports resuming interrupted downloads.
+	 *
+	 * @param downloadMode
+	 *            the new download mode
+	 */
+	public void setDownloadMode(DownloadMode downloadMode) {
+		this.downloadMode = downloadMode;
+	}
+
+	/**
+	 * Checks if the sheets are rendered concurrently.
+	 *
+	 * @return true, if the sheets are rendered concurrently
+	 */
+	public boolean isParallelSheetGeneration() {
+		return this.parallelSheetGeneration;
+	}
+
+	/**
+	 * Sets whether the sheets are rendered concurrently, each on its own
+	 * thread of the parallel executor. Only used with
+	 * {@link ExportEngine#DIRECT}, where each sheet is written independently
+	 * and the sheets are added to the file in order once rendered. The data
+	 * providers, column formatters and style functions must then be safe to
+	 * use from several threads; the style functions are called one at a time.
+	 *
+	 * @param parallelSheetGeneration
+	 *            the new parallel sheet generation
+	 */
+	public void setParallelSheetGeneration(boolean parallelSheetGeneration) {
+		this.parallelSheetGeneration = parallelSheetGeneration;
+	}
+
+	/**
+	 * Gets the executor rendering sheets concurrently.
+	 *
+	 * @return the parallel executor, null for the common ForkJoinPool
+	 */
+	public Executor getParallelExecutor() {
+		return this.parallelExecutor;
+	}
+
+	/**
+	 * Sets the executor rendering sheets concurrently. If not set the common
+	 * ForkJoinPool is used.
+	 *
+	 * @param parallelExecutor
+	 *            the new parallel executor
+	 */
+	public void setParallelExecutor(Executor parallelExecutor) {
+		this.parallelExecutor = parallelExecutor;
+	}
+
+	/**
+	 * Gets the number of rows rendered per parallel task.
+	 *
+	 * @return the parallel row chunk size
+	 */
+	public int getParallelRowChunkSize() {
+		return this.parallelRowChunkSize;
+	}
+
+	/**
+	 * Sets the number of rows rendered per task of the parallel executor, 0
+	 * renders the rows serially. Only used with {@link ExportEngine#DIRECT}:
+	 * the items of a grid are read in chunks, the rows of each chunk are
+	 * rendered on the parallel executor and added to the sheet in order, so
+	 * the file is the same as when rendered serially. Sheets rendered in
+	 * parallel render their rows serially. The requirements of
+	 * {@link #setParallelSheetGeneration(boolean)} apply.
+	 *
+	 * @param parallelRowChunkSize
+	 *            the new parallel row chunk size
+	 */
+	public void setParallelRowChunkSize(int parallelRowChunkSize) {
+		this.parallelRowChunkSize = parallelRowChunkSize;
+	}
+
+	/**
+	 * Gets the time in milliseconds a temporary file download is available.
+	 *
+	 * @return the download time to live
+	 */
+	public long getDownloadTimeToLive() {
+		return this.downloadTimeToLive;
+	}
+
+	/**
+	 * Sets the time in milliseconds a download through a temporary file is
+	 * available, measured from when it is handed over to the browser. Once it
+	 * has passed the file is deleted and the download answers with 404 Not
+	 * Found. 0 keeps the file for the time to live of the
+	 * {@link org.vaadin.addons.excelexporter.stream.TempFileStore}.
+	 *
+	 * @param downloadTimeToLive
+	 *            the new download time to live
+	 */
+	public void setDownloadTimeToLive(long downloadTimeToLive) {
+		this.downloadTimeToLive = downloadTimeToLive;
+	}
+
+	/**
+	 * Checks if a temporary file download can be requested more than once.
+	 *
+	 * @return true, if the download is repeatable
+	 */
+	public boolean isRepeatableDownload() {
+		return this.repeatableDownload;
+	}
+
+	/**
+	 * Sets whether a download through a temporary file can be requested more
+	 * than once, e.g. when the browser retries it. If false the file is
+	 * deleted once it has been downloaded, otherwise it is kept until the
+	 * download time to live has passed.
+	 *
+	 * @param repeatableDownload
+	 *            the new repeatable download
+	 */
+	public void setRepeatableDownload(boolean repeatableDownload) {
+		this.repeatableDownload = repeatableDownload;
+	}
+
+	/**
+	 * Gets the size in bytes up to which an export is kept in memory.
+	 *
+	 * @return the in memory output threshold
+	 */
+	public int getInMemoryOutputThreshold() {
+		return this.inMemoryOutputThreshold;
+	}
+
+	/**
+	 * Sets the size in bytes up to which an export is kept in pooled buffers
+	 * in memory instead of a temporary file. Larger exports are moved to a
+	 * temporary file once they exceed it, so at most this much heap is used
+	 * per export. 0 always writes a temporary file. Not used with
+	 * {@link DownloadMode#STREAM}.
+	 *
+	 * @param inMemoryOutputThreshold
+	 *            the new in memory output threshold
+	 */
+	public void setInMemoryOutputThreshold(int inMemoryOutputThreshold) {
+		this.inMemoryOutputThreshold = inMemoryOutputThreshold;
+	}
+
+	/**
+	 * Checks if the workbook is only generated once it is written.
+	 *
+	 * @return true, if lazy generation
+	 */
+	public boolean isLazyGeneration() {
+		return this.lazyGeneration;
+	}
+
+	/**
+	 * Sets whether the workbook is only generated once it is written. The
+	 * constructor of the exporter then only validates the configuration, the
+	 * workbook is created and filled by
+	 * {@link org.vaadin.addons.excelexporter.ExportToExcel#export()}, or with
+	 * {@link DownloadMode#STREAM} once the browser requests the download. An
+	 * exporter which is never exported costs nothing, so one can be prepared
+	 * for every grid in advance. The grids are read when the workbook is
+	 * generated.
+	 *
+	 * @param lazyGeneration
+	 *            the new lazy generation
+	 */
+	public void setLazyGeneration(boolean lazyGeneration) {
+		this.lazyGeneration = lazyGeneration;
+	}
+
+	/**
+	 * Gets the listener receiving the metrics of the export.
+	 *
+	 * @return the metrics listener
+	 */
+	public ExportMetricsListener getMetricsListener() {
+		return this.metricsListener;
+	}
+
+	/**
+	 * Sets the listener receiving the metrics of the export: the time spent
+	 * in each {@link org.vaadin.addons.excelexporter.model.ExportPhase}, the
+	 * rows and cells written, the size of the file and the styles and temp
+	 * disk space used. The same listener can be set on all configurations,
+	 * e.g. an {@link org.vaadin.addons.excelexporter.metrics.ExportMetricsAggregator}.
+	 * Nothing is measured with {@link ExportMetricsListener#NO_OP}, the
+	 * default.
+	 *
+	 * @param metricsListener
+	 *            the new metrics listener
+	 */
+	public void setMetricsListener(ExportMetricsListener metricsListener) {
+		this.metricsListener = metricsListener;
+	}
+
+	/**
+	 * Checks if the cell hot path is profiled per column.
+	 *
+	 * @return true, if the columns are profiled
+	 */
+	public boolean isColumnProfiling() {
+		return this.columnProfiling;
+	}
+
+	/**
+	 * Sets whether the cell hot path is profiled per column. The time spent in
+	 * each {@link org.vaadin.addons.excelexporter.model.ColumnOperation} and the
+	 * number of calls are accumulated per column, logged at the end of the
+	 * export and passed to the metrics listener with
+	 * {@link org.vaadin.addons.excelexporter.metrics.ExportMetrics#getColumnProfiles()}.
+	 * This reveals e.g. a slow value provider or formatter of a single column.
+	 * Profiling adds two clock reads per operation, without it the value
+	 * providers and formatters are called directly.
+	 *
+	 * @param columnProfiling
+	 *            the new column profiling
+	 */
+	public void setColumnProfiling(boolean columnProfiling) {
+		this.columnProfiling = columnProfiling;
+	}
+
+	/**
+	 * Gets the tracer notified of the lifecycle of the export.
+	 *
+	 * @return the tracer
+	 */
+	public ExportTracer getTracer() {
+		return this.tracer;
+	}
+
+	/**
+	 * Sets the tracer notified of the lifecycle of the export: its start and
+	 * end, the rendering of each sheet, each page fetched from a data
+	 * provider, the serialization of the workbook and the downloads. E.g.
+	 * the JfrExportTracer of the vaadin-excel-exporter-jfr module records
+	 * them as Java Flight Recorder events. Nothing is traced with
+	 * {@link ExportTracer#NO_OP}, the default.
+	 *
+	 * @param tracer
+	 *            the new tracer
+	 */
+	public void setTracer(ExportTracer tracer) {
+		this.tracer = tracer;
+	}
 }
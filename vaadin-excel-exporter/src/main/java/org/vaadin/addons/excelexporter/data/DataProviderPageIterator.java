@@ -0,0 +1,149 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.data;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+
+import org.vaadin.addons.excelexporter.metrics.ExportTrace;
+
+import com.vaadin.data.provider.DataProvider;
+import com.vaadin.data.provider.Query;
+import com.vaadin.data.provider.QuerySortOrder;
+
+/**
+ * Iterates over all items of a DataProvider by fetching them in pages of a
+ * fixed size. The next page is only fetched once all items of the current page
+ * have been consumed, so at most one page is held in memory.
+ * <p>
+ * The data ends with the first empty page. Back ends may return less items
+ * than requested, e.g. because of a maximum number of results, without the
+ * data being truncated.
+ *
+ * @param <BEANTYPE>
+ *            the generic type
+ */
+public class DataProviderPageIterator<BEANTYPE> implements Iterator<BEANTYPE>, AutoCloseable {
+
+	/** The data provider. */
+	private final DataProvider<BEANTYPE, ?> dataProvider;
+
+	/** The page size. */
+	private final int pageSize;
+
+	/** The back end sort orders. */
+	private final List<QuerySortOrder> sortOrders;
+
+	/** The in memory sorting. */
+	private final Comparator<BEANTYPE> inMemorySorting;
+
+	/** The offset of the next page. */
+	private int offset = 0;
+
+	/** The current page. */
+	private Iterator<BEANTYPE> page = Collections.emptyIterator();
+
+	/** Whether the last fetched page was the last one. */
+	private boolean lastPage = false;
+
+	/** The trace notified of the page fetches. */
+	private volatile ExportTrace trace = ExportTrace.NO_OP;
+
+	/**
+	 * Instantiates a new data provider page iterator.
+	 *
+	 * @param dataProvider
+	 *            the data provider
+	 * @param pageSize
+	 *            the number of items fetched per query
+	 * @param sortOrders
+	 *            the back end sort orders, may be null
+	 * @param inMemorySorting
+	 *            the in memory sorting, may be null
+	 */
+	public DataProviderPageIterator(final DataProvider<BEANTYPE, ?> dataProvider, final int pageSize,
+			final List<QuerySortOrder> sortOrders, final Comparator<BEANTYPE> inMemorySorting) {
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("pageSize must be at least 1 but was " + pageSize);
+		}
+		this.dataProvider = dataProvider;
+		this.pageSize = pageSize;
+		this.sortOrders = sortOrders != null ? sortOrders : Collections.emptyList();
+		this.inMemorySorting = inMemorySorting;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (!this.page.hasNext() && !this.lastPage) {
+			List<BEANTYPE> items = nextPage();
+			this.lastPage = items.isEmpty();
+			this.page = items.iterator();
+		}
+		return this.page.hasNext();
+	}
+
+	@Override
+	public BEANTYPE next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return this.page.next();
+	}
+
+	/**
+	 * Gets the next page. An empty page marks the end of the data.
+	 *
+	 * @return the items of the next page
+	 */
+	protected List<BEANTYPE> nextPage() {
+		List<BEANTYPE> items = fetchPage(this.offset);
+		this.offset += items.size();
+		return items;
+	}
+
+	/**
+	 * Fetches one page starting at the given offset.
+	 *
+	 * @param pageOffset
+	 *            the offset
+	 * @return the items of the page
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	protected List<BEANTYPE> fetchPage(final int pageOffset) {
+		ExportTrace.Span span = this.trace.pageFetchStarted(pageOffset, this.pageSize);
+		List<BEANTYPE> items = (List<BEANTYPE>) ((DataProvider) this.dataProvider)
+			.fetch(new Query<>(pageOffset, this.pageSize, this.sortOrders, this.inMemorySorting, null))
+			.collect(Collectors.toList());
+		span.end(items.size(), 0);
+		return items;
+	}
+
+	public int getPageSize() {
+		return this.pageSize;
+	}
+
+	/**
+	 * Sets the trace notified of each page fetched. Must be set before the
+	 * first page is fetched.
+	 *
+	 * @param trace
+	 *            the trace
+	 */
+	public void setTrace(final ExportTrace trace) {
+		this.trace = trace;
+	}
+
+	/**
+	 * Releases the resources held by this iterator. Pages are fetched in the
+	 * calling thread, so there is nothing to release here.
+	 */
+	@Override
+	public void close() {
+		// nothing to release
+	}
+}
@@ -0,0 +1,229 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.data;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.vaadin.data.provider.DataProvider;
+import com.vaadin.data.provider.QuerySortOrder;
+import com.vaadin.util.CurrentInstance;
+
+/**
+ * Iterates over all items of a DataProvider like
+ * {@link DataProviderPageIterator}, but fetches the following pages on an
+ * executor while the current page is consumed. The number of pages fetched
+ * ahead is bounded, the fetcher waits until the consumer catches up.
+ * <p>
+ * The current Vaadin instances (UI, VaadinSession, ...) of the creating thread
+ * are made available to the fetcher. The iterator must be closed to stop the
+ * fetcher when not all items have been consumed.
+ *
+ * @param <BEANTYPE>
+ *            the generic type
+ */
+public class PrefetchingDataProviderPageIterator<BEANTYPE> extends DataProviderPageIterator<BEANTYPE> {
+
+	/** The maximum number of fetchers waiting for a thread of the shared executor. */
+	private static final int SHARED_QUEUE_CAPACITY = 100;
+
+	/** The shared executor of the fetchers, created on first use. */
+	private static Executor sharedExecutor;
+
+	/** The pages fetched ahead, or the throwable thrown by the fetcher. */
+	private final BlockingQueue<Object> pages;
+
+	/** The current instances of the creating thread. */
+	private final Map<Class<?>, CurrentInstance> currentInstances;
+
+	/** The executor running the fetcher, null for the shared one. */
+	private final Executor executor;
+
+	/** Whether the fetcher has been started with the first page request. */
+	private boolean fetcherStarted;
+
+	/** The thread running the fetcher, null unless it is running. */
+	private Thread fetcherThread;
+
+	/** Whether the iterator has been closed. */
+	private boolean closed;
+
+	/**
+	 * Instantiates a new prefetching data provider page iterator.
+	 *
+	 * @param dataProvider
+	 *            the data provider
+	 * @param pageSize
+	 *            the number of items fetched per query
+	 * @param sortOrders
+	 *            the back end sort orders, may be null
+	 * @param inMemorySorting
+	 *            the in memory sorting, may be null
+	 * @param prefetchPages
+	 *            the maximum number of pages fetched ahead
+	 */
+	public PrefetchingDataProviderPageIterator(final DataProvider<BEANTYPE, ?> dataProvider, final int pageSize,
+			final List<QuerySortOrder> sortOrders, final Comparator<BEANTYPE> inMemorySorting,
+			final int prefetchPages) {
+		this(dataProvider, pageSize, sortOrders, inMemorySorting, prefetchPages, null);
+	}
+
+	/**
+	 * Instantiates a new prefetching data provider page iterator.
+	 *
+	 * @param dataProvider
+	 *            the data provider
+	 * @param pageSize
+	 *            the number of items fetched per query
+	 * @param sortOrders
+	 *            the back end sort orders, may be null
+	 * @param inMemorySorting
+	 *            the in memory sorting, may be null
+	 * @param prefetchPages
+	 *            the maximum number of pages fetched ahead
+	 * @param executor
+	 *            the executor running the fetcher, null for the shared one
+	 */
+	public PrefetchingDataProviderPageIterator(final DataProvider<BEANTYPE, ?> dataProvider, final int pageSize,
+			final List<QuerySortOrder> sortOrders, final Comparator<BEANTYPE> inMemorySorting,
+			final int prefetchPages, final Executor executor) {
+		super(dataProvider, pageSize, sortOrders, inMemorySorting);
+		if (prefetchPages < 1) {
+			throw new IllegalArgumentException("prefetchPages must be at least 1 but was " + prefetchPages);
+		}
+		this.pages = new ArrayBlockingQueue<>(prefetchPages);
+		this.currentInstances = CurrentInstance.getInstances();
+		this.executor = executor;
+	}
+
+	/**
+	 * Gets the executor shared by the fetchers of all sessions. Unless set
+	 * with {@link #setSharedExecutor(Executor)} it runs twice as many fetchers
+	 * at the same time as there are processors, up to 100 further fetchers
+	 * wait for a thread. A fetcher waits while its pages have not been
+	 * consumed, so the threads bound the number of exports prefetching at the
+	 * same time.
+	 *
+	 * @return the shared executor
+	 */
+	public static synchronized Executor getSharedExecutor() {
+		if (sharedExecutor == null) {
+			int threads = 2 * Runtime.getRuntime()
+				.availableProcessors();
+			AtomicInteger threadNumber = new AtomicInteger();
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<>(SHARED_QUEUE_CAPACITY), runnable -> {
+						Thread thread = new Thread(runnable,
+								"excel-export-prefetch-" + threadNumber.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					});
+			pool.allowCoreThreadTimeOut(true);
+			sharedExecutor = pool;
+		}
+		return sharedExecutor;
+	}
+
+	/**
+	 * Sets the executor shared by the fetchers of all sessions. The previous
+	 * executor is not shut down.
+	 *
+	 * @param executor
+	 *            the new shared executor
+	 */
+	public static synchronized void setSharedExecutor(final Executor executor) {
+		sharedExecutor = executor;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	protected List<BEANTYPE> nextPage() {
+		if (!this.fetcherStarted) {
+			this.fetcherStarted = true;
+			try {
+				(this.executor != null ? this.executor : getSharedExecutor()).execute(this::fetchPages);
+			} catch (RejectedExecutionException e) {
+				throw new IllegalStateException("Prefetching the pages has been rejected", e);
+			}
+		}
+
+		Object page;
+		try {
+			page = this.pages.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread()
+				.interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the next page", e);
+		}
+
+		if (page instanceof Throwable) {
+			throw new IllegalStateException("Fetching the next page failed", (Throwable) page);
+		}
+		return (List<BEANTYPE>) page;
+	}
+
+	/**
+	 * Fetches all pages one after the other until an empty page has been
+	 * fetched. Runs on the executor, any failure is
+	 * handed to the consumer so it never waits for a page which will not come.
+	 */
+	private void fetchPages() {
+		synchronized (this) {
+			if (this.closed) {
+				return;
+			}
+			this.fetcherThread = Thread.currentThread();
+		}
+		CurrentInstance.restoreInstances(this.currentInstances);
+		try {
+			int offset = 0;
+			List<BEANTYPE> items;
+			do {
+				items = fetchPage(offset);
+				offset += items.size();
+				this.pages.put(items);
+			} while (!items.isEmpty());
+		} catch (InterruptedException e) {
+			// closed by the consumer
+			Thread.currentThread()
+				.interrupt();
+		} catch (Throwable e) {
+			try {
+				this.pages.put(e);
+			} catch (InterruptedException ie) {
+				Thread.currentThread()
+					.interrupt();
+			}
+		} finally {
+			CurrentInstance.clearAll();
+			synchronized (this) {
+				this.fetcherThread = null;
+				// an interrupt by close() must not hit the next task of the thread
+				Thread.interrupted();
+			}
+		}
+	}
+
+	/**
+	 * Stops the fetcher and drops the pages fetched ahead.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			this.closed = true;
+			if (this.fetcherThread != null) {
+				this.fetcherThread.interrupt();
+			}
+		}
+		this.pages.clear();
+	}
+}
@@ -0,0 +1,12 @@
+package org.vaadin.addons.excelexporter.function;
+
+/**
+ * A content style function whose style only depends on the column id and on
+ * whether the row number is even or odd, not on the value. Unless the style
+ * cache mode is NONE, the styles of such a function are resolved once per
+ * column and row parity and the function is not applied for every cell. A
+ * lambda can be declared as such a function with a cast.
+ */
+@FunctionalInterface
+public interface RowParityCellStyleGeneratorFunction extends DataCellStyleGeneratorFunction {
+}
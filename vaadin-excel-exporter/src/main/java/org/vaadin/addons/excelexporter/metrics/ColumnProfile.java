@@ -0,0 +1,104 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.vaadin.addons.excelexporter.model.ColumnOperation;
+
+/**
+ * The Class ColumnProfile holds the time spent in each
+ * {@link ColumnOperation} and the number of calls for a column of an export.
+ * Instances are immutable.
+ */
+public class ColumnProfile {
+
+	/** The name of the sheet. */
+	private final String sheetName;
+
+	/** The column id. */
+	private final String columnId;
+
+	/** The nanoseconds by operation ordinal. */
+	private final long[] nanos;
+
+	/** The calls by operation ordinal. */
+	private final long[] calls;
+
+	ColumnProfile(final String sheetName, final String columnId, final long[] nanos, final long[] calls) {
+		this.sheetName = sheetName;
+		this.columnId = columnId;
+		this.nanos = nanos;
+		this.calls = calls;
+	}
+
+	/**
+	 * Gets the name of the sheet the column is exported to.
+	 *
+	 * @return the sheet name
+	 */
+	public String getSheetName() {
+		return this.sheetName;
+	}
+
+	/**
+	 * Gets the column id.
+	 *
+	 * @return the column id
+	 */
+	public String getColumnId() {
+		return this.columnId;
+	}
+
+	/**
+	 * Gets the time spent in the given operation, in nanoseconds.
+	 *
+	 * @param operation
+	 *            the operation
+	 * @return the nanos
+	 */
+	public long getNanos(final ColumnOperation operation) {
+		return this.nanos[operation.ordinal()];
+	}
+
+	/**
+	 * Gets the number of calls of the given operation.
+	 *
+	 * @param operation
+	 *            the operation
+	 * @return the calls
+	 */
+	public long getCalls(final ColumnOperation operation) {
+		return this.calls[operation.ordinal()];
+	}
+
+	/**
+	 * Gets the time spent in all operations, in nanoseconds.
+	 *
+	 * @return the total nanos
+	 */
+	public long getTotalNanos() {
+		long total = 0;
+		for (long operationNanos : this.nanos) {
+			total += operationNanos;
+		}
+		return total;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder(this.sheetName).append(" / ")
+			.append(this.columnId)
+			.append(':');
+		for (ColumnOperation operation : ColumnOperation.values()) {
+			builder.append(' ')
+				.append(operation)
+				.append('=')
+				.append(TimeUnit.NANOSECONDS.toMicros(getNanos(operation)))
+				.append("us/")
+				.append(getCalls(operation));
+		}
+		return builder.toString();
+	}
+}
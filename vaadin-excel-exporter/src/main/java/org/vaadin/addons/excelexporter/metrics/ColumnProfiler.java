@@ -0,0 +1,84 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.vaadin.addons.excelexporter.model.ColumnOperation;
+
+/**
+ * The Class ColumnProfiler accumulates the time spent in each
+ * {@link ColumnOperation} and the number of calls per column of a grid. The
+ * operations may be recorded from several threads.
+ */
+public class ColumnProfiler {
+
+	/** The column ids. */
+	private final String[] columnIds;
+
+	/** The nanoseconds by column and operation ordinal. */
+	private final LongAdder[][] nanos;
+
+	/** The calls by column and operation ordinal. */
+	private final LongAdder[][] calls;
+
+	/**
+	 * Instantiates a new column profiler.
+	 *
+	 * @param columnIds
+	 *            the column ids
+	 */
+	public ColumnProfiler(final String[] columnIds) {
+		this.columnIds = columnIds.clone();
+		int operations = ColumnOperation.values().length;
+		this.nanos = new LongAdder[columnIds.length][operations];
+		this.calls = new LongAdder[columnIds.length][operations];
+		for (int column = 0; column < columnIds.length; column++) {
+			for (int operation = 0; operation < operations; operation++) {
+				this.nanos[column][operation] = new LongAdder();
+				this.calls[column][operation] = new LongAdder();
+			}
+		}
+	}
+
+	/**
+	 * Records a call of an operation which started at the given time.
+	 *
+	 * @param column
+	 *            the column index
+	 * @param operation
+	 *            the operation
+	 * @param startNanos
+	 *            the {@link System#nanoTime()} the call started at
+	 */
+	public void record(final int column, final ColumnOperation operation, final long startNanos) {
+		long elapsed = System.nanoTime() - startNanos;
+		this.nanos[column][operation.ordinal()].add(elapsed);
+		this.calls[column][operation.ordinal()].increment();
+	}
+
+	/**
+	 * Gets the profiles of the columns recorded so far.
+	 *
+	 * @param sheetName
+	 *            the name of the sheet the columns are exported to
+	 * @return the column profiles
+	 */
+	public List<ColumnProfile> getProfiles(final String sheetName) {
+		int operations = ColumnOperation.values().length;
+		List<ColumnProfile> profiles = new ArrayList<>(this.columnIds.length);
+		for (int column = 0; column < this.columnIds.length; column++) {
+			long[] columnNanos = new long[operations];
+			long[] columnCalls = new long[operations];
+			for (int operation = 0; operation < operations; operation++) {
+				columnNanos[operation] = this.nanos[column][operation].sum();
+				columnCalls[operation] = this.calls[column][operation].sum();
+			}
+			profiles.add(new ColumnProfile(sheetName, this.columnIds[column], columnNanos, columnCalls));
+		}
+		return profiles;
+	}
+}
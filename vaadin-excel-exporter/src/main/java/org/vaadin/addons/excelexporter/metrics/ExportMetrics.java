@@ -0,0 +1,244 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.metrics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.vaadin.addons.excelexporter.model.ExportEngine;
+import org.vaadin.addons.excelexporter.model.ExportPhase;
+import org.vaadin.addons.excelexporter.model.ExportType;
+
+/**
+ * The Class ExportMetrics holds the metrics of a single export: the time spent
+ * in each phase, the number of rows and cells written, the size of the export
+ * file and the resources used. Instances are immutable.
+ */
+public class ExportMetrics {
+
+	/** The export type. */
+	private final ExportType exportType;
+
+	/** The export engine. */
+	private final ExportEngine exportEngine;
+
+	/** The time from the start of the export until the file was written. */
+	private final long durationNanos;
+
+	/** The time spent in each phase by ordinal. */
+	private final long[] phaseNanos;
+
+	/** The number of data rows written. */
+	private final long rowCount;
+
+	/** The number of data cells written. */
+	private final long cellCount;
+
+	/** The size of the export file. */
+	private final long outputBytes;
+
+	/** The number of cell styles created in the workbook. */
+	private final int styleCount;
+
+	/** The highest number of bytes held in temporary files by the export. */
+	private final long peakTempFileBytes;
+
+	/** The number of bytes sent to the browser. */
+	private final long downloadBytes;
+
+	/** The profiles of the columns, empty unless profiled. */
+	private final List<ColumnProfile> columnProfiles;
+
+	ExportMetrics(final ExportType exportType, final ExportEngine exportEngine, final long durationNanos,
+			final long[] phaseNanos, final long rowCount, final long cellCount, final long outputBytes,
+			final int styleCount, final long peakTempFileBytes, final long downloadBytes,
+			final List<ColumnProfile> columnProfiles) {
+		this.exportType = exportType;
+		this.exportEngine = exportEngine;
+		this.durationNanos = durationNanos;
+		this.phaseNanos = phaseNanos;
+		this.rowCount = rowCount;
+		this.cellCount = cellCount;
+		this.outputBytes = outputBytes;
+		this.styleCount = styleCount;
+		this.peakTempFileBytes = peakTempFileBytes;
+		this.downloadBytes = downloadBytes;
+		this.columnProfiles = Collections.unmodifiableList(columnProfiles);
+	}
+
+	/**
+	 * Gets a copy of these metrics with the time and the bytes of a download.
+	 */
+	ExportMetrics withDownload(final long nanos, final long bytes) {
+		long[] phases = this.phaseNanos.clone();
+		phases[ExportPhase.DOWNLOAD.ordinal()] = nanos;
+		return new ExportMetrics(this.exportType, this.exportEngine, this.durationNanos, phases, this.rowCount,
+				this.cellCount, this.outputBytes, this.styleCount, this.peakTempFileBytes, bytes,
+				this.columnProfiles);
+	}
+
+	/**
+	 * Gets the export type.
+	 *
+	 * @return the export type
+	 */
+	public ExportType getExportType() {
+		return this.exportType;
+	}
+
+	/**
+	 * Gets the export engine. Xls files are always written with HSSF.
+	 *
+	 * @return the export engine
+	 */
+	public ExportEngine getExportEngine() {
+		return this.exportEngine;
+	}
+
+	/**
+	 * Gets the time from the start of the export until the export file was
+	 * written, in nanoseconds. The download is not included.
+	 *
+	 * @return the duration
+	 */
+	public long getDurationNanos() {
+		return this.durationNanos;
+	}
+
+	/**
+	 * Gets the time spent in the given phase, in nanoseconds. Phases running
+	 * on several threads may take longer than the whole export.
+	 *
+	 * @param phase
+	 *            the phase
+	 * @return the phase time
+	 */
+	public long getPhaseNanos(final ExportPhase phase) {
+		return this.phaseNanos[phase.ordinal()];
+	}
+
+	/**
+	 * Gets the number of data rows written.
+	 *
+	 * @return the row count
+	 */
+	public long getRowCount() {
+		return this.rowCount;
+	}
+
+	/**
+	 * Gets the number of data cells written.
+	 *
+	 * @return the cell count
+	 */
+	public long getCellCount() {
+		return this.cellCount;
+	}
+
+	/**
+	 * Gets the number of data rows written per second of the duration.
+	 *
+	 * @return the rows per second
+	 */
+	public double getRowsPerSecond() {
+		return perSecond(this.rowCount, this.durationNanos);
+	}
+
+	/**
+	 * Gets the number of data cells written per second of the duration.
+	 *
+	 * @return the cells per second
+	 */
+	public double getCellsPerSecond() {
+		return perSecond(this.cellCount, this.durationNanos);
+	}
+
+	/**
+	 * Gets the size of the export file in bytes.
+	 *
+	 * @return the output bytes
+	 */
+	public long getOutputBytes() {
+		return this.outputBytes;
+	}
+
+	/**
+	 * Gets the number of cell styles the export created in the workbook.
+	 *
+	 * @return the style count
+	 */
+	public int getStyleCount() {
+		return this.styleCount;
+	}
+
+	/**
+	 * Gets the highest number of bytes the export held in temporary files at
+	 * once: the sheet parts rendered in parallel by the DIRECT engine and the
+	 * export file once it exceeds the in-memory threshold. The files of other
+	 * exports are not included, nor are the files the SXSSF engine keeps the
+	 * flushed rows in, which are managed by POI.
+	 *
+	 * @return the peak temp file bytes
+	 */
+	public long getPeakTempFileBytes() {
+		return this.peakTempFileBytes;
+	}
+
+	/**
+	 * Gets the number of bytes sent to the browser, 0 unless reported by
+	 * {@link ExportMetricsListener#downloadCompleted(ExportMetrics)}.
+	 *
+	 * @return the download bytes
+	 */
+	public long getDownloadBytes() {
+		return this.downloadBytes;
+	}
+
+	/**
+	 * Gets the profiles of the columns of all sheets, empty unless
+	 * {@link org.vaadin.addons.excelexporter.configuration.ExportExcelConfiguration#setColumnProfiling(boolean)}
+	 * is set.
+	 *
+	 * @return the column profiles
+	 */
+	public List<ColumnProfile> getColumnProfiles() {
+		return this.columnProfiles;
+	}
+
+	static double perSecond(final long count, final long nanos) {
+		return nanos > 0 ? count * (double) TimeUnit.SECONDS.toNanos(1) / nanos : 0;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("ExportMetrics [").append(this.exportType)
+			.append(' ')
+			.append(this.exportEngine)
+			.append(", duration=")
+			.append(TimeUnit.NANOSECONDS.toMillis(this.durationNanos))
+			.append("ms");
+		for (ExportPhase phase : ExportPhase.values()) {
+			builder.append(", ")
+				.append(phase)
+				.append('=')
+				.append(TimeUnit.NANOSECONDS.toMillis(this.phaseNanos[phase.ordinal()]))
+				.append("ms");
+		}
+		return builder.append(", rows=")
+			.append(this.rowCount)
+			.append(", cells=")
+			.append(this.cellCount)
+			.append(", outputBytes=")
+			.append(this.outputBytes)
+			.append(", styles=")
+			.append(this.styleCount)
+			.append(", peakTempFileBytes=")
+			.append(this.peakTempFileBytes)
+			.append(", downloadBytes=")
+			.append(this.downloadBytes)
+			.append(']')
+			.toString();
+	}
+}
@@ -0,0 +1,276 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.vaadin.addons.excelexporter.model.ExportPhase;
+
+/**
+ * The Class ExportMetricsAggregator sums up the metrics of all exports it
+ * listens to in memory, e.g. to be read periodically by a monitoring system.
+ * It can be shared by all exports of a server.
+ */
+public class ExportMetricsAggregator implements ExportMetricsListener {
+
+	/** The number of completed exports. */
+	private final LongAdder exportCount = new LongAdder();
+
+	/** The number of failed or cancelled exports. */
+	private final LongAdder failedCount = new LongAdder();
+
+	/** The number of downloads. */
+	private final LongAdder downloadCount = new LongAdder();
+
+	/** The sum of the durations of the completed exports. */
+	private final LongAdder durationNanos = new LongAdder();
+
+	/** The sum of the time spent in each phase by ordinal. */
+	private final LongAdder[] phaseNanos = new LongAdder[ExportPhase.values().length];
+
+	/** The number of data rows written. */
+	private final LongAdder rowCount = new LongAdder();
+
+	/** The number of data cells written. */
+	private final LongAdder cellCount = new LongAdder();
+
+	/** The sum of the sizes of the export files. */
+	private final LongAdder outputBytes = new LongAdder();
+
+	/** The number of bytes sent to the browsers. */
+	private final LongAdder downloadBytes = new LongAdder();
+
+	/** The sum of the cell styles created per export. */
+	private final LongAdder styleCount = new LongAdder();
+
+	/** The highest number of cell styles created by an export. */
+	private final AtomicLong maxStyleCount = new AtomicLong();
+
+	/** The highest number of bytes held in temporary files by an export. */
+	private final AtomicLong peakTempFileBytes = new AtomicLong();
+
+	/**
+	 * Instantiates a new export metrics aggregator.
+	 */
+	public ExportMetricsAggregator() {
+		for (int i = 0; i < this.phaseNanos.length; i++) {
+			this.phaseNanos[i] = new LongAdder();
+		}
+	}
+
+	@Override
+	public void exportCompleted(final ExportMetrics metrics) {
+		this.exportCount.increment();
+		this.durationNanos.add(metrics.getDurationNanos());
+		for (ExportPhase phase : ExportPhase.values()) {
+			this.phaseNanos[phase.ordinal()].add(metrics.getPhaseNanos(phase));
+		}
+		this.rowCount.add(metrics.getRowCount());
+		this.cellCount.add(metrics.getCellCount());
+		this.outputBytes.add(metrics.getOutputBytes());
+		this.styleCount.add(metrics.getStyleCount());
+		this.maxStyleCount.accumulateAndGet(metrics.getStyleCount(), Math::max);
+		this.peakTempFileBytes.accumulateAndGet(metrics.getPeakTempFileBytes(), Math::max);
+	}
+
+	@Override
+	public void exportFailed(final ExportMetrics metrics, final Throwable cause) {
+		this.failedCount.increment();
+	}
+
+	@Override
+	public void downloadCompleted(final ExportMetrics metrics) {
+		this.downloadCount.increment();
+		this.downloadBytes.add(metrics.getDownloadBytes());
+		this.phaseNanos[ExportPhase.DOWNLOAD.ordinal()].add(metrics.getPhaseNanos(ExportPhase.DOWNLOAD));
+	}
+
+	/**
+	 * Resets all metrics. Exports reported while resetting may be partially
+	 * counted.
+	 */
+	public void reset() {
+		this.exportCount.reset();
+		this.failedCount.reset();
+		this.downloadCount.reset();
+		this.durationNanos.reset();
+		for (LongAdder phase : this.phaseNanos) {
+			phase.reset();
+		}
+		this.rowCount.reset();
+		this.cellCount.reset();
+		this.outputBytes.reset();
+		this.downloadBytes.reset();
+		this.styleCount.reset();
+		this.maxStyleCount.set(0);
+		this.peakTempFileBytes.set(0);
+	}
+
+	/**
+	 * Gets the number of completed exports.
+	 *
+	 * @return the export count
+	 */
+	public long getExportCount() {
+		return this.exportCount.sum();
+	}
+
+	/**
+	 * Gets the number of failed or cancelled exports.
+	 *
+	 * @return the failed count
+	 */
+	public long getFailedCount() {
+		return this.failedCount.sum();
+	}
+
+	/**
+	 * Gets the number of downloads, including resumed and repeated ones.
+	 *
+	 * @return the download count
+	 */
+	public long getDownloadCount() {
+		return this.downloadCount.sum();
+	}
+
+	/**
+	 * Gets the sum of the durations of the completed exports, in
+	 * nanoseconds.
+	 *
+	 * @return the duration
+	 */
+	public long getDurationNanos() {
+		return this.durationNanos.sum();
+	}
+
+	/**
+	 * Gets the sum of the time spent in the given phase, in nanoseconds.
+	 *
+	 * @param phase
+	 *            the phase
+	 * @return the phase time
+	 */
+	public long getPhaseNanos(final ExportPhase phase) {
+		return this.phaseNanos[phase.ordinal()].sum();
+	}
+
+	/**
+	 * Gets the number of data rows written.
+	 *
+	 * @return the row count
+	 */
+	public long getRowCount() {
+		return this.rowCount.sum();
+	}
+
+	/**
+	 * Gets the number of data cells written.
+	 *
+	 * @return the cell count
+	 */
+	public long getCellCount() {
+		return this.cellCount.sum();
+	}
+
+	/**
+	 * Gets the number of data rows written per second of export duration.
+	 *
+	 * @return the rows per second
+	 */
+	public double getRowsPerSecond() {
+		return ExportMetrics.perSecond(getRowCount(), getDurationNanos());
+	}
+
+	/**
+	 * Gets the number of data cells written per second of export duration.
+	 *
+	 * @return the cells per second
+	 */
+	public double getCellsPerSecond() {
+		return ExportMetrics.perSecond(getCellCount(), getDurationNanos());
+	}
+
+	/**
+	 * Gets the sum of the sizes of the export files in bytes.
+	 *
+	 * @return the output bytes
+	 */
+	public long getOutputBytes() {
+		return this.outputBytes.sum();
+	}
+
+	/**
+	 * Gets the number of bytes sent to the browsers.
+	 *
+	 * @return the download bytes
+	 */
+	public long getDownloadBytes() {
+		return this.downloadBytes.sum();
+	}
+
+	/**
+	 * Gets the sum of the cell styles created per export.
+	 *
+	 * @return the style count
+	 */
+	public long getStyleCount() {
+		return this.styleCount.sum();
+	}
+
+	/**
+	 * Gets the highest number of cell styles created by an export.
+	 *
+	 * @return the max style count
+	 */
+	public long getMaxStyleCount() {
+		return this.maxStyleCount.get();
+	}
+
+	/**
+	 * Gets the highest number of bytes held in temporary files by a single
+	 * export, see {@link ExportMetrics#getPeakTempFileBytes()}.
+	 *
+	 * @return the peak temp file bytes
+	 */
+	public long getPeakTempFileBytes() {
+		return this.peakTempFileBytes.get();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("ExportMetricsAggregator [exports=").append(getExportCount())
+			.append(", failed=")
+			.append(getFailedCount())
+			.append(", downloads=")
+			.append(getDownloadCount())
+			.append(", duration=")
+			.append(TimeUnit.NANOSECONDS.toMillis(getDurationNanos()))
+			.append("ms");
+		for (ExportPhase phase : ExportPhase.values()) {
+			builder.append(", ")
+				.append(phase)
+				.append('=')
+				.append(TimeUnit.NANOSECONDS.toMillis(getPhaseNanos(phase)))
+				.append("ms");
+		}
+		return builder.append(", rows=")
+			.append(getRowCount())
+			.append(", cells=")
+			.append(getCellCount())
+			.append(String.format(", rowsPerSecond=%.0f, cellsPerSecond=%.0f", getRowsPerSecond(),
+									getCellsPerSecond()))
+			.append(", outputBytes=")
+			.append(getOutputBytes())
+			.append(", downloadBytes=")
+			.append(getDownloadBytes())
+			.append(", maxStyles=")
+			.append(getMaxStyleCount())
+			.append(", peakTempFileBytes=")
+			.append(getPeakTempFileBytes())
+			.append(']')
+			.toString();
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.metrics;
+
+/**
+ * The listener interface for receiving the metrics of exports, see
+ * {@link org.vaadin.addons.excelexporter.configuration.ExportExcelConfiguration#setMetricsListener(ExportMetricsListener)}.
+ * A listener can be shared by any number of exports and is called from the
+ * threads running them, it must be thread safe. Exceptions thrown by the
+ * listener are logged and do not affect the export.
+ * <p>
+ * Nothing is measured while the listener of an export is {@link #NO_OP}.
+ */
+public interface ExportMetricsListener {
+
+	/** The listener ignoring all metrics, the default. */
+	ExportMetricsListener NO_OP = new ExportMetricsListener() {
+	};
+
+	/**
+	 * Called when the export file has been written.
+	 *
+	 * @param metrics
+	 *            the metrics of the export
+	 */
+	default void exportCompleted(final ExportMetrics metrics) {
+	}
+
+	/**
+	 * Called when an export failed or has been cancelled.
+	 *
+	 * @param metrics
+	 *            the metrics of the export up to the failure
+	 * @param cause
+	 *            the cause of the failure
+	 */
+	default void exportFailed(final ExportMetrics metrics, final Throwable cause) {
+	}
+
+	/**
+	 * Called when the export file, or a range of it, has been sent to the
+	 * browser. A download which is resumed or repeated is reported again.
+	 *
+	 * @param metrics
+	 *            the metrics of the export with the time of the
+	 *            {@link org.vaadin.addons.excelexporter.model.ExportPhase#DOWNLOAD}
+	 *            and the bytes sent
+	 */
+	default void downloadCompleted(final ExportMetrics metrics) {
+	}
+}
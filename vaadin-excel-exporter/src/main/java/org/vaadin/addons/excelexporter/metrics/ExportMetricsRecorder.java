@@ -0,0 +1,238 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.metrics;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vaadin.addons.excelexporter.model.ExportEngine;
+import org.vaadin.addons.excelexporter.model.ExportPhase;
+import org.vaadin.addons.excelexporter.model.ExportType;
+
+/**
+ * The Class ExportMetricsRecorder measures a single export and reports its
+ * metrics to the listener. It is only created if the export has a listener,
+ * so exports without one are not measured at all. The phases may be
+ * recorded from several threads.
+ */
+public class ExportMetricsRecorder {
+
+	/** The Constant LOGGER. */
+	private static final Logger LOGGER = LoggerFactory.getLogger(ExportMetricsRecorder.class);
+
+	/** The listener. */
+	private final ExportMetricsListener listener;
+
+	/** The export type. */
+	private final ExportType exportType;
+
+	/** The export engine. */
+	private final ExportEngine exportEngine;
+
+	/** The time spent in each phase by ordinal. */
+	private final LongAdder[] phaseNanos = new LongAdder[ExportPhase.values().length];
+
+	/** The number of data rows written. */
+	private final LongAdder rowCount = new LongAdder();
+
+	/** The number of data cells written. */
+	private final LongAdder cellCount = new LongAdder();
+
+	/** Whether the completion or the failure of the export has been reported. */
+	private final AtomicBoolean finished = new AtomicBoolean();
+
+	/** The time the export started at, 0 until started. */
+	private volatile long startNanos;
+
+	/** The metrics of the completed export, null until completed. */
+	private volatile ExportMetrics metrics;
+
+	/**
+	 * Instantiates a new export metrics recorder.
+	 *
+	 * @param listener
+	 *            the listener
+	 * @param exportType
+	 *            the export type
+	 * @param exportEngine
+	 *            the export engine
+	 */
+	public ExportMetricsRecorder(final ExportMetricsListener listener, final ExportType exportType,
+			final ExportEngine exportEngine) {
+		this.listener = listener;
+		this.exportType = exportType;
+		this.exportEngine = exportEngine;
+		for (int i = 0; i < this.phaseNanos.length; i++) {
+			this.phaseNanos[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Creates the recorder of an export, null if the listener is
+	 * {@link ExportMetricsListener#NO_OP} or null.
+	 *
+	 * @param listener
+	 *            the listener, may be null
+	 * @param exportType
+	 *            the export type
+	 * @param exportEngine
+	 *            the export engine
+	 * @return the recorder or null
+	 */
+	public static ExportMetricsRecorder create(final ExportMetricsListener listener, final ExportType exportType,
+			final ExportEngine exportEngine) {
+		if (listener == null || listener == ExportMetricsListener.NO_OP) {
+			return null;
+		}
+		return new ExportMetricsRecorder(listener, exportType, exportEngine);
+	}
+
+	/**
+	 * Starts the duration of the export, if not started yet.
+	 */
+	public synchronized void start() {
+		if (this.startNanos == 0) {
+			this.startNanos = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Adds the time since the given start to a phase.
+	 *
+	 * @param phase
+	 *            the phase
+	 * @param phaseStartNanos
+	 *            the {@link System#nanoTime()} the phase started at
+	 */
+	public void phaseEnded(final ExportPhase phase, final long phaseStartNanos) {
+		this.phaseNanos[phase.ordinal()].add(System.nanoTime() - phaseStartNanos);
+	}
+
+	/**
+	 * Counts a data row.
+	 *
+	 * @param cells
+	 *            the number of cells of the row
+	 */
+	public void rowWritten(final int cells) {
+		this.rowCount.increment();
+		this.cellCount.add(cells);
+	}
+
+	/**
+	 * Wraps an iterator of items, the time spent in the iterator is added to
+	 * {@link ExportPhase#DATA_FETCH}.
+	 *
+	 * @param <T>
+	 *            the generic type
+	 * @param items
+	 *            the items
+	 * @return the timed iterator
+	 */
+	public <T> Iterator<T> timeDataFetch(final Iterator<T> items) {
+		return new Iterator<T>() {
+
+			@Override
+			public boolean hasNext() {
+				long start = System.nanoTime();
+				try {
+					return items.hasNext();
+				} finally {
+					phaseEnded(ExportPhase.DATA_FETCH, start);
+				}
+			}
+
+			@Override
+			public T next() {
+				long start = System.nanoTime();
+				try {
+					return items.next();
+				} finally {
+					phaseEnded(ExportPhase.DATA_FETCH, start);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Reports the completion of the export. Only the first completion or
+	 * failure of an export is reported.
+	 *
+	 * @param outputBytes
+	 *            the size of the export file
+	 * @param styleCount
+	 *            the number of cell styles created in the workbook
+	 * @param peakTempFileBytes
+	 *            the highest number of bytes held in temporary files by the
+	 *            export
+	 * @param columnProfiles
+	 *            the profiles of the columns, empty unless profiled
+	 */
+	public void completed(final long outputBytes, final int styleCount, final long peakTempFileBytes,
+			final List<ColumnProfile> columnProfiles) {
+		if (!this.finished.compareAndSet(false, true)) {
+			return;
+		}
+		this.metrics = snapshot(outputBytes, styleCount, peakTempFileBytes, columnProfiles);
+		try {
+			this.listener.exportCompleted(this.metrics);
+		} catch (RuntimeException e) {
+			LOGGER.warn("The metrics listener failed", e);
+		}
+	}
+
+	/**
+	 * Reports the failure of the export. Only the first completion or failure
+	 * of an export is reported.
+	 *
+	 * @param cause
+	 *            the cause of the failure
+	 */
+	public void failed(final Throwable cause) {
+		if (!this.finished.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			this.listener.exportFailed(snapshot(0, 0, 0, Collections.<ColumnProfile> emptyList()), cause);
+		} catch (RuntimeException e) {
+			LOGGER.warn("The metrics listener failed", e);
+		}
+	}
+
+	/**
+	 * Reports a download of the completed export.
+	 *
+	 * @param nanos
+	 *            the time the download took
+	 * @param bytes
+	 *            the number of bytes sent
+	 */
+	public void downloaded(final long nanos, final long bytes) {
+		ExportMetrics completed = this.metrics;
+		if (completed == null) {
+			return;
+		}
+		try {
+			this.listener.downloadCompleted(completed.withDownload(nanos, bytes));
+		} catch (RuntimeException e) {
+			LOGGER.warn("The metrics listener failed", e);
+		}
+	}
+
+	private ExportMetrics snapshot(final long outputBytes, final int styleCount, final long peakTempFileBytes,
+			final List<ColumnProfile> columnProfiles) {
+		long[] phases = new long[this.phaseNanos.length];
+		for (int i = 0; i < phases.length; i++) {
+			phases[i] = this.phaseNanos[i].sum();
+		}
+		long duration = this.startNanos != 0 ? System.nanoTime() - this.startNanos : 0;
+		return new ExportMetrics(this.exportType, this.exportEngine, duration, phases, this.rowCount.sum(),
+				this.cellCount.sum(), outputBytes, styleCount, peakTempFileBytes, 0, columnProfiles);
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.metrics;
+
+/**
+ * The interface ExportTrace follows a single export started by an
+ * {@link ExportTracer}. The work of the export is reported as spans, each
+ * span is started and ended by the same thread. Spans of sheets rendered in
+ * parallel and of pages fetched ahead are reported from the threads doing the
+ * work. A span which is not ended has failed.
+ */
+public interface ExportTrace {
+
+	/** The trace ignoring the export. */
+	ExportTrace NO_OP = new ExportTrace() {
+	};
+
+	/**
+	 * Called when a sheet starts being rendered.
+	 *
+	 * @param sheetName
+	 *            the name of the sheet
+	 * @return the span ended with the number of rows of the sheet
+	 */
+	default Span sheetStarted(final String sheetName) {
+		return Span.NO_OP;
+	}
+
+	/**
+	 * Called when a page of items is fetched from a data provider.
+	 *
+	 * @param offset
+	 *            the offset of the page
+	 * @param pageSize
+	 *            the page size
+	 * @return the span ended with the number of items fetched
+	 */
+	default Span pageFetchStarted(final int offset, final int pageSize) {
+		return Span.NO_OP;
+	}
+
+	/**
+	 * Called when the workbook starts being written to the export file.
+	 * Without an export workbook the sheets are rendered while the file is
+	 * written, see {@link org.vaadin.addons.excelexporter.model.ExportEngine#DIRECT}.
+	 *
+	 * @return the span ended with the number of bytes written
+	 */
+	default Span serializationStarted() {
+		return Span.NO_OP;
+	}
+
+	/**
+	 * Called when the export file, or a range of it, starts being sent to the
+	 * browser. A download which is resumed or repeated is reported again.
+	 *
+	 * @return the span ended with the number of bytes sent
+	 */
+	default Span downloadStarted() {
+		return Span.NO_OP;
+	}
+
+	/**
+	 * Called when the export file has been written.
+	 *
+	 * @param rowCount
+	 *            the number of data rows written
+	 * @param outputBytes
+	 *            the size of the export file
+	 */
+	default void exportCompleted(final long rowCount, final long outputBytes) {
+	}
+
+	/**
+	 * Called when the export failed or has been cancelled.
+	 *
+	 * @param cause
+	 *            the cause of the failure
+	 */
+	default void exportFailed(final Throwable cause) {
+	}
+
+	/**
+	 * A span of work of an export.
+	 */
+	@FunctionalInterface
+	interface Span {
+
+		/** The span ignoring its end. */
+		Span NO_OP = (count, bytes) -> {
+		};
+
+		/**
+		 * Ends the span.
+		 *
+		 * @param count
+		 *            the number of rows or items, 0 if not applicable
+		 * @param bytes
+		 *            the number of bytes, 0 if not applicable
+		 */
+		void end(long count, long bytes);
+	}
+}
@@ -0,0 +1,38 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.metrics;
+
+import org.vaadin.addons.excelexporter.model.ExportEngine;
+import org.vaadin.addons.excelexporter.model.ExportType;
+
+/**
+ * The interface ExportTracer is notified when an export starts and returns the
+ * {@link ExportTrace} following it, see
+ * {@link org.vaadin.addons.excelexporter.configuration.ExportExcelConfiguration#setTracer(ExportTracer)}.
+ * Tracers hand the lifecycle of the exports to a profiler or a tracing
+ * system, e.g. the Java Flight Recorder events of the
+ * vaadin-excel-exporter-jfr module. A tracer can be shared by any number of
+ * exports and is called from the threads running them, it must be thread
+ * safe and must not throw.
+ */
+@FunctionalInterface
+public interface ExportTracer {
+
+	/** The tracer ignoring all exports, the default. */
+	ExportTracer NO_OP = (exportType, exportEngine, sheetCount) -> ExportTrace.NO_OP;
+
+	/**
+	 * Called when an export starts rendering its sheets.
+	 *
+	 * @param exportType
+	 *            the export type
+	 * @param exportEngine
+	 *            the export engine, xls files are always written with HSSF
+	 * @param sheetCount
+	 *            the number of sheets
+	 * @return the trace of the export, notified until the export file has
+	 *         been downloaded
+	 */
+	ExportTrace exportStarted(ExportType exportType, ExportEngine exportEngine, int sheetCount);
+}
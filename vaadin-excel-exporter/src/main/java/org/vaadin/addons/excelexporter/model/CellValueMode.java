@@ -0,0 +1,21 @@
+/**
+ *
+ */
+package org.vaadin.addons.excelexporter.model;
+
+/**
+ * The Enum CellValueMode defines how the values of date, integer and float
+ * columns are written to the cells.
+ */
+public enum CellValueMode {
+
+	/** The values are formatted in the locale of the export and written as text. */
+	TEXT,
+
+	/**
+	 * The values are written as numeric cells with an Excel data format, the
+	 * display is left to Excel. Columns with a column formatter are still
+	 * written as text.
+	 */
+	NATIVE;
+}
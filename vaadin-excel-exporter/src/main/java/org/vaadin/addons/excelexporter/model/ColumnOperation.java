@@ -0,0 +1,28 @@
+/**
+ *
+ */
+package org.vaadin.addons.excelexporter.model;
+
+/**
+ * The Enum ColumnOperation defines the operations of the cell hot path which
+ * are profiled per column, see
+ * {@link org.vaadin.addons.excelexporter.configuration.ExportExcelConfiguration#setColumnProfiling(boolean)}.
+ */
+public enum ColumnOperation {
+
+	/** Reading the value with the value provider of the grid column. */
+	VALUE_PROVIDER,
+
+	/** Formatting dates and numbers for the locale of the export. */
+	FORMATTING,
+
+	/** Formatting the value with the ColumnFormatter of the column. */
+	COLUMN_FORMATTER,
+
+	/**
+	 * Applying the content style function. Depending on the
+	 * {@link StyleCacheMode} and the function it is not called for every
+	 * cell.
+	 */
+	STYLE_FUNCTION;
+}
@@ -0,0 +1,33 @@
+/**
+ *
+ */
+package org.vaadin.addons.excelexporter.model;
+
+/**
+ * The Enum DownloadMode defines how the export file is handed over to the
+ * browser.
+ */
+public enum DownloadMode {
+
+	/**
+	 * The export file is generated into memory or a temporary file first,
+	 * which is sent to the browser as a Vaadin resource and released
+	 * afterwards.
+	 */
+	TEMPORARY_FILE,
+
+	/**
+	 * The export file is generated like with {@link #TEMPORARY_FILE} and sent
+	 * by the
+	 * {@link org.vaadin.addons.excelexporter.stream.ExportDownloadHandler} of
+	 * the session, which transfers files with FileChannel.transferTo and
+	 * supports HTTP Range requests, so interrupted downloads can be resumed.
+	 */
+	DOWNLOAD_HANDLER,
+
+	/**
+	 * The export file is written straight into the HTTP response when the
+	 * browser requests the download, nothing is written to disk.
+	 */
+	STREAM;
+}
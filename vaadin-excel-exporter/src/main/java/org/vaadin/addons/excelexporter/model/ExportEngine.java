@@ -0,0 +1,28 @@
+/**
+ *
+ */
+package org.vaadin.addons.excelexporter.model;
+
+/**
+ * The Enum ExportEngine defines how the workbook is built in memory before it
+ * is written to the export file.
+ */
+public enum ExportEngine {
+
+	/** The whole workbook is kept in memory (XSSFWorkbook). */
+	XSSF,
+
+	/**
+	 * Only a window of rows is kept in memory, older rows are flushed to a
+	 * temporary file (SXSSFWorkbook).
+	 */
+	SXSSF,
+
+	/**
+	 * The sheets are written as SpreadsheetML straight into the export file
+	 * without a workbook object model, only used for xlsx exports. The rows are
+	 * rendered when the file is generated. The protected methods adding sheet
+	 * content to a workbook, such as addGridDataRow, are not called.
+	 */
+	DIRECT;
+}
@@ -0,0 +1,42 @@
+/**
+ *
+ */
+package org.vaadin.addons.excelexporter.model;
+
+/**
+ * The Enum ExportPhase defines the phases the time of an export is measured
+ * in, see {@link org.vaadin.addons.excelexporter.metrics.ExportMetrics}. The
+ * time of a phase is the sum of the time spent in it, on all threads.
+ */
+public enum ExportPhase {
+
+	/**
+	 * Reading the items of the grids, including the time spent waiting for
+	 * pages fetched from the data providers.
+	 */
+	DATA_FETCH,
+
+	/**
+	 * Rendering the data rows: reading and formatting the values, applying
+	 * the style functions and setting the cells. With
+	 * {@link ExportEngine#DIRECT} the rows are serialized into the file while
+	 * they are rendered.
+	 */
+	CELL_RENDERING,
+
+	/** Sizing the columns to their content. */
+	AUTOSIZE,
+
+	/**
+	 * Writing the workbook into the export file. With
+	 * {@link ExportEngine#DIRECT} only the parts of the file written after
+	 * the rows.
+	 */
+	WORKBOOK_WRITE,
+
+	/**
+	 * Sending the export file to the browser. With {@link DownloadMode#STREAM}
+	 * the file is written while it is sent, the time includes the generation.
+	 */
+	DOWNLOAD;
+}
@@ -0,0 +1,39 @@
+/**
+ *
+ */
+package org.vaadin.addons.excelexporter.model;
+
+/**
+ * The Enum StyleCacheMode defines how the cell styles returned by the style
+ * functions are shared between cells.
+ */
+public enum StyleCacheMode {
+
+	/**
+	 * The style functions are applied to the export workbook for every cell,
+	 * every created style ends up in the workbook.
+	 */
+	NONE,
+
+	/**
+	 * The style functions are applied for every cell to a separate workbook.
+	 * The returned styles are compared by their attributes and only distinct
+	 * styles and fonts are added to the export workbook.
+	 */
+	DESCRIPTOR,
+
+	/**
+	 * Like DESCRIPTOR, but the content style functions are only applied once
+	 * per column, value and row parity. Only use it if the content styles do
+	 * not depend on the row number beyond its parity.
+	 */
+	VALUES,
+
+	/**
+	 * Like DESCRIPTOR, but the style functions are only applied once per
+	 * column, value class and row parity (content) or per column (header and
+	 * footer). Only use it if the styles do not depend on the value itself or
+	 * on the row number beyond its parity.
+	 */
+	INPUTS;
+}
@@ -0,0 +1,26 @@
+/**
+ *
+ */
+package org.vaadin.addons.excelexporter.model;
+
+/**
+ * The Enum ValueKind defines how the values of a column are formatted, as
+ * configured by the formatting properties of the component configuration.
+ */
+public enum ValueKind {
+
+	/** Formatted with the date format of the sheet. */
+	DATE,
+
+	/** Formatted as localized integer. */
+	INTEGER,
+
+	/** Formatted as localized number with two fraction digits. */
+	FLOAT,
+
+	/** Boolean values. */
+	BOOLEAN,
+
+	/** Any other value, written using toString(). */
+	OTHER;
+}
@@ -0,0 +1,336 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.plan;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.vaadin.addons.excelexporter.configuration.ExportExcelComponentConfiguration;
+import org.vaadin.addons.excelexporter.formatter.ColumnFormatter;
+import org.vaadin.addons.excelexporter.function.DataCellStyleGeneratorFunction;
+import org.vaadin.addons.excelexporter.function.RowParityCellStyleGeneratorFunction;
+import org.vaadin.addons.excelexporter.metrics.ColumnProfiler;
+import org.vaadin.addons.excelexporter.model.ColumnOperation;
+import org.vaadin.addons.excelexporter.model.StyleCacheMode;
+import org.vaadin.addons.excelexporter.model.ValueKind;
+import org.vaadin.addons.excelexporter.style.StyleCache;
+
+import com.vaadin.ui.Grid;
+
+/**
+ * The Class ColumnExportPlan is the compiled form of an
+ * ExportExcelComponentConfiguration. Everything needed to write a cell is
+ * resolved once per export and held in arrays indexed by the column, so the
+ * row loop does not need any lookups. The content styles of a
+ * {@link RowParityCellStyleGeneratorFunction} are resolved per column and row
+ * parity as well, other content style functions are applied through the
+ * {@link StyleCache} for every cell.
+ * <p>
+ * A plan compiled with profiling wraps the value providers, the column
+ * formatters and the content style function with a {@link ColumnProfiler},
+ * the row loop is the same. Without profiling nothing is wrapped.
+ *
+ * @param <BEANTYPE>
+ *            the generic type
+ */
+public final class ColumnExportPlan<BEANTYPE> {
+
+	/** The column ids. */
+	private final String[] columnIds;
+
+	/** The value providers. */
+	private final Function<BEANTYPE, ?>[] valueProviders;
+
+	/** The value kinds. */
+	private final ValueKind[] valueKinds;
+
+	/** The column formatters, null if a column has none. */
+	private final ColumnFormatter[] formatters;
+
+	/** The content style function. */
+	private final DataCellStyleGeneratorFunction contentStyleFunction;
+
+	/**
+	 * The content styles by row parity and column, null unless they only
+	 * depend on the row parity.
+	 */
+	private final XSSFCellStyle[][] contentStyles;
+
+	/** The profiler of the columns, null unless profiling. */
+	private final ColumnProfiler profiler;
+
+	@SuppressWarnings("unchecked")
+	private ColumnExportPlan(final ExportExcelComponentConfiguration<BEANTYPE> componentConfiguration,
+			final boolean profiling, final StyleCache styleCache) {
+		Grid<BEANTYPE> grid = componentConfiguration.getGrid();
+		String[] visibleProperties = componentConfiguration.getVisibleProperties();
+
+		Set<String> dateProperties = new HashSet<>(componentConfiguration.getDateFormattingProperties());
+		Set<String> integerProperties = new HashSet<>(componentConfiguration.getIntegerFormattingProperties());
+		Set<String> floatProperties = new HashSet<>(componentConfiguration.getFloatFormattingProperties());
+		Set<String> booleanProperties = new HashSet<>(componentConfiguration.getBooleanFormattingProperties());
+
+		this.columnIds = visibleProperties.clone();
+		this.valueProviders = new Function[visibleProperties.length];
+		this.valueKinds = new ValueKind[visibleProperties.length];
+		this.formatters = new ColumnFormatter[visibleProperties.length];
+
+		for (int column = 0; column < visibleProperties.length; column++) {
+			String columnId = visibleProperties[column];
+			Grid.Column<BEANTYPE, ?> gridColumn = grid.getColumn(columnId);
+			if (gridColumn == null) {
+				throw new IllegalArgumentException("Visible property " + columnId + " is not a column of the grid");
+			}
+
+			this.valueProviders[column] = gridColumn.getValueProvider();
+			this.valueKinds[column] = getValueKind(columnId, dateProperties, integerProperties, floatProperties,
+													booleanProperties);
+			this.formatters[column] = componentConfiguration.getColumnFormatter(columnId);
+		}
+
+		if (profiling) {
+			this.profiler = new ColumnProfiler(this.columnIds);
+			profileColumns();
+			this.contentStyleFunction = profileStyleFunction(componentConfiguration.getContentStyleFunction());
+		} else {
+			this.profiler = null;
+			this.contentStyleFunction = componentConfiguration.getContentStyleFunction();
+		}
+
+		if (styleCache != null && styleCache.getMode() != StyleCacheMode.NONE
+				&& componentConfiguration.getContentStyleFunction() instanceof RowParityCellStyleGeneratorFunction) {
+			this.contentStyles = new XSSFCellStyle[2][this.columnIds.length];
+			for (int parity = 0; parity < 2; parity++) {
+				for (int column = 0; column < this.columnIds.length; column++) {
+					this.contentStyles[parity][column] = styleCache.getContentStyle(this.contentStyleFunction,
+																					this.columnIds[column], null,
+																					parity);
+				}
+			}
+		} else {
+			this.contentStyles = null;
+		}
+	}
+
+	/**
+	 * Wraps the value providers and the column formatters to record their
+	 * calls.
+	 */
+	private void profileColumns() {
+		ColumnProfiler columnProfiler = this.profiler;
+		for (int column = 0; column < this.columnIds.length; column++) {
+			int index = column;
+			Function<BEANTYPE, ?> valueProvider = this.valueProviders[column];
+			this.valueProviders[column] = item -> {
+				long start = System.nanoTime();
+				try {
+					return valueProvider.apply(item);
+				} finally {
+					columnProfiler.record(index, ColumnOperation.VALUE_PROVIDER, start);
+				}
+			};
+
+			ColumnFormatter formatter = this.formatters[column];
+			if (formatter != null) {
+				this.formatters[column] = (value, itemId, columnId) -> {
+					long start = System.nanoTime();
+					try {
+						return formatter.generateCell(value, itemId, columnId);
+					} finally {
+						columnProfiler.record(index, ColumnOperation.COLUMN_FORMATTER, start);
+					}
+				};
+			}
+		}
+	}
+
+	/**
+	 * Wraps the content style function to record its calls, by the column id
+	 * it is called with.
+	 */
+	private DataCellStyleGeneratorFunction profileStyleFunction(final DataCellStyleGeneratorFunction function) {
+		if (function == null) {
+			return null;
+		}
+		ColumnProfiler columnProfiler = this.profiler;
+		Map<String, Integer> columnIndexes = new HashMap<>();
+		for (int column = 0; column < this.columnIds.length; column++) {
+			columnIndexes.putIfAbsent(this.columnIds[column], column);
+		}
+		return (workbook, columnId, value, rowNum) -> {
+			long start = System.nanoTime();
+			try {
+				return function.apply(workbook, columnId, value, rowNum);
+			} finally {
+				Integer column = columnIndexes.get(columnId);
+				if (column != null) {
+					columnProfiler.record(column, ColumnOperation.STYLE_FUNCTION, start);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Compiles the given component configuration.
+	 *
+	 * @param componentConfiguration
+	 *            the component configuration
+	 * @return the column export plan
+	 */
+	public static <BEANTYPE> ColumnExportPlan<BEANTYPE> compile(
+			final ExportExcelComponentConfiguration<BEANTYPE> componentConfiguration) {
+		return new ColumnExportPlan<>(componentConfiguration, false, null);
+	}
+
+	/**
+	 * Compiles the given component configuration.
+	 *
+	 * @param componentConfiguration
+	 *            the component configuration
+	 * @param profiling
+	 *            whether the calls of each column are profiled
+	 * @return the column export plan
+	 */
+	public static <BEANTYPE> ColumnExportPlan<BEANTYPE> compile(
+			final ExportExcelComponentConfiguration<BEANTYPE> componentConfiguration, final boolean profiling) {
+		return new ColumnExportPlan<>(componentConfiguration, profiling, null);
+	}
+
+	/**
+	 * Compiles the given component configuration and resolves the content
+	 * styles which only depend on the row parity with the given style cache.
+	 *
+	 * @param componentConfiguration
+	 *            the component configuration
+	 * @param profiling
+	 *            whether the calls of each column are profiled
+	 * @param styleCache
+	 *            the style cache of the export workbook
+	 * @return the column export plan
+	 */
+	public static <BEANTYPE> ColumnExportPlan<BEANTYPE> compile(
+			final ExportExcelComponentConfiguration<BEANTYPE> componentConfiguration, final boolean profiling,
+			final StyleCache styleCache) {
+		return new ColumnExportPlan<>(componentConfiguration, profiling, styleCache);
+	}
+
+	private static ValueKind getValueKind(final String columnId, final Set<String> dateProperties,
+			final Set<String> integerProperties, final Set<String> floatProperties,
+			final Set<String> booleanProperties) {
+		// same precedence as the formatting properties always had
+		if (dateProperties.contains(columnId)) {
+			return ValueKind.DATE;
+		}
+		if (integerProperties.contains(columnId)) {
+			return ValueKind.INTEGER;
+		}
+		if (floatProperties.contains(columnId)) {
+			return ValueKind.FLOAT;
+		}
+		if (booleanProperties.contains(columnId)) {
+			return ValueKind.BOOLEAN;
+		}
+		return ValueKind.OTHER;
+	}
+
+	/**
+	 * Gets the number of columns.
+	 *
+	 * @return the column count
+	 */
+	public int getColumnCount() {
+		return this.columnIds.length;
+	}
+
+	/**
+	 * Gets the column id.
+	 *
+	 * @param column
+	 *            the column index
+	 * @return the column id
+	 */
+	public String getColumnId(final int column) {
+		return this.columnIds[column];
+	}
+
+	/**
+	 * Gets the value of the given column for the given item.
+	 *
+	 * @param column
+	 *            the column index
+	 * @param item
+	 *            the item
+	 * @return the value
+	 */
+	public Object getValue(final int column, final BEANTYPE item) {
+		return this.valueProviders[column].apply(item);
+	}
+
+	/**
+	 * Gets the value kind.
+	 *
+	 * @param column
+	 *            the column index
+	 * @return the value kind
+	 */
+	public ValueKind getValueKind(final int column) {
+		return this.valueKinds[column];
+	}
+
+	/**
+	 * Gets the column formatter.
+	 *
+	 * @param column
+	 *            the column index
+	 * @return the column formatter or null if the column has none
+	 */
+	public ColumnFormatter getFormatter(final int column) {
+		return this.formatters[column];
+	}
+
+	/**
+	 * Gets the style of a content cell, from the resolved content styles if
+	 * they only depend on the row parity, otherwise from the style cache.
+	 *
+	 * @param styleCache
+	 *            the style cache
+	 * @param column
+	 *            the column index
+	 * @param value
+	 *            the value
+	 * @param rowNum
+	 *            the row number relative to the first content row
+	 * @return the cell style
+	 */
+	public XSSFCellStyle getContentStyle(final StyleCache styleCache, final int column, final Object value,
+			final int rowNum) {
+		if (this.contentStyles != null) {
+			return this.contentStyles[rowNum % 2 == 0 ? 0 : 1][column];
+		}
+		return styleCache.getContentStyle(this.contentStyleFunction, this.columnIds[column], value, rowNum);
+	}
+
+	/**
+	 * Gets the content style function.
+	 *
+	 * @return the content style function
+	 */
+	public DataCellStyleGeneratorFunction getContentStyleFunction() {
+		return this.contentStyleFunction;
+	}
+
+	/**
+	 * Gets the profiler of the columns.
+	 *
+	 * @return the profiler, null unless the plan has been compiled with
+	 *         profiling
+	 */
+	public ColumnProfiler getProfiler() {
+		return this.profiler;
+	}
+}
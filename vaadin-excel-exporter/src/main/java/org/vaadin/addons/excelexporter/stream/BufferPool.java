@@ -0,0 +1,124 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.stream;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The Class BufferPool keeps the fixed size buffers of released in-memory
+ * exports for reuse, so small exports do not allocate their buffers over and
+ * over again. The number of buffers kept is bounded, further released buffers
+ * are left to the garbage collector.
+ */
+public class BufferPool {
+
+	/** The default size of a buffer. */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	/** The default maximum number of buffers kept. */
+	public static final int DEFAULT_MAX_POOLED = 64;
+
+	/** The shared pool, created on first use. */
+	private static BufferPool shared;
+
+	/** The size of a buffer. */
+	private final int bufferSize;
+
+	/** The buffers kept for reuse. */
+	private final BlockingQueue<byte[]> buffers;
+
+	/** The number of buffers allocated because the pool was empty. */
+	private final AtomicLong allocatedCount = new AtomicLong();
+
+	/**
+	 * Instantiates a new buffer pool.
+	 *
+	 * @param bufferSize
+	 *            the size of a buffer
+	 * @param maxPooled
+	 *            the maximum number of buffers kept
+	 */
+	public BufferPool(final int bufferSize, final int maxPooled) {
+		this.bufferSize = bufferSize;
+		this.buffers = new ArrayBlockingQueue<>(maxPooled);
+	}
+
+	/**
+	 * Gets the pool shared by all sessions. Unless set with
+	 * {@link #setShared(BufferPool)} it keeps up to 64 buffers of 64 KB.
+	 *
+	 * @return the shared pool
+	 */
+	public static synchronized BufferPool getShared() {
+		if (shared == null) {
+			shared = new BufferPool(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED);
+		}
+		return shared;
+	}
+
+	/**
+	 * Sets the pool shared by all sessions.
+	 *
+	 * @param pool
+	 *            the new shared pool
+	 */
+	public static synchronized void setShared(final BufferPool pool) {
+		shared = pool;
+	}
+
+	/**
+	 * Takes a buffer from the pool or allocates a new one.
+	 *
+	 * @return the buffer, its content is undefined
+	 */
+	public byte[] acquire() {
+		byte[] buffer = this.buffers.poll();
+		if (buffer == null) {
+			this.allocatedCount.incrementAndGet();
+			buffer = new byte[this.bufferSize];
+		}
+		return buffer;
+	}
+
+	/**
+	 * Returns a buffer to the pool. The buffer must not be used afterwards.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 */
+	public void release(final byte[] buffer) {
+		if (buffer.length == this.bufferSize) {
+			this.buffers.offer(buffer);
+		}
+	}
+
+	/**
+	 * Gets the size of a buffer.
+	 *
+	 * @return the buffer size
+	 */
+	public int getBufferSize() {
+		return this.bufferSize;
+	}
+
+	/**
+	 * Gets the number of buffers kept for reuse.
+	 *
+	 * @return the pooled count
+	 */
+	public int getPooledCount() {
+		return this.buffers.size();
+	}
+
+	/**
+	 * Gets the number of buffers allocated because the pool was empty.
+	 *
+	 * @return the allocated count
+	 */
+	public long getAllocatedCount() {
+		return this.allocatedCount.get();
+	}
+}
@@ -0,0 +1,49 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.stream;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The Class CountingOutputStream counts the bytes written to the wrapped
+ * stream.
+ */
+public class CountingOutputStream extends FilterOutputStream {
+
+	/** The number of bytes written. */
+	private long count;
+
+	/**
+	 * Instantiates a new counting output stream.
+	 *
+	 * @param out
+	 *            the wrapped stream
+	 */
+	public CountingOutputStream(final OutputStream out) {
+		super(out);
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		this.out.write(b);
+		this.count++;
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len) throws IOException {
+		this.out.write(b, off, len);
+		this.count += len;
+	}
+
+	/**
+	 * Gets the number of bytes written.
+	 *
+	 * @return the count
+	 */
+	public long getCount() {
+		return this.count;
+	}
+}
@@ -9,7 +9,8 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 
 /**
- * This input stream deletes the given file when the InputStream is closed; intended to be used with temporary files.
+ * This input stream deletes the given file from its {@link TempFileStore} when the InputStream is closed; intended to
+ * be used with temporary files.
  * 
  * Code obtained from: http://vaadin.com/forum/-/message_boards/view_message/159583
  * 
@@ -21,15 +22,20 @@ class DeletingFileInputStream extends FileInputStream {
     /** The file. */
     protected File file = null;
 
+    /** The store of the file. */
+    protected final TempFileStore store;
+
     /**
      * Instantiates a new deleting file input stream.
      * 
      * @param file the file
+     * @param store the store of the file
      * @throws FileNotFoundException the file not found exception
      */
-    public DeletingFileInputStream(final File file) throws FileNotFoundException {
+    public DeletingFileInputStream(final File file, final TempFileStore store) throws FileNotFoundException {
         super(file);
         this.file = file;
+        this.store = store;
     }
 
     /*
@@ -39,6 +45,6 @@ class DeletingFileInputStream extends FileInputStream {
     @Override
     public void close() throws IOException {
         super.close();
-        this.file.delete();
+        this.store.delete(this.file);
     }
 }
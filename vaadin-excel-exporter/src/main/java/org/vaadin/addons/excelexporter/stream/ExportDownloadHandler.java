@@ -0,0 +1,307 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.stream;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.vaadin.server.RequestHandler;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinResponse;
+import com.vaadin.server.VaadinSession;
+
+/**
+ * The Class ExportDownloadHandler serves the generated exports of a session
+ * outside of the Vaadin resource handling. Files are sent with
+ * {@link java.nio.channels.FileChannel#transferTo}, exports held in memory
+ * straight from their buffers.
+ * <p>
+ * Single byte ranges are supported (HTTP Range), so interrupted downloads of
+ * large workbooks can be resumed. A download which is not repeatable is
+ * released once each of its bytes has been sent, by one response or by the
+ * ranges of several; an interrupted download stays available until its time
+ * to live has passed.
+ * <p>
+ * The downloads are only served to the session they have been registered
+ * with, under a random token. The session is not locked while a download is
+ * sent.
+ */
+public class ExportDownloadHandler implements RequestHandler {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = -3658297457142802911L;
+
+	/** The Constant LOGGER. */
+	private static final Logger LOGGER = LoggerFactory.getLogger(ExportDownloadHandler.class);
+
+	/** The path of the downloads, relative to the application. */
+	public static final String PATH = "excel-export/";
+
+	/** The time to live of a download without its own, in milliseconds. */
+	private static final long DEFAULT_TIME_TO_LIVE = TempFileStore.DEFAULT_TIME_TO_LIVE;
+
+	/** The downloads by token. */
+	private final Map<String, Download> downloads = new ConcurrentHashMap<>();
+
+	/**
+	 * Gets the handler of the given session, the handler is added to the
+	 * session on first use. The session must be locked.
+	 *
+	 * @param session
+	 *            the session
+	 * @return the download handler
+	 */
+	public static ExportDownloadHandler get(final VaadinSession session) {
+		for (RequestHandler handler : session.getRequestHandlers()) {
+			if (handler instanceof ExportDownloadHandler) {
+				return (ExportDownloadHandler) handler;
+			}
+		}
+		ExportDownloadHandler handler = new ExportDownloadHandler();
+		session.addRequestHandler(handler);
+		return handler;
+	}
+
+	/**
+	 * Registers a download.
+	 *
+	 * @param output
+	 *            the closed output holding the content
+	 * @param fileName
+	 *            the file name
+	 * @param contentType
+	 *            the content type
+	 * @param timeToLive
+	 *            the time in milliseconds the download is available, 0 for an
+	 *            hour
+	 * @param repeatable
+	 *            whether the download can be requested more than once
+	 * @return the URL of the download, to be opened with
+	 *         {@link com.vaadin.server.Page#open(String, String, boolean)}
+	 */
+	public String register(final ExportOutput output, final String fileName, final String contentType,
+			final long timeToLive, final boolean repeatable) {
+		releaseExpired();
+
+		long expiresAt = System.currentTimeMillis() + (timeToLive > 0 ? timeToLive : DEFAULT_TIME_TO_LIVE);
+		output.keepUntil(expiresAt);
+		String token = UUID.randomUUID()
+			.toString();
+		this.downloads.put(token, new Download(output, fileName, contentType, expiresAt, repeatable));
+		return "app://" + PATH + token + "/" + encode(fileName);
+	}
+
+	/**
+	 * Gets the number of registered downloads, including expired ones which
+	 * have not been released yet.
+	 *
+	 * @return the download count
+	 */
+	public int getDownloadCount() {
+		return this.downloads.size();
+	}
+
+	@Override
+	public boolean handleRequest(final VaadinSession session, final VaadinRequest request,
+			final VaadinResponse response) throws IOException {
+		String pathInfo = request.getPathInfo();
+		if (pathInfo == null || !pathInfo.startsWith("/" + PATH)) {
+			return false;
+		}
+		releaseExpired();
+
+		String path = pathInfo.substring(PATH.length() + 1);
+		int slash = path.indexOf('/');
+		Download download = this.downloads.get(slash < 0 ? path : path.substring(0, slash));
+		if (download == null || download.output.isReleased()) {
+			response.sendError(404, "The download is no longer available");
+			return true;
+		}
+
+		long size = download.output.getSize();
+		long start = 0;
+		long end = size - 1;
+		int status = 200;
+		String range = request.getHeader("Range");
+		if (range != null && range.startsWith("bytes=") && range.indexOf(',') < 0) {
+			long[] bounds = parseRange(range.substring("bytes=".length()), size);
+			if (bounds == null) {
+				response.setHeader("Content-Range", "bytes */" + size);
+				response.sendError(416, "The range cannot be satisfied");
+				return true;
+			}
+			start = bounds[0];
+			end = bounds[1];
+			status = 206;
+			response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + size);
+		}
+
+		response.setStatus(status);
+		response.setContentType(download.contentType);
+		response.setHeader("Content-Disposition", "attachment;filename=" + download.fileName);
+		response.setHeader("Cache-Control", "private,no-cache,no-store");
+		response.setHeader("Accept-Ranges", "bytes");
+		response.setHeader("Content-Length", Long.toString(end - start + 1));
+		if ("HEAD".equals(request.getMethod())) {
+			return true;
+		}
+
+		// an interrupted download is kept, so the browser can resume it
+		WritableByteChannel channel = Channels.newChannel(response.getOutputStream());
+		download.output.transferTo(start, end - start + 1, channel);
+		LOGGER.debug("Sent bytes {}-{} of the download {}", start, end, download.fileName);
+		if (!download.repeatable && download.sent(start, end, size)) {
+			release(download);
+		}
+		return true;
+	}
+
+	/**
+	 * Parses a single byte range.
+	 *
+	 * @param range
+	 *            the range without the unit, e.g. "100-199", "100-" or "-100"
+	 * @param size
+	 *            the size of the content
+	 * @return the first and the last byte, null if the range cannot be
+	 *         satisfied
+	 */
+	static long[] parseRange(final String range, final long size) {
+		int dash = range.indexOf('-');
+		if (dash < 0) {
+			return null;
+		}
+		try {
+			String first = range.substring(0, dash)
+				.trim();
+			String last = range.substring(dash + 1)
+				.trim();
+			long start;
+			long end;
+			if (first.isEmpty()) {
+				// the last bytes
+				long suffix = Long.parseLong(last);
+				if (suffix <= 0) {
+					return null;
+				}
+				start = Math.max(0, size - suffix);
+				end = size - 1;
+			} else {
+				start = Long.parseLong(first);
+				end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+			}
+			return start <= end && start < size ? new long[] { start, end } : null;
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private void releaseExpired() {
+		long now = System.currentTimeMillis();
+		Iterator<Download> iterator = this.downloads.values()
+			.iterator();
+		while (iterator.hasNext()) {
+			Download download = iterator.next();
+			if (download.expiresAt <= now || download.output.isReleased()) {
+				iterator.remove();
+				download.output.release();
+			}
+		}
+	}
+
+	private void release(final Download download) {
+		this.downloads.values()
+			.remove(download);
+		download.output.release();
+	}
+
+	private static String encode(final String fileName) {
+		try {
+			return URLEncoder.encode(fileName, "UTF-8")
+				.replace("+", "%20");
+		} catch (UnsupportedEncodingException e) {
+			// UTF-8 is always supported
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * A registered download.
+	 */
+	private static class Download implements Serializable {
+
+		/** The Constant serialVersionUID. */
+		private static final long serialVersionUID = 6129408356163744519L;
+
+		/** The output holding the content. */
+		private final ExportOutput output;
+
+		/** The file name. */
+		private final String fileName;
+
+		/** The content type. */
+		private final String contentType;
+
+		/** The time the download expires at. */
+		private final long expiresAt;
+
+		/** Whether the download can be requested more than once. */
+		private final boolean repeatable;
+
+		/** The ranges of bytes sent completely, the first byte mapped to the last. */
+		private final TreeMap<Long, Long> sentRanges = new TreeMap<>();
+
+		private Download(final ExportOutput output, final String fileName, final String contentType,
+				final long expiresAt, final boolean repeatable) {
+			this.output = output;
+			this.fileName = fileName;
+			this.contentType = contentType;
+			this.expiresAt = expiresAt;
+			this.repeatable = repeatable;
+		}
+
+		/**
+		 * Records a range of bytes which has been sent completely, adjoining
+		 * and overlapping ranges are merged.
+		 *
+		 * @param start
+		 *            the first byte sent
+		 * @param end
+		 *            the last byte sent
+		 * @param size
+		 *            the size of the content
+		 * @return true, if each byte of the content has been sent
+		 */
+		private synchronized boolean sent(final long start, final long end, final long size) {
+			long first = start;
+			long last = end;
+			Map.Entry<Long, Long> previous = this.sentRanges.floorEntry(first);
+			if (previous != null && previous.getValue() >= first - 1) {
+				first = previous.getKey();
+				last = Math.max(last, previous.getValue());
+			}
+			Map.Entry<Long, Long> next;
+			while ((next = this.sentRanges.higherEntry(first)) != null && next.getKey() <= last + 1) {
+				last = Math.max(last, next.getValue());
+				this.sentRanges.remove(next.getKey());
+			}
+			this.sentRanges.put(first, last);
+
+			Long sentUpTo = this.sentRanges.get(0L);
+			return sentUpTo != null && sentUpTo >= size - 1;
+		}
+	}
+}
@@ -0,0 +1,584 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.stream;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Class ExportOutput holds a generated export until it is downloaded.
+ * <p>
+ * Up to the threshold the content is kept in buffers of a {@link BufferPool},
+ * so small exports do not touch the disk. Once the content exceeds the
+ * threshold it is moved to a file of a {@link TempFileStore} and the rest is
+ * written to the file, so large exports only use a bounded amount of heap.
+ * <p>
+ * The output is written once and closed, it can then be read any number of
+ * times until it is released. Released buffers are returned to the pool once
+ * the last stream reading them has been closed.
+ */
+public class ExportOutput extends OutputStream implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = -2716435473213640916L;
+
+	/** The size of the buffer in front of the file. */
+	private static final int FILE_BUFFER_SIZE = 64 * 1024;
+
+	/** The suffix of the file name. */
+	private final String suffix;
+
+	/** The number of bytes kept in memory at most. */
+	private final long threshold;
+
+	/** The store of the file, the shared store after deserialization. */
+	private transient TempFileStore store;
+
+	/** The pool of the buffers, the shared pool after deserialization. */
+	private transient BufferPool pool;
+
+	/** The buffers holding the content while in memory. */
+	private List<byte[]> buffers = new ArrayList<>();
+
+	/** The size of the content. */
+	private long size;
+
+	/** The file holding the content once spilled to disk. */
+	private File file;
+
+	/** The stream writing the file. */
+	private transient OutputStream fileOut;
+
+	/** Whether the output has been closed. */
+	private boolean closed;
+
+	/** Whether the output has been released. */
+	private boolean released;
+
+	/** The number of open streams reading the buffers. */
+	private transient int readers;
+
+	/** The listener notified of the downloads, null if none. */
+	private transient DownloadListener downloadListener;
+
+	/**
+	 * Instantiates a new export output.
+	 *
+	 * @param suffix
+	 *            the suffix of the file name, e.g. ".xlsx"
+	 * @param threshold
+	 *            the number of bytes kept in memory at most, 0 to always write
+	 *            to a file
+	 * @param store
+	 *            the store of the file
+	 * @param pool
+	 *            the pool of the buffers
+	 * @throws IOException
+	 *             if the threshold is 0 and the file cannot be created
+	 */
+	public ExportOutput(final String suffix, final long threshold, final TempFileStore store, final BufferPool pool)
+			throws IOException {
+		this.suffix = suffix;
+		this.threshold = threshold;
+		this.store = store;
+		this.pool = pool;
+		if (threshold <= 0) {
+			spill();
+		}
+	}
+
+	private ExportOutput(final File file, final TempFileStore store) {
+		this.suffix = null;
+		this.threshold = 0;
+		this.store = store;
+		this.file = file;
+		this.size = file.length();
+		this.closed = true;
+	}
+
+	/**
+	 * Wraps a file which has already been written.
+	 *
+	 * @param file
+	 *            the file
+	 * @param store
+	 *            the store of the file
+	 * @return the export output
+	 * @throws FileNotFoundException
+	 *             if the file does not exist
+	 */
+	public static ExportOutput ofFile(final File file, final TempFileStore store) throws FileNotFoundException {
+		if (!file.isFile()) {
+			throw new FileNotFoundException(file.getPath());
+		}
+		return new ExportOutput(file, store);
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public synchronized void write(final byte[] b, int off, int len) throws IOException {
+		if (this.closed) {
+			throw new IOException("The output has been closed");
+		}
+		if (this.file == null && this.size + len > this.threshold) {
+			spill();
+		}
+		if (this.file != null) {
+			this.fileOut.write(b, off, len);
+			this.size += len;
+			return;
+		}
+
+		int bufferSize = getPool().getBufferSize();
+		while (len > 0) {
+			int position = (int) (this.size % bufferSize);
+			if (position == 0 && this.size / bufferSize == this.buffers.size()) {
+				this.buffers.add(getPool().acquire());
+			}
+			int count = Math.min(len, bufferSize - position);
+			System.arraycopy(b, off, this.buffers.get(this.buffers.size() - 1), position, count);
+			this.size += count;
+			off += count;
+			len -= count;
+		}
+	}
+
+	@Override
+	public synchronized void flush() throws IOException {
+		if (this.fileOut != null) {
+			this.fileOut.flush();
+		}
+	}
+
+	/**
+	 * Closes the output, the content can be read afterwards.
+	 *
+	 * @throws IOException
+	 *             if the file cannot be written or exceeds the quota of the
+	 *             store; the output has been released
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		if (this.fileOut != null) {
+			try {
+				this.fileOut.close();
+				this.fileOut = null;
+				getStore().written(this.file);
+			} catch (final IOException e) {
+				release();
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Moves the content written so far to a file of the store.
+	 */
+	private void spill() throws IOException {
+		this.file = getStore().createFile(this.suffix);
+		try {
+			this.fileOut = new BufferedOutputStream(new FileOutputStream(this.file), FILE_BUFFER_SIZE);
+			int bufferSize = getPool().getBufferSize();
+			long remaining = this.size;
+			for (byte[] buffer : this.buffers) {
+				this.fileOut.write(buffer, 0, (int) Math.min(remaining, bufferSize));
+				remaining -= bufferSize;
+			}
+		} catch (final IOException e) {
+			if (this.fileOut != null) {
+				this.fileOut.close();
+			}
+			getStore().delete(this.file);
+			throw e;
+		} finally {
+			releaseBuffers();
+		}
+	}
+
+	/**
+	 * Opens a stream reading the content of the closed output.
+	 *
+	 * @param releaseOnClose
+	 *            whether the output is released once the stream is closed
+	 * @return the stream
+	 * @throws IOException
+	 *             if the output has been released, e.g. by the store after the
+	 *             time to live of its file
+	 */
+	public synchronized InputStream openStream(final boolean releaseOnClose) throws IOException {
+		if (!this.closed) {
+			throw new IOException("The output has not been closed");
+		}
+		if (this.released) {
+			throw new FileNotFoundException("The output has been released");
+		}
+		InputStream in;
+		if (this.file != null) {
+			if (releaseOnClose) {
+				this.released = true;
+				in = new DeletingFileInputStream(this.file, getStore());
+			} else {
+				in = new FileInputStream(this.file);
+			}
+		} else {
+			this.readers++;
+			if (releaseOnClose) {
+				this.released = true;
+			}
+			in = new BufferInputStream(releaseOnClose);
+		}
+		return this.downloadListener != null ? new ListenedInputStream(in, this.downloadListener) : in;
+	}
+
+	/**
+	 * Writes a range of the content of the closed output to the given channel.
+	 * A file is transferred with {@link FileChannel#transferTo}, which lets
+	 * the operating system copy the data if the target supports it.
+	 *
+	 * @param position
+	 *            the position of the first byte
+	 * @param count
+	 *            the number of bytes
+	 * @param target
+	 *            the target channel
+	 * @throws IOException
+	 *             if the output has been released or writing failed
+	 */
+	public void transferTo(long position, long count, final WritableByteChannel target) throws IOException {
+		long start = System.nanoTime();
+		long bytes = count;
+		File spilled;
+		DownloadListener listener;
+		synchronized (this) {
+			if (!this.closed) {
+				throw new IOException("The output has not been closed");
+			}
+			if (this.released) {
+				throw new FileNotFoundException("The output has been released");
+			}
+			spilled = this.file;
+			if (spilled == null) {
+				this.readers++;
+			}
+			listener = this.downloadListener;
+		}
+		if (listener != null) {
+			listener = listener.downloadStarted();
+		}
+
+		if (spilled != null) {
+			try (FileChannel channel = FileChannel.open(spilled.toPath(), StandardOpenOption.READ)) {
+				while (count > 0) {
+					long transferred = channel.transferTo(position, count, target);
+					if (transferred <= 0) {
+						throw new IOException("The file " + spilled + " has been truncated");
+					}
+					position += transferred;
+					count -= transferred;
+				}
+			}
+			if (listener != null) {
+				listener.downloaded(System.nanoTime() - start, bytes);
+			}
+			return;
+		}
+
+		try {
+			int bufferSize = getPool().getBufferSize();
+			while (count > 0) {
+				int offset = (int) (position % bufferSize);
+				int length = (int) Math.min(count, bufferSize - offset);
+				ByteBuffer buffer = ByteBuffer.wrap(getBuffer((int) (position / bufferSize)), offset, length);
+				while (buffer.hasRemaining()) {
+					target.write(buffer);
+				}
+				position += length;
+				count -= length;
+			}
+		} finally {
+			readerClosed(false);
+		}
+		if (listener != null) {
+			listener.downloaded(System.nanoTime() - start, bytes);
+		}
+	}
+
+	/**
+	 * Sets the listener notified whenever the content has been read, by a
+	 * stream of {@link #openStream(boolean)} once it is closed or by
+	 * {@link #transferTo(long, long, WritableByteChannel)}. The listener is
+	 * not serialized.
+	 *
+	 * @param downloadListener
+	 *            the download listener, null for none
+	 */
+	public synchronized void setDownloadListener(final DownloadListener downloadListener) {
+		this.downloadListener = downloadListener;
+	}
+
+	/**
+	 * Keeps a spilled file until the given time instead of the time to live
+	 * of the store.
+	 *
+	 * @param time
+	 *            the time in milliseconds since the epoch the file expires at
+	 */
+	public synchronized void keepUntil(final long time) {
+		if (this.file != null) {
+			getStore().keepUntil(this.file, time);
+		}
+	}
+
+	/**
+	 * Releases the output: the file is deleted, the buffers are returned to
+	 * the pool once no stream is reading them anymore.
+	 */
+	public synchronized void release() {
+		this.released = true;
+		if (this.fileOut != null) {
+			try {
+				this.fileOut.close();
+			} catch (final IOException e) {
+				// the file is deleted anyway
+			}
+			this.fileOut = null;
+		}
+		if (this.file != null) {
+			getStore().delete(this.file);
+		}
+		if (this.readers == 0) {
+			releaseBuffers();
+		}
+	}
+
+	/**
+	 * Checks if the output has been released, either explicitly or because
+	 * its file has been deleted.
+	 *
+	 * @return true, if released
+	 */
+	public synchronized boolean isReleased() {
+		return this.released || this.file != null && !this.file.exists();
+	}
+
+	/**
+	 * Checks if the content is held in memory.
+	 *
+	 * @return true, if in memory
+	 */
+	public synchronized boolean isInMemory() {
+		return this.file == null;
+	}
+
+	/**
+	 * Gets the file holding the content.
+	 *
+	 * @return the file, null while the content is held in memory
+	 */
+	public synchronized File getFile() {
+		return this.file;
+	}
+
+	/**
+	 * Gets the size of the content.
+	 *
+	 * @return the size in bytes
+	 */
+	public synchronized long getSize() {
+		return this.size;
+	}
+
+	private void releaseBuffers() {
+		for (byte[] buffer : this.buffers) {
+			getPool().release(buffer);
+		}
+		this.buffers = new ArrayList<>();
+	}
+
+	private synchronized void readerClosed(final boolean releaseOnClose) {
+		this.readers--;
+		if (releaseOnClose || this.released) {
+			release();
+		}
+	}
+
+	private synchronized byte[] getBuffer(final int index) {
+		return this.buffers.get(index);
+	}
+
+	private TempFileStore getStore() {
+		if (this.store == null) {
+			this.store = TempFileStore.getShared();
+		}
+		return this.store;
+	}
+
+	private BufferPool getPool() {
+		if (this.pool == null) {
+			this.pool = BufferPool.getShared();
+		}
+		return this.pool;
+	}
+
+	/**
+	 * The listener interface for receiving the downloads of an output.
+	 */
+	@FunctionalInterface
+	public interface DownloadListener {
+
+		/**
+		 * Called when the content, or a part of it, is opened for reading.
+		 *
+		 * @return the listener notified once this download has been read, by
+		 *         default this listener
+		 */
+		default DownloadListener downloadStarted() {
+			return this;
+		}
+
+		/**
+		 * Called when the content, or a part of it, has been read.
+		 *
+		 * @param nanos
+		 *            the time from opening the content until it was read
+		 * @param bytes
+		 *            the number of bytes read
+		 */
+		void downloaded(long nanos, long bytes);
+	}
+
+	/**
+	 * Counts the bytes read and notifies the listener once closed.
+	 */
+	private static class ListenedInputStream extends FilterInputStream {
+
+		/** The listener. */
+		private final DownloadListener listener;
+
+		/** The time the stream was opened at. */
+		private final long start = System.nanoTime();
+
+		/** The number of bytes read. */
+		private long bytes;
+
+		/** Whether the stream has been closed. */
+		private boolean streamClosed;
+
+		private ListenedInputStream(final InputStream in, final DownloadListener listener) {
+			super(in);
+			this.listener = listener.downloadStarted();
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				this.bytes++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			int count = super.read(b, off, len);
+			if (count > 0) {
+				this.bytes += count;
+			}
+			return count;
+		}
+
+		@Override
+		public long skip(final long n) throws IOException {
+			long skipped = super.skip(n);
+			this.bytes += skipped;
+			return skipped;
+		}
+
+		@Override
+		public void close() throws IOException {
+			super.close();
+			if (!this.streamClosed) {
+				this.streamClosed = true;
+				this.listener.downloaded(System.nanoTime() - this.start, this.bytes);
+			}
+		}
+	}
+
+	/**
+	 * Reads the content held in the buffers.
+	 */
+	private class BufferInputStream extends InputStream {
+
+		/** Whether the output is released once the stream is closed. */
+		private final boolean releaseOnClose;
+
+		/** The position of the next byte. */
+		private long position;
+
+		/** Whether the stream has been closed. */
+		private boolean streamClosed;
+
+		private BufferInputStream(final boolean releaseOnClose) {
+			this.releaseOnClose = releaseOnClose;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			if (this.streamClosed) {
+				throw new IOException("The stream has been closed");
+			}
+			long remaining = ExportOutput.this.size - this.position;
+			if (remaining <= 0) {
+				return len == 0 ? 0 : -1;
+			}
+			int bufferSize = getPool().getBufferSize();
+			int offset = (int) (this.position % bufferSize);
+			int count = (int) Math.min(Math.min(len, remaining), bufferSize - offset);
+			System.arraycopy(getBuffer((int) (this.position / bufferSize)), offset, b, off, count);
+			this.position += count;
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return (int) Math.min(Integer.MAX_VALUE, ExportOutput.this.size - this.position);
+		}
+
+		@Override
+		public void close() {
+			if (!this.streamClosed) {
+				this.streamClosed = true;
+				readerClosed(this.releaseOnClose);
+			}
+		}
+	}
+}
@@ -0,0 +1,249 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.stream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.vaadin.server.StreamResource;
+import com.vaadin.util.CurrentInstance;
+
+/**
+ * The Class PipedStreamSource produces the content of a download while it is
+ * sent. The first call to {@link #getStream()} runs the writer on an executor,
+ * it writes the content into a pipe and the returned stream reads from the
+ * other end of the pipe. Nothing is written to disk. The content is produced
+ * only once, later calls get no stream.
+ * <p>
+ * The current Vaadin instances (UI, VaadinSession, ...) of the thread calling
+ * {@link #getStream()} are made available to the writer, the session is not
+ * locked while the content is written. If writing fails, reading the stream
+ * fails with an IOException once the written part has been read.
+ * <p>
+ * The writer usually refers to the exporter and is not serialized with the
+ * session. A source which has been deserialized gets no stream.
+ */
+public class PipedStreamSource implements StreamResource.StreamSource {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = -4203395867524137262L;
+
+	/** The Constant LOGGER. */
+	private static final Logger LOGGER = LoggerFactory.getLogger(PipedStreamSource.class);
+
+	/** The default size of the pipe buffer. */
+	public static final int DEFAULT_PIPE_SIZE = 64 * 1024;
+
+	/** The maximum number of writers waiting for a thread of the shared executor. */
+	private static final int SHARED_QUEUE_CAPACITY = 100;
+
+	/** The shared executor of the writers, created on first use. */
+	private static Executor sharedExecutor;
+
+	/** The writer of the content, null after deserialization. */
+	private final transient ContentWriter contentWriter;
+
+	/** The size of the pipe buffer. */
+	private final int pipeSize;
+
+	/** The executor running the writer, null for the shared one. */
+	private final transient Executor executor;
+
+	/** Whether the stream has been requested. */
+	private final AtomicBoolean streamed = new AtomicBoolean();
+
+	/**
+	 * Instantiates a new piped stream source.
+	 *
+	 * @param contentWriter
+	 *            the writer of the content
+	 */
+	public PipedStreamSource(final ContentWriter contentWriter) {
+		this(contentWriter, DEFAULT_PIPE_SIZE);
+	}
+
+	/**
+	 * Instantiates a new piped stream source.
+	 *
+	 * @param contentWriter
+	 *            the writer of the content
+	 * @param pipeSize
+	 *            the size of the pipe buffer
+	 */
+	public PipedStreamSource(final ContentWriter contentWriter, final int pipeSize) {
+		this(contentWriter, pipeSize, null);
+	}
+
+	/**
+	 * Instantiates a new piped stream source.
+	 *
+	 * @param contentWriter
+	 *            the writer of the content
+	 * @param pipeSize
+	 *            the size of the pipe buffer
+	 * @param executor
+	 *            the executor running the writer, null for the shared one
+	 */
+	public PipedStreamSource(final ContentWriter contentWriter, final int pipeSize, final Executor executor) {
+		this.contentWriter = contentWriter;
+		this.pipeSize = pipeSize;
+		this.executor = executor;
+	}
+
+	/**
+	 * Gets the executor shared by the writers of all sessions. Unless set with
+	 * {@link #setSharedExecutor(Executor)} it runs as many writers at the same
+	 * time as there are processors, up to 100 further writers wait for a
+	 * thread. A writer which is rejected fails its download.
+	 *
+	 * @return the shared executor
+	 */
+	public static synchronized Executor getSharedExecutor() {
+		if (sharedExecutor == null) {
+			int threads = Runtime.getRuntime()
+				.availableProcessors();
+			AtomicInteger threadNumber = new AtomicInteger();
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<>(SHARED_QUEUE_CAPACITY), runnable -> {
+						Thread thread = new Thread(runnable, "excel-export-stream-" + threadNumber.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					});
+			executor.allowCoreThreadTimeOut(true);
+			sharedExecutor = executor;
+		}
+		return sharedExecutor;
+	}
+
+	/**
+	 * Sets the executor shared by the writers of all sessions. The previous
+	 * executor is not shut down.
+	 *
+	 * @param executor
+	 *            the new shared executor
+	 */
+	public static synchronized void setSharedExecutor(final Executor executor) {
+		sharedExecutor = executor;
+	}
+
+	/**
+	 * Starts writing the content and returns the stream reading it. The
+	 * content is only written for the first request.
+	 *
+	 * @return the stream, null if it has already been requested
+	 */
+	@Override
+	public PipedResultStream getStream() {
+		if (!this.streamed.compareAndSet(false, true)) {
+			LOGGER.debug("The download has already been streamed");
+			return null;
+		}
+		if (this.contentWriter == null) {
+			LOGGER.warn("The download cannot be streamed after the session has been deserialized");
+			return null;
+		}
+
+		PipedResultStream in = new PipedResultStream(this.pipeSize);
+		PipedOutputStream out;
+		try {
+			out = new PipedOutputStream(in);
+		} catch (IOException e) {
+			// cannot happen, the pipe has just been created
+			throw new IllegalStateException(e);
+		}
+
+		Map<Class<?>, CurrentInstance> currentInstances = CurrentInstance.getInstances();
+		try {
+			(this.executor != null ? this.executor : getSharedExecutor()).execute(() -> {
+				CurrentInstance.restoreInstances(currentInstances);
+				try {
+					this.contentWriter.write(out);
+				} catch (Throwable e) {
+					// errors as well, a truncated file must not look complete
+					LOGGER.warn("Writing the download failed", e);
+					in.failure = e;
+				} finally {
+					closePipe(out);
+					CurrentInstance.clearAll();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			LOGGER.warn("Writing the download has been rejected", e);
+			in.failure = e;
+			closePipe(out);
+		}
+
+		return in;
+	}
+
+	private static void closePipe(final PipedOutputStream out) {
+		try {
+			out.close();
+		} catch (IOException e) {
+			LOGGER.debug("Closing the pipe failed", e);
+		}
+	}
+
+	/**
+	 * The writer of the content of a download.
+	 */
+	@FunctionalInterface
+	public interface ContentWriter {
+
+		/**
+		 * Writes the content to the given stream. The stream is closed
+		 * afterwards.
+		 *
+		 * @param out
+		 *            the stream
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		void write(OutputStream out) throws IOException;
+	}
+
+	/**
+	 * The reading end of the pipe, reports a failure of the writer instead of
+	 * the end of the stream.
+	 */
+	public static class PipedResultStream extends PipedInputStream {
+
+		/** The exception or error thrown by the writer. */
+		private volatile Throwable failure;
+
+		private PipedResultStream(final int pipeSize) {
+			super(pipeSize);
+		}
+
+		@Override
+		public synchronized int read() throws IOException {
+			return checkFailure(super.read());
+		}
+
+		@Override
+		public synchronized int read(byte[] b, int off, int len) throws IOException {
+			return checkFailure(super.read(b, off, len));
+		}
+
+		private int checkFailure(final int result) throws IOException {
+			if (result == -1 && this.failure != null) {
+				throw new IOException("Writing the download failed", this.failure);
+			}
+			return result;
+		}
+	}
+}
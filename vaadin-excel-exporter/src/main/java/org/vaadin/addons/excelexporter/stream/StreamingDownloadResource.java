@@ -0,0 +1,64 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.stream;
+
+import java.io.InputStream;
+
+import com.vaadin.server.DownloadStream;
+import com.vaadin.server.StreamResource;
+
+/**
+ * The Class StreamingDownloadResource sends the content of a stream source as
+ * an attachment without caching, like {@link TemporaryFileDownloadResource}
+ * does for temporary files. Use it with a {@link PipedStreamSource} to write
+ * the content while it is downloaded.
+ */
+public class StreamingDownloadResource extends StreamResource {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = -2519838373893167305L;
+
+	/** The filename. */
+	private final String filename;
+
+	/** The content type. */
+	private final String contentType;
+
+	/**
+	 * Instantiates a new streaming download resource.
+	 *
+	 * @param streamSource
+	 *            the stream source
+	 * @param fileName
+	 *            the file name
+	 * @param contentType
+	 *            the content type
+	 */
+	public StreamingDownloadResource(final StreamSource streamSource, final String fileName,
+			final String contentType) {
+		super(streamSource, fileName);
+		this.filename = fileName;
+		this.contentType = contentType;
+	}
+
+	/**
+	 * Gets the download stream.
+	 *
+	 * @return the download stream, null if the stream source has no stream,
+	 *         e.g. a {@link PipedStreamSource} which has already been streamed
+	 */
+	@Override
+	public DownloadStream getStream() {
+		InputStream in = getStreamSource().getStream();
+		if (in == null) {
+			return null;
+		}
+		final DownloadStream stream = new DownloadStream(in, this.contentType, this.filename);
+		stream.setParameter("Content-Disposition", "attachment;filename=" + this.filename);
+		stream.setParameter("Cache-Control", "private,no-cache,no-store");
+		stream.setCacheTime(1000);
+
+		return stream;
+	}
+}
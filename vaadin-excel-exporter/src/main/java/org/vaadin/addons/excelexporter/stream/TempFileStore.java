@@ -0,0 +1,349 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.stream;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Class TempFileStore manages the temporary files holding generated
+ * exports until they are downloaded.
+ * <p>
+ * All files are created in the directory of the store. A file expires once it
+ * has been kept for longer than the time to live after it has been written, a
+ * background thread deletes expired files, e.g. those of downloads which have
+ * never been requested. Files of the store left over by a previous run in the
+ * directory are deleted by the same thread. The total size of the files held
+ * is limited by a quota, exports exceeding it fail instead of filling the
+ * disk.
+ */
+public class TempFileStore {
+
+	/** The Constant LOGGER. */
+	private static final Logger LOGGER = LoggerFactory.getLogger(TempFileStore.class);
+
+	/** The default time to live of a file in milliseconds. */
+	public static final long DEFAULT_TIME_TO_LIVE = TimeUnit.HOURS.toMillis(1);
+
+	/** The prefix of all files created by a store. */
+	private static final String FILE_PREFIX = "excel-export-";
+
+	/** The shortest interval between two sweeps in milliseconds. */
+	private static final long MIN_SWEEP_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+
+	/** The longest interval between two sweeps in milliseconds. */
+	private static final long MAX_SWEEP_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+	/** The shared store, created on first use. */
+	private static TempFileStore shared;
+
+	/** The directory of the files. */
+	private final File directory;
+
+	/** The time to live of a file in milliseconds. */
+	private final long timeToLive;
+
+	/** The maximum number of bytes held. */
+	private final long quota;
+
+	/** The files held. */
+	private final Map<File, Entry> entries = new ConcurrentHashMap<>();
+
+	/** The number of bytes held. */
+	private final AtomicLong bytesHeld = new AtomicLong();
+
+	/** The highest number of bytes held so far. */
+	private final AtomicLong peakBytesHeld = new AtomicLong();
+
+	/** The number of files deleted because they expired. */
+	private final AtomicLong expiredCount = new AtomicLong();
+
+	/** The number of files rejected because of the quota. */
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+	/** The thread deleting expired files. */
+	private final ScheduledExecutorService sweeper;
+
+	/**
+	 * Instantiates a new temp file store and starts deleting expired files.
+	 *
+	 * @param directory
+	 *            the directory of the files, created if it does not exist
+	 * @param timeToLive
+	 *            the time in milliseconds a file is kept after it has been
+	 *            written
+	 * @param quota
+	 *            the maximum number of bytes held
+	 */
+	public TempFileStore(final File directory, final long timeToLive, final long quota) {
+		this.directory = directory;
+		this.timeToLive = timeToLive;
+		this.quota = quota;
+
+		this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "excel-export-temp-sweeper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long interval = Math.max(MIN_SWEEP_INTERVAL, Math.min(MAX_SWEEP_INTERVAL, timeToLive / 4));
+		this.sweeper.scheduleWithFixedDelay(this::sweep, 0, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Gets the store shared by all sessions. Unless set with
+	 * {@link #setShared(TempFileStore)} it keeps the files in a subdirectory of
+	 * the directory of temporary files for an hour, without a quota.
+	 *
+	 * @return the shared store
+	 */
+	public static synchronized TempFileStore getShared() {
+		if (shared == null) {
+			shared = new TempFileStore(new File(System.getProperty("java.io.tmpdir"), "vaadin-excel-exporter"),
+					DEFAULT_TIME_TO_LIVE, Long.MAX_VALUE);
+		}
+		return shared;
+	}
+
+	/**
+	 * Sets the store shared by all sessions. The previous store is not shut
+	 * down.
+	 *
+	 * @param store
+	 *            the new shared store
+	 */
+	public static synchronized void setShared(final TempFileStore store) {
+		shared = store;
+	}
+
+	/**
+	 * Creates an empty file in the directory of the store. Once written the
+	 * file must be passed to {@link #written(File)}, otherwise to
+	 * {@link #delete(File)}.
+	 *
+	 * @param suffix
+	 *            the suffix of the file name, e.g. ".xlsx"
+	 * @return the file
+	 * @throws IOException
+	 *             if the quota is used up or the file cannot be created
+	 */
+	public File createFile(final String suffix) throws IOException {
+		if (this.bytesHeld.get() >= this.quota) {
+			this.rejectedCount.incrementAndGet();
+			throw new IOException("The quota of " + this.quota + " bytes of the temp file store is used up");
+		}
+		if (!this.directory.isDirectory() && !this.directory.mkdirs() && !this.directory.isDirectory()) {
+			throw new IOException("Cannot create the directory " + this.directory);
+		}
+		File file = File.createTempFile(FILE_PREFIX, suffix, this.directory);
+		this.entries.put(file, new Entry());
+		return file;
+	}
+
+	/**
+	 * Records the size of a file which has been written, the time to live of
+	 * the file starts now.
+	 *
+	 * @param file
+	 *            the file created by {@link #createFile(String)}
+	 * @throws IOException
+	 *             if the file exceeds the quota, the file has been deleted
+	 */
+	public void written(final File file) throws IOException {
+		Entry entry = this.entries.get(file);
+		if (entry == null) {
+			throw new IOException("The file " + file + " does not belong to the temp file store");
+		}
+		long size = file.length();
+		long held = this.bytesHeld.addAndGet(size - entry.size);
+		entry.size = size;
+		entry.writtenAt = System.currentTimeMillis();
+		if (held > this.quota) {
+			this.rejectedCount.incrementAndGet();
+			delete(file);
+			throw new IOException("The file of " + size + " bytes exceeds the quota of " + this.quota
+					+ " bytes of the temp file store");
+		}
+		this.peakBytesHeld.accumulateAndGet(held, Math::max);
+	}
+
+	/**
+	 * Keeps a written file until the given time instead of its time to live,
+	 * e.g. as long as a download of the file may be requested.
+	 *
+	 * @param file
+	 *            the file
+	 * @param time
+	 *            the time in milliseconds since the epoch the file expires at
+	 */
+	public void keepUntil(final File file, final long time) {
+		Entry entry = this.entries.get(file);
+		if (entry != null) {
+			entry.expiresAt = time;
+		}
+	}
+
+	/**
+	 * Deletes a file of the store. Files which do not belong to the store are
+	 * deleted as well.
+	 *
+	 * @param file
+	 *            the file
+	 * @return true, if the file has been deleted
+	 */
+	public boolean delete(final File file) {
+		Entry entry = this.entries.remove(file);
+		if (entry != null) {
+			this.bytesHeld.addAndGet(-entry.size);
+		}
+		return file.delete() || !file.exists();
+	}
+
+	/**
+	 * Deletes the expired files. Called periodically by the background thread
+	 * of the store.
+	 */
+	public void sweep() {
+		try {
+			long now = System.currentTimeMillis();
+			long expiry = now - this.timeToLive;
+			Iterator<Map.Entry<File, Entry>> iterator = this.entries.entrySet()
+				.iterator();
+			while (iterator.hasNext()) {
+				Map.Entry<File, Entry> entry = iterator.next();
+				if (entry.getValue()
+					.isExpired(now, expiry) && delete(entry.getKey())) {
+					this.expiredCount.incrementAndGet();
+					LOGGER.debug("Deleted the expired file {}", entry.getKey());
+				}
+			}
+
+			// left over by a previous run
+			File[] files = this.directory.listFiles(
+					file -> file.getName()
+						.startsWith(FILE_PREFIX) && !this.entries.containsKey(file)
+							&& file.lastModified() < expiry);
+			if (files != null) {
+				for (File file : files) {
+					if (file.delete()) {
+						LOGGER.debug("Deleted the left over file {}", file);
+					}
+				}
+			}
+		} catch (RuntimeException e) {
+			LOGGER.warn("Deleting the expired files failed", e);
+		}
+	}
+
+	/**
+	 * Stops deleting expired files. The files held are left in place.
+	 */
+	public void shutdown() {
+		this.sweeper.shutdown();
+	}
+
+	/**
+	 * Gets the directory of the files.
+	 *
+	 * @return the directory
+	 */
+	public File getDirectory() {
+		return this.directory;
+	}
+
+	/**
+	 * Gets the time in milliseconds a file is kept after it has been written.
+	 *
+	 * @return the time to live
+	 */
+	public long getTimeToLive() {
+		return this.timeToLive;
+	}
+
+	/**
+	 * Gets the maximum number of bytes held.
+	 *
+	 * @return the quota
+	 */
+	public long getQuota() {
+		return this.quota;
+	}
+
+	/**
+	 * Gets the number of bytes held by the written files.
+	 *
+	 * @return the bytes held
+	 */
+	public long getBytesHeld() {
+		return this.bytesHeld.get();
+	}
+
+	/**
+	 * Gets the highest number of bytes held so far.
+	 *
+	 * @return the peak bytes held
+	 */
+	public long getPeakBytesHeld() {
+		return this.peakBytesHeld.get();
+	}
+
+	/**
+	 * Gets the number of files held, including those being written.
+	 *
+	 * @return the file count
+	 */
+	public int getFileCount() {
+		return this.entries.size();
+	}
+
+	/**
+	 * Gets the number of files deleted because they expired.
+	 *
+	 * @return the expired count
+	 */
+	public long getExpiredCount() {
+		return this.expiredCount.get();
+	}
+
+	/**
+	 * Gets the number of files rejected because of the quota.
+	 *
+	 * @return the rejected count
+	 */
+	public long getRejectedCount() {
+		return this.rejectedCount.get();
+	}
+
+	/**
+	 * A file held by the store.
+	 */
+	private static class Entry {
+
+		/** The size of the file once written. */
+		private volatile long size;
+
+		/** The time the file has been written at, 0 while it is written. */
+		private volatile long writtenAt;
+
+		/** The time the file expires at, 0 to expire after the time to live. */
+		private volatile long expiresAt;
+
+		private boolean isExpired(final long now, final long expiry) {
+			// files which are still being written do not expire
+			if (this.writtenAt == 0) {
+				return false;
+			}
+			return this.expiresAt > 0 ? this.expiresAt <= now : this.writtenAt < expiry;
+		}
+	}
+}
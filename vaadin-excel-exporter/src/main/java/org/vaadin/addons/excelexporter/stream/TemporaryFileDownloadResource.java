@@ -5,6 +5,7 @@ package org.vaadin.addons.excelexporter.stream;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 
 import com.vaadin.server.DownloadStream;
@@ -13,6 +14,13 @@ import com.vaadin.ui.UI;
 
 /**
  * The Class TemporaryFileDownloadResource.
+ * <p>
+ * The content is served from an {@link ExportOutput}, either from memory or
+ * from a file. The file is opened when the download is requested, so no file
+ * descriptor is held while the browser has not fetched the file yet. Unless
+ * the download is repeatable, the output is released once it has been
+ * downloaded. Once the time to live has passed the resource is released: its
+ * file is deleted and further requests are answered with 404 Not Found.
  * 
  * Code obtained from:
  * http://vaadin.com/forum/-/message_boards/view_message/159583
@@ -47,11 +55,101 @@ public class TemporaryFileDownloadResource extends StreamResource {
 	 */
 	public TemporaryFileDownloadResource(final UI application, final String fileName, final String contentType,
 			final File tempFile) throws FileNotFoundException {
-		super(new FileStreamResource(tempFile), fileName);
+		this(application, fileName, contentType, tempFile, TempFileStore.getShared());
+	}
+
+	/**
+	 * Instantiates a new temporary file download resource.
+	 *
+	 * @param application
+	 *            the application
+	 * @param fileName
+	 *            the file name
+	 * @param contentType
+	 *            the content type
+	 * @param tempFile
+	 *            the temp file
+	 * @param store
+	 *            the store the temp file is deleted from once downloaded
+	 * @throws FileNotFoundException
+	 *             the file not found exception
+	 */
+	public TemporaryFileDownloadResource(final UI application, final String fileName, final String contentType,
+			final File tempFile, final TempFileStore store) throws FileNotFoundException {
+		this(application, fileName, contentType, tempFile, store, 0, false);
+	}
+
+	/**
+	 * Instantiates a new temporary file download resource.
+	 *
+	 * @param application
+	 *            the application
+	 * @param fileName
+	 *            the file name
+	 * @param contentType
+	 *            the content type
+	 * @param tempFile
+	 *            the temp file
+	 * @param store
+	 *            the store the temp file is deleted from once downloaded
+	 * @param timeToLive
+	 *            the time in milliseconds the download is available, 0 to
+	 *            keep it for the time to live of the store
+	 * @param repeatable
+	 *            whether the file can be downloaded more than once within its
+	 *            time to live
+	 * @throws FileNotFoundException
+	 *             the file not found exception
+	 */
+	public TemporaryFileDownloadResource(final UI application, final String fileName, final String contentType,
+			final File tempFile, final TempFileStore store, final long timeToLive, final boolean repeatable)
+			throws FileNotFoundException {
+		this(application, fileName, contentType, ExportOutput.ofFile(tempFile, store), timeToLive, repeatable);
+	}
+
+	/**
+	 * Instantiates a new temporary file download resource.
+	 *
+	 * @param application
+	 *            the application
+	 * @param fileName
+	 *            the file name
+	 * @param contentType
+	 *            the content type
+	 * @param output
+	 *            the closed output holding the content
+	 * @param timeToLive
+	 *            the time in milliseconds the download is available, 0 to
+	 *            keep it for the time to live of the store
+	 * @param repeatable
+	 *            whether the content can be downloaded more than once within
+	 *            its time to live
+	 */
+	public TemporaryFileDownloadResource(final UI application, final String fileName, final String contentType,
+			final ExportOutput output, final long timeToLive, final boolean repeatable) {
+		super(new OutputStreamSource(output, timeToLive, repeatable), fileName);
 		this.filename = fileName;
 		this.contentType = contentType;
 	}
 
+	/**
+	 * Releases the resource before its time to live has passed. The file is
+	 * deleted, further requests are answered with 404 Not Found.
+	 */
+	public void release() {
+		((OutputStreamSource) getStreamSource()).release();
+	}
+
+	/**
+	 * Checks if the resource has been released, either because it has been
+	 * downloaded, it has expired or {@link #release()} has been called.
+	 *
+	 * @return true, if released
+	 */
+	public boolean isReleased() {
+		return ((OutputStreamSource) getStreamSource()).isReleased();
+	}
+
 	/**
 	 * Gets the stream.
 	 *
@@ -78,32 +176,46 @@ public class TemporaryFileDownloadResource extends StreamResource {
 	}
 
 	/**
-	 * The Class FileStreamResource.
+	 * The Class OutputStreamSource.
 	 */
-	private static class FileStreamResource implements StreamResource.StreamSource {
+	private static class OutputStreamSource implements StreamResource.StreamSource {
 
 		/** The Constant serialVersionUID. */
 		private static final long serialVersionUID = 3801605481686085335L;
 
-		/** The input stream. */
-		private final InputStream inputStream;
+		/** The output to download. */
+		private final ExportOutput output;
+
+		/** The time the resource expires at, 0 if it expires with the file. */
+		private final long expiresAt;
+
+		/** Whether the output can be downloaded more than once. */
+		private final boolean repeatable;
 
 		/**
-		 * Instantiates a new file stream resource.
+		 * Instantiates a new output stream source.
 		 * 
-		 * @param fileToDownload
-		 *            the file to download
-		 * @throws FileNotFoundException
-		 *             the file not found exception
+		 * @param output
+		 *            the output to download
+		 * @param timeToLive
+		 *            the time in milliseconds the download is available, 0 to
+		 *            keep it for the time to live of the store
+		 * @param repeatable
+		 *            whether the output can be downloaded more than once
 		 */
-		public FileStreamResource(final File fileToDownload) throws FileNotFoundException {
-			this.inputStream = new DeletingFileInputStream(fileToDownload);
+		public OutputStreamSource(final ExportOutput output, final long timeToLive, final boolean repeatable) {
+			this.output = output;
+			this.expiresAt = timeToLive > 0 ? System.currentTimeMillis() + timeToLive : 0;
+			this.repeatable = repeatable;
+			if (this.expiresAt > 0) {
+				output.keepUntil(this.expiresAt);
+			}
 		}
 
 		/**
 		 * Gets the stream.
 		 *
-		 * @return the stream
+		 * @return the stream, null if the resource has been released
 		 */
 		/*
 		 * (non-Javadoc)
@@ -111,8 +223,28 @@ public class TemporaryFileDownloadResource extends StreamResource {
 		 * @see com.vaadin.terminal.StreamResource.StreamSource#getStream()
 		 */
 		@Override
-		public InputStream getStream() {
-			return this.inputStream;
+		public synchronized InputStream getStream() {
+			if (this.expiresAt > 0 && System.currentTimeMillis() >= this.expiresAt) {
+				release();
+			}
+			if (this.output.isReleased()) {
+				return null;
+			}
+			try {
+				return this.output.openStream(!this.repeatable);
+			} catch (final IOException e) {
+				// deleted by the store after its time to live
+				release();
+				return null;
+			}
+		}
+
+		private void release() {
+			this.output.release();
+		}
+
+		private boolean isReleased() {
+			return this.output.isReleased();
 		}
 	}
 
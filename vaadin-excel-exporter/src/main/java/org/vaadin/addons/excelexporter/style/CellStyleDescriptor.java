@@ -0,0 +1,368 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.style;
+
+import java.util.Objects;
+
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFDataFormat;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+/**
+ * The Class CellStyleDescriptor is an immutable copy of the attributes of an
+ * XSSFCellStyle which implements equals and hashCode, so it can be used as a
+ * map key. Two cell styles with equal descriptors look the same, regardless of
+ * the workbook they have been created in.
+ */
+public final class CellStyleDescriptor {
+
+	/** The alignment. */
+	private final short alignment;
+
+	/** The vertical alignment. */
+	private final short verticalAlignment;
+
+	/** The wrap text flag. */
+	private final boolean wrapText;
+
+	/** The indention. */
+	private final short indention;
+
+	/** The rotation. */
+	private final short rotation;
+
+	/** The hidden flag. */
+	private final boolean hidden;
+
+	/** The locked flag. */
+	private final boolean locked;
+
+	/** The border styles (top, right, bottom, left). */
+	private final short borderTop;
+	private final short borderRight;
+	private final short borderBottom;
+	private final short borderLeft;
+
+	/** The border colors (top, right, bottom, left). */
+	private final ColorDescriptor borderTopColor;
+	private final ColorDescriptor borderRightColor;
+	private final ColorDescriptor borderBottomColor;
+	private final ColorDescriptor borderLeftColor;
+
+	/** The fill pattern. */
+	private final short fillPattern;
+
+	/** The fill foreground color. */
+	private final ColorDescriptor fillForegroundColor;
+
+	/** The fill background color. */
+	private final ColorDescriptor fillBackgroundColor;
+
+	/** The data format. */
+	private final String dataFormat;
+
+	/** The font. */
+	private final FontDescriptor font;
+
+	private CellStyleDescriptor(final XSSFCellStyle style) {
+		this.alignment = style.getAlignment();
+		this.verticalAlignment = style.getVerticalAlignment();
+		this.wrapText = style.getWrapText();
+		this.indention = style.getIndention();
+		this.rotation = style.getRotation();
+		this.hidden = style.getHidden();
+		this.locked = style.getLocked();
+		this.borderTop = style.getBorderTop();
+		this.borderRight = style.getBorderRight();
+		this.borderBottom = style.getBorderBottom();
+		this.borderLeft = style.getBorderLeft();
+		this.borderTopColor = ColorDescriptor.of(style.getTopBorderXSSFColor());
+		this.borderRightColor = ColorDescriptor.of(style.getRightBorderXSSFColor());
+		this.borderBottomColor = ColorDescriptor.of(style.getBottomBorderXSSFColor());
+		this.borderLeftColor = ColorDescriptor.of(style.getLeftBorderXSSFColor());
+		this.fillPattern = style.getFillPattern();
+		this.fillForegroundColor = ColorDescriptor.of(style.getFillForegroundXSSFColor());
+		this.fillBackgroundColor = ColorDescriptor.of(style.getFillBackgroundXSSFColor());
+		this.dataFormat = style.getDataFormatString();
+		this.font = FontDescriptor.of(style.getFont());
+	}
+
+	/**
+	 * Creates the descriptor of the given cell style.
+	 *
+	 * @param style
+	 *            the style
+	 * @return the cell style descriptor
+	 */
+	public static CellStyleDescriptor of(final XSSFCellStyle style) {
+		return new CellStyleDescriptor(style);
+	}
+
+	/**
+	 * Creates a new cell style with the described attributes in the given
+	 * workbook.
+	 *
+	 * @param workbook
+	 *            the workbook
+	 * @param workbookFont
+	 *            the font of the workbook matching {@link #getFont()}
+	 * @return the XSSF cell style
+	 */
+	public XSSFCellStyle createIn(final XSSFWorkbook workbook, final XSSFFont workbookFont) {
+		XSSFCellStyle style = workbook.createCellStyle();
+		style.setAlignment(this.alignment);
+		style.setVerticalAlignment(this.verticalAlignment);
+		style.setWrapText(this.wrapText);
+		style.setIndention(this.indention);
+		style.setRotation(this.rotation);
+		style.setHidden(this.hidden);
+		style.setLocked(this.locked);
+
+		style.setBorderTop(this.borderTop);
+		style.setBorderRight(this.borderRight);
+		style.setBorderBottom(this.borderBottom);
+		style.setBorderLeft(this.borderLeft);
+		if (this.borderTopColor != null) {
+			style.setTopBorderColor(this.borderTopColor.toXSSFColor());
+		}
+		if (this.borderRightColor != null) {
+			style.setRightBorderColor(this.borderRightColor.toXSSFColor());
+		}
+		if (this.borderBottomColor != null) {
+			style.setBottomBorderColor(this.borderBottomColor.toXSSFColor());
+		}
+		if (this.borderLeftColor != null) {
+			style.setLeftBorderColor(this.borderLeftColor.toXSSFColor());
+		}
+
+		if (this.fillForegroundColor != null) {
+			style.setFillForegroundColor(this.fillForegroundColor.toXSSFColor());
+		}
+		if (this.fillBackgroundColor != null) {
+			style.setFillBackgroundColor(this.fillBackgroundColor.toXSSFColor());
+		}
+		style.setFillPattern(this.fillPattern);
+
+		if (this.dataFormat != null) {
+			XSSFDataFormat format = workbook.createDataFormat();
+			style.setDataFormat(format.getFormat(this.dataFormat));
+		}
+		style.setFont(workbookFont);
+
+		return style;
+	}
+
+	/**
+	 * Gets the horizontal alignment.
+	 *
+	 * @return the alignment
+	 */
+	public short getAlignment() {
+		return this.alignment;
+	}
+
+	/**
+	 * Gets the vertical alignment.
+	 *
+	 * @return the vertical alignment
+	 */
+	public short getVerticalAlignment() {
+		return this.verticalAlignment;
+	}
+
+	/**
+	 * Checks if the text is wrapped.
+	 *
+	 * @return true, if the text is wrapped
+	 */
+	public boolean isWrapText() {
+		return this.wrapText;
+	}
+
+	/**
+	 * Gets the indention.
+	 *
+	 * @return the indention
+	 */
+	public short getIndention() {
+		return this.indention;
+	}
+
+	/**
+	 * Gets the rotation of the text in degrees.
+	 *
+	 * @return the rotation
+	 */
+	public short getRotation() {
+		return this.rotation;
+	}
+
+	/**
+	 * Checks if the formula of the cell is hidden.
+	 *
+	 * @return true, if hidden
+	 */
+	public boolean isHidden() {
+		return this.hidden;
+	}
+
+	/**
+	 * Checks if the cell is locked.
+	 *
+	 * @return true, if locked
+	 */
+	public boolean isLocked() {
+		return this.locked;
+	}
+
+	/**
+	 * Gets the style of the top border.
+	 *
+	 * @return the top border style
+	 */
+	public short getBorderTop() {
+		return this.borderTop;
+	}
+
+	/**
+	 * Gets the style of the right border.
+	 *
+	 * @return the right border style
+	 */
+	public short getBorderRight() {
+		return this.borderRight;
+	}
+
+	/**
+	 * Gets the style of the bottom border.
+	 *
+	 * @return the bottom border style
+	 */
+	public short getBorderBottom() {
+		return this.borderBottom;
+	}
+
+	/**
+	 * Gets the style of the left border.
+	 *
+	 * @return the left border style
+	 */
+	public short getBorderLeft() {
+		return this.borderLeft;
+	}
+
+	/**
+	 * Gets the color of the top border.
+	 *
+	 * @return the top border color, null if not set
+	 */
+	public ColorDescriptor getBorderTopColor() {
+		return this.borderTopColor;
+	}
+
+	/**
+	 * Gets the color of the right border.
+	 *
+	 * @return the right border color, null if not set
+	 */
+	public ColorDescriptor getBorderRightColor() {
+		return this.borderRightColor;
+	}
+
+	/**
+	 * Gets the color of the bottom border.
+	 *
+	 * @return the bottom border color, null if not set
+	 */
+	public ColorDescriptor getBorderBottomColor() {
+		return this.borderBottomColor;
+	}
+
+	/**
+	 * Gets the color of the left border.
+	 *
+	 * @return the left border color, null if not set
+	 */
+	public ColorDescriptor getBorderLeftColor() {
+		return this.borderLeftColor;
+	}
+
+	/**
+	 * Gets the fill pattern.
+	 *
+	 * @return the fill pattern
+	 */
+	public short getFillPattern() {
+		return this.fillPattern;
+	}
+
+	/**
+	 * Gets the fill foreground color.
+	 *
+	 * @return the fill foreground color, null if not set
+	 */
+	public ColorDescriptor getFillForegroundColor() {
+		return this.fillForegroundColor;
+	}
+
+	/**
+	 * Gets the fill background color.
+	 *
+	 * @return the fill background color, null if not set
+	 */
+	public ColorDescriptor getFillBackgroundColor() {
+		return this.fillBackgroundColor;
+	}
+
+	/**
+	 * Gets the data format.
+	 *
+	 * @return the data format
+	 */
+	public String getDataFormat() {
+		return this.dataFormat;
+	}
+
+	/**
+	 * Gets the descriptor of the font.
+	 *
+	 * @return the font descriptor
+	 */
+	public FontDescriptor getFont() {
+		return this.font;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof CellStyleDescriptor)) {
+			return false;
+		}
+		CellStyleDescriptor other = (CellStyleDescriptor) obj;
+		return this.alignment == other.alignment && this.verticalAlignment == other.verticalAlignment
+				&& this.wrapText == other.wrapText && this.indention == other.indention
+				&& this.rotation == other.rotation && this.hidden == other.hidden && this.locked == other.locked
+				&& this.borderTop == other.borderTop && this.borderRight == other.borderRight
+				&& this.borderBottom == other.borderBottom && this.borderLeft == other.borderLeft
+				&& this.fillPattern == other.fillPattern && Objects.equals(this.borderTopColor, other.borderTopColor)
+				&& Objects.equals(this.borderRightColor, other.borderRightColor)
+				&& Objects.equals(this.borderBottomColor, other.borderBottomColor)
+				&& Objects.equals(this.borderLeftColor, other.borderLeftColor)
+				&& Objects.equals(this.fillForegroundColor, other.fillForegroundColor)
+				&& Objects.equals(this.fillBackgroundColor, other.fillBackgroundColor)
+				&& Objects.equals(this.dataFormat, other.dataFormat) && Objects.equals(this.font, other.font);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(this.alignment, this.verticalAlignment, this.wrapText, this.indention, this.rotation,
+							this.hidden, this.locked, this.borderTop, this.borderRight, this.borderBottom,
+							this.borderLeft, this.borderTopColor, this.borderRightColor, this.borderBottomColor,
+							this.borderLeftColor, this.fillPattern, this.fillForegroundColor,
+							this.fillBackgroundColor, this.dataFormat, this.font);
+	}
+}
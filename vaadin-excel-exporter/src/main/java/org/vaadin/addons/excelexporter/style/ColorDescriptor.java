@@ -0,0 +1,118 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.style;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.apache.poi.xssf.usermodel.XSSFColor;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTColor;
+
+/**
+ * The Class ColorDescriptor is an immutable copy of an XSSFColor which
+ * implements equals and hashCode, so it can be used as a map key. Only the
+ * attributes which are actually set on the color are kept.
+ */
+public final class ColorDescriptor {
+
+	/** The auto flag. */
+	private final Boolean auto;
+
+	/** The indexed color. */
+	private final Long indexed;
+
+	/** The ARGB value. */
+	private final byte[] rgb;
+
+	/** The theme color. */
+	private final Long theme;
+
+	/** The tint. */
+	private final Double tint;
+
+	private ColorDescriptor(final CTColor color) {
+		this.auto = color.isSetAuto() ? color.getAuto() : null;
+		this.indexed = color.isSetIndexed() ? color.getIndexed() : null;
+		this.rgb = color.isSetRgb() ? color.getRgb() : null;
+		this.theme = color.isSetTheme() ? color.getTheme() : null;
+		this.tint = color.isSetTint() ? color.getTint() : null;
+	}
+
+	/**
+	 * Creates the descriptor of the given color.
+	 *
+	 * @param color
+	 *            the color, may be null
+	 * @return the color descriptor or null if the color is null
+	 */
+	public static ColorDescriptor of(final XSSFColor color) {
+		if (color == null) {
+			return null;
+		}
+		return new ColorDescriptor(color.getCTColor());
+	}
+
+	/**
+	 * Creates a new XSSFColor with the described attributes.
+	 *
+	 * @return the XSSF color
+	 */
+	public XSSFColor toXSSFColor() {
+		XSSFColor color = new XSSFColor();
+		CTColor ctColor = color.getCTColor();
+		if (this.auto != null) {
+			ctColor.setAuto(this.auto);
+		}
+		if (this.indexed != null) {
+			ctColor.setIndexed(this.indexed);
+		}
+		if (this.rgb != null) {
+			ctColor.setRgb(this.rgb);
+		}
+		if (this.theme != null) {
+			ctColor.setTheme(this.theme);
+		}
+		if (this.tint != null) {
+			ctColor.setTint(this.tint);
+		}
+		return color;
+	}
+
+	/**
+	 * Gets the indexed color.
+	 *
+	 * @return the indexed color or null if the color is not indexed
+	 */
+	public Long getIndexed() {
+		return this.indexed;
+	}
+
+	/**
+	 * Gets the ARGB value.
+	 *
+	 * @return the ARGB value or null if the color has no RGB value
+	 */
+	public byte[] getRgb() {
+		return this.rgb != null ? this.rgb.clone() : null;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof ColorDescriptor)) {
+			return false;
+		}
+		ColorDescriptor other = (ColorDescriptor) obj;
+		return Objects.equals(this.auto, other.auto) && Objects.equals(this.indexed, other.indexed)
+				&& Arrays.equals(this.rgb, other.rgb) && Objects.equals(this.theme, other.theme)
+				&& Objects.equals(this.tint, other.tint);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(this.auto, this.indexed, Arrays.hashCode(this.rgb), this.theme, this.tint);
+	}
+}
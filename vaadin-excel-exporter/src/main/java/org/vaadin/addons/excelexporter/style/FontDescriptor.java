@@ -0,0 +1,180 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.style;
+
+import java.util.Objects;
+
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTColor;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTFont;
+
+/**
+ * The Class FontDescriptor is an immutable copy of the attributes of an
+ * XSSFFont which implements equals and hashCode, so it can be used as a map
+ * key.
+ */
+public final class FontDescriptor {
+
+	/** The font name. */
+	private final String fontName;
+
+	/** The font height in twips. */
+	private final short fontHeight;
+
+	/** The boldweight. */
+	private final short boldweight;
+
+	/** The italic flag. */
+	private final boolean italic;
+
+	/** The strikeout flag. */
+	private final boolean strikeout;
+
+	/** The underline. */
+	private final byte underline;
+
+	/** The type offset. */
+	private final short typeOffset;
+
+	/** The color. */
+	private final ColorDescriptor color;
+
+	private FontDescriptor(final XSSFFont font) {
+		this.fontName = font.getFontName();
+		this.fontHeight = font.getFontHeight();
+		this.boldweight = font.getBoldweight();
+		this.italic = font.getItalic();
+		this.strikeout = font.getStrikeout();
+		this.underline = font.getUnderline();
+		this.typeOffset = font.getTypeOffset();
+		this.color = ColorDescriptor.of(font.getXSSFColor());
+	}
+
+	/**
+	 * Creates the descriptor of the given font.
+	 *
+	 * @param font
+	 *            the font
+	 * @return the font descriptor
+	 */
+	public static FontDescriptor of(final XSSFFont font) {
+		return new FontDescriptor(font);
+	}
+
+	/**
+	 * Applies the described attributes to the given font.
+	 *
+	 * @param font
+	 *            the font
+	 */
+	public void applyTo(final XSSFFont font) {
+		font.setFontName(this.fontName);
+		font.setFontHeight(this.fontHeight);
+		font.setBoldweight(this.boldweight);
+		font.setItalic(this.italic);
+		font.setStrikeout(this.strikeout);
+		font.setUnderline(this.underline);
+		font.setTypeOffset(this.typeOffset);
+		if (this.color != null) {
+			// XSSFFont.setColor(XSSFColor) only copies the RGB value
+			CTFont ctFont = font.getCTFont();
+			CTColor ctColor = ctFont.sizeOfColorArray() == 0 ? ctFont.addNewColor() : ctFont.getColorArray(0);
+			ctColor.set(this.color.toXSSFColor()
+				.getCTColor());
+		}
+	}
+
+	/**
+	 * Gets the font name.
+	 *
+	 * @return the font name
+	 */
+	public String getFontName() {
+		return this.fontName;
+	}
+
+	/**
+	 * Gets the font height in twips.
+	 *
+	 * @return the font height
+	 */
+	public short getFontHeight() {
+		return this.fontHeight;
+	}
+
+	/**
+	 * Gets the boldweight.
+	 *
+	 * @return the boldweight
+	 */
+	public short getBoldweight() {
+		return this.boldweight;
+	}
+
+	/**
+	 * Checks if the font is italic.
+	 *
+	 * @return true, if italic
+	 */
+	public boolean isItalic() {
+		return this.italic;
+	}
+
+	/**
+	 * Checks if the font is struck out.
+	 *
+	 * @return true, if struck out
+	 */
+	public boolean isStrikeout() {
+		return this.strikeout;
+	}
+
+	/**
+	 * Gets the underline.
+	 *
+	 * @return the underline
+	 */
+	public byte getUnderline() {
+		return this.underline;
+	}
+
+	/**
+	 * Gets the type offset, e.g. superscript.
+	 *
+	 * @return the type offset
+	 */
+	public short getTypeOffset() {
+		return this.typeOffset;
+	}
+
+	/**
+	 * Gets the color.
+	 *
+	 * @return the color, null if not set
+	 */
+	public ColorDescriptor getColor() {
+		return this.color;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof FontDescriptor)) {
+			return false;
+		}
+		FontDescriptor other = (FontDescriptor) obj;
+		return this.fontHeight == other.fontHeight && this.boldweight == other.boldweight
+				&& this.italic == other.italic && this.strikeout == other.strikeout
+				&& this.underline == other.underline && this.typeOffset == other.typeOffset
+				&& Objects.equals(this.fontName, other.fontName) && Objects.equals(this.color, other.color);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(this.fontName, this.fontHeight, this.boldweight, this.italic, this.strikeout,
+							this.underline, this.typeOffset, this.color);
+	}
+}
@@ -0,0 +1,221 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.style;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.poi.hssf.usermodel.HSSFCellStyle;
+import org.apache.poi.hssf.usermodel.HSSFFont;
+import org.apache.poi.hssf.usermodel.HSSFPalette;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.hssf.util.HSSFColor;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+
+/**
+ * The Class HSSFStyleConverter creates the HSSF counterparts of the XSSF cell
+ * styles returned by the style functions, so the same configurations can be
+ * used to write binary xls files.
+ * <p>
+ * Styles and fonts are converted once per descriptor, the xls format only
+ * allows about 4000 cell styles per workbook. Indexed colors are used as they
+ * are, RGB colors are mapped to an equal color of the palette or replace a
+ * palette entry, starting at the end of the palette. Once the palette is
+ * exhausted the most similar color is used.
+ */
+public class HSSFStyleConverter {
+
+	/** The first palette index which may be replaced by a custom color. */
+	private static final short FIRST_CUSTOM_COLOR_INDEX = 0x08;
+
+	/** The last palette index which may be replaced by a custom color. */
+	private static final short LAST_CUSTOM_COLOR_INDEX = 0x3F;
+
+	/** The workbook the styles are created in. */
+	private final HSSFWorkbook workbook;
+
+	/** The palette of the workbook. */
+	private final HSSFPalette palette;
+
+	/** The HSSF styles by XSSF style. */
+	private final Map<XSSFCellStyle, HSSFCellStyle> stylesByXSSFStyle = new IdentityHashMap<>();
+
+	/** The HSSF styles by descriptor. */
+	private final Map<CellStyleDescriptor, HSSFCellStyle> styles = new HashMap<>();
+
+	/** The HSSF fonts by descriptor. */
+	private final Map<FontDescriptor, HSSFFont> fonts = new HashMap<>();
+
+	/** The palette indexes by color. */
+	private final Map<ColorDescriptor, Short> colors = new HashMap<>();
+
+	/** The palette indexes which are referenced and must not be replaced. */
+	private final Set<Short> usedColorIndexes = new HashSet<>();
+
+	/** The next palette index which may be replaced by a custom color. */
+	private short nextCustomColorIndex = LAST_CUSTOM_COLOR_INDEX;
+
+	/**
+	 * Instantiates a new HSSF style converter.
+	 *
+	 * @param workbook
+	 *            the workbook the styles are created in
+	 */
+	public HSSFStyleConverter(final HSSFWorkbook workbook) {
+		this.workbook = workbook;
+		this.palette = workbook.getCustomPalette();
+	}
+
+	/**
+	 * Gets the HSSF style looking like the given XSSF style.
+	 *
+	 * @param style
+	 *            the XSSF style, may be null
+	 * @return the HSSF style or null if the style is null
+	 */
+	public HSSFCellStyle convert(final XSSFCellStyle style) {
+		if (style == null) {
+			return null;
+		}
+
+		HSSFCellStyle hssfStyle = this.stylesByXSSFStyle.get(style);
+		if (hssfStyle == null) {
+			CellStyleDescriptor descriptor = CellStyleDescriptor.of(style);
+			hssfStyle = this.styles.get(descriptor);
+			if (hssfStyle == null) {
+				hssfStyle = createStyle(descriptor);
+				this.styles.put(descriptor, hssfStyle);
+			}
+			this.stylesByXSSFStyle.put(style, hssfStyle);
+		}
+		return hssfStyle;
+	}
+
+	private HSSFCellStyle createStyle(final CellStyleDescriptor descriptor) {
+		HSSFCellStyle style = this.workbook.createCellStyle();
+		style.setAlignment(descriptor.getAlignment());
+		style.setVerticalAlignment(descriptor.getVerticalAlignment());
+		style.setWrapText(descriptor.isWrapText());
+		style.setIndention(descriptor.getIndention());
+		// XSSF stores -1 to -90 degrees as 91 to 180
+		short rotation = descriptor.getRotation();
+		style.setRotation(rotation > 90 && rotation <= 180 ? (short) (90 - rotation) : rotation);
+		style.setHidden(descriptor.isHidden());
+		style.setLocked(descriptor.isLocked());
+
+		style.setBorderTop(descriptor.getBorderTop());
+		style.setBorderRight(descriptor.getBorderRight());
+		style.setBorderBottom(descriptor.getBorderBottom());
+		style.setBorderLeft(descriptor.getBorderLeft());
+		Short color = getColorIndex(descriptor.getBorderTopColor());
+		if (color != null) {
+			style.setTopBorderColor(color);
+		}
+		color = getColorIndex(descriptor.getBorderRightColor());
+		if (color != null) {
+			style.setRightBorderColor(color);
+		}
+		color = getColorIndex(descriptor.getBorderBottomColor());
+		if (color != null) {
+			style.setBottomBorderColor(color);
+		}
+		color = getColorIndex(descriptor.getBorderLeftColor());
+		if (color != null) {
+			style.setLeftBorderColor(color);
+		}
+
+		color = getColorIndex(descriptor.getFillForegroundColor());
+		if (color != null) {
+			style.setFillForegroundColor(color);
+		}
+		color = getColorIndex(descriptor.getFillBackgroundColor());
+		if (color != null) {
+			style.setFillBackgroundColor(color);
+		}
+		style.setFillPattern(descriptor.getFillPattern());
+
+		if (descriptor.getDataFormat() != null) {
+			style.setDataFormat(this.workbook.createDataFormat()
+				.getFormat(descriptor.getDataFormat()));
+		}
+		style.setFont(getFont(descriptor.getFont()));
+
+		return style;
+	}
+
+	private HSSFFont getFont(final FontDescriptor descriptor) {
+		HSSFFont font = this.fonts.get(descriptor);
+		if (font == null) {
+			font = this.workbook.createFont();
+			font.setFontName(descriptor.getFontName());
+			font.setFontHeight(descriptor.getFontHeight());
+			font.setBoldweight(descriptor.getBoldweight());
+			font.setItalic(descriptor.isItalic());
+			font.setStrikeout(descriptor.isStrikeout());
+			font.setUnderline(descriptor.getUnderline());
+			font.setTypeOffset(descriptor.getTypeOffset());
+			Short color = getColorIndex(descriptor.getColor());
+			if (color != null) {
+				font.setColor(color);
+			}
+			this.fonts.put(descriptor, font);
+		}
+		return font;
+	}
+
+	/**
+	 * Gets the palette index of the given color.
+	 *
+	 * @param color
+	 *            the color, may be null
+	 * @return the palette index or null if the color cannot be mapped, e.g.
+	 *         theme colors
+	 */
+	private Short getColorIndex(final ColorDescriptor color) {
+		if (color == null) {
+			return null;
+		}
+		if (this.colors.containsKey(color)) {
+			return this.colors.get(color);
+		}
+
+		Short index = null;
+		if (color.getIndexed() != null) {
+			index = color.getIndexed()
+				.shortValue();
+			this.usedColorIndexes.add(index);
+		} else if (color.getRgb() != null) {
+			index = getColorIndex(color.getRgb());
+		}
+		this.colors.put(color, index);
+		return index;
+	}
+
+	private short getColorIndex(final byte[] argb) {
+		// ARGB or RGB
+		int offset = argb.length == 4 ? 1 : 0;
+		byte red = argb[offset];
+		byte green = argb[offset + 1];
+		byte blue = argb[offset + 2];
+
+		HSSFColor color = this.palette.findColor(red, green, blue);
+		if (color == null) {
+			while (this.nextCustomColorIndex >= FIRST_CUSTOM_COLOR_INDEX
+					&& this.usedColorIndexes.contains(this.nextCustomColorIndex)) {
+				this.nextCustomColorIndex--;
+			}
+			if (this.nextCustomColorIndex >= FIRST_CUSTOM_COLOR_INDEX) {
+				this.palette.setColorAtIndex(this.nextCustomColorIndex, red, green, blue);
+				color = this.palette.getColor(this.nextCustomColorIndex);
+			} else {
+				color = this.palette.findSimilarColor(red, green, blue);
+			}
+		}
+		this.usedColorIndexes.add(color.getIndex());
+		return color.getIndex();
+	}
+}
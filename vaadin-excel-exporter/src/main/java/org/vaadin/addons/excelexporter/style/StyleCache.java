@@ -0,0 +1,345 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.style;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.vaadin.addons.excelexporter.function.DataCellStyleGeneratorFunction;
+import org.vaadin.addons.excelexporter.model.StyleCacheMode;
+
+/**
+ * The Class StyleCache applies the style functions of the configurations and
+ * makes sure identical styles and fonts are only created once per workbook.
+ * <p>
+ * Unless the mode is {@link StyleCacheMode#NONE}, the style functions are
+ * applied to a separate prototype workbook. The returned styles are reduced to
+ * a {@link CellStyleDescriptor} and only styles with a new descriptor are
+ * created in the export workbook. In the {@link StyleCacheMode#VALUES} and
+ * {@link StyleCacheMode#INPUTS} modes the workbook style is also remembered
+ * for the inputs of the function, so the function is not applied again for
+ * the same inputs. The least recently used inputs are forgotten once
+ * {@value #MAX_INPUTS} inputs are remembered.
+ */
+public class StyleCache {
+
+	/**
+	 * The number of styles or fonts after which the prototype workbook is
+	 * replaced by a new one
+	 */
+	private static final int MAX_PROTOTYPE_STYLES = 10000;
+
+	/** The maximum number of style function inputs remembered. */
+	private static final int MAX_INPUTS = 10000;
+
+	/** The workbook the styles are created in. */
+	private final XSSFWorkbook workbook;
+
+	/** The number of styles of the workbook before the cache was created. */
+	private final int initialStyleCount;
+
+	/** The mode. */
+	private final StyleCacheMode mode;
+
+	/** The workbook the style functions are applied to. */
+	private XSSFWorkbook prototypeWorkbook;
+
+	/** The workbook styles by the prototype style they have been created for. */
+	private final Map<XSSFCellStyle, XSSFCellStyle> stylesByPrototype = new IdentityHashMap<>();
+
+	/** The workbook styles by descriptor. */
+	private final Map<CellStyleDescriptor, XSSFCellStyle> styles = new HashMap<>();
+
+	/** The workbook fonts by descriptor. */
+	private final Map<FontDescriptor, XSSFFont> fonts = new HashMap<>();
+
+	/** The workbook styles by the inputs of the style function, least recently used first. */
+	private final Map<List<Object>, XSSFCellStyle> stylesByInputs = new LinkedHashMap<List<Object>, XSSFCellStyle>(
+			16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<List<Object>, XSSFCellStyle> eldest) {
+			return size() > MAX_INPUTS;
+		}
+	};
+
+	/** The workbook styles by base style and data format. */
+	private final Map<XSSFCellStyle, Map<String, XSSFCellStyle>> stylesWithDataFormat = new IdentityHashMap<>();
+
+	/** The data format indexes by format. */
+	private final Map<String, Short> dataFormats = new HashMap<>();
+
+	/**
+	 * Instantiates a new style cache.
+	 *
+	 * @param workbook
+	 *            the workbook the styles are created in
+	 * @param mode
+	 *            the mode
+	 */
+	public StyleCache(final XSSFWorkbook workbook, final StyleCacheMode mode) {
+		this.workbook = workbook;
+		this.initialStyleCount = workbook.getNumCellStyles();
+		this.mode = mode != null ? mode : StyleCacheMode.NONE;
+
+		// the default style and font of the workbook can be shared as well
+		XSSFCellStyle defaultStyle = workbook.getCellStyleAt((short) 0);
+		this.styles.put(CellStyleDescriptor.of(defaultStyle), defaultStyle);
+		XSSFFont defaultFont = workbook.getFontAt((short) 0);
+		this.fonts.put(FontDescriptor.of(defaultFont), defaultFont);
+	}
+
+	/**
+	 * Creates a style cache which can be used by several threads, the style
+	 * functions are applied one at a time.
+	 *
+	 * @param workbook
+	 *            the workbook the styles are created in
+	 * @param mode
+	 *            the mode
+	 * @return the style cache
+	 */
+	public static StyleCache synchronizedStyleCache(final XSSFWorkbook workbook, final StyleCacheMode mode) {
+		return new SynchronizedStyleCache(workbook, mode);
+	}
+
+	/**
+	 * Gets the style of a content cell.
+	 *
+	 * @param function
+	 *            the content style function
+	 * @param columnId
+	 *            the column id
+	 * @param value
+	 *            the value
+	 * @param rowNum
+	 *            the row number relative to the first content row
+	 * @return the cell style
+	 */
+	public XSSFCellStyle getContentStyle(final DataCellStyleGeneratorFunction function, final String columnId,
+			final Object value, final int rowNum) {
+		switch (this.mode) {
+		case NONE:
+			return function.apply(this.workbook, columnId, value, rowNum);
+		case VALUES:
+			return getStyleByInputs(Arrays.asList(function, columnId, value, rowNum % 2),
+									() -> function.apply(getPrototypeWorkbook(), columnId, value, rowNum));
+		case INPUTS:
+			return getStyleByInputs(Arrays.asList(function, columnId, value != null ? value.getClass() : null,
+													rowNum % 2),
+									() -> function.apply(getPrototypeWorkbook(), columnId, value, rowNum));
+		default:
+			return toWorkbookStyle(function.apply(getPrototypeWorkbook(), columnId, value, rowNum));
+		}
+	}
+
+	/**
+	 * Gets the style of a header or footer cell.
+	 *
+	 * @param function
+	 *            the header or footer style function
+	 * @param columnId
+	 *            the column id
+	 * @return the cell style
+	 */
+	public XSSFCellStyle getStyle(final BiFunction<XSSFWorkbook, String, XSSFCellStyle> function,
+			final String columnId) {
+		switch (this.mode) {
+		case NONE:
+			return function.apply(this.workbook, columnId);
+		case INPUTS:
+			return getStyleByInputs(Arrays.asList(function, columnId),
+									() -> function.apply(getPrototypeWorkbook(), columnId));
+		default:
+			return toWorkbookStyle(function.apply(getPrototypeWorkbook(), columnId));
+		}
+	}
+
+	/**
+	 * Gets the style of a sheet level cell such as the report title.
+	 *
+	 * @param function
+	 *            the style function
+	 * @return the cell style
+	 */
+	public XSSFCellStyle getStyle(final Function<XSSFWorkbook, XSSFCellStyle> function) {
+		switch (this.mode) {
+		case NONE:
+			return function.apply(this.workbook);
+		case INPUTS:
+			return getStyleByInputs(Arrays.asList(function), () -> function.apply(getPrototypeWorkbook()));
+		default:
+			return toWorkbookStyle(function.apply(getPrototypeWorkbook()));
+		}
+	}
+
+	/**
+	 * Gets a style looking like the given style, but with the given data
+	 * format. The style is created once per style and data format.
+	 *
+	 * @param style
+	 *            the style of the workbook, null for the default style
+	 * @param dataFormat
+	 *            the data format
+	 * @return the cell style
+	 */
+	public XSSFCellStyle getStyleWithDataFormat(final XSSFCellStyle style, final String dataFormat) {
+		XSSFCellStyle baseStyle = style != null ? style : this.workbook.getCellStyleAt((short) 0);
+		Map<String, XSSFCellStyle> byFormat = this.stylesWithDataFormat.computeIfAbsent(baseStyle,
+																						s -> new HashMap<>());
+		XSSFCellStyle formatted = byFormat.get(dataFormat);
+		if (formatted == null) {
+			formatted = this.workbook.createCellStyle();
+			formatted.cloneStyleFrom(baseStyle);
+			formatted.setDataFormat(getDataFormat(dataFormat));
+			byFormat.put(dataFormat, formatted);
+		}
+		return formatted;
+	}
+
+	/**
+	 * Gets the mode.
+	 *
+	 * @return the mode
+	 */
+	public StyleCacheMode getMode() {
+		return this.mode;
+	}
+
+	/**
+	 * Gets the number of styles created in the workbook since this cache has
+	 * been created, including the styles created by the style functions in
+	 * {@link StyleCacheMode#NONE} mode and the styles with a data format.
+	 *
+	 * @return the style count
+	 */
+	public int getStyleCount() {
+		return this.workbook.getNumCellStyles() - this.initialStyleCount;
+	}
+
+	private XSSFCellStyle getStyleByInputs(final List<Object> key, final Supplier<XSSFCellStyle> prototype) {
+		XSSFCellStyle style = this.stylesByInputs.get(key);
+		if (style == null && !this.stylesByInputs.containsKey(key)) {
+			style = toWorkbookStyle(prototype.get());
+			this.stylesByInputs.put(key, style);
+		}
+		return style;
+	}
+
+	/**
+	 * Gets the style of the workbook looking like the given prototype style.
+	 *
+	 * @param prototype
+	 *            the prototype style, may be null
+	 * @return the workbook style
+	 */
+	private XSSFCellStyle toWorkbookStyle(final XSSFCellStyle prototype) {
+		if (prototype == null) {
+			return null;
+		}
+
+		XSSFCellStyle style = this.stylesByPrototype.get(prototype);
+		if (style == null) {
+			CellStyleDescriptor descriptor = CellStyleDescriptor.of(prototype);
+			style = this.styles.get(descriptor);
+			if (style == null) {
+				style = descriptor.createIn(this.workbook, getFont(descriptor.getFont()));
+				this.styles.put(descriptor, style);
+			}
+			this.stylesByPrototype.put(prototype, style);
+		}
+		return style;
+	}
+
+	private short getDataFormat(final String format) {
+		Short index = this.dataFormats.get(format);
+		if (index == null) {
+			index = this.workbook.createDataFormat()
+				.getFormat(format);
+			this.dataFormats.put(format, index);
+		}
+		return index;
+	}
+
+	private XSSFFont getFont(final FontDescriptor descriptor) {
+		XSSFFont font = this.fonts.get(descriptor);
+		if (font == null) {
+			font = this.workbook.createFont();
+			descriptor.applyTo(font);
+			this.fonts.put(descriptor, font);
+		}
+		return font;
+	}
+
+	/**
+	 * Gets the prototype workbook. It is replaced once too many styles or
+	 * fonts have been created in it, styles returned by the functions are
+	 * only needed until they have been converted.
+	 *
+	 * @return the prototype workbook
+	 */
+	private XSSFWorkbook getPrototypeWorkbook() {
+		if (this.prototypeWorkbook == null
+				|| this.prototypeWorkbook.getStylesSource()
+					.getNumCellStyles() > MAX_PROTOTYPE_STYLES
+				|| this.prototypeWorkbook.getStylesSource()
+					.getFonts()
+					.size() > MAX_PROTOTYPE_STYLES) {
+			this.prototypeWorkbook = new XSSFWorkbook();
+			this.stylesByPrototype.clear();
+		}
+		return this.prototypeWorkbook;
+	}
+
+	/**
+	 * The style cache returned by
+	 * {@link StyleCache#synchronizedStyleCache(XSSFWorkbook, StyleCacheMode)}.
+	 */
+	private static final class SynchronizedStyleCache extends StyleCache {
+
+		private SynchronizedStyleCache(final XSSFWorkbook workbook, final StyleCacheMode mode) {
+			super(workbook, mode);
+		}
+
+		@Override
+		public synchronized XSSFCellStyle getContentStyle(final DataCellStyleGeneratorFunction function,
+				final String columnId, final Object value, final int rowNum) {
+			return super.getContentStyle(function, columnId, value, rowNum);
+		}
+
+		@Override
+		public synchronized XSSFCellStyle getStyle(final BiFunction<XSSFWorkbook, String, XSSFCellStyle> function,
+				final String columnId) {
+			return super.getStyle(function, columnId);
+		}
+
+		@Override
+		public synchronized XSSFCellStyle getStyle(final Function<XSSFWorkbook, XSSFCellStyle> function) {
+			return super.getStyle(function);
+		}
+
+		@Override
+		public synchronized XSSFCellStyle getStyleWithDataFormat(final XSSFCellStyle style,
+				final String dataFormat) {
+			return super.getStyleWithDataFormat(style, dataFormat);
+		}
+
+		@Override
+		public synchronized int getStyleCount() {
+			return super.getStyleCount();
+		}
+	}
+}
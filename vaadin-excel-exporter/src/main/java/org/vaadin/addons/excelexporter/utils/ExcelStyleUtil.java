@@ -68,18 +68,33 @@ public class ExcelStyleUtil {
 	 *            the my cell
 	 */
 	public static void addGenericGridHeaderRow(final HeaderCell gridHeaderCell, final Cell myCell) {
+		String text = getGridHeaderCellText(gridHeaderCell);
+		if (text != null) {
+			myCell.setCellValue(text);
+		}
+	}
+
+	/**
+	 * Gets the text of a grid header cell depending on its type.
+	 *
+	 * @param gridHeaderCell
+	 *            the grid header cell
+	 * @return the text or null if the cell type is unknown
+	 */
+	public static String getGridHeaderCellText(final HeaderCell gridHeaderCell) {
 
 		if (gridHeaderCell.getCellType()
 			.equals(GridStaticCellType.TEXT)) {
-			myCell.setCellValue(gridHeaderCell.getText());
+			return gridHeaderCell.getText();
 		} else if (gridHeaderCell.getCellType()
 			.equals(GridStaticCellType.HTML)) {
-			myCell.setCellValue(gridHeaderCell.getHtml());
+			return gridHeaderCell.getHtml();
 		} else if (gridHeaderCell.getCellType()
 			.equals(GridStaticCellType.WIDGET)) {
-			myCell.setCellValue(gridHeaderCell.getComponent()
-				.toString());
+			return gridHeaderCell.getComponent()
+				.toString();
 		}
+		return null;
 	}
 
 	/**
@@ -91,18 +106,33 @@ public class ExcelStyleUtil {
 	 *            the my cell
 	 */
 	public static void addGenericGridFooterRow(final FooterCell gridHeaderCell, final Cell myCell) {
+		String text = getGridFooterCellText(gridHeaderCell);
+		if (text != null) {
+			myCell.setCellValue(text);
+		}
+	}
 
-		if (gridHeaderCell.getCellType()
+	/**
+	 * Gets the text of a grid footer cell depending on its type.
+	 *
+	 * @param gridFooterCell
+	 *            the grid footer cell
+	 * @return the text or null if the cell type is unknown
+	 */
+	public static String getGridFooterCellText(final FooterCell gridFooterCell) {
+
+		if (gridFooterCell.getCellType()
 			.equals(GridStaticCellType.TEXT)) {
-			myCell.setCellValue(gridHeaderCell.getText());
-		} else if (gridHeaderCell.getCellType()
+			return gridFooterCell.getText();
+		} else if (gridFooterCell.getCellType()
 			.equals(GridStaticCellType.HTML)) {
-			myCell.setCellValue(gridHeaderCell.getHtml());
-		} else if (gridHeaderCell.getCellType()
+			return gridFooterCell.getHtml();
+		} else if (gridFooterCell.getCellType()
 			.equals(GridStaticCellType.WIDGET)) {
-			myCell.setCellValue(gridHeaderCell.getComponent()
-				.toString());
+			return gridFooterCell.getComponent()
+				.toString();
 		}
+		return null;
 	}
 
 }
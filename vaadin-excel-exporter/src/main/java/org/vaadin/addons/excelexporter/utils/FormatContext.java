@@ -0,0 +1,214 @@
+package org.vaadin.addons.excelexporter.utils;
+
+import java.math.BigDecimal;
+import java.text.DateFormat;
+import java.text.NumberFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The Class FormatContext formats the values of an export. The locale is
+ * resolved once when the context is created and each formatter is created
+ * the first time it is needed and then reused for all cells, so it can be used
+ * off the UI thread as well.
+ * <p>
+ * The formatters are not thread safe, a context must only be used by one
+ * thread at a time. Use {@link #copy()} to get a context for another thread.
+ */
+public class FormatContext {
+
+	/** The locale. */
+	private final Locale locale;
+
+	/** The integer format, created on first use. */
+	private NumberFormat integerFormat;
+
+	/** The float format, created on first use. */
+	private NumberFormat floatFormat;
+
+	/** The date formats by pattern, created on first use. */
+	private Map<String, DateFormat> dateFormats;
+
+	/** The excel data formats by date pattern, created on first use. */
+	private Map<String, String> excelDateFormats;
+
+	/**
+	 * Instantiates a new format context.
+	 *
+	 * @param locale
+	 *            the locale
+	 */
+	public FormatContext(final Locale locale) {
+		this.locale = locale;
+	}
+
+	/**
+	 * Creates a new context with the same locale, to be used by another
+	 * thread.
+	 *
+	 * @return the format context
+	 */
+	public FormatContext copy() {
+		return new FormatContext(this.locale);
+	}
+
+	/**
+	 * Gets the locale.
+	 *
+	 * @return the locale
+	 */
+	public Locale getLocale() {
+		return this.locale;
+	}
+
+	/**
+	 * Formats Date based on the locale of this context
+	 *
+	 * @param val
+	 *            the val
+	 * @param datePattern
+	 *            the pattern
+	 * @return the string
+	 */
+	public String formatDate(final Date val, final String datePattern) {
+		if (val == null) {
+			return null;
+		}
+		if (this.dateFormats == null) {
+			this.dateFormats = new HashMap<>();
+		}
+		DateFormat df = this.dateFormats.get(datePattern);
+		if (df == null) {
+			df = new SimpleDateFormat(datePattern, this.locale);
+			this.dateFormats.put(datePattern, df);
+		}
+		return df.format(val);
+	}
+
+	/**
+	 * Gets the Excel data format for the given date pattern.
+	 *
+	 * @param datePattern
+	 *            the pattern
+	 * @return the excel data format
+	 */
+	public String getExcelDateFormat(final String datePattern) {
+		if (this.excelDateFormats == null) {
+			this.excelDateFormats = new HashMap<>();
+		}
+		return this.excelDateFormats.computeIfAbsent(datePattern, FormatUtil::toExcelDateFormat);
+	}
+
+	/**
+	 * Localized format for Integer and BigDecimal values
+	 *
+	 * @param value
+	 *            the value
+	 * @param isIntOrBigD
+	 *            the is int or big D
+	 * @return the string
+	 */
+	public String localizedFormat(final String value, final Boolean isIntOrBigD) {
+		if (isIntOrBigD) {
+			return getIntegerFormat().format(unLocalizedFormatForInt(value));
+		}
+		return getFloatFormat().format(unLocalizedFormatForBigDecimal(value));
+	}
+
+	/**
+	 * Format float.
+	 *
+	 * @param value
+	 *            the value
+	 * @return the string
+	 */
+	public String formatFloat(final Double value) {
+		return getFloatFormat().format(value);
+	}
+
+	/**
+	 * Gets the integer format, creating it on first use.
+	 *
+	 * @return the integer format
+	 */
+	private NumberFormat getIntegerFormat() {
+		if (this.integerFormat == null) {
+			this.integerFormat = NumberFormat.getNumberInstance(this.locale);
+			this.integerFormat.setParseIntegerOnly(true);
+		}
+		return this.integerFormat;
+	}
+
+	/**
+	 * Gets the float format, creating it on first use.
+	 *
+	 * @return the float format
+	 */
+	private NumberFormat getFloatFormat() {
+		if (this.floatFormat == null) {
+			this.floatFormat = NumberFormat.getNumberInstance(this.locale);
+			this.floatFormat.setMinimumFractionDigits(2);
+			this.floatFormat.setMaximumFractionDigits(2);
+		}
+		return this.floatFormat;
+	}
+
+	/**
+	 * Un localized format for int.
+	 *
+	 * @param value
+	 *            the value
+	 * @return the integer
+	 */
+	private Integer unLocalizedFormatForInt(final String value) {
+		Integer modifiedValue = 0;
+
+		if (value != null && !value.contains(".") && !value.contains(",")) {
+			modifiedValue = Integer.valueOf(value);
+		} else {
+			if (value != null && "en".equals(this.locale.getLanguage())) {
+				modifiedValue = Integer.valueOf(value.replaceAll(",", ""));
+			} else if (value != null && "de".equals(this.locale.getLanguage())) {
+				modifiedValue = Integer.valueOf(value.replaceAll("\\.", ""));
+			}
+		}
+		return modifiedValue;
+	}
+
+	/**
+	 * Un localized format for big decimal.
+	 *
+	 * @param value
+	 *            the value
+	 * @return the big decimal
+	 */
+	private BigDecimal unLocalizedFormatForBigDecimal(final String value) {
+		BigDecimal modifiedValue = new BigDecimal(Double.valueOf("0"));
+
+		if (value != null && !value.contains(".") && !value.contains(",")) {
+
+			modifiedValue = BigDecimal.valueOf(Double.valueOf(value));
+		} else {
+			if (value != null && "en".equals(this.locale.getLanguage())) {
+
+				modifiedValue = BigDecimal.valueOf(Double.valueOf(value.replaceAll(",", "")));
+			} else if (value != null && "de".equals(this.locale.getLanguage())) {
+
+				String temp = value;
+				if (value.contains(".")) {
+					temp = value.replaceAll("\\.", "");
+
+				}
+				if (temp.contains(",")) {
+					temp = temp.replaceAll(",", "\\.");
+
+				}
+				modifiedValue = BigDecimal.valueOf(Double.valueOf(temp));
+			}
+		}
+		return modifiedValue;
+	}
+}
@@ -1,15 +1,12 @@
 package org.vaadin.addons.excelexporter.utils;
 
-import java.math.BigDecimal;
-import java.text.DateFormat;
-import java.text.NumberFormat;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.vaadin.addons.excelexporter.configuration.ExportExcelComponentConfiguration;
+import org.vaadin.addons.excelexporter.formatter.ColumnFormatter;
 import com.vaadin.ui.UI;
 
 public class FormatUtil {
@@ -25,6 +22,20 @@ public class FormatUtil {
 	 * Styles and Designing of Excel Content
 	 *******************************************/
 
+	/**
+	 * Gets the locale of the current UI, or the default locale of the JVM if
+	 * there is no current UI or it has no locale.
+	 *
+	 * @return the locale
+	 */
+	public static Locale getCurrentLocale() {
+		UI ui = UI.getCurrent();
+		if (ui != null && ui.getLocale() != null) {
+			return ui.getLocale();
+		}
+		return Locale.getDefault();
+	}
+
 	/**
 	 * Formats Date based on the UI's locale
 	 *
@@ -35,12 +46,7 @@ public class FormatUtil {
 	 * @return the string
 	 */
 	public static String formatDate(final Date val, String datePattern) {
-		if (val == null) {
-			return null;
-		}
-		DateFormat df = new SimpleDateFormat(datePattern, UI.getCurrent()
-			.getLocale());
-		return df.format(val);
+		return new FormatContext(getCurrentLocale()).formatDate(val, datePattern);
 	}
 
 	/**
@@ -53,22 +59,7 @@ public class FormatUtil {
 	 * @return the string
 	 */
 	public static String localizedFormat(final String value, final Boolean isIntOrBigD) {
-		Locale loc = UI.getCurrent()
-			.getLocale();
-		if (isIntOrBigD) {
-			Integer modifiedValue = unLocalizedFormatForInt(value);
-
-			NumberFormat nf = NumberFormat.getNumberInstance(loc);
-			nf.setParseIntegerOnly(true);
-			return nf.format(modifiedValue);
-		} else {
-			BigDecimal modifiedValue = unLocalizedFormatForBigDecimal(value);
-			NumberFormat nf = NumberFormat.getNumberInstance(loc);
-			nf.setMinimumFractionDigits(2);
-			nf.setMaximumFractionDigits(2);
-			return nf.format(modifiedValue);
-		}
-
+		return new FormatContext(getCurrentLocale()).localizedFormat(value, isIntOrBigD);
 	}
 
 	/**
@@ -79,72 +70,121 @@ public class FormatUtil {
 	 * @return the string
 	 */
 	public static String formatFloat(final Double value) {
-		Locale loc = UI.getCurrent()
-			.getLocale();
-		NumberFormat nf = NumberFormat.getNumberInstance(loc);
-		nf.setMinimumFractionDigits(2);
-		nf.setMaximumFractionDigits(2);
-		return nf.format(value);
+		return new FormatContext(getCurrentLocale()).formatFloat(value);
 	}
 
 	/**
-	 * Un localized format for int.
+	 * Converts a SimpleDateFormat pattern to an Excel data format. Letters
+	 * without an Excel equivalent such as time zones or week numbers are
+	 * dropped, quoted text is kept as literal text.
 	 *
-	 * @param value
-	 *            the value
-	 * @return the integer
+	 * @param datePattern
+	 *            the pattern
+	 * @return the excel data format
 	 */
-	private static Integer unLocalizedFormatForInt(final String value) {
-		Locale loc = UI.getCurrent()
-			.getLocale();
-		Integer modifiedValue = 0;
-
-		if (value != null && !value.contains(".") && !value.contains(",")) {
-			modifiedValue = Integer.valueOf(value);
-		} else {
-			if (value != null && "en".equals(loc.getLanguage())) {
-				modifiedValue = Integer.valueOf(value.replaceAll(",", ""));
-			} else if (value != null && "de".equals(loc.getLanguage())) {
-				modifiedValue = Integer.valueOf(value.replaceAll("\\.", ""));
+	public static String toExcelDateFormat(final String datePattern) {
+		StringBuilder excelFormat = new StringBuilder();
+		int i = 0;
+		while (i < datePattern.length()) {
+			char c = datePattern.charAt(i);
+			if (c == '\'') {
+				i = appendQuotedText(datePattern, i, excelFormat);
+				continue;
+			}
+
+			int count = 1;
+			while (i + count < datePattern.length() && datePattern.charAt(i + count) == c) {
+				count++;
+			}
+			switch (c) {
+			case 'y':
+				excelFormat.append(count == 2 ? "yy" : "yyyy");
+				break;
+			case 'M':
+				excelFormat.append(repeat('m', Math.min(count, 4)));
+				break;
+			case 'd':
+				excelFormat.append(repeat('d', Math.min(count, 2)));
+				break;
+			case 'E':
+				excelFormat.append(count >= 4 ? "dddd" : "ddd");
+				break;
+			case 'H':
+			case 'k':
+			case 'h':
+			case 'K':
+				excelFormat.append(repeat('h', Math.min(count, 2)));
+				break;
+			case 'm':
+				excelFormat.append(repeat('m', Math.min(count, 2)));
+				break;
+			case 's':
+				excelFormat.append(repeat('s', Math.min(count, 2)));
+				break;
+			case 'S':
+				excelFormat.append(repeat('0', Math.min(count, 3)));
+				break;
+			case 'a':
+				excelFormat.append("AM/PM");
+				break;
+			default:
+				if (!Character.isLetter(c)) {
+					for (int n = 0; n < count; n++) {
+						appendLiteral(c, excelFormat);
+					}
+				}
 			}
+			i += count;
 		}
-		return modifiedValue;
+		return excelFormat.toString();
 	}
 
 	/**
-	 * Un localized format for big decimal.
+	 * Appends the quoted text of a SimpleDateFormat pattern starting at the
+	 * given quote, two quotes are a single quote.
 	 *
-	 * @param value
-	 *            the value
-	 * @return the big decimal
+	 * @return the index after the closing quote
 	 */
-	private static BigDecimal unLocalizedFormatForBigDecimal(final String value) {
-		Locale loc = UI.getCurrent()
-			.getLocale();
-		BigDecimal modifiedValue = new BigDecimal(Double.valueOf("0"));
-
-		if (value != null && !value.contains(".") && !value.contains(",")) {
-
-			modifiedValue = BigDecimal.valueOf(Double.valueOf(value));
-		} else {
-			if (value != null && "en".equals(loc.getLanguage())) {
-
-				modifiedValue = BigDecimal.valueOf(Double.valueOf(value.replaceAll(",", "")));
-			} else if (value != null && "de".equals(loc.getLanguage())) {
-
-				String temp = value;
-				if (value.contains(".")) {
-					temp = value.replaceAll("\\.", "");
-
-				}
-				if (temp.contains(",")) {
-					temp = temp.replaceAll(",", "\\.");
-
+	private static int appendQuotedText(final String datePattern, final int start, final StringBuilder excelFormat) {
+		int i = start + 1;
+		if (i < datePattern.length() && datePattern.charAt(i) == '\'') {
+			excelFormat.append("\\'");
+			return i + 1;
+		}
+		excelFormat.append('"');
+		while (i < datePattern.length()) {
+			char c = datePattern.charAt(i++);
+			if (c == '\'') {
+				if (i < datePattern.length() && datePattern.charAt(i) == '\'') {
+					i++;
+				} else {
+					break;
 				}
-				modifiedValue = BigDecimal.valueOf(Double.valueOf(temp));
 			}
+			// a double quote ends the quoted text of the excel format
+			excelFormat.append(c == '"' ? "\"\\\"\"" : String.valueOf(c));
+		}
+		excelFormat.append('"');
+		return i;
+	}
+
+	/**
+	 * Appends a character shown as is, characters with a meaning in Excel data
+	 * formats are escaped.
+	 */
+	private static void appendLiteral(final char c, final StringBuilder excelFormat) {
+		if (Character.isDigit(c) || " -/:.,()".indexOf(c) < 0) {
+			excelFormat.append('\\');
+		}
+		excelFormat.append(c);
+	}
+
+	private static String repeat(final char c, final int count) {
+		StringBuilder builder = new StringBuilder(count);
+		for (int i = 0; i < count; i++) {
+			builder.append(c);
 		}
-		return modifiedValue;
+		return builder.toString();
 	}
 
 	/**
@@ -165,11 +205,29 @@ public class FormatUtil {
 	public static <BEANTYPE> String applyColumnFormatter(final Object[] visibleColumns,
 			final ExportExcelComponentConfiguration<BEANTYPE> componentConfiguration, final BEANTYPE itemId,
 			final int columns, final Object value) {
+		return applyColumnFormatter(componentConfiguration.getColumnFormatter(visibleColumns[columns]), itemId,
+									visibleColumns[columns], value);
+	}
+
+	/**
+	 * Apply an already resolved column formatter.
+	 *
+	 * @param columnFormatter
+	 *            the column formatter, may be null
+	 * @param itemId
+	 *            the item id
+	 * @param columnId
+	 *            the column id
+	 * @param value
+	 *            the value
+	 * @return the string or null if there is no formatter or formatting failed
+	 */
+	public static String applyColumnFormatter(final ColumnFormatter columnFormatter, final Object itemId,
+			final Object columnId, final Object value) {
 		String formatted = null;
-		if (componentConfiguration.getColumnFormatter(visibleColumns[columns]) != null) {
+		if (columnFormatter != null) {
 			try {
-				formatted = (String) componentConfiguration.getColumnFormatter(visibleColumns[columns])
-					.generateCell(value, itemId, visibleColumns[columns]);
+				formatted = (String) columnFormatter.generateCell(value, itemId, columnId);
 			} catch (Exception e) {
 				LOGGER.info("Formatting failed", e);
 			}
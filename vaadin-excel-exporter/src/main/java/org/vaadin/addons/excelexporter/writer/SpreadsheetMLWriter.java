@@ -0,0 +1,913 @@
+/*
+ *
+ */
+package org.vaadin.addons.excelexporter.writer;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.model.StylesTable;
+import org.vaadin.addons.excelexporter.stream.TempFileStore;
+
+/**
+ * The Class SpreadsheetMLWriter writes a xlsx file straight into a
+ * ZipOutputStream without building a workbook in memory. The sheets are
+ * written row by row, strings are written inline so no shared strings table
+ * has to be kept.
+ * <p>
+ * The rows of a sheet are buffered until the row window is full, the column
+ * widths are then estimated from the buffered rows, like autosizing with the
+ * SXSSF engine only considers the rows in memory. Rows must be written in
+ * ascending order and the cells of a row in ascending column order.
+ * <p>
+ * Sheets can also be rendered independently, e.g. on other threads, by part
+ * writers created with {@link #createPartWriter(boolean)}. A part writer keeps
+ * its sheets in compressed files of a {@link TempFileStore}, so they count
+ * towards its quota, until they are added to the xlsx
+ * file with {@link #appendSheets(SpreadsheetMLWriter)}. Rows of a sheet can be
+ * rendered independently by row fragments created with
+ * {@link #createRowFragment()} and added with
+ * {@link #appendRows(SpreadsheetMLWriter)}.
+ */
+public class SpreadsheetMLWriter {
+
+	/** The namespace of SpreadsheetML. */
+	private static final String MAIN_NAMESPACE = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+
+	/** The namespace of the relationships. */
+	private static final String RELATIONSHIPS_NAMESPACE =
+			"http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+	/** The XML declaration. */
+	private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+
+	/** The package relationships. */
+	private static final String ROOT_RELATIONSHIPS = XML_DECLARATION
+			+ "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+			+ "<Relationship Id=\"rId1\" Type=\"" + RELATIONSHIPS_NAMESPACE
+			+ "/officeDocument\" Target=\"xl/workbook.xml\"/></Relationships>";
+
+	/** The size of the write buffers. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** The widest column in characters. */
+	private static final int MAX_COLUMN_WIDTH = 255;
+
+	/** The zip stream, null for a part writer. */
+	private final ZipOutputStream zip;
+
+	/** The store of the temporary files of the part writers. */
+	private final TempFileStore store;
+
+	/** The writer of the current zip entry or sheet part. */
+	private Writer writer;
+
+	/** Whether the first sheet is the selected one. */
+	private final boolean selectFirstSheet;
+
+	/** The sheets written by a part writer. */
+	private final List<SheetPart> sheetParts = new ArrayList<>();
+
+	/** The number of rows buffered per sheet before the column widths are fixed. */
+	private final int rowWindowSize;
+
+	/** The names of the written sheets. */
+	private final List<String> sheetNames = new ArrayList<>();
+
+	/** The auto filters of the written sheets, null if a sheet has none. */
+	private final List<CellRangeAddress> autoFilters = new ArrayList<>();
+
+	/** The column letters by column index. */
+	private String[] columnLetters = new String[0];
+
+	/** The current sheet, null if no sheet is open. */
+	private SheetState sheet;
+
+	/**
+	 * Instantiates a new SpreadsheetML writer whose part writers keep their
+	 * sheets in the shared temp file store.
+	 *
+	 * @param out
+	 *            the stream the xlsx file is written to, it is not closed
+	 * @param rowWindowSize
+	 *            the number of rows per sheet used to estimate the column
+	 *            widths
+	 */
+	public SpreadsheetMLWriter(final OutputStream out, final int rowWindowSize) {
+		this(out, rowWindowSize, TempFileStore.getShared());
+	}
+
+	/**
+	 * Instantiates a new SpreadsheetML writer.
+	 *
+	 * @param out
+	 *            the stream the xlsx file is written to, it is not closed
+	 * @param rowWindowSize
+	 *            the number of rows per sheet used to estimate the column
+	 *            widths
+	 * @param store
+	 *            the store the part writers keep their sheets in
+	 */
+	public SpreadsheetMLWriter(final OutputStream out, final int rowWindowSize, final TempFileStore store) {
+		this.zip = new ZipOutputStream(new BufferedOutputStream(new NonClosingOutputStream(out), BUFFER_SIZE));
+		this.writer = new BufferedWriter(new OutputStreamWriter(this.zip, StandardCharsets.UTF_8), BUFFER_SIZE);
+		this.store = store;
+		this.rowWindowSize = Math.max(rowWindowSize, 1);
+		this.selectFirstSheet = true;
+	}
+
+	private SpreadsheetMLWriter(final TempFileStore store, final int rowWindowSize, final boolean selectFirstSheet) {
+		this.zip = null;
+		this.store = store;
+		this.rowWindowSize = rowWindowSize;
+		this.selectFirstSheet = selectFirstSheet;
+	}
+
+	/**
+	 * Creates a writer whose sheets are kept apart until they are added with
+	 * {@link #appendSheets(SpreadsheetMLWriter)}. The part writer can be used
+	 * by another thread than this writer, {@link #finish(StylesTable)} must not
+	 * be called on it.
+	 *
+	 * @param selectFirstSheet
+	 *            whether the first sheet of the part writer will be the first
+	 *            sheet of the xlsx file, which is the selected one
+	 * @return the part writer
+	 */
+	public SpreadsheetMLWriter createPartWriter(final boolean selectFirstSheet) {
+		return new SpreadsheetMLWriter(this.store, this.rowWindowSize, selectFirstSheet);
+	}
+
+	/**
+	 * Creates a writer for a range of rows of the current sheet which is
+	 * added with {@link #appendRows(SpreadsheetMLWriter)}. Only rows and cells
+	 * can be written to a row fragment, it can be used by another thread than
+	 * this writer.
+	 *
+	 * @return the row fragment
+	 */
+	public SpreadsheetMLWriter createRowFragment() {
+		SpreadsheetMLWriter fragment = new SpreadsheetMLWriter(this.store, Integer.MAX_VALUE, false);
+		fragment.sheet = new SheetState();
+		if (this.sheet.cellWidths == null) {
+			// the column widths of the current sheet are already fixed
+			fragment.sheet.cellWidths = null;
+		}
+		return fragment;
+	}
+
+	/**
+	 * Ends the current row and adds the rows of the given row fragment to the
+	 * current sheet. The result is the same as if the rows had been written
+	 * to this writer.
+	 *
+	 * @param fragment
+	 *            the row fragment
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void appendRows(final SpreadsheetMLWriter fragment) throws IOException {
+		fragment.endRow();
+		endRow();
+
+		SheetState fragmentSheet = fragment.sheet;
+		if (this.sheet.cellWidths != null && fragmentSheet.cellWidths != null) {
+			for (int[] cellWidth : fragmentSheet.cellWidths) {
+				// only the cells of the rows within the row window count
+				if (this.sheet.rowCount + cellWidth[3] < this.rowWindowSize) {
+					this.sheet.cellWidths.add(cellWidth);
+				}
+			}
+		}
+		this.sheet.rowCount += fragmentSheet.rowCount;
+		out().append(fragmentSheet.pendingRows);
+		fragment.sheet = null;
+
+		if (this.sheet.pendingRows != null && this.sheet.rowCount >= this.rowWindowSize) {
+			writeSheetStart();
+		}
+	}
+
+	/**
+	 * Ends the current sheet and adds the sheets of the given part writer, the
+	 * temporary files of the part writer are deleted.
+	 *
+	 * @param partWriter
+	 *            the part writer
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws IllegalArgumentException
+	 *             if a sheet name is already used
+	 */
+	public void appendSheets(final SpreadsheetMLWriter partWriter) throws IOException {
+		try {
+			partWriter.endSheet();
+			endSheet();
+			for (SheetPart part : partWriter.sheetParts) {
+				if (hasSheet(part.name)) {
+					throw new IllegalArgumentException("The workbook already contains a sheet named '" + part.name
+							+ "'");
+				}
+				this.sheetNames.add(part.name);
+				this.autoFilters.add(part.autoFilter);
+
+				this.zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + this.sheetNames.size() + ".xml"));
+				Inflater inflater = new Inflater();
+				try (InputStream in = new InflaterInputStream(new FileInputStream(part.file), inflater, BUFFER_SIZE)) {
+					byte[] buffer = new byte[BUFFER_SIZE];
+					int read;
+					while ((read = in.read(buffer)) != -1) {
+						this.zip.write(buffer, 0, read);
+					}
+				} finally {
+					inflater.end();
+				}
+				this.zip.closeEntry();
+				partWriter.store.delete(part.file);
+			}
+		} finally {
+			partWriter.discard();
+		}
+	}
+
+	/**
+	 * Deletes the temporary files of a part writer whose sheets are not
+	 * needed.
+	 */
+	public void discard() {
+		if (this.zip != null) {
+			return;
+		}
+		if (this.sheet != null) {
+			this.sheet = null;
+			try {
+				this.writer.close();
+			} catch (IOException e) {
+				// the file is deleted anyway
+			}
+		}
+		for (SheetPart part : this.sheetParts) {
+			part.deflater.end();
+			this.store.delete(part.file);
+		}
+		this.sheetParts.clear();
+	}
+
+	/**
+	 * Starts a new sheet, the previous sheet is ended.
+	 *
+	 * @param name
+	 *            the sheet name
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws IllegalArgumentException
+	 *             if the name is invalid or already used
+	 */
+	public void startSheet(final String name) throws IOException {
+		WorkbookUtil.validateSheetName(name);
+		if (hasSheet(name)) {
+			throw new IllegalArgumentException("The workbook already contains a sheet named '" + name + "'");
+		}
+		endSheet();
+		this.sheetNames.add(name);
+		this.autoFilters.add(null);
+		this.sheet = new SheetState();
+
+		if (this.zip != null) {
+			this.zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + this.sheetNames.size() + ".xml"));
+		} else {
+			SheetPart part = new SheetPart(name, this.store.createFile(".xml.deflate"));
+			this.sheetParts.add(part);
+			this.writer = new BufferedWriter(new OutputStreamWriter(
+					new DeflaterOutputStream(new FileOutputStream(part.file), part.deflater, BUFFER_SIZE),
+					StandardCharsets.UTF_8), BUFFER_SIZE);
+		}
+	}
+
+	/**
+	 * Gets the size of the temporary files of a part writer, complete once its
+	 * sheets have been ended.
+	 *
+	 * @return the size in bytes, 0 unless this is a part writer
+	 */
+	public long getPartBytes() {
+		long bytes = 0;
+		for (SheetPart part : this.sheetParts) {
+			bytes += part.file.length();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Gets the name of the current sheet.
+	 *
+	 * @return the sheet name
+	 */
+	public String getSheetName() {
+		return this.sheetNames.get(this.sheetNames.size() - 1);
+	}
+
+	/**
+	 * Checks if a sheet with the given name has been started.
+	 *
+	 * @param name
+	 *            the name
+	 * @return true, if there is a sheet with the name
+	 */
+	public boolean hasSheet(final String name) {
+		return this.sheetNames.contains(name);
+	}
+
+	/**
+	 * Freezes the given columns and rows of the current sheet. Has no effect
+	 * once the row window of the sheet has been written.
+	 *
+	 * @param columns
+	 *            the number of frozen columns
+	 * @param rows
+	 *            the number of frozen rows
+	 */
+	public void setFreezePane(final int columns, final int rows) {
+		this.sheet.frozenColumns = columns;
+		this.sheet.frozenRows = rows;
+	}
+
+	/**
+	 * Adds a merged region to the current sheet.
+	 *
+	 * @param region
+	 *            the region
+	 */
+	public void addMergedRegion(final CellRangeAddress region) {
+		this.sheet.mergedRegions.add(region);
+	}
+
+	/**
+	 * Sets the auto filter of the current sheet.
+	 *
+	 * @param range
+	 *            the range
+	 */
+	public void setAutoFilter(final CellRangeAddress range) {
+		this.autoFilters.set(this.autoFilters.size() - 1, range);
+	}
+
+	/**
+	 * Adds a manual page break after the given row of the current sheet.
+	 *
+	 * @param row
+	 *            the row
+	 */
+	public void setRowBreak(final int row) {
+		this.sheet.rowBreaks.add(row);
+	}
+
+	/**
+	 * Starts a row, the previous row is ended.
+	 *
+	 * @param row
+	 *            the zero based row index
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void startRow(final int row) throws IOException {
+		endRow();
+		this.sheet.row = row;
+		this.sheet.rowCount++;
+		Appendable out = out();
+		out.append("<row r=\"")
+			.append(Integer.toString(row + 1))
+			.append("\">");
+	}
+
+	/**
+	 * Writes an empty cell which only carries a style.
+	 *
+	 * @param column
+	 *            the column
+	 * @param styleIndex
+	 *            the style index
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void writeBlank(final int column, final int styleIndex) throws IOException {
+		if (styleIndex == 0) {
+			return;
+		}
+		startCell(column, styleIndex, null);
+		out().append("/>");
+	}
+
+	/**
+	 * Writes a string cell, an empty string is written as an empty string cell
+	 * like the XSSF engine does and a null value as a blank cell.
+	 *
+	 * @param column
+	 *            the column
+	 * @param value
+	 *            the value
+	 * @param styleIndex
+	 *            the style index
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void writeString(final int column, final String value, final int styleIndex) throws IOException {
+		if (value == null) {
+			writeBlank(column, styleIndex);
+			return;
+		}
+		trackWidth(column, value);
+
+		startCell(column, styleIndex, "inlineStr");
+		Appendable out = out();
+		boolean preserve = !value.isEmpty() && (Character.isWhitespace(value.charAt(0))
+				|| Character.isWhitespace(value.charAt(value.length() - 1)));
+		out.append(preserve ? "><is><t xml:space=\"preserve\">" : "><is><t>");
+		escape(value, out);
+		out.append("</t></is></c>");
+	}
+
+	/**
+	 * Writes a numeric cell.
+	 *
+	 * @param column
+	 *            the column
+	 * @param value
+	 *            the value
+	 * @param styleIndex
+	 *            the style index
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void writeNumber(final int column, final double value, final int styleIndex) throws IOException {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			writeString(column, Double.toString(value), styleIndex);
+			return;
+		}
+		String number = value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value)
+				: Double.toString(value);
+		// leave room for grouping separators and fraction digits of the data format
+		trackWidth(column, number.length() + number.length() / 3 + 3);
+
+		startCell(column, styleIndex, null);
+		out().append("><v>")
+			.append(number)
+			.append("</v></c>");
+	}
+
+	/**
+	 * Writes a date cell, dates need a style with a date format to be
+	 * displayed as such.
+	 *
+	 * @param column
+	 *            the column
+	 * @param value
+	 *            the value
+	 * @param styleIndex
+	 *            the style index
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void writeDate(final int column, final Date value, final int styleIndex) throws IOException {
+		writeNumber(column, DateUtil.getExcelDate(value), styleIndex);
+	}
+
+	/**
+	 * Ends the current sheet.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void endSheet() throws IOException {
+		if (this.sheet == null) {
+			return;
+		}
+		endRow();
+		if (this.sheet.pendingRows != null) {
+			writeSheetStart();
+		}
+
+		this.writer.write("</sheetData>");
+		CellRangeAddress autoFilter = this.autoFilters.get(this.autoFilters.size() - 1);
+		if (autoFilter != null) {
+			this.writer.write("<autoFilter ref=\"" + autoFilter.formatAsString() + "\"/>");
+		}
+		if (!this.sheet.mergedRegions.isEmpty()) {
+			this.writer.write("<mergeCells count=\"" + this.sheet.mergedRegions.size() + "\">");
+			for (CellRangeAddress region : this.sheet.mergedRegions) {
+				this.writer.write("<mergeCell ref=\"" + region.formatAsString() + "\"/>");
+			}
+			this.writer.write("</mergeCells>");
+		}
+		this.writer.write("<pageMargins left=\"0.7\" right=\"0.7\" top=\"0.75\" bottom=\"0.75\" header=\"0.3\" "
+				+ "footer=\"0.3\"/>");
+		if (!this.sheet.rowBreaks.isEmpty()) {
+			int count = this.sheet.rowBreaks.size();
+			this.writer.write("<rowBreaks count=\"" + count + "\" manualBreakCount=\"" + count + "\">");
+			for (int rowBreak : this.sheet.rowBreaks) {
+				this.writer.write("<brk id=\"" + rowBreak + "\" max=\"16383\" man=\"1\"/>");
+			}
+			this.writer.write("</rowBreaks>");
+		}
+		this.writer.write("</worksheet>");
+		if (this.zip != null) {
+			this.writer.flush();
+			this.zip.closeEntry();
+		} else {
+			this.writer.close();
+			SheetPart part = this.sheetParts.get(this.sheetParts.size() - 1);
+			part.deflater.end();
+			part.autoFilter = autoFilter;
+			this.store.written(part.file);
+			// kept until added or discarded, however long the other parts take
+			this.store.keepUntil(part.file, Long.MAX_VALUE);
+		}
+		this.sheet = null;
+	}
+
+	/**
+	 * Ends the current sheet and writes the workbook, the styles and the
+	 * package parts. The stream passed to the constructor is not closed.
+	 *
+	 * @param styles
+	 *            the styles the style indexes of the cells refer to
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void finish(final StylesTable styles) throws IOException {
+		endSheet();
+
+		writeEntry("[Content_Types].xml", getContentTypes());
+		writeEntry("_rels/.rels", ROOT_RELATIONSHIPS);
+		writeEntry("xl/workbook.xml", getWorkbook());
+		writeEntry("xl/_rels/workbook.xml.rels", getWorkbookRelationships());
+
+		this.zip.putNextEntry(new ZipEntry("xl/styles.xml"));
+		styles.writeTo(new NonClosingOutputStream(this.zip));
+		this.zip.closeEntry();
+
+		this.zip.finish();
+		this.zip.flush();
+	}
+
+	private void writeEntry(final String name, final String content) throws IOException {
+		this.zip.putNextEntry(new ZipEntry(name));
+		this.writer.write(content);
+		this.writer.flush();
+		this.zip.closeEntry();
+	}
+
+	private String getContentTypes() {
+		StringBuilder types = new StringBuilder(XML_DECLARATION);
+		types.append("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">")
+			.append("<Default Extension=\"rels\" ")
+			.append("ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>")
+			.append("<Default Extension=\"xml\" ContentType=\"application/xml\"/>")
+			.append("<Override PartName=\"/xl/workbook.xml\" ")
+			.append("ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>")
+			.append("<Override PartName=\"/xl/styles.xml\" ")
+			.append("ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>");
+		for (int i = 1; i <= this.sheetNames.size(); i++) {
+			types.append("<Override PartName=\"/xl/worksheets/sheet")
+				.append(i)
+				.append(".xml\" ContentType=\"")
+				.append("application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+		}
+		return types.append("</Types>")
+			.toString();
+	}
+
+	private String getWorkbook() throws IOException {
+		StringBuilder workbook = new StringBuilder(XML_DECLARATION);
+		workbook.append("<workbook xmlns=\"" + MAIN_NAMESPACE + "\" xmlns:r=\"" + RELATIONSHIPS_NAMESPACE + "\">")
+			.append("<bookViews><workbookView activeTab=\"0\"/></bookViews><sheets>");
+		for (int i = 0; i < this.sheetNames.size(); i++) {
+			workbook.append("<sheet name=\"");
+			escape(this.sheetNames.get(i), workbook);
+			workbook.append("\" sheetId=\"")
+				.append(i + 1)
+				.append("\" r:id=\"rId")
+				.append(i + 1)
+				.append("\"/>");
+		}
+		workbook.append("</sheets>");
+
+		boolean definedNames = false;
+		for (int i = 0; i < this.autoFilters.size(); i++) {
+			CellRangeAddress autoFilter = this.autoFilters.get(i);
+			if (autoFilter == null) {
+				continue;
+			}
+			if (!definedNames) {
+				workbook.append("<definedNames>");
+				definedNames = true;
+			}
+			workbook.append("<definedName name=\"_xlnm._FilterDatabase\" localSheetId=\"")
+				.append(i)
+				.append("\" hidden=\"1\">");
+			// absolute reference to the filtered range
+			escape("'" + this.sheetNames.get(i)
+				.replace("'", "''") + "'!"
+					+ autoFilter.formatAsString()
+						.replaceAll("([A-Z]+)([0-9]+)", "\\$$1\\$$2"),
+					workbook);
+			workbook.append("</definedName>");
+		}
+		if (definedNames) {
+			workbook.append("</definedNames>");
+		}
+		return workbook.append("</workbook>")
+			.toString();
+	}
+
+	private String getWorkbookRelationships() {
+		StringBuilder relationships = new StringBuilder(XML_DECLARATION);
+		relationships.append("<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">");
+		for (int i = 1; i <= this.sheetNames.size(); i++) {
+			relationships.append("<Relationship Id=\"rId")
+				.append(i)
+				.append("\" Type=\"" + RELATIONSHIPS_NAMESPACE + "/worksheet\" Target=\"worksheets/sheet")
+				.append(i)
+				.append(".xml\"/>");
+		}
+		relationships.append("<Relationship Id=\"rId")
+			.append(this.sheetNames.size() + 1)
+			.append("\" Type=\"" + RELATIONSHIPS_NAMESPACE + "/styles\" Target=\"styles.xml\"/>");
+		return relationships.append("</Relationships>")
+			.toString();
+	}
+
+	private void writeSheetStart() throws IOException {
+		this.writer.write(XML_DECLARATION);
+		this.writer.write("<worksheet xmlns=\"" + MAIN_NAMESPACE + "\" xmlns:r=\"" + RELATIONSHIPS_NAMESPACE + "\">");
+
+		this.writer.write("<sheetViews><sheetView ");
+		if (this.sheetNames.size() == 1 && this.selectFirstSheet) {
+			this.writer.write("tabSelected=\"1\" ");
+		}
+		this.writer.write("workbookViewId=\"0\"");
+		int columns = this.sheet.frozenColumns;
+		int rows = this.sheet.frozenRows;
+		if (columns > 0 || rows > 0) {
+			String pane = columns > 0 && rows > 0 ? "bottomRight" : rows > 0 ? "bottomLeft" : "topRight";
+			this.writer.write("><pane");
+			if (columns > 0) {
+				this.writer.write(" xSplit=\"" + columns + "\"");
+			}
+			if (rows > 0) {
+				this.writer.write(" ySplit=\"" + rows + "\"");
+			}
+			this.writer.write(" topLeftCell=\"" + new CellReference(rows, columns).formatAsString()
+					+ "\" activePane=\"" + pane + "\" state=\"frozen\"/><selection pane=\"" + pane
+					+ "\"/></sheetView>");
+		} else {
+			this.writer.write("/>");
+		}
+		this.writer.write("</sheetViews>");
+
+		writeColumnWidths();
+
+		this.writer.write("<sheetData>");
+		this.writer.append(this.sheet.pendingRows);
+		this.sheet.pendingRows = null;
+		this.sheet.cellWidths = null;
+	}
+
+	private void writeColumnWidths() throws IOException {
+		int[] widths = new int[0];
+		for (int[] cellWidth : this.sheet.cellWidths) {
+			int row = cellWidth[0];
+			int column = cellWidth[1];
+			if (isMerged(row, column)) {
+				// like autosizing without merged cells
+				continue;
+			}
+			if (column >= widths.length) {
+				int[] newWidths = new int[column + 1];
+				System.arraycopy(widths, 0, newWidths, 0, widths.length);
+				widths = newWidths;
+			}
+			widths[column] = Math.max(widths[column], cellWidth[2]);
+		}
+
+		boolean hasWidths = false;
+		for (int column = 0; column < widths.length; column++) {
+			if (widths[column] == 0) {
+				continue;
+			}
+			if (!hasWidths) {
+				this.writer.write("<cols>");
+				hasWidths = true;
+			}
+			int width = Math.min(widths[column] + 2, MAX_COLUMN_WIDTH);
+			this.writer.write("<col min=\"" + (column + 1) + "\" max=\"" + (column + 1) + "\" width=\"" + width
+					+ "\" customWidth=\"1\"/>");
+		}
+		if (hasWidths) {
+			this.writer.write("</cols>");
+		}
+	}
+
+	private boolean isMerged(final int row, final int column) {
+		for (CellRangeAddress region : this.sheet.mergedRegions) {
+			if (region.isInRange(row, column)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void endRow() throws IOException {
+		if (this.sheet.row < 0) {
+			return;
+		}
+		out().append("</row>");
+		this.sheet.row = -1;
+
+		if (this.sheet.pendingRows != null && this.sheet.rowCount >= this.rowWindowSize) {
+			writeSheetStart();
+		}
+	}
+
+	private void startCell(final int column, final int styleIndex, final String type) throws IOException {
+		Appendable out = out();
+		out.append("<c r=\"")
+			.append(getColumnLetters(column))
+			.append(Integer.toString(this.sheet.row + 1))
+			.append('"');
+		if (styleIndex != 0) {
+			out.append(" s=\"")
+				.append(Integer.toString(styleIndex))
+				.append('"');
+		}
+		if (type != null) {
+			out.append(" t=\"")
+				.append(type)
+				.append('"');
+		}
+	}
+
+	private void trackWidth(final int column, final String value) {
+		if (this.sheet.cellWidths == null) {
+			return;
+		}
+		int width = 0;
+		int lineStart = 0;
+		for (int i = 0; i <= value.length(); i++) {
+			if (i == value.length() || value.charAt(i) == '\n') {
+				width = Math.max(width, i - lineStart);
+				lineStart = i + 1;
+			}
+		}
+		trackWidth(column, width);
+	}
+
+	private void trackWidth(final int column, final int width) {
+		if (this.sheet.cellWidths != null) {
+			this.sheet.cellWidths.add(new int[] { this.sheet.row, column, width, this.sheet.rowCount - 1 });
+		}
+	}
+
+	private Appendable out() {
+		return this.sheet.pendingRows != null ? this.sheet.pendingRows : this.writer;
+	}
+
+	private String getColumnLetters(final int column) {
+		if (column >= this.columnLetters.length) {
+			String[] letters = new String[Math.max(column + 1, this.columnLetters.length * 2)];
+			System.arraycopy(this.columnLetters, 0, letters, 0, this.columnLetters.length);
+			this.columnLetters = letters;
+		}
+		if (this.columnLetters[column] == null) {
+			this.columnLetters[column] = CellReference.convertNumToColString(column);
+		}
+		return this.columnLetters[column];
+	}
+
+	/**
+	 * Escapes the given text for XML. Characters which are not allowed in XML
+	 * are dropped.
+	 */
+	private static void escape(final String text, final Appendable out) throws IOException {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '&':
+				out.append("&amp;");
+				break;
+			case '<':
+				out.append("&lt;");
+				break;
+			case '>':
+				out.append("&gt;");
+				break;
+			case '"':
+				out.append("&quot;");
+				break;
+			default:
+				if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+					if (c < 0xFFFE) {
+						out.append(c);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * The state of the sheet being written.
+	 */
+	private static final class SheetState {
+
+		/** The current row, -1 if no row is open. */
+		private int row = -1;
+
+		/** The number of rows started. */
+		private int rowCount;
+
+		/** The rows buffered until the row window is full, null once written. */
+		private StringBuilder pendingRows = new StringBuilder();
+
+		/** The row, column, width and row position of the buffered cells. */
+		private List<int[]> cellWidths = new ArrayList<>();
+
+		/** The frozen columns. */
+		private int frozenColumns;
+
+		/** The frozen rows. */
+		private int frozenRows;
+
+		/** The merged regions. */
+		private final List<CellRangeAddress> mergedRegions = new ArrayList<>();
+
+		/** The rows with a manual page break. */
+		private final List<Integer> rowBreaks = new ArrayList<>();
+	}
+
+	/**
+	 * A sheet written by a part writer.
+	 */
+	private static final class SheetPart {
+
+		/** The sheet name. */
+		private final String name;
+
+		/** The compressed sheet. */
+		private final File file;
+
+		/** The compressor of the sheet, favouring speed over size. */
+		private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+		/** The auto filter, null if the sheet has none. */
+		private CellRangeAddress autoFilter;
+
+		private SheetPart(final String name, final File file) {
+			this.name = name;
+			this.file = file;
+		}
+	}
+
+	/**
+	 * The stream passed to the zip stream, it must not close the stream of the
+	 * caller.
+	 */
+	private static final class NonClosingOutputStream extends FilterOutputStream {
+
+		private NonClosingOutputStream(final OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			this.out.write(b, off, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+	}
+}
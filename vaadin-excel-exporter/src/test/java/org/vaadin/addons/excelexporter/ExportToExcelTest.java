@@ -0,0 +1,340 @@
+package org.vaadin.addons.excelexporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+import org.vaadin.addons.excelexporter.configuration.ExportExcelComponentConfiguration;
+import org.vaadin.addons.excelexporter.configuration.ExportExcelConfiguration;
+import org.vaadin.addons.excelexporter.configuration.ExportExcelSheetConfiguration;
+import org.vaadin.addons.excelexporter.configuration.builder.ComponentFooterConfigurationBuilder;
+import org.vaadin.addons.excelexporter.configuration.builder.ComponentHeaderConfigurationBuilder;
+import org.vaadin.addons.excelexporter.configuration.builder.ExportExcelComponentConfigurationBuilder;
+import org.vaadin.addons.excelexporter.configuration.builder.ExportExcelConfigurationBuilder;
+import org.vaadin.addons.excelexporter.configuration.builder.ExportExcelSheetConfigurationBuilder;
+import org.vaadin.addons.excelexporter.model.CellValueMode;
+import org.vaadin.addons.excelexporter.model.ExportEngine;
+import org.vaadin.addons.excelexporter.model.ExportType;
+import org.vaadin.addons.excelexporter.style.CellStyleDescriptor;
+
+import com.vaadin.ui.Grid;
+
+/**
+ * Compares the exports of the engines cell by cell and covers the
+ * continuation of grids exceeding the row limit of a sheet.
+ */
+public class ExportToExcelTest {
+
+	private static final String[] COLUMNS = { "name", "count", "amount", "price", "date", "active" };
+
+	@Test
+	public void directEqualsXssf() throws IOException {
+		for (CellValueMode cellValueMode : CellValueMode.values()) {
+			ExportExcelConfiguration<Item> xssf = createConfiguration(ExportEngine.XSSF, cellValueMode, 150, 40);
+			ExportExcelConfiguration<Item> direct = createConfiguration(ExportEngine.DIRECT, cellValueMode, 150, 40);
+
+			assertSameCells(export(xssf), export(direct));
+		}
+	}
+
+	@Test
+	public void parallelSheetsEqualSerial() throws IOException {
+		ExportExcelConfiguration<Item> serial = createConfiguration(ExportEngine.DIRECT, CellValueMode.NATIVE, 150,
+																	40);
+		ExportExcelConfiguration<Item> parallel = createConfiguration(	ExportEngine.DIRECT, CellValueMode.NATIVE,
+																		150, 40);
+		parallel.setParallelSheetGeneration(true);
+
+		XSSFWorkbook serialWorkbook = export(serial);
+		XSSFWorkbook parallelWorkbook = export(parallel);
+		assertSameCells(serialWorkbook, parallelWorkbook);
+		assertSameColumnWidths(serialWorkbook, parallelWorkbook);
+	}
+
+	@Test
+	public void parallelChunksEqualSerial() throws IOException {
+		ExportExcelConfiguration<Item> serial = createConfiguration(ExportEngine.DIRECT, CellValueMode.NATIVE, 150,
+																	40);
+		XSSFWorkbook serialWorkbook = export(serial);
+		for (int chunkSize : new int[] { 1, 7, 64, 1000 }) {
+			ExportExcelConfiguration<Item> parallel = createConfiguration(	ExportEngine.DIRECT, CellValueMode.NATIVE,
+																			150, 40);
+			parallel.setParallelRowChunkSize(chunkSize);
+
+			XSSFWorkbook parallelWorkbook = export(parallel);
+			assertSameCells(serialWorkbook, parallelWorkbook);
+			assertSameColumnWidths(serialWorkbook, parallelWorkbook);
+		}
+	}
+
+	@Test
+	public void xlsRowLimit() {
+		ExportToExcel<Item> exporter = new ExportToExcel<>(ExportType.XLS,
+				createConfiguration(ExportEngine.XSSF, CellValueMode.TEXT, 1, 1));
+		assertEquals(SpreadsheetVersion.EXCEL97.getMaxRows(), exporter.getMaxRows());
+	}
+
+	@Test
+	public void xlsContinuationSheets() throws IOException {
+		ExportExcelConfiguration<Item> configuration = createConfiguration(	ExportEngine.XSSF, CellValueMode.TEXT, 45,
+																			0);
+		ExportToExcel<Item> exporter = new ExportToExcel<Item>(ExportType.XLS, configuration) {
+
+			@Override
+			protected int getMaxRows() {
+				return 20;
+			}
+		};
+		File file = exporter.generateReportFile();
+		HSSFWorkbook workbook;
+		try (InputStream in = new FileInputStream(file)) {
+			workbook = new HSSFWorkbook(in);
+		} finally {
+			file.delete();
+		}
+
+		assertEquals(3, workbook.getNumberOfSheets());
+		assertEquals("Items", workbook.getSheetName(0));
+		assertEquals("Items (2)", workbook.getSheetName(1));
+		assertEquals("Items (3)", workbook.getSheetName(2));
+
+		// every item is exported once, in order
+		List<String> names = new ArrayList<>();
+		for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
+			Sheet sheet = workbook.getSheetAt(i);
+			assertTrue(sheet.getLastRowNum() < 20);
+			for (Row row : sheet) {
+				String value = row.getCell(0) != null ? row.getCell(0)
+					.getStringCellValue() : "";
+				if (value.startsWith("Item ")) {
+					names.add(value);
+				}
+			}
+		}
+		List<String> expected = new ArrayList<>();
+		for (Item item : createItems(45)) {
+			expected.add(item.getName());
+		}
+		assertEquals(expected, names);
+	}
+
+	private static ExportExcelConfiguration<Item> createConfiguration(final ExportEngine engine,
+			final CellValueMode cellValueMode, final int firstSheetRows, final int secondSheetRows) {
+		List<ExportExcelSheetConfiguration<Item>> sheetConfigs = new ArrayList<>();
+		sheetConfigs.add(createSheetConfiguration("Items", firstSheetRows));
+		if (secondSheetRows > 0) {
+			sheetConfigs.add(createSheetConfiguration("More items", secondSheetRows));
+		}
+		return new ExportExcelConfigurationBuilder<Item>().withExportFileName("items")
+			.withGeneratedBy("test")
+			.withSheetConfigs(sheetConfigs)
+			.withExportEngine(engine)
+			.withCellValueMode(cellValueMode)
+			.withLocale(Locale.GERMANY)
+			.build();
+	}
+
+	private static ExportExcelSheetConfiguration<Item> createSheetConfiguration(final String name, final int rows) {
+		Grid<Item> grid = new Grid<>();
+		grid.addColumn(Item::getName)
+			.setId("name");
+		grid.addColumn(Item::getCount)
+			.setId("count");
+		grid.addColumn(Item::getAmount)
+			.setId("amount");
+		grid.addColumn(Item::getPrice)
+			.setId("price");
+		grid.addColumn(Item::getDate)
+			.setId("date");
+		grid.addColumn(Item::isActive)
+			.setId("active");
+		grid.setItems(createItems(rows));
+
+		ExportExcelComponentConfiguration<Item> componentConfig = new ExportExcelComponentConfigurationBuilder<Item>()
+			.withGrid(grid)
+			.withVisibleProperties(COLUMNS)
+			.withHeaderConfigs(Arrays.asList(new ComponentHeaderConfigurationBuilder().withAutoFilter(true)
+				.withColumnKeys(COLUMNS)
+				.build()))
+			.withFooterConfigs(Arrays.asList(new ComponentFooterConfigurationBuilder().withColumnKeys(COLUMNS)
+				.build()))
+			.withIntegerFormattingProperties(Arrays.asList("count"))
+			.withFloatFormattingProperties(Arrays.asList("amount", "price"))
+			.withDateFormattingProperties(Arrays.asList("date"))
+			.withBooleanFormattingProperties(Arrays.asList("active"))
+			.build();
+		return new ExportExcelSheetConfigurationBuilder<Item>().withReportTitle(name)
+			.withSheetName(name)
+			.withComponentConfigs(Arrays.asList(componentConfig))
+			.withDateFormat("dd.MM.yyyy")
+			.build();
+	}
+
+	private static List<Item> createItems(final int rows) {
+		List<Item> items = new ArrayList<>();
+		for (int i = 0; i < rows; i++) {
+			// every seventh item has no values besides its name
+			boolean empty = i % 7 == 6;
+			items.add(new Item("Item " + i, empty ? null : i * 1000, empty ? null : i * 1.25,
+					empty ? null : BigDecimal.valueOf(i * 31, 2), empty ? null : new Date(1500000000000L + i * 3600000L),
+					i % 2 == 0));
+		}
+		return items;
+	}
+
+	private static XSSFWorkbook export(final ExportExcelConfiguration<Item> configuration) throws IOException {
+		File file = new ExportToExcel<>(ExportType.XLSX, configuration).generateReportFile();
+		assertNotNull(file);
+		try (InputStream in = new FileInputStream(file)) {
+			return new XSSFWorkbook(in);
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static void assertSameCells(final XSSFWorkbook expected, final XSSFWorkbook actual) {
+		assertEquals(expected.getNumberOfSheets(), actual.getNumberOfSheets());
+		for (int i = 0; i < expected.getNumberOfSheets(); i++) {
+			Sheet expectedSheet = expected.getSheetAt(i);
+			Sheet actualSheet = actual.getSheetAt(i);
+			assertEquals(expectedSheet.getSheetName(), actualSheet.getSheetName());
+			assertEquals(expectedSheet.getLastRowNum(), actualSheet.getLastRowNum());
+			assertEquals(mergedRegions(expectedSheet), mergedRegions(actualSheet));
+
+			for (int r = 0; r <= expectedSheet.getLastRowNum(); r++) {
+				Row expectedRow = expectedSheet.getRow(r);
+				Row actualRow = actualSheet.getRow(r);
+				int cells = Math.max(	expectedRow != null ? expectedRow.getLastCellNum() : 0,
+										actualRow != null ? actualRow.getLastCellNum() : 0);
+				for (int c = 0; c < cells; c++) {
+					Cell expectedCell = expectedRow != null ? expectedRow.getCell(c) : null;
+					Cell actualCell = actualRow != null ? actualRow.getCell(c) : null;
+					String position = expectedSheet.getSheetName() + "!" + r + ":" + c;
+					assertEquals(position, cellValue(expectedCell), cellValue(actualCell));
+					assertEquals(position, cellStyle(expectedCell), cellStyle(actualCell));
+				}
+			}
+		}
+	}
+
+	private static void assertSameColumnWidths(final Workbook expected, final Workbook actual) {
+		for (int i = 0; i < expected.getNumberOfSheets(); i++) {
+			for (int c = 0; c < COLUMNS.length; c++) {
+				assertEquals(expected.getSheetAt(i)
+					.getColumnWidth(c),
+								actual.getSheetAt(i)
+									.getColumnWidth(c));
+			}
+		}
+	}
+
+	private static List<String> mergedRegions(final Sheet sheet) {
+		List<String> regions = new ArrayList<>();
+		for (int i = 0; i < sheet.getNumMergedRegions(); i++) {
+			CellRangeAddress region = sheet.getMergedRegion(i);
+			regions.add(region.formatAsString());
+		}
+		return regions;
+	}
+
+	/**
+	 * Gets the type and value of a cell, a missing cell is a blank one.
+	 */
+	private static String cellValue(final Cell cell) {
+		if (cell == null) {
+			return "BLANK";
+		}
+		switch (cell.getCellType()) {
+		case Cell.CELL_TYPE_STRING:
+			return "STRING " + cell.getStringCellValue();
+		case Cell.CELL_TYPE_NUMERIC:
+			return "NUMERIC " + cell.getNumericCellValue();
+		case Cell.CELL_TYPE_BOOLEAN:
+			return "BOOLEAN " + cell.getBooleanCellValue();
+		case Cell.CELL_TYPE_BLANK:
+			return "BLANK";
+		default:
+			return "TYPE " + cell.getCellType();
+		}
+	}
+
+	private static CellStyleDescriptor cellStyle(final Cell cell) {
+		if (cell == null) {
+			return null;
+		}
+		return CellStyleDescriptor.of((XSSFCellStyle) cell.getCellStyle());
+	}
+
+	/**
+	 * The exported bean.
+	 */
+	public static class Item {
+
+		private final String name;
+
+		private final Integer count;
+
+		private final Double amount;
+
+		private final BigDecimal price;
+
+		private final Date date;
+
+		private final boolean active;
+
+		public Item(final String name, final Integer count, final Double amount, final BigDecimal price,
+				final Date date, final boolean active) {
+			this.name = name;
+			this.count = count;
+			this.amount = amount;
+			this.price = price;
+			this.date = date;
+			this.active = active;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public Integer getCount() {
+			return this.count;
+		}
+
+		public Double getAmount() {
+			return this.amount;
+		}
+
+		public BigDecimal getPrice() {
+			return this.price;
+		}
+
+		public Date getDate() {
+			return this.date;
+		}
+
+		public boolean isActive() {
+			return this.active;
+		}
+	}
+}
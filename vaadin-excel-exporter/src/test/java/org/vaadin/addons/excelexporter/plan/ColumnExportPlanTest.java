@@ -0,0 +1,130 @@
+package org.vaadin.addons.excelexporter.plan;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+import org.vaadin.addons.excelexporter.configuration.ExportExcelComponentConfiguration;
+import org.vaadin.addons.excelexporter.configuration.builder.ExportExcelComponentConfigurationBuilder;
+import org.vaadin.addons.excelexporter.function.DataCellStyleGeneratorFunction;
+import org.vaadin.addons.excelexporter.function.RowParityCellStyleGeneratorFunction;
+import org.vaadin.addons.excelexporter.model.StyleCacheMode;
+import org.vaadin.addons.excelexporter.model.ValueKind;
+import org.vaadin.addons.excelexporter.style.StyleCache;
+
+import com.vaadin.ui.Grid;
+
+/**
+ * Compiles component configurations into column export plans.
+ */
+public class ColumnExportPlanTest {
+
+	private final AtomicInteger applied = new AtomicInteger();
+
+	@Test
+	public void columns() {
+		ColumnExportPlan<String[]> plan = ColumnExportPlan.compile(createConfiguration(null));
+
+		assertEquals(2, plan.getColumnCount());
+		assertEquals("name", plan.getColumnId(0));
+		assertEquals("count", plan.getColumnId(1));
+		assertEquals("b", plan.getValue(0, new String[] { "b", "2" }));
+		assertEquals(ValueKind.OTHER, plan.getValueKind(0));
+		assertEquals(ValueKind.INTEGER, plan.getValueKind(1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownColumn() {
+		ExportExcelComponentConfiguration<String[]> configuration = createConfiguration(null);
+		configuration.setVisibleProperties(new String[] { "name", "unknown" });
+		ColumnExportPlan.compile(configuration);
+	}
+
+	@Test
+	public void rowParityStylesAreResolvedOnce() {
+		StyleCache styleCache = new StyleCache(new XSSFWorkbook(), StyleCacheMode.DESCRIPTOR);
+		ColumnExportPlan<String[]> plan = ColumnExportPlan.compile(
+				createConfiguration((RowParityCellStyleGeneratorFunction) this::createStyle), false, styleCache);
+
+		XSSFCellStyle even = plan.getContentStyle(styleCache, 1, "1", 0);
+		XSSFCellStyle odd = plan.getContentStyle(styleCache, 1, "1", 1);
+		for (int row = 2; row < 100; row++) {
+			assertSame(row % 2 == 0 ? even : odd, plan.getContentStyle(styleCache, 1, String.valueOf(row), row));
+		}
+		assertNotSame(even, odd);
+		assertEquals(CellStyle.ALIGN_CENTER, odd.getAlignment());
+		// once per column and row parity
+		assertEquals(4, this.applied.get());
+	}
+
+	@Test
+	public void defaultContentStyleOnlyDependsOnRowParity() {
+		StyleCache styleCache = new StyleCache(new XSSFWorkbook(), StyleCacheMode.DESCRIPTOR);
+		ColumnExportPlan<String[]> plan = ColumnExportPlan.compile(createConfiguration(null), false, styleCache);
+
+		assertSame(plan.getContentStyle(styleCache, 0, "a", 0), plan.getContentStyle(styleCache, 0, "b", 2));
+		// only the shaded style of the odd rows is created, the even rows have the
+		// default style
+		assertEquals(1, styleCache.getStyleCount());
+	}
+
+	@Test
+	public void otherStylesAreAppliedPerCell() {
+		StyleCache styleCache = new StyleCache(new XSSFWorkbook(), StyleCacheMode.DESCRIPTOR);
+		ColumnExportPlan<String[]> plan = ColumnExportPlan.compile(
+				createConfiguration((DataCellStyleGeneratorFunction) this::createStyle), false, styleCache);
+
+		for (int row = 0; row < 100; row++) {
+			plan.getContentStyle(styleCache, 1, String.valueOf(row), row);
+		}
+		assertEquals(100, this.applied.get());
+	}
+
+	@Test
+	public void rowParityStylesWithoutSharing() {
+		StyleCache styleCache = new StyleCache(new XSSFWorkbook(), StyleCacheMode.NONE);
+		ColumnExportPlan<String[]> plan = ColumnExportPlan.compile(
+				createConfiguration((RowParityCellStyleGeneratorFunction) this::createStyle), false, styleCache);
+
+		for (int row = 0; row < 100; row++) {
+			plan.getContentStyle(styleCache, 1, String.valueOf(row), row);
+		}
+		assertEquals(100, this.applied.get());
+		assertEquals(100, styleCache.getStyleCount());
+	}
+
+	private XSSFCellStyle createStyle(final XSSFWorkbook workbook, final String columnId, final Object value,
+			final int rowNum) {
+		this.applied.incrementAndGet();
+		XSSFCellStyle style = workbook.createCellStyle();
+		if (rowNum % 2 == 1) {
+			style.setAlignment(CellStyle.ALIGN_CENTER);
+		}
+		return style;
+	}
+
+	private static ExportExcelComponentConfiguration<String[]> createConfiguration(
+			final DataCellStyleGeneratorFunction contentStyleFunction) {
+		Grid<String[]> grid = new Grid<>();
+		grid.addColumn(row -> row[0])
+			.setId("name");
+		grid.addColumn(row -> row[1])
+			.setId("count");
+
+		ExportExcelComponentConfigurationBuilder<String[]> builder = new ExportExcelComponentConfigurationBuilder<String[]>()
+			.withGrid(grid)
+			.withVisibleProperties(new String[] { "name", "count" })
+			.withIntegerFormattingProperties(Arrays.asList("count"));
+		if (contentStyleFunction != null) {
+			builder.withContentStyleFunction(contentStyleFunction);
+		}
+		return builder.build();
+	}
+}
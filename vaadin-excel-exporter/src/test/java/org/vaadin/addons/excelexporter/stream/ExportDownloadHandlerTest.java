@@ -0,0 +1,53 @@
+package org.vaadin.addons.excelexporter.stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Parses the byte ranges of range requests.
+ */
+public class ExportDownloadHandlerTest {
+
+	private static final long SIZE = 1000;
+
+	@Test
+	public void range() {
+		assertArrayEquals(new long[] { 0, 99 }, ExportDownloadHandler.parseRange("0-99", SIZE));
+		assertArrayEquals(new long[] { 999, 999 }, ExportDownloadHandler.parseRange("999-999", SIZE));
+		assertArrayEquals(new long[] { 10, 20 }, ExportDownloadHandler.parseRange(" 10 - 20 ", SIZE));
+	}
+
+	@Test
+	public void openRange() {
+		assertArrayEquals(new long[] { 500, 999 }, ExportDownloadHandler.parseRange("500-", SIZE));
+	}
+
+	@Test
+	public void suffixRange() {
+		assertArrayEquals(new long[] { 900, 999 }, ExportDownloadHandler.parseRange("-100", SIZE));
+		assertArrayEquals(new long[] { 0, 999 }, ExportDownloadHandler.parseRange("-2000", SIZE));
+	}
+
+	@Test
+	public void rangeBeyondSize() {
+		assertArrayEquals(new long[] { 900, 999 }, ExportDownloadHandler.parseRange("900-2000", SIZE));
+	}
+
+	@Test
+	public void unsatisfiableRange() {
+		assertNull(ExportDownloadHandler.parseRange("1000-", SIZE));
+		assertNull(ExportDownloadHandler.parseRange("1000-1100", SIZE));
+		assertNull(ExportDownloadHandler.parseRange("5-3", SIZE));
+		assertNull(ExportDownloadHandler.parseRange("-0", SIZE));
+		assertNull(ExportDownloadHandler.parseRange("0-", 0));
+	}
+
+	@Test
+	public void invalidRange() {
+		assertNull(ExportDownloadHandler.parseRange("abc", SIZE));
+		assertNull(ExportDownloadHandler.parseRange("a-b", SIZE));
+		assertNull(ExportDownloadHandler.parseRange("-", SIZE));
+	}
+}
@@ -0,0 +1,188 @@
+package org.vaadin.addons.excelexporter.style;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+import org.vaadin.addons.excelexporter.function.DataCellStyleGeneratorFunction;
+import org.vaadin.addons.excelexporter.model.StyleCacheMode;
+
+/**
+ * Shares the styles returned by the style functions.
+ */
+public class StyleCacheTest {
+
+	private final AtomicInteger applied = new AtomicInteger();
+
+	/** Negative numbers are red, odd rows are centered. */
+	private final DataCellStyleGeneratorFunction contentStyle = (workbook, columnId, value, rowNum) -> {
+		this.applied.incrementAndGet();
+		XSSFCellStyle style = workbook.createCellStyle();
+		if (value instanceof Integer && (Integer) value < 0) {
+			XSSFFont font = workbook.createFont();
+			font.setColor(Font.COLOR_RED);
+			style.setFont(font);
+		}
+		if (rowNum % 2 == 1) {
+			style.setAlignment(CellStyle.ALIGN_CENTER);
+		}
+		return style;
+	};
+
+	private final BiFunction<XSSFWorkbook, String, XSSFCellStyle> headerStyle = (workbook, columnId) -> {
+		this.applied.incrementAndGet();
+		XSSFFont font = workbook.createFont();
+		font.setBold(true);
+		XSSFCellStyle style = workbook.createCellStyle();
+		style.setFont(font);
+		return style;
+	};
+
+	@Test
+	public void descriptorSharesEqualStyles() {
+		XSSFWorkbook workbook = new XSSFWorkbook();
+		StyleCache cache = new StyleCache(workbook, StyleCacheMode.DESCRIPTOR);
+		XSSFCellStyle[] styles = getContentStyles(cache, 100);
+
+		// centered, red and red centered, the plain style is the default style
+		assertEquals(3, cache.getStyleCount());
+		// the function is applied for every cell
+		assertEquals(100, this.applied.get());
+		assertSame(styles[0], styles[2]);
+		assertSame(styles[0], styles[12]);
+		assertEquals(0, styles[0].getIndex());
+		assertNotSame(styles[0], styles[1]);
+		assertEquals(CellStyle.ALIGN_CENTER, styles[1].getAlignment());
+		assertEquals(Font.COLOR_RED, styles[50].getFont()
+			.getColor());
+	}
+
+	@Test
+	public void descriptorKeepsRowDependentStyles() {
+		StyleCache cache = new StyleCache(new XSSFWorkbook(), StyleCacheMode.DESCRIPTOR);
+		// every third row is centered
+		DataCellStyleGeneratorFunction banding = (workbook, columnId, value, rowNum) -> {
+			XSSFCellStyle style = workbook.createCellStyle();
+			if (rowNum % 3 == 0) {
+				style.setAlignment(CellStyle.ALIGN_CENTER);
+			}
+			return style;
+		};
+		for (int i = 0; i < 12; i++) {
+			assertEquals(i % 3 == 0 ? CellStyle.ALIGN_CENTER : CellStyle.ALIGN_GENERAL,
+							cache.getContentStyle(banding, "column", "value", i)
+								.getAlignment());
+		}
+		assertEquals(1, cache.getStyleCount());
+	}
+
+	@Test
+	public void valuesAppliesOncePerValue() {
+		XSSFWorkbook workbook = new XSSFWorkbook();
+		StyleCache cache = new StyleCache(workbook, StyleCacheMode.VALUES);
+		XSSFCellStyle[] styles = getContentStyles(cache, 100);
+
+		// the function is applied once per value and row parity
+		assertEquals(40, this.applied.get());
+		assertEquals(3, cache.getStyleCount());
+		assertSame(styles[0], styles[12]);
+		assertEquals(Font.COLOR_RED, styles[50].getFont()
+			.getColor());
+	}
+
+	@Test
+	public void valuesForgetsLeastRecentlyUsedInputs() {
+		StyleCache cache = new StyleCache(new XSSFWorkbook(), StyleCacheMode.VALUES);
+		for (int i = 0; i < 20000; i++) {
+			cache.getContentStyle(this.contentStyle, "column", i, 0);
+			// a frequent value is kept
+			cache.getContentStyle(this.contentStyle, "column", -1, 0);
+		}
+		assertEquals(20001, this.applied.get());
+	}
+
+	@Test
+	public void inputsAppliesOncePerValueClass() {
+		XSSFWorkbook workbook = new XSSFWorkbook();
+		StyleCache cache = new StyleCache(workbook, StyleCacheMode.INPUTS);
+		XSSFCellStyle[] styles = getContentStyles(cache, 100);
+
+		// the function is applied once per value class and row parity
+		assertEquals(2, this.applied.get());
+		assertEquals(1, cache.getStyleCount());
+		// the value itself is not considered
+		assertSame(styles[0], styles[50]);
+	}
+
+	@Test
+	public void noneCreatesEveryStyle() {
+		XSSFWorkbook workbook = new XSSFWorkbook();
+		StyleCache cache = new StyleCache(workbook, StyleCacheMode.NONE);
+		getContentStyles(cache, 100);
+
+		assertEquals(100, this.applied.get());
+		assertEquals(100, cache.getStyleCount());
+	}
+
+	@Test
+	public void nullStyle() {
+		StyleCache cache = new StyleCache(new XSSFWorkbook(), StyleCacheMode.DESCRIPTOR);
+		assertNull(cache.getContentStyle((workbook, columnId, value, rowNum) -> null, "column", 1, 0));
+		assertEquals(0, cache.getStyleCount());
+	}
+
+	@Test
+	public void fontsAreShared() {
+		XSSFWorkbook workbook = new XSSFWorkbook();
+		int fonts = workbook.getNumberOfFonts();
+		StyleCache cache = new StyleCache(workbook, StyleCacheMode.DESCRIPTOR);
+		XSSFCellStyle first = cache.getStyle(this.headerStyle, "first");
+		XSSFCellStyle second = cache.getStyle(this.headerStyle, "second");
+
+		// applied for every cell, but added to the workbook once
+		assertEquals(2, this.applied.get());
+		assertSame(first, second);
+		assertEquals(1, cache.getStyleCount());
+		assertEquals(fonts + 1, workbook.getNumberOfFonts());
+		assertEquals(XSSFFont.BOLDWEIGHT_BOLD, first.getFont()
+			.getBoldweight());
+	}
+
+	@Test
+	public void styleWithDataFormat() {
+		XSSFWorkbook workbook = new XSSFWorkbook();
+		StyleCache cache = new StyleCache(workbook, StyleCacheMode.DESCRIPTOR);
+		XSSFCellStyle header = cache.getStyle(this.headerStyle, "column");
+		XSSFCellStyle formatted = cache.getStyleWithDataFormat(header, "0.00");
+
+		assertSame(formatted, cache.getStyleWithDataFormat(header, "0.00"));
+		assertEquals("0.00", formatted.getDataFormatString());
+		assertEquals(header.getFontIndex(), formatted.getFontIndex());
+		assertNotSame(formatted, cache.getStyleWithDataFormat(null, "0.00"));
+		// the header style and the two formatted styles
+		assertEquals(3, cache.getStyleCount());
+	}
+
+	/**
+	 * Gets the styles of a column with the values 0 to 9 and -10 to -1 in
+	 * consecutive rows, the value changes every other row.
+	 */
+	private XSSFCellStyle[] getContentStyles(final StyleCache cache, final int rows) {
+		XSSFCellStyle[] styles = new XSSFCellStyle[rows];
+		for (int i = 0; i < rows; i++) {
+			int value = i / 2 % 10;
+			styles[i] = cache.getContentStyle(this.contentStyle, "column", i < rows / 2 ? value : value - 10, i);
+		}
+		return styles;
+	}
+}
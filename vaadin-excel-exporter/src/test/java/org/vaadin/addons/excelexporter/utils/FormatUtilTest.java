@@ -0,0 +1,47 @@
+package org.vaadin.addons.excelexporter.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Converts SimpleDateFormat patterns to Excel data formats.
+ */
+public class FormatUtilTest {
+
+	@Test
+	public void datePatterns() {
+		assertEquals("ddd, dd.mm.yyyy", FormatUtil.toExcelDateFormat("EEE, dd.MM.yyyy"));
+		assertEquals("dd.mm.yy", FormatUtil.toExcelDateFormat("dd.MM.yy"));
+		assertEquals("d/m/yyyy", FormatUtil.toExcelDateFormat("d/M/y"));
+		assertEquals("dddd d. mmmm yyyy", FormatUtil.toExcelDateFormat("EEEE d. MMMM yyyy"));
+		assertEquals("mmm yyyy", FormatUtil.toExcelDateFormat("MMM yyyy"));
+	}
+
+	@Test
+	public void timePatterns() {
+		assertEquals("hh:mm:ss.000", FormatUtil.toExcelDateFormat("HH:mm:ss.SSS"));
+		assertEquals("hh:mm", FormatUtil.toExcelDateFormat("kk:mm"));
+		assertEquals("h:mm AM/PM", FormatUtil.toExcelDateFormat("h:mm a"));
+	}
+
+	@Test
+	public void quotedText() {
+		assertEquals("yyyy-mm-dd\"T\"hh:mm", FormatUtil.toExcelDateFormat("yyyy-MM-dd'T'HH:mm"));
+		assertEquals("\"o'clock\" hh \"Uhr\"", FormatUtil.toExcelDateFormat("'o''clock' HH 'Uhr'"));
+		assertEquals("\\'yy", FormatUtil.toExcelDateFormat("''yy"));
+		assertEquals("\"a\"\\\"\"b\" yyyy", FormatUtil.toExcelDateFormat("'a\"b' yyyy"));
+		assertEquals("\"unterminated\"", FormatUtil.toExcelDateFormat("'unterminated"));
+	}
+
+	@Test
+	public void excelFormatCharacters() {
+		assertEquals("dd\\#mm \\1", FormatUtil.toExcelDateFormat("dd#MM 1"));
+	}
+
+	@Test
+	public void unsupportedLetters() {
+		assertEquals("dd.mm.yyyy hh:mm ", FormatUtil.toExcelDateFormat("dd.MM.yyyy HH:mm z"));
+		assertEquals("yyyy-", FormatUtil.toExcelDateFormat("yyyy-ww"));
+	}
+}
@@ -0,0 +1,297 @@
+package org.vaadin.addons.excelexporter.writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Date;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.vaadin.addons.excelexporter.stream.TempFileStore;
+
+/**
+ * Writes xlsx files with the SpreadsheetMLWriter and reads them back with the
+ * XSSF usermodel.
+ */
+public class SpreadsheetMLWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private TempFileStore store;
+
+	private XSSFWorkbook styles;
+
+	private XSSFCellStyle dateStyle;
+
+	@Before
+	public void setUp() throws IOException {
+		this.store = new TempFileStore(this.folder.newFolder("parts"), TempFileStore.DEFAULT_TIME_TO_LIVE,
+				Long.MAX_VALUE);
+		this.styles = new XSSFWorkbook();
+		this.dateStyle = this.styles.createCellStyle();
+		this.dateStyle.setDataFormat(this.styles.createDataFormat()
+			.getFormat("dd.mm.yyyy"));
+	}
+
+	@After
+	public void tearDown() {
+		this.store.shutdown();
+	}
+
+	@Test
+	public void cells() throws IOException {
+		Date date = new Date(1500000000000L);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		SpreadsheetMLWriter writer = new SpreadsheetMLWriter(out, 100, this.store);
+		writer.startSheet("Cells");
+		writer.startRow(0);
+		writer.writeString(0, "text", 0);
+		writer.writeString(1, " <a & \"b\"> ", 0);
+		writer.writeString(2, "", 0);
+		writer.writeString(3, null, 0);
+		writer.writeBlank(4, this.dateStyle.getIndex());
+		writer.startRow(2);
+		writer.writeNumber(0, 1.5, 0);
+		writer.writeNumber(1, -42, 0);
+		writer.writeDate(2, date, this.dateStyle.getIndex());
+		writer.finish(this.styles.getStylesSource());
+
+		XSSFWorkbook workbook = read(out);
+		assertEquals(1, workbook.getNumberOfSheets());
+		XSSFSheet sheet = workbook.getSheet("Cells");
+		Row row = sheet.getRow(0);
+		assertEquals("text", row.getCell(0)
+			.getStringCellValue());
+		assertEquals(" <a & \"b\"> ", row.getCell(1)
+			.getStringCellValue());
+		assertEquals(Cell.CELL_TYPE_STRING, row.getCell(2)
+			.getCellType());
+		assertEquals("", row.getCell(2)
+			.getStringCellValue());
+		// blank cells without a style are left out
+		assertNull(row.getCell(3));
+		assertEquals(Cell.CELL_TYPE_BLANK, row.getCell(4)
+			.getCellType());
+		assertEquals("dd.mm.yyyy", row.getCell(4)
+			.getCellStyle()
+			.getDataFormatString());
+
+		assertNull(sheet.getRow(1));
+		row = sheet.getRow(2);
+		assertEquals(1.5, row.getCell(0)
+			.getNumericCellValue(), 0);
+		assertEquals(-42, row.getCell(1)
+			.getNumericCellValue(), 0);
+		assertEquals(date, row.getCell(2)
+			.getDateCellValue());
+		assertEquals("dd.mm.yyyy", row.getCell(2)
+			.getCellStyle()
+			.getDataFormatString());
+	}
+
+	@Test
+	public void sheetSettings() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		SpreadsheetMLWriter writer = new SpreadsheetMLWriter(out, 100, this.store);
+		writer.startSheet("First");
+		writer.setFreezePane(1, 2);
+		writer.addMergedRegion(new CellRangeAddress(0, 0, 0, 2));
+		writer.setAutoFilter(new CellRangeAddress(1, 3, 0, 2));
+		for (int i = 0; i < 4; i++) {
+			writer.startRow(i);
+			writer.writeString(0, "row " + i, 0);
+		}
+		writer.startSheet("Second");
+		writer.startRow(0);
+		writer.writeString(0, "second", 0);
+		writer.finish(this.styles.getStylesSource());
+
+		XSSFWorkbook workbook = read(out);
+		assertEquals(2, workbook.getNumberOfSheets());
+		assertEquals("First", workbook.getSheetName(0));
+		assertEquals("Second", workbook.getSheetName(1));
+
+		XSSFSheet first = workbook.getSheetAt(0);
+		assertEquals(1, first.getNumMergedRegions());
+		assertEquals("A1:C1", first.getMergedRegion(0)
+			.formatAsString());
+		assertEquals("A2:C4", first.getCTWorksheet()
+			.getAutoFilter()
+			.getRef());
+		assertNotNull(first.getPaneInformation());
+		assertEquals(1, first.getPaneInformation()
+			.getVerticalSplitPosition());
+		assertEquals(2, first.getPaneInformation()
+			.getHorizontalSplitPosition());
+		assertEquals("row 3", first.getRow(3)
+			.getCell(0)
+			.getStringCellValue());
+
+		XSSFSheet second = workbook.getSheetAt(1);
+		assertEquals(0, second.getNumMergedRegions());
+		assertFalse(second.getCTWorksheet()
+			.isSetAutoFilter());
+		assertEquals("second", second.getRow(0)
+			.getCell(0)
+			.getStringCellValue());
+	}
+
+	@Test
+	public void columnWidthsOfRowWindow() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		SpreadsheetMLWriter writer = new SpreadsheetMLWriter(out, 2, this.store);
+		writer.startSheet("Widths");
+		writer.startRow(0);
+		writer.writeString(0, "short", 0);
+		writer.writeString(1, "a much longer text", 0);
+		writer.startRow(1);
+		writer.writeString(0, "a much longer text", 0);
+		writer.startRow(2);
+		// beyond the row window, not considered
+		writer.writeString(1, "a text far longer than any other text of the sheet", 0);
+		writer.finish(this.styles.getStylesSource());
+
+		XSSFSheet sheet = read(out).getSheetAt(0);
+		assertEquals(sheet.getColumnWidth(0), sheet.getColumnWidth(1));
+		assertTrue(sheet.getColumnWidth(0) > sheet.getColumnWidth(2));
+	}
+
+	@Test
+	public void partWriters() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		SpreadsheetMLWriter writer = new SpreadsheetMLWriter(out, 100, this.store);
+		SpreadsheetMLWriter firstPart = writer.createPartWriter(true);
+		SpreadsheetMLWriter secondPart = writer.createPartWriter(false);
+		// parts can be written in any order
+		writeSheet(secondPart, "Third");
+		writeSheet(firstPart, "First");
+		writeSheet(firstPart, "Second");
+		firstPart.endSheet();
+		secondPart.endSheet();
+		assertTrue(firstPart.getPartBytes() > 0);
+		assertEquals(3, this.store.getFileCount());
+
+		writer.appendSheets(firstPart);
+		writer.appendSheets(secondPart);
+		assertEquals(0, this.store.getFileCount());
+		writeSheet(writer, "Fourth");
+		writer.finish(this.styles.getStylesSource());
+
+		XSSFWorkbook workbook = read(out);
+		assertEquals(4, workbook.getNumberOfSheets());
+		String[] names = { "First", "Second", "Third", "Fourth" };
+		for (int i = 0; i < names.length; i++) {
+			assertEquals(names[i], workbook.getSheetName(i));
+			assertEquals(names[i], workbook.getSheetAt(i)
+				.getRow(1)
+				.getCell(1)
+				.getStringCellValue());
+			assertEquals("A1:B1", workbook.getSheetAt(i)
+				.getMergedRegion(0)
+				.formatAsString());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void duplicateSheetName() throws IOException {
+		SpreadsheetMLWriter writer = new SpreadsheetMLWriter(new ByteArrayOutputStream(), 100, this.store);
+		writer.startSheet("Sheet");
+		writer.startSheet("Sheet");
+	}
+
+	@Test
+	public void duplicateSheetNameOfPart() throws IOException {
+		SpreadsheetMLWriter writer = new SpreadsheetMLWriter(new ByteArrayOutputStream(), 100, this.store);
+		writer.startSheet("Sheet");
+		SpreadsheetMLWriter part = writer.createPartWriter(false);
+		writeSheet(part, "Sheet");
+		try {
+			writer.appendSheets(part);
+			throw new AssertionError("the sheet name is used twice");
+		} catch (IllegalArgumentException e) {
+			// the files of the part are deleted anyway
+			assertEquals(0, this.store.getFileCount());
+		}
+	}
+
+	@Test
+	public void rowFragments() throws IOException {
+		ByteArrayOutputStream serialOut = new ByteArrayOutputStream();
+		SpreadsheetMLWriter serial = new SpreadsheetMLWriter(serialOut, 5, this.store);
+		serial.startSheet("Rows");
+		writeRows(serial, 0, 12);
+		serial.finish(this.styles.getStylesSource());
+
+		ByteArrayOutputStream fragmentedOut = new ByteArrayOutputStream();
+		SpreadsheetMLWriter fragmented = new SpreadsheetMLWriter(fragmentedOut, 5, this.store);
+		fragmented.startSheet("Rows");
+		writeRows(fragmented, 0, 1);
+		SpreadsheetMLWriter first = fragmented.createRowFragment();
+		SpreadsheetMLWriter second = fragmented.createRowFragment();
+		writeRows(second, 4, 12);
+		writeRows(first, 1, 4);
+		fragmented.appendRows(first);
+		fragmented.appendRows(second);
+		fragmented.finish(this.styles.getStylesSource());
+
+		XSSFSheet expected = read(serialOut).getSheetAt(0);
+		XSSFSheet actual = read(fragmentedOut).getSheetAt(0);
+		assertEquals(expected.getLastRowNum(), actual.getLastRowNum());
+		for (int i = 0; i < 12; i++) {
+			assertEquals(expected.getRow(i)
+				.getCell(0)
+				.getStringCellValue(),
+							actual.getRow(i)
+								.getCell(0)
+								.getStringCellValue());
+			assertEquals(expected.getRow(i)
+				.getCell(1)
+				.getNumericCellValue(),
+							actual.getRow(i)
+								.getCell(1)
+								.getNumericCellValue(),
+							0);
+		}
+		assertEquals(expected.getColumnWidth(0), actual.getColumnWidth(0));
+	}
+
+	private static void writeSheet(final SpreadsheetMLWriter writer, final String name) throws IOException {
+		writer.startSheet(name);
+		writer.addMergedRegion(new CellRangeAddress(0, 0, 0, 1));
+		writer.startRow(0);
+		writer.writeString(0, "Title", 0);
+		writer.startRow(1);
+		writer.writeNumber(0, 1, 0);
+		writer.writeString(1, name, 0);
+	}
+
+	private static void writeRows(final SpreadsheetMLWriter writer, final int from, final int to)
+			throws IOException {
+		for (int i = from; i < to; i++) {
+			writer.startRow(i);
+			// the widest text is beyond the row window
+			writer.writeString(0, i == 8 ? "a text wider than the others" : "row " + i, 0);
+			writer.writeNumber(1, i, 0);
+		}
+	}
+
+	private static XSSFWorkbook read(final ByteArrayOutputStream out) throws IOException {
+		return new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()));
+	}
+}